@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for multi-threaded CPC ingest: a ConcurrentCpcSketch updated through per-thread
+ * local buffers, and a CpcSketch behind a lock. Run with -t to vary the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentCpcSketchBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Shared {
+    @Param({"11", "16"})
+    int lgK;
+
+    @Param({"256"})
+    int maxStaleness;
+
+    ConcurrentCpcSketch concurrent;
+    CpcSketch locked;
+    final AtomicLong nextBase = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      concurrent = new ConcurrentCpcSketch(lgK);
+      locked = new CpcSketch(lgK);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Local {
+    ConcurrentCpcBuffer buffer;
+    long key;
+
+    @Setup(Level.Iteration)
+    public void setup(final Shared shared) {
+      buffer = shared.concurrent.newLocalBuffer(shared.maxStaleness);
+      key = shared.nextBase.getAndAdd(1L << 40);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      buffer.flush();
+    }
+  }
+
+  @Benchmark
+  public void bufferedUpdate(final Local local) {
+    local.buffer.update(local.key++);
+  }
+
+  @Benchmark
+  public void lockedUpdate(final Shared shared, final Local local) {
+    final CpcSketch sketch = shared.locked;
+    synchronized (sketch) {
+      sketch.update(local.key++);
+    }
+  }
+
+}
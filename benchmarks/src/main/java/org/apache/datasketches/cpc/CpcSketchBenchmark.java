@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the CpcSketch: update, union, compressed serialization, heapify and estimate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CpcSketchBenchmark {
+
+  @Param({"11", "16"})
+  int lgK;
+
+  @Param({"1000", "1000000"})
+  int n;
+
+  private CpcSketch sketch;
+  private long key;
+
+  private CpcSketch sketchA;
+  private CpcSketch sketchB;
+  private Memory mem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    sketchA = new CpcSketch(lgK);
+    sketchB = new CpcSketch(lgK);
+    for (int i = 0; i < n; i++) {
+      sketchA.update(i);
+      sketchB.update(i + (n / 2));
+    }
+    mem = Memory.wrap(sketchA.toByteArray());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = new CpcSketch(lgK);
+    key = 0;
+  }
+
+  @Benchmark
+  public CpcSketch update() {
+    sketch.update(key++);
+    return sketch;
+  }
+
+  @Benchmark
+  public CpcSketch union() {
+    final CpcUnion union = new CpcUnion(lgK);
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return sketchA.toByteArray();
+  }
+
+  @Benchmark
+  public CpcSketch heapify() {
+    return CpcSketch.heapify(mem);
+  }
+
+  @Benchmark
+  public double estimate() {
+    return sketchA.getEstimate() + sketchA.getUpperBound(2);
+  }
+
+}
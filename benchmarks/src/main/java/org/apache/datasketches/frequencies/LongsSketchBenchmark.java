@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.frequencies;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the frequent items LongsSketch: update, merge, serialize, deserialize and
+ * the frequent items query. Items are drawn from a skewed (power-law) distribution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LongsSketchBenchmark {
+  private static final int ITEMS_MASK = (1 << 20) - 1;
+
+  @Param({"1024", "65536"})
+  int maxMapSize;
+
+  @Param({"1000000"})
+  int n;
+
+  private long[] items;
+  private LongsSketch sketch;
+  private int index;
+
+  private LongsSketch sketchA;
+  private LongsSketch sketchB;
+  private Memory mem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final Random rand = new Random(1);
+    items = new long[ITEMS_MASK + 1];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = (long) Math.pow(1.0 / (1.0 - rand.nextDouble()), 1.5); //Pareto-like skew
+    }
+    sketchA = new LongsSketch(maxMapSize);
+    sketchB = new LongsSketch(maxMapSize);
+    for (int i = 0; i < n; i++) {
+      sketchA.update(items[i & ITEMS_MASK]);
+      sketchB.update(items[(i * 7) & ITEMS_MASK] + 1);
+    }
+    mem = Memory.wrap(sketchA.toByteArray());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = new LongsSketch(maxMapSize);
+    index = 0;
+  }
+
+  @Benchmark
+  public LongsSketch update() {
+    sketch.update(items[index++ & ITEMS_MASK]);
+    return sketch;
+  }
+
+  @Benchmark
+  public LongsSketch merge() {
+    final LongsSketch union = new LongsSketch(maxMapSize);
+    union.merge(sketchA);
+    union.merge(sketchB);
+    return union;
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return sketchA.toByteArray();
+  }
+
+  @Benchmark
+  public LongsSketch deserialize() {
+    return LongsSketch.getInstance(mem);
+  }
+
+  @Benchmark
+  public LongsSketch.Row[] getFrequentItems() {
+    return sketchA.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+  }
+
+}
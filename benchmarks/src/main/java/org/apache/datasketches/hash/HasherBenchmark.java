@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hash;
+
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite comparing the hash functions a sketch can be configured with, for single longs and
+ * for short and long keys given as byte arrays, regions of a shared buffer and character
+ * sequences.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HasherBenchmark {
+
+  @Param({"MURMUR3", "XXHASH64"})
+  Hasher hasher;
+
+  @Param({"8", "16", "64", "1024"})
+  int keyBytes;
+
+  private final long[] hashOut = new long[2];
+  private byte[] bytes;
+  private byte[] buffer;
+  private String string;
+  private StringBuilder builder;
+  private long key;
+
+  @Setup
+  public void setup() {
+    bytes = new byte[keyBytes];
+    for (int i = 0; i < keyBytes; i++) { bytes[i] = (byte) i; }
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < keyBytes; i++) { sb.append((char) ('a' + (i % 26))); }
+    string = sb.toString();
+    builder = sb;
+    buffer = new byte[keyBytes + 16];
+  }
+
+  @Benchmark
+  public long hashLong() {
+    return hasher.hash(key++, DEFAULT_UPDATE_SEED, hashOut)[0];
+  }
+
+  @Benchmark
+  public long hashBytes() {
+    bytes[0] = (byte) key++;
+    return hasher.hash(bytes, DEFAULT_UPDATE_SEED, hashOut)[0];
+  }
+
+  @Benchmark
+  public long hashByteSlice() {
+    buffer[8] = (byte) key++;
+    return hasher.hash(buffer, 8, keyBytes, DEFAULT_UPDATE_SEED, hashOut)[0];
+  }
+
+  @Benchmark
+  public long hashString() {
+    return hasher.hash(string, DEFAULT_UPDATE_SEED, hashOut)[0];
+  }
+
+  @Benchmark
+  public long hashStringBuilder() {
+    return hasher.hash(builder, DEFAULT_UPDATE_SEED, hashOut)[0];
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite measuring single updates to a large population of HLL sketches with skewed update
+ * counts, where most sketches stay small, either in an HllArena or as heap sketches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HllArenaBenchmark {
+  private static final int NUM_SKETCHES = 1 << 16;
+  private static final int NUM_KEYS = 1 << 20;
+
+  @Param({"12"})
+  int lgK;
+
+  @Param({"HLL_4", "HLL_8"})
+  TgtHllType type;
+
+  private HllArena arena;
+  private long[] handles;
+  private HllSketch[] sketches;
+  private int[] keys; //the sketch of each update, skewed towards low indexes
+  private int next;
+  private long datum;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final Random rand = new Random(1);
+    keys = new int[NUM_KEYS];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      final double r = rand.nextDouble();
+      keys[i] = (int) (NUM_SKETCHES * r * r * r);
+    }
+    arena = new HllArena(lgK, type);
+    handles = new long[NUM_SKETCHES];
+    sketches = new HllSketch[NUM_SKETCHES];
+    for (int i = 0; i < NUM_SKETCHES; i++) {
+      handles[i] = arena.newSketch();
+      sketches[i] = new HllSketch(lgK, type);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() {
+    arena.close();
+  }
+
+  @Benchmark
+  public HllArena arenaUpdate() {
+    arena.update(handles[keys[next++ & (NUM_KEYS - 1)]], datum++);
+    return arena;
+  }
+
+  @Benchmark
+  public HllSketch heapUpdate() {
+    final HllSketch sk = sketches[keys[next++ & (NUM_KEYS - 1)]];
+    sk.update(datum++);
+    return sk;
+  }
+
+}
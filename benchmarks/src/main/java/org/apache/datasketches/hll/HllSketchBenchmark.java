@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the HllSketch: update, union, serialize, deserialize and estimate across
+ * all three target types, on the heap and in Memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HllSketchBenchmark {
+  private static final int BATCH = 1024;
+
+  @Param({"12", "21"})
+  int lgK;
+
+  @Param({"HLL_4", "HLL_6", "HLL_8"})
+  TgtHllType tgtHllType;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  @Param({"1000000"})
+  int n;
+
+  private HllSketch sketch;
+  private long key;
+  private final long[] batch = new long[BATCH];
+
+  private HllSketch sketchA;
+  private HllSketch sketchB;
+  private Memory compactMem;
+  private Memory updatableMem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    sketchA = newSketch();
+    sketchB = newSketch();
+    for (int i = 0; i < n; i++) {
+      sketchA.update(i);
+      sketchB.update(i + (n / 2));
+    }
+    compactMem = Memory.wrap(sketchA.toCompactByteArray());
+    updatableMem = Memory.wrap(sketchA.toUpdatableByteArray());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = newSketch();
+    key = 0;
+  }
+
+  private HllSketch newSketch() {
+    if (direct) {
+      final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, tgtHllType);
+      return new HllSketch(lgK, tgtHllType, WritableMemory.allocate(bytes));
+    }
+    return new HllSketch(lgK, tgtHllType);
+  }
+
+  @Benchmark
+  public HllSketch update() {
+    sketch.update(key++);
+    return sketch;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public HllSketch batchUpdate() {
+    for (int i = 0; i < BATCH; i++) { batch[i] = key++; }
+    sketch.batchUpdate(batch, 0, BATCH);
+    return sketch;
+  }
+
+  @Benchmark
+  public HllSketch union() {
+    final Union union = new Union(lgK);
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult(tgtHllType);
+  }
+
+  @Benchmark
+  public byte[] serializeCompact() {
+    return sketchA.toCompactByteArray();
+  }
+
+  @Benchmark
+  public byte[] serializeUpdatable() {
+    return sketchA.toUpdatableByteArray();
+  }
+
+  @Benchmark
+  public HllSketch heapify() {
+    return HllSketch.heapify(compactMem);
+  }
+
+  @Benchmark
+  public double wrapAndEstimate() {
+    return HllSketch.wrap(updatableMem).getEstimate();
+  }
+
+  @Benchmark
+  public double estimate() {
+    return sketchA.getEstimate() + sketchA.getUpperBound(2);
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite measuring the HLL Union merge of a sketch in HLL mode into a union that is already in
+ * HLL mode, for each source type, with the source and the union on the heap or in Memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UnionMergeBenchmark {
+
+  @Param({"12", "16"})
+  int lgK;
+
+  @Param({"HLL_4", "HLL_6", "HLL_8"})
+  TgtHllType srcType;
+
+  @Param({"false", "true"})
+  boolean srcDirect;
+
+  @Param({"false", "true"})
+  boolean unionDirect;
+
+  private HllSketch source;
+  private Union union;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final HllSketch sk = new HllSketch(lgK, srcType);
+    for (int i = 0; i < (8 << lgK); i++) { sk.update(i); }
+    source = srcDirect
+        ? HllSketch.writableWrap(WritableMemory.wrap(sk.toUpdatableByteArray()))
+        : sk;
+    union = unionDirect
+        ? new Union(lgK, WritableMemory.allocate(Union.getMaxSerializationBytes(lgK)))
+        : new Union(lgK);
+    union.update(sk);
+  }
+
+  @Benchmark
+  public Union merge() {
+    union.update(source);
+    return union;
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the KllFloatsSketch: update, merge, serialize, heapify, wrap and the quantile
+ * queries, on the heap and in Memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KllFloatsSketchBenchmark {
+  private static final int VALUES_MASK = (1 << 20) - 1;
+
+  @Param({"200"})
+  int k;
+
+  @Param({"1000000"})
+  int n;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  private float[] values;
+  private KllFloatsSketch sketch;
+  private int index;
+
+  private KllFloatsSketch sketchA;
+  private KllFloatsSketch sketchB;
+  private Memory mem;
+  private Memory updatableMem;
+  private float[] splitPoints;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final Random rand = new Random(1);
+    values = new float[VALUES_MASK + 1];
+    for (int i = 0; i < values.length; i++) { values[i] = rand.nextFloat(); }
+    sketchA = newSketch();
+    sketchB = newSketch();
+    for (int i = 0; i < n; i++) {
+      sketchA.update(values[i & VALUES_MASK]);
+      sketchB.update(rand.nextFloat());
+    }
+    mem = Memory.wrap(sketchA.toByteArray());
+    updatableMem = Memory.wrap(sketchA.toUpdatableByteArray());
+    splitPoints = new float[] {0.1f, 0.25f, 0.5f, 0.75f, 0.9f};
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = newSketch();
+    index = 0;
+  }
+
+  private KllFloatsSketch newSketch() {
+    if (direct) {
+      final int bytes = KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(k, 0);
+      return KllFloatsSketch.newDirectInstance(k, WritableMemory.allocate(bytes), null);
+    }
+    return new KllFloatsSketch(k);
+  }
+
+  @Benchmark
+  public KllFloatsSketch update() {
+    sketch.update(values[index++ & VALUES_MASK]);
+    return sketch;
+  }
+
+  @Benchmark
+  public KllFloatsSketch merge() {
+    final KllFloatsSketch union = newSketch();
+    union.merge(sketchA);
+    union.merge(sketchB);
+    return union;
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return sketchA.toByteArray();
+  }
+
+  @Benchmark
+  public KllFloatsSketch heapify() {
+    return KllFloatsSketch.heapify(mem);
+  }
+
+  @Benchmark
+  public float wrapAndGetQuantile() {
+    return KllFloatsSketch.wrap(updatableMem).getQuantile(0.5);
+  }
+
+  @Benchmark
+  public float getQuantile() {
+    return sketchA.getQuantile(0.5);
+  }
+
+  @Benchmark
+  public double getRank() {
+    return sketchA.getRank(0.5f);
+  }
+
+  @Benchmark
+  public double[] getCDF() {
+    return sketchA.getCDF(splitPoints);
+  }
+
+}
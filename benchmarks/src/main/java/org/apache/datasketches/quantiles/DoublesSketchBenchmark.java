@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.quantiles;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the DoublesSketch: update, union, serialize, heapify/wrap and the quantile
+ * queries, on the heap and in Memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DoublesSketchBenchmark {
+  private static final int VALUES_MASK = (1 << 20) - 1;
+
+  @Param({"128"})
+  int k;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  @Param({"1000000"})
+  int n;
+
+  private double[] values;
+  private UpdateDoublesSketch sketch;
+  private int index;
+
+  private UpdateDoublesSketch sketchA;
+  private UpdateDoublesSketch sketchB;
+  private Memory compactMem;
+  private double[] splitPoints;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final Random rand = new Random(1);
+    values = new double[VALUES_MASK + 1];
+    for (int i = 0; i < values.length; i++) { values[i] = rand.nextDouble(); }
+    sketchA = newSketch();
+    sketchB = newSketch();
+    for (int i = 0; i < n; i++) {
+      sketchA.update(values[i & VALUES_MASK]);
+      sketchB.update(rand.nextDouble());
+    }
+    compactMem = Memory.wrap(sketchA.toByteArray(true));
+    splitPoints = new double[] {0.1, 0.25, 0.5, 0.75, 0.9};
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = newSketch();
+    index = 0;
+  }
+
+  private UpdateDoublesSketch newSketch() {
+    final DoublesSketchBuilder bldr = DoublesSketch.builder().setK(k);
+    if (direct) {
+      //large enough that the sketch never has to request more memory
+      final int bytes = DoublesSketch.getUpdatableStorageBytes(k, 1L << 40);
+      return bldr.build(WritableMemory.allocate(bytes));
+    }
+    return bldr.build();
+  }
+
+  @Benchmark
+  public UpdateDoublesSketch update() {
+    sketch.update(values[index++ & VALUES_MASK]);
+    return sketch;
+  }
+
+  @Benchmark
+  public UpdateDoublesSketch union() {
+    final DoublesUnion union = DoublesUnion.builder().setMaxK(k).build();
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] serializeCompact() {
+    return sketchA.toByteArray(true);
+  }
+
+  @Benchmark
+  public DoublesSketch heapify() {
+    return DoublesSketch.heapify(compactMem);
+  }
+
+  @Benchmark
+  public double wrapAndGetQuantile() {
+    return DoublesSketch.wrap(compactMem).getQuantile(0.5);
+  }
+
+  @Benchmark
+  public double getQuantile() {
+    return sketchA.getQuantile(0.5);
+  }
+
+  @Benchmark
+  public double getRank() {
+    return sketchA.getRank(0.5);
+  }
+
+  @Benchmark
+  public double[] getCDF() {
+    return sketchA.getCDF(splitPoints);
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.sampling;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.ArrayOfLongsSerDe;
+import org.apache.datasketches.memory.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the VarOptItemsSketch: weighted update, union, serialize, heapify and
+ * subset sum estimation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VarOptItemsSketchBenchmark {
+  private static final int ITEMS_MASK = (1 << 20) - 1;
+
+  @Param({"1024"})
+  int k;
+
+  @Param({"1000000"})
+  int n;
+
+  private final ArrayOfLongsSerDe serDe = new ArrayOfLongsSerDe();
+  private Long[] items;
+  private double[] weights;
+  private VarOptItemsSketch<Long> sketch;
+  private int index;
+
+  private VarOptItemsSketch<Long> sketchA;
+  private VarOptItemsSketch<Long> sketchB;
+  private Memory mem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final Random rand = new Random(1);
+    items = new Long[ITEMS_MASK + 1];
+    weights = new double[ITEMS_MASK + 1];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = (long) i;
+      weights[i] = 1.0 / (1.0 - rand.nextDouble()); //heavy tailed weights
+    }
+    sketchA = VarOptItemsSketch.newInstance(k);
+    sketchB = VarOptItemsSketch.newInstance(k);
+    for (int i = 0; i < n; i++) {
+      final int j = i & ITEMS_MASK;
+      sketchA.update(items[j], weights[j]);
+      sketchB.update(items[j], weights[ITEMS_MASK - j]);
+    }
+    mem = Memory.wrap(sketchA.toByteArray(serDe));
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = VarOptItemsSketch.newInstance(k);
+    index = 0;
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> update() {
+    final int j = index++ & ITEMS_MASK;
+    sketch.update(items[j], weights[j]);
+    return sketch;
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> union() {
+    final VarOptItemsUnion<Long> union = VarOptItemsUnion.newInstance(k);
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return sketchA.toByteArray(serDe);
+  }
+
+  @Benchmark
+  public VarOptItemsSketch<Long> heapify() {
+    return VarOptItemsSketch.heapify(mem, serDe);
+  }
+
+  @Benchmark
+  public SampleSubsetSummary estimateSubsetSum() {
+    return sketchA.estimateSubsetSum(item -> (item & 1L) == 0);
+  }
+
+}
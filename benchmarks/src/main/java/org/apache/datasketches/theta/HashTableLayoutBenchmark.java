@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.ResizeFactor;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite comparing the hash table layouts of QuickSelect sketches on the heap and in Memory.
+ * <i>fill</i> inserts <i>k</i> distinct items into a cleared sketch, and <i>duplicate</i> updates
+ * an item already in the sketch, which probes the table until it finds it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HashTableLayoutBenchmark {
+
+  @Param({"12", "16", "20"})
+  int lgK;
+
+  @Param({"DOUBLE_HASHING", "BUCKETIZED"})
+  HashTableLayout layout;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  private UpdateSketch sketch;
+  private long key;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    final int k = 1 << lgK;
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k)
+        .setResizeFactor(ResizeFactor.X1).setHashTableLayout(layout);
+    sketch = direct
+        ? bldr.build(WritableMemory.allocate(Sketches.getMaxUpdateSketchBytes(k)))
+        : bldr.build();
+    fill();
+  }
+
+  @Benchmark
+  public UpdateSketch fill() {
+    sketch.reset();
+    for (long i = 0; i < (1L << lgK); i++) { sketch.update(i); }
+    return sketch;
+  }
+
+  @Benchmark
+  public UpdateReturnState duplicate() {
+    key = (key + 0x9E3779B97F4A7C15L) & ((1L << lgK) - 1); //the items of the last fill
+    return sketch.update(key);
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite comparing a sequential Union with a ParallelUnion merging many serialized compact
+ * sketches.
+ *
+ * <p>The <i>parallelism</i> parameter 0 selects the sequential Union.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelUnionBenchmark {
+
+  @Param({"12"})
+  int lgK;
+
+  @Param({"100000"})
+  int numSketches;
+
+  @Param({"0", "1", "2", "4", "8"})
+  int parallelism;
+
+  private Memory[] mems;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    mems = new Memory[numSketches];
+    final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(1 << lgK).build();
+    long key = 0;
+    for (int i = 0; i < numSketches; i++) {
+      sk.reset();
+      final int n = 1 << (i % 14); // sketches from one item to estimation mode
+      for (int j = 0; j < n; j++) { sk.update(key++); }
+      mems[i] = Memory.wrap(sk.compact().toByteArray());
+    }
+  }
+
+  @Benchmark
+  public CompactSketch union() {
+    final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(1 << lgK);
+    if (parallelism == 0) {
+      final Union union = bldr.buildUnion();
+      for (final Memory mem : mems) { union.update(mem); }
+      return union.getResult();
+    }
+    final ParallelUnion union = bldr.buildParallelUnion(parallelism);
+    union.update(mems);
+    return union.getResult();
+  }
+
+}
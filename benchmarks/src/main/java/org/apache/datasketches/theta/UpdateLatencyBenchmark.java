@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.ResizeFactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite sampling the latency of single updates of a heap QuickSelect sketch in estimation
+ * mode, with eager or incremental rebuilds. The percentiles of the sample, rather than its mean,
+ * show the pauses of the eager rebuilds.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateLatencyBenchmark {
+
+  @Param({"16", "20"})
+  int lgK;
+
+  @Param({"false", "true"})
+  boolean incremental;
+
+  private UpdateSketch sketch;
+  private long key;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    sketch = UpdateSketch.builder().setNominalEntries(1 << lgK).setResizeFactor(ResizeFactor.X1)
+        .setIncrementalRebuild(incremental).build();
+    for (key = 0; key < (4L << lgK); key++) { sketch.update(key); }
+  }
+
+  @Benchmark
+  public UpdateReturnState update() {
+    return sketch.update(key++);
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.Family;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the theta UpdateSketch: update, union, serialize, deserialize and estimate.
+ *
+ * <p>The <i>type</i> parameter selects the sketch implementation: heap QuickSelect, direct
+ * (Memory-backed) QuickSelect, or heap Alpha.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateSketchBenchmark {
+  private static final int BATCH = 1024;
+
+  @Param({"12", "16"})
+  int lgK;
+
+  @Param({"HEAP_QUICKSELECT", "DIRECT_QUICKSELECT", "HEAP_ALPHA"})
+  String type;
+
+  @Param({"1000000"})
+  int n;
+
+  private UpdateSketch sketch;
+  private long key;
+  private final long[] batch = new long[BATCH];
+
+  private UpdateSketch sketchA;
+  private UpdateSketch sketchB;
+  private CompactSketch compactA;
+  private Memory compactMem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    sketchA = newSketch();
+    sketchB = newSketch();
+    for (int i = 0; i < n; i++) {
+      sketchA.update(i);
+      sketchB.update(i + (n / 2));
+    }
+    compactA = sketchA.compact(true, null);
+    compactMem = Memory.wrap(compactA.toByteArray());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = newSketch();
+    key = 0;
+  }
+
+  private UpdateSketch newSketch() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(1 << lgK);
+    switch (type) {
+      case "HEAP_QUICKSELECT": return bldr.setFamily(Family.QUICKSELECT).build();
+      case "DIRECT_QUICKSELECT": {
+        final WritableMemory wmem = WritableMemory.allocate(Sketch.getMaxUpdateSketchBytes(1 << lgK));
+        return bldr.setFamily(Family.QUICKSELECT).build(wmem);
+      }
+      case "HEAP_ALPHA": return bldr.setFamily(Family.ALPHA).build();
+      default: throw new IllegalArgumentException(type);
+    }
+  }
+
+  @Benchmark
+  public UpdateReturnState update() {
+    return sketch.update(key++);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public UpdateSketch batchUpdate() {
+    for (int i = 0; i < BATCH; i++) { batch[i] = key++; }
+    sketch.batchUpdate(batch, 0, BATCH);
+    return sketch;
+  }
+
+  @Benchmark
+  public CompactSketch union() {
+    final Union union = SetOperation.builder().setNominalEntries(1 << lgK).buildUnion();
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] serializeCompact() {
+    return sketchA.compact(true, null).toByteArray();
+  }
+
+  @Benchmark
+  public byte[] serializeUpdatable() {
+    return sketchA.toByteArray();
+  }
+
+  @Benchmark
+  public Sketch heapifyCompact() {
+    return Sketch.heapify(compactMem);
+  }
+
+  @Benchmark
+  public double wrapCompactAndEstimate() {
+    return Sketch.wrap(compactMem).getEstimate();
+  }
+
+  @Benchmark
+  public double estimate() {
+    return compactA.getEstimate() + compactA.getUpperBound(2);
+  }
+
+}
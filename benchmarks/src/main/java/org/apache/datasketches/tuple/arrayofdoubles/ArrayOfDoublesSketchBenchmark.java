@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.tuple.arrayofdoubles;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH suite for the ArrayOfDoubles tuple sketch: update, union, serialize, heapify/wrap and
+ * estimate, on the heap and in Memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ArrayOfDoublesSketchBenchmark {
+
+  @Param({"4096"})
+  int nomEntries;
+
+  @Param({"1", "4"})
+  int numValues;
+
+  @Param({"false", "true"})
+  boolean direct;
+
+  @Param({"1000000"})
+  int n;
+
+  private double[] values;
+  private ArrayOfDoublesUpdatableSketch sketch;
+  private long key;
+
+  private ArrayOfDoublesUpdatableSketch sketchA;
+  private ArrayOfDoublesUpdatableSketch sketchB;
+  private Memory compactMem;
+
+  @Setup(Level.Trial)
+  public void setupTrial() {
+    values = new double[numValues];
+    for (int i = 0; i < numValues; i++) { values[i] = i + 1; }
+    sketchA = newSketch();
+    sketchB = newSketch();
+    for (int i = 0; i < n; i++) {
+      sketchA.update(i, values);
+      sketchB.update(i + (n / 2), values);
+    }
+    compactMem = Memory.wrap(sketchA.compact().toByteArray());
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() {
+    sketch = newSketch();
+    key = 0;
+  }
+
+  private ArrayOfDoublesUpdatableSketch newSketch() {
+    final ArrayOfDoublesUpdatableSketchBuilder bldr = new ArrayOfDoublesUpdatableSketchBuilder()
+        .setNominalEntries(nomEntries).setNumberOfValues(numValues);
+    if (direct) {
+      final int bytes = ArrayOfDoublesUnion.getMaxBytes(nomEntries, numValues);
+      return bldr.build(WritableMemory.allocate(bytes));
+    }
+    return bldr.build();
+  }
+
+  @Benchmark
+  public ArrayOfDoublesUpdatableSketch update() {
+    sketch.update(key++, values);
+    return sketch;
+  }
+
+  @Benchmark
+  public ArrayOfDoublesCompactSketch union() {
+    final ArrayOfDoublesUnion union = new ArrayOfDoublesSetOperationBuilder()
+        .setNominalEntries(nomEntries).setNumberOfValues(numValues).buildUnion();
+    union.update(sketchA);
+    union.update(sketchB);
+    return union.getResult();
+  }
+
+  @Benchmark
+  public byte[] serializeCompact() {
+    return sketchA.compact().toByteArray();
+  }
+
+  @Benchmark
+  public ArrayOfDoublesSketch heapify() {
+    return ArrayOfDoublesSketches.heapifySketch(compactMem);
+  }
+
+  @Benchmark
+  public double wrapAndEstimate() {
+    return ArrayOfDoublesSketches.wrapSketch(compactMem).getEstimate();
+  }
+
+}
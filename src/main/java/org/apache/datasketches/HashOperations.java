@@ -30,6 +30,7 @@ import org.apache.datasketches.memory.WritableMemory;
  */
 public final class HashOperations {
   private static final int STRIDE_HASH_BITS = 7;
+  private static final int BUCKET_LG_LONGS = 3; //8 longs, one 64-byte cache line
 
   private static final int EMPTY = 0;
 
@@ -217,6 +218,138 @@ public final class HashOperations {
     return count;
   }
 
+  //BUCKETIZED ON-HEAP
+
+  /**
+   * This is an Open Addressing, Double Hash search scheme over buckets of 8 slots, which is one
+   * 64-byte cache line, for on-heap. The slots of each bucket are searched in order before the
+   * probe moves on by the stride to the next bucket, so that a search usually touches a single
+   * cache line. It is not compatible with the other schemes of this class.
+   * Returns the index if found, -1 if not found.
+   *
+   * @param hashTable The hash table to search. Must be a power of 2 in size.
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param hash A hash value to search for. Must not be zero.
+   * @return Current probe index if found, -1 if not found.
+   */
+  public static int bucketSearch(final long[] hashTable, final int lgArrLongs, final long hash) {
+    if (hash == 0) {
+      throw new SketchesArgumentException("Given hash cannot be zero: " + hash);
+    }
+    final int arrayMask = (1 << lgArrLongs) - 1;
+    final int bucketLgLongs = Math.min(BUCKET_LG_LONGS, lgArrLongs);
+    final int bucketLongs = 1 << bucketLgLongs;
+    final int stride = getStride(hash, lgArrLongs) << bucketLgLongs;
+    int bucket = (int) (hash & arrayMask) & -bucketLongs;
+    for (int b = (arrayMask + 1) >>> bucketLgLongs; b-- > 0; ) {
+      for (int i = bucket; i < (bucket + bucketLongs); i++) {
+        final long arrVal = hashTable[i];
+        if (arrVal == EMPTY) {
+          return -1; // not found
+        } else if (arrVal == hash) {
+          return i; // found
+        }
+      }
+      bucket = (bucket + stride) & arrayMask;
+    }
+    return -1;
+  }
+
+  /**
+   * This is the bucketized insert scheme of {@link #bucketSearch(long[], int, long)} for on-heap.
+   * This method assumes that the input hash is not a duplicate.
+   * Returns the index of insertion, which is always positive or zero.
+   * Throws an exception if table has no empty slot.
+   *
+   * @param hashTable the hash table to insert into.
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param hash value that must not be zero and will be inserted into the array into an empty slot.
+   * @return index of insertion.  Always positive or zero.
+   */
+  public static int bucketInsertOnly(final long[] hashTable, final int lgArrLongs,
+      final long hash) {
+    final int arrayMask = (1 << lgArrLongs) - 1;
+    final int bucketLgLongs = Math.min(BUCKET_LG_LONGS, lgArrLongs);
+    final int bucketLongs = 1 << bucketLgLongs;
+    final int stride = getStride(hash, lgArrLongs) << bucketLgLongs;
+    int bucket = (int) (hash & arrayMask) & -bucketLongs;
+    for (int b = (arrayMask + 1) >>> bucketLgLongs; b-- > 0; ) {
+      for (int i = bucket; i < (bucket + bucketLongs); i++) {
+        if (hashTable[i] == EMPTY) {
+          hashTable[i] = hash;
+          return i;
+        }
+      }
+      bucket = (bucket + stride) & arrayMask;
+    }
+    throw new SketchesArgumentException("No empty slot in table!");
+  }
+
+  /**
+   * This is the bucketized insert scheme of {@link #bucketSearch(long[], int, long)} for on-heap.
+   * Returns index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   * Throws an exception if the value is not found and table has no empty slot.
+   *
+   * @param hashTable the hash table to insert into.
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param hash hash value that must not be zero and if not a duplicate will be inserted into the
+   * array into an empty slot
+   * @return index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   */
+  public static int bucketSearchOrInsert(final long[] hashTable, final int lgArrLongs,
+      final long hash) {
+    final int arrayMask = (1 << lgArrLongs) - 1;
+    final int bucketLgLongs = Math.min(BUCKET_LG_LONGS, lgArrLongs);
+    final int bucketLongs = 1 << bucketLgLongs;
+    final int stride = getStride(hash, lgArrLongs) << bucketLgLongs;
+    int bucket = (int) (hash & arrayMask) & -bucketLongs;
+    for (int b = (arrayMask + 1) >>> bucketLgLongs; b-- > 0; ) {
+      for (int i = bucket; i < (bucket + bucketLongs); i++) {
+        final long arrVal = hashTable[i];
+        if (arrVal == EMPTY) {
+          hashTable[i] = hash; // insert value
+          return ~i;
+        } else if (arrVal == hash) {
+          return i; // found a duplicate
+        }
+      }
+      bucket = (bucket + stride) & arrayMask;
+    }
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+  /**
+   * The same as {@link #hashArrayInsert(long[], long[], int, long)}, but into a hash table of the
+   * bucketized scheme of {@link #bucketSearch(long[], int, long)}.
+   *
+   * @param srcArr the source hash array to be potentially inserted
+   * @param hashTable The correctly sized target hash table that must be a power of two.
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param thetaLong must greater than zero
+   * <a href="{@docRoot}/resources/dictionary.html#thetaLong">See Theta Long</a>
+   * @return the count of values actually inserted
+   */
+  public static int bucketArrayInsert(final long[] srcArr, final long[] hashTable,
+      final int lgArrLongs, final long thetaLong) {
+    int count = 0;
+    checkThetaCorruption(thetaLong);
+    for (int i = 0; i < srcArr.length; i++ ) {
+      final long hash = srcArr[i];
+      checkHashCorruption(hash);
+      if (continueCondition(thetaLong, hash) ) {
+        continue;
+      }
+      if (bucketSearchOrInsert(hashTable, lgArrLongs, hash) < 0) {
+        count++ ;
+      }
+    }
+    return count;
+  }
+
   //OFF-HEAP (these are kept for backward compatibility)
 
   /**
@@ -316,6 +449,41 @@ public final class HashOperations {
     throw new SketchesArgumentException("Key not found and no empty slot in table!");
   }
 
+  /**
+   * This is the bucketized insert scheme of {@link #bucketSearch(long[], int, long)}, but inserts
+   * values directly into a Memory.
+   * Returns index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   * Throws an exception if the value is not found and table has no empty slot.
+   *
+   * @param wmem the WritableMemory
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param hash A hash value that must not be zero and if not a duplicate will be inserted into the
+   * array into an empty slot.
+   * @param memOffsetBytes offset in the memory where the hash array starts
+   * @return index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   */
+  public static int fastBucketSearchOrInsert(final WritableMemory wmem, final int lgArrLongs,
+      final long hash, final int memOffsetBytes) {
+    final int arrayMask = (1 << lgArrLongs) - 1;
+    final int bucketLgLongs = Math.min(BUCKET_LG_LONGS, lgArrLongs);
+    final int bucketLongs = 1 << bucketLgLongs;
+    final int stride = getStride(hash, lgArrLongs) << bucketLgLongs;
+    int bucket = (int) (hash & arrayMask) & -bucketLongs;
+    for (int b = (arrayMask + 1) >>> bucketLgLongs; b-- > 0; ) {
+      for (int i = bucket; i < (bucket + bucketLongs); i++) {
+        final int offsetBytes = (i << 3) + memOffsetBytes;
+        final long curArrayHash = wmem.getLong(offsetBytes);
+        if (curArrayHash == EMPTY) {
+          wmem.putLong(offsetBytes, hash);
+          return ~i;
+        } else if (curArrayHash == hash) { return i; } // curArrayHash is a duplicate
+      }
+      bucket = (bucket + stride) & arrayMask;
+    }
+    throw new SketchesArgumentException("Key not found and no empty slot in table!");
+  }
+
   /**
    * @param thetaLong must be greater than zero otherwise throws an exception.
    * <a href="{@docRoot}/resources/dictionary.html#thetaLong">See Theta Long</a>
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The thread striping and the fork-join tasks shared by the concurrent sketches and the parallel
+ * unions, which spread their inputs over an array of stripes or shards. Each shard is an ordinary
+ * sketch or union that is guarded by itself.
+ *
+ * <p><b>For internal use by this library only.</b> This class is public only so that the sketch
+ * packages can share it. It is not part of the public API, is left out of the javadoc, and may
+ * change or be removed without notice.</p>
+ */
+public final class ParallelMerge {
+
+  private ParallelMerge() {}
+
+  /**
+   * Merges one element of an input into a shard.
+   * @param <S> the type of the shards
+   */
+  public interface SliceMerger<S> {
+
+    /**
+     * Merges the element of the given index of the input into the given shard, which is locked
+     * by the caller.
+     * @param shard the given shard
+     * @param index the given index into the input
+     */
+    void merge(S shard, int index);
+  }
+
+  /**
+   * Returns the partial result of one shard.
+   * @param <R> the type of the partial results
+   */
+  public interface ShardResult<R> {
+
+    /**
+     * Returns the partial result of the shard of the given index. It must lock the shard itself,
+     * and must not return the shard, as the partial results may be modified when combined.
+     * @param index the given index
+     * @return the partial result of the shard
+     */
+    R get(int index);
+  }
+
+  /**
+   * Combines two partial results.
+   * @param <R> the type of the partial results
+   */
+  public interface Combiner<R> {
+
+    /**
+     * Returns the union of the two given partial results, which may be modified.
+     * @param left the partial result of the lower shards
+     * @param right the partial result of the higher shards
+     * @return the union of the two partial results
+     */
+    R combine(R left, R right);
+  }
+
+  /**
+   * Returns the index of the stripe of the current thread. Threads are spread over the stripes
+   * by the MurmurHash3 finalizer of their id.
+   * @param numStripes the number of stripes
+   * @return the index of the stripe of the current thread
+   */
+  public static int stripeIndex(final int numStripes) {
+    long h = Thread.currentThread().getId();
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) ((h >>> 1) % numStripes);
+  }
+
+  /**
+   * Merges the elements of an input into the shards, one contiguous slice per shard, with one
+   * task of the given pool per slice.
+   * @param <S> the type of the shards
+   * @param pool the ForkJoinPool that runs the tasks
+   * @param shards the shards, each locked by its task while it merges its slice
+   * @param length the number of elements of the input
+   * @param merger merges one element of the input into a shard
+   */
+  public static <S> void mergeSlices(final ForkJoinPool pool, final S[] shards, final int length,
+      final SliceMerger<S> merger) {
+    pool.invoke(new RecursiveAction() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void compute() {
+        final int numSlices = Math.min(shards.length, length);
+        final RecursiveAction[] slices = new RecursiveAction[numSlices];
+        for (int s = 0; s < numSlices; s++) {
+          final S shard = shards[s];
+          final int from = (int) (((long) length * s) / numSlices);
+          final int to = (int) (((long) length * (s + 1)) / numSlices);
+          slices[s] = new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+              synchronized (shard) {
+                for (int i = from; i < to; i++) {
+                  merger.merge(shard, i);
+                }
+              }
+            }
+          };
+        }
+        invokeAll(slices);
+      }
+    });
+  }
+
+  /**
+   * Reduces the shards pairwise as a tree, with the tasks of the given pool.
+   * @param <R> the type of the partial results
+   * @param pool the ForkJoinPool that runs the tasks
+   * @param numShards the number of shards, which must be at least 1
+   * @param leaf returns the partial result of a shard
+   * @param combiner combines two partial results
+   * @return the union of all of the shards
+   */
+  public static <R> R reduce(final ForkJoinPool pool, final int numShards,
+      final ShardResult<R> leaf, final Combiner<R> combiner) {
+    return pool.invoke(new Reduce<>(0, numShards, leaf, combiner));
+  }
+
+  /**
+   * Returns the union of the shards from lo (inclusive) to hi (exclusive).
+   */
+  private static final class Reduce<R> extends RecursiveTask<R> {
+    private static final long serialVersionUID = 1L;
+    private final int lo;
+    private final int hi;
+    private final ShardResult<R> leaf;
+    private final Combiner<R> combiner;
+
+    Reduce(final int lo, final int hi, final ShardResult<R> leaf, final Combiner<R> combiner) {
+      this.lo = lo;
+      this.hi = hi;
+      this.leaf = leaf;
+      this.combiner = combiner;
+    }
+
+    @Override
+    protected R compute() {
+      if ((hi - lo) == 1) {
+        return leaf.get(lo);
+      }
+      final int mid = (lo + hi) >>> 1;
+      final Reduce<R> left = new Reduce<>(lo, mid, leaf, combiner);
+      left.fork();
+      final R right = new Reduce<>(mid, hi, leaf, combiner).compute();
+      return combiner.combine(left.join(), right);
+    }
+  }
+
+}
@@ -19,7 +19,6 @@
 
 package org.apache.datasketches.cpc;
 
-import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.cpc.PreambleUtil.checkCapacity;
 import static org.apache.datasketches.cpc.PreambleUtil.checkLoPreamble;
 import static org.apache.datasketches.cpc.PreambleUtil.getDefinedPreInts;
@@ -82,7 +81,7 @@ final class CompressedState {
   }
 
   static CompressedState compress(final CpcSketch source) {
-    final short seedHash = computeSeedHash(source.seed);
+    final short seedHash = source.hasher.computeSeedHash(source.seed);
     final CompressedState target = new CompressedState(source.lgK, seedHash);
     target.fiCol = source.fiCol;
     target.mergeFlag = source.mergeFlag;
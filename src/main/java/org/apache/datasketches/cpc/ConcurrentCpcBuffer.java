@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+
+/**
+ * The local coupon buffer of a {@link ConcurrentCpcSketch} that operates in the context of a
+ * single writing thread. It is not thread safe and must not be shared between threads.
+ *
+ * <p>The update methods hash the items exactly as {@link CpcSketch} does. A coupon that cannot
+ * change the shared sketch is dropped at once. The other coupons are held in the buffer, and
+ * when it reaches its maximum staleness they are propagated to the shared sketch by a
+ * background task while the buffer continues with a second array. Call {@link #flush()} to
+ * propagate the coupons that are still buffered, for example before the writing thread
+ * finishes.</p>
+ */
+public final class ConcurrentCpcBuffer {
+
+  private final ConcurrentCpcSketch shared;
+  private final int lgK;
+  private final long seed;
+  private final Hasher hasher;
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
+
+  // Set while a background propagation of the spare array is in progress.
+  // It is the synchronization primitive to coordinate the work with the propagation task.
+  private final AtomicBoolean localPropagationInProgress;
+
+  private int[] rowCols;
+  private int[] spareRowCols;
+  private int count;
+
+  ConcurrentCpcBuffer(final ConcurrentCpcSketch shared, final int maxStaleness) {
+    this.shared = shared;
+    lgK = shared.getLgK();
+    seed = shared.getSeed();
+    hasher = shared.getHasher();
+    localPropagationInProgress = new AtomicBoolean(false);
+    rowCols = new int[maxStaleness];
+    spareRowCols = new int[maxStaleness];
+    count = 0;
+  }
+
+  /**
+   * Returns the shared sketch of this buffer.
+   * @return the shared sketch of this buffer
+   */
+  public ConcurrentCpcSketch getSharedSketch() {
+    return shared;
+  }
+
+  /**
+   * Propagates all buffered coupons to the shared sketch and waits until any background
+   * propagation of this buffer has completed. Afterwards the shared sketch reflects every
+   * update made through this buffer.
+   */
+  public void flush() {
+    awaitPropagation();
+    if (count > 0) {
+      shared.propagate(rowCols, count);
+      count = 0;
+    }
+  }
+
+  /**
+   * Discards the coupons held by this buffer. The shared sketch is not affected.
+   */
+  public void reset() {
+    awaitPropagation();
+    count = 0;
+  }
+
+  /**
+   * Present the given long as a potential unique item.
+   *
+   * @param datum The given long datum.
+   */
+  public void update(final long datum) {
+    final long[] arr = hasher.hash(datum, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given double (or float) datum as a potential unique item.
+   * The double will be converted to a long using Double.doubleToLongBits(datum),
+   * which normalizes all NaN values to a single NaN representation.
+   * Plus and minus zero will be normalized to plus zero.
+   * The special floating-point values NaN and +/- Infinity are treated as distinct.
+   *
+   * @param datum The given double datum.
+   */
+  public void update(final double datum) {
+    final long[] arr = hasher.hash(datum, seed, hashOut); //canonicalizes -0.0 and NaN
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given String as a potential unique item.
+   * The string is hashed as its UTF-8 encoding, without allocating a byte array.
+   * If the string is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given String.
+   */
+  public void update(final String datum) {
+    update((CharSequence) datum);
+  }
+
+  /**
+   * Present the given CharSequence, such as a StringBuilder or a view of a parser's character
+   * buffer, as a potential unique item. It is hashed as its UTF-8 encoding, which is computed
+   * while hashing without allocating a byte array, so the result is the same as for
+   * {@link #update(String)} with the same characters.
+   * If the CharSequence is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given CharSequence.
+   */
+  public void update(final CharSequence datum) {
+    if ((datum == null) || (datum.length() == 0)) { return; }
+    final long[] arr = hasher.hash(datum, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given byte array as a potential unique item.
+   * If the byte array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given byte array.
+   */
+  public void update(final byte[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final long[] arr = hasher.hash(data, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given region of a byte array, such as a field of a shared I/O buffer, as a
+   * potential unique item. The region is hashed in place and produces the same hash as a byte
+   * array holding just the region.
+   * If the byte array is null or the region is empty no update attempt is made and the method
+   * returns.
+   *
+   * @param data The given byte array.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public void update(final byte[] data, final int offset, final int length) {
+    if ((data == null) || (length == 0)) { return; }
+    final long[] arr = hasher.hash(data, offset, length, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given char array as a potential unique item.
+   * If the char array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given char array.
+   */
+  public void update(final char[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final long[] arr = hasher.hash(data, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given integer array as a potential unique item.
+   * If the integer array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given int array.
+   */
+  public void update(final int[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final long[] arr = hasher.hash(data, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given long array as a potential unique item.
+   * If the long array is null or empty no update attempt is made and the method returns.
+   *
+   * @param data The given long array.
+   */
+  public void update(final long[] data) {
+    if ((data == null) || (data.length == 0)) { return; }
+    final long[] arr = hasher.hash(data, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  //restricted methods
+
+  void hashUpdate(final long hash0, final long hash1) {
+    final int col = Long.numberOfLeadingZeros(hash1);
+    if (col < shared.getFiCol()) { return; } // cannot change the shared sketch
+    rowCols[count++] = CpcSketch.rowColOf(hash0, hash1, lgK);
+    if (count == rowCols.length) {
+      propagateToSharedSketch();
+    }
+  }
+
+  /**
+   * Hands the full array to a background propagation task and continues with the spare array,
+   * once the previous propagation has released it.
+   */
+  private void propagateToSharedSketch() {
+    awaitPropagation();
+    final int[] full = rowCols;
+    rowCols = spareRowCols;
+    spareRowCols = full;
+    localPropagationInProgress.set(true);
+    final int fullCount = count;
+    count = 0;
+    try {
+      shared.getExecutor().execute(
+          new ConcurrentBackgroundCpcPropagation(shared, localPropagationInProgress, full, fullCount));
+    } catch (final RuntimeException e) { // e.g., the executor has been shut down
+      shared.propagate(full, fullCount);
+      localPropagationInProgress.set(false);
+    }
+  }
+
+  private void awaitPropagation() {
+    while (localPropagationInProgress.get()) {
+      Thread.yield(); //wait until the previous propagation completed
+    }
+  }
+
+}
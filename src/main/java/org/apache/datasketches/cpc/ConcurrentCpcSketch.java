@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+
+/**
+ * A CPC sketch that can be updated by many threads at once.
+ *
+ * <p>Each writing thread updates its own {@link ConcurrentCpcBuffer}, obtained from
+ * {@link #newLocalBuffer(int)}. A buffer hashes its items to coupons and holds them until the
+ * configured maximum staleness is reached, and then a background task on the Executor applies
+ * them to the shared CpcSketch held by this class. Only the background tasks and the queries
+ * take the lock of the shared sketch, and each task takes it once per batch of coupons.</p>
+ *
+ * <p>Since the coupons are applied to the shared sketch as a stream, and not by a union,
+ * the shared sketch keeps using the HIP estimator. {@link #getEstimate()} reads a published
+ * value without locking. It is stale by at most the coupons still held by the local buffers,
+ * which is bounded by the number of buffers times their maximum staleness.</p>
+ *
+ * <p>Use {@link #getResult()} to obtain an ordinary CpcSketch, for example to serialize it or to
+ * use it in a {@link CpcUnion}.</p>
+ */
+public final class ConcurrentCpcSketch {
+
+  /**
+   * The default number of coupons a local buffer holds before it propagates them.
+   */
+  public static final int DEFAULT_MAX_STALENESS = 256;
+
+  private final CpcSketch sketch; // guarded by this
+  private final Executor executor;
+
+  // Published after each propagation, so that the buffers and getEstimate() need no lock
+  private volatile int fiCol;
+  private volatile double estimate;
+
+  /**
+   * Constructs a new concurrent sketch with the default lgK and seed. Local buffers propagate
+   * on the common ForkJoinPool.
+   */
+  public ConcurrentCpcSketch() {
+    this(CpcSketch.DEFAULT_LG_K);
+  }
+
+  /**
+   * Constructs a new concurrent sketch with the default seed. Local buffers propagate on the
+   * common ForkJoinPool.
+   * @param lgK the given log_base2 of k
+   */
+  public ConcurrentCpcSketch(final int lgK) {
+    this(lgK, DEFAULT_UPDATE_SEED, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new concurrent sketch whose local buffers propagate on the given Executor.
+   * @param lgK the given log_base2 of k
+   * @param seed the given seed
+   * @param executor the Executor that runs the background propagation of the local buffers.
+   */
+  public ConcurrentCpcSketch(final int lgK, final long seed, final Executor executor) {
+    if (executor == null) {
+      throw new SketchesArgumentException("Executor must not be null");
+    }
+    sketch = new CpcSketch(lgK, seed);
+    this.executor = executor;
+  }
+
+  /**
+   * Returns a new local buffer with the default maximum staleness, to be used by a single
+   * writing thread.
+   * @return a new local buffer
+   */
+  public ConcurrentCpcBuffer newLocalBuffer() {
+    return newLocalBuffer(DEFAULT_MAX_STALENESS);
+  }
+
+  /**
+   * Returns a new local buffer to be used by a single writing thread.
+   * @param maxStaleness the number of coupons the buffer holds before it propagates them to
+   * this sketch. It must be at least 1.
+   * @return a new local buffer
+   */
+  public ConcurrentCpcBuffer newLocalBuffer(final int maxStaleness) {
+    if (maxStaleness < 1) {
+      throw new SketchesArgumentException("Max staleness must be at least 1: " + maxStaleness);
+    }
+    return new ConcurrentCpcBuffer(this, maxStaleness);
+  }
+
+  /**
+   * Returns the estimate of the cardinality as of the last propagation. This does not lock.
+   * @return the estimate of the cardinality as of the last propagation
+   */
+  public double getEstimate() {
+    return estimate;
+  }
+
+  /**
+   * Return the parameter LgK.
+   * @return the parameter LgK.
+   */
+  public int getLgK() {
+    return sketch.lgK;
+  }
+
+  /**
+   * Returns the best estimate of the lower bound of the confidence interval given <i>kappa</i>,
+   * the number of standard deviations from the mean.
+   * @param kappa the given number of standard deviations from the mean: 1, 2 or 3.
+   * @return the best estimate of the lower bound of the confidence interval given <i>kappa</i>.
+   */
+  public synchronized double getLowerBound(final int kappa) {
+    return sketch.getLowerBound(kappa);
+  }
+
+  /**
+   * Returns the best estimate of the upper bound of the confidence interval given <i>kappa</i>,
+   * the number of standard deviations from the mean.
+   * @param kappa the given number of standard deviations from the mean: 1, 2 or 3.
+   * @return the best estimate of the upper bound of the confidence interval given <i>kappa</i>.
+   */
+  public synchronized double getUpperBound(final int kappa) {
+    return sketch.getUpperBound(kappa);
+  }
+
+  /**
+   * Return true if this sketch is empty
+   * @return true if this sketch is empty
+   */
+  public synchronized boolean isEmpty() {
+    return sketch.isEmpty();
+  }
+
+  /**
+   * Returns a copy of the shared sketch.
+   * @return a copy of the shared sketch
+   */
+  public synchronized CpcSketch getResult() {
+    return sketch.copy();
+  }
+
+  /**
+   * Resets this sketch to empty but retains the original LgK and Seed. The local buffers are
+   * not affected.
+   */
+  public synchronized void reset() {
+    sketch.reset();
+    publish();
+  }
+
+  /**
+   * Return the shared sketch as a compressed byte array.
+   * @return the shared sketch as a compressed byte array.
+   */
+  public synchronized byte[] toByteArray() {
+    return sketch.toByteArray();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return sketch.toString();
+  }
+
+  //restricted methods
+
+  long getSeed() {
+    return sketch.seed;
+  }
+
+  Hasher getHasher() {
+    return sketch.hasher;
+  }
+
+  Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Returns the first interesting column of the shared sketch as of the last propagation.
+   * A coupon in a lower column cannot change the shared sketch, so the buffers drop it.
+   * @return the first interesting column of the shared sketch
+   */
+  int getFiCol() {
+    return fiCol;
+  }
+
+  /**
+   * Applies the given coupons to the shared sketch.
+   * @param rowCols the coupons
+   * @param count the number of coupons to apply
+   */
+  synchronized void propagate(final int[] rowCols, final int count) {
+    for (int i = 0; i < count; i++) {
+      sketch.rowColUpdate(rowCols[i]);
+    }
+    publish();
+  }
+
+  private void publish() {
+    fiCol = sketch.fiCol;
+    estimate = sketch.getEstimate();
+  }
+
+}
@@ -21,20 +21,18 @@ package org.apache.datasketches.cpc;
 
 import static java.lang.Math.log;
 import static java.lang.Math.sqrt;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
-import static org.apache.datasketches.Util.checkSeedHashes;
-import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.Util.invPow2;
 import static org.apache.datasketches.Util.zeroPad;
 import static org.apache.datasketches.cpc.CpcUtil.bitMatrixOfSketch;
 import static org.apache.datasketches.cpc.CpcUtil.checkLgK;
 import static org.apache.datasketches.cpc.CpcUtil.countBitsSetInMatrix;
-import static org.apache.datasketches.hash.MurmurHash3.hash;
 
 import java.util.Arrays;
 
 import org.apache.datasketches.Family;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -72,6 +70,8 @@ public final class CpcSketch {
    */
   public static final int DEFAULT_LG_K = 11;
   final long seed;
+  final Hasher hasher;
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
   //common variables
   final int lgK;
   long numCoupons;      // The number of coupons collected so far.
@@ -107,9 +107,23 @@ public final class CpcSketch {
    * @param seed the given seed
    */
   public CpcSketch(final int lgK, final long seed) {
+    this(lgK, seed, Hasher.MURMUR3);
+  }
+
+  /**
+   * Constructor with log_base2 of k, seed and hash function. The seed hash in the serialized
+   * sketch identifies both the seed and the hash function, and only sketches with the same seed
+   * and hash function can be merged.
+   * @param lgK the given log_base2 of k
+   * @param seed the given seed
+   * @param hasher the given hash function
+   */
+  public CpcSketch(final int lgK, final long seed, final Hasher hasher) {
     checkLgK(lgK);
+    hasher.computeSeedHash(seed); //throws if this seed is unusable with this hasher
     this.lgK = (byte) lgK;
     this.seed = seed;
+    this.hasher = hasher;
     kxp = 1 << lgK;
     reset();
   }
@@ -119,7 +133,7 @@ public final class CpcSketch {
    * @return a copy of this sketch
    */
   CpcSketch copy() {
-    final CpcSketch copy = new CpcSketch(lgK, seed);
+    final CpcSketch copy = new CpcSketch(lgK, seed, hasher);
     copy.numCoupons = numCoupons;
     copy.mergeFlag = mergeFlag;
     copy.fiCol = fiCol;
@@ -150,6 +164,14 @@ public final class CpcSketch {
     return Family.CPC;
   }
 
+  /**
+   * Return the hash function of this sketch.
+   * @return the hash function of this sketch.
+   */
+  public Hasher getHasher() {
+    return hasher;
+  }
+
   /**
    * Return the parameter LgK.
    * @return the parameter LgK.
@@ -307,8 +329,7 @@ public final class CpcSketch {
    * @param datum The given long datum.
    */
   public void update(final long datum) {
-    final long[] data = { datum };
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(datum, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -322,15 +343,13 @@ public final class CpcSketch {
    * @param datum The given double datum.
    */
   public void update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(datum, seed, hashOut); //canonicalizes -0.0 and NaN
     hashUpdate(arr[0], arr[1]);
   }
 
   /**
    * Present the given String as a potential unique item.
-   * The string is converted to a byte array using UTF8 encoding.
+   * The string is hashed as its UTF-8 encoding, without allocating a byte array.
    * If the string is null or empty no update attempt is made and the method returns.
    *
    * <p>Note: About 2X faster performance can be obtained by first converting the String to a
@@ -343,9 +362,21 @@ public final class CpcSketch {
    * @param datum The given String.
    */
   public void update(final String datum) {
-    if ((datum == null) || datum.isEmpty()) { return; }
-    final byte[] data = datum.getBytes(UTF_8);
-    final long[] arr = hash(data, seed);
+    update((CharSequence) datum);
+  }
+
+  /**
+   * Present the given CharSequence, such as a StringBuilder or a view of a parser's character
+   * buffer, as a potential unique item. It is hashed as its UTF-8 encoding, which is computed
+   * while hashing without allocating a byte array, so the result is the same as for
+   * {@link #update(String)} with the same characters.
+   * If the CharSequence is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given CharSequence.
+   */
+  public void update(final CharSequence datum) {
+    if ((datum == null) || (datum.length() == 0)) { return; }
+    final long[] arr = hasher.hash(datum, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -357,7 +388,25 @@ public final class CpcSketch {
    */
   public void update(final byte[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(data, seed, hashOut);
+    hashUpdate(arr[0], arr[1]);
+  }
+
+  /**
+   * Present the given region of a byte array, such as a field of a shared I/O buffer, as a
+   * potential unique item. The region is hashed in place and produces the same hash as a byte
+   * array holding just the region.
+   * If the byte array is null or the region is empty no update attempt is made and the method
+   * returns.
+   *
+   * @param data The given byte array.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public void update(final byte[] data, final int offset, final int length) {
+    if ((data == null) || (length == 0)) { return; }
+    final long[] arr = hasher.hash(data, offset, length, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -372,7 +421,7 @@ public final class CpcSketch {
    */
   public void update(final char[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(data, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -384,7 +433,7 @@ public final class CpcSketch {
    */
   public void update(final int[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(data, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -396,7 +445,7 @@ public final class CpcSketch {
    */
   public void update(final long[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    final long[] arr = hash(data, seed);
+    final long[] arr = hasher.hash(data, seed, hashOut);
     hashUpdate(arr[0], arr[1]);
   }
 
@@ -649,8 +698,8 @@ public final class CpcSketch {
 
   //also used in test
   static CpcSketch uncompress(final CompressedState source, final long seed) {
-    checkSeedHashes(computeSeedHash(seed), source.seedHash);
-    final CpcSketch sketch = new CpcSketch(source.lgK, seed);
+    final Hasher hasher = Hasher.fromSeedHash(source.seedHash, seed);
+    final CpcSketch sketch = new CpcSketch(source.lgK, seed, hasher);
     sketch.numCoupons = source.numCoupons;
     sketch.windowOffset = source.getWindowOffset();
     sketch.fiCol = source.fiCol;
@@ -665,11 +714,15 @@ public final class CpcSketch {
 
   //Used here and for testing
   void hashUpdate(final long hash0, final long hash1) {
-    int col = Long.numberOfLeadingZeros(hash1);
+    final int col = Long.numberOfLeadingZeros(hash1);
     if (col < fiCol) { return; } // important speed optimization
+    rowColUpdate(rowColOf(hash0, hash1, lgK));
+  }
+
+  //Used here and by the concurrent buffers
+  static int rowColOf(final long hash0, final long hash1, final int lgK) {
+    int col = Long.numberOfLeadingZeros(hash1);
     if (col > 63) { col = 63; } // clip so that 0 <= col <= 63
-    final long c = numCoupons;
-    if (c == 0) { promoteEmptyToSparse(this); }
     final long k = 1L << lgK;
     final int row = (int) (hash0 & (k - 1L));
     int rowCol = (row << 6) | col;
@@ -679,9 +732,7 @@ public final class CpcSketch {
     // This case is *extremely* unlikely, but we might as well handle it.
     // It can't happen at all if lgK (or maxLgK) < 26.
     if (rowCol == -1) { rowCol ^= (1 << 6); } //set the LSB of row to 0
-
-    if ((c << 5) < (3L * k)) { updateSparse(this, rowCol); }
-    else { updateWindowed(this, rowCol); }
+    return rowCol;
   }
 
   //Used by union and in testing
@@ -710,7 +761,7 @@ public final class CpcSketch {
    */
   public String toString(final boolean detail) {
     final int numPairs = (pairTable == null) ? 0 : pairTable.getNumPairs();
-    final int seedHash = Short.toUnsignedInt(computeSeedHash(seed));
+    final int seedHash = Short.toUnsignedInt(hasher.computeSeedHash(seed));
     final double errConst = mergeFlag ? log(2) : sqrt(log(2) / 2.0);
     final double rse = errConst / Math.sqrt(1 << lgK);
     final StringBuilder sb = new StringBuilder();
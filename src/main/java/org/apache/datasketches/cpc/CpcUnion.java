@@ -28,6 +28,7 @@ import static org.apache.datasketches.cpc.Flavor.SPARSE;
 import org.apache.datasketches.Family;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.SketchesStateException;
+import org.apache.datasketches.hash.Hasher;
 
 /*
  * The merging logic is somewhat involved, so it will be summarized here.
@@ -88,6 +89,7 @@ import org.apache.datasketches.SketchesStateException;
  */
 public class CpcUnion {
   private final long seed;
+  private final Hasher hasher;
   private int lgK;
 
   // Note: at most one of bitMatrix and accumulator will be non-null at any given moment.
@@ -119,12 +121,24 @@ public class CpcUnion {
    * @param seed The given seed.
    */
   public CpcUnion(final int lgK, final long seed) {
+    this(lgK, seed, Hasher.MURMUR3);
+  }
+
+  /**
+   * Construct this unioning object with LgK, a given seed and a given hash function.
+   * Only sketches with the same seed and hash function can be merged into this union.
+   * @param lgK The given log2 of K.
+   * @param seed The given seed.
+   * @param hasher The given hash function.
+   */
+  public CpcUnion(final int lgK, final long seed, final Hasher hasher) {
     this.seed = seed;
+    this.hasher = hasher;
     this.lgK = lgK;
     bitMatrix = null;
     // We begin with the accumulator holding an EMPTY_MERGED sketch object.
     // As an optimization the accumulator could start as NULL, but that would require changes elsewhere.
-    accumulator = new CpcSketch(lgK);
+    accumulator = new CpcSketch(lgK, seed, hasher);
   }
 
   /**
@@ -251,12 +265,12 @@ public class CpcUnion {
       final CpcSketch oldSketch = union.accumulator;
 
       if (oldSketch.numCoupons == 0) {
-        union.accumulator = new CpcSketch(newLgK, oldSketch.seed);
+        union.accumulator = new CpcSketch(newLgK, oldSketch.seed, oldSketch.hasher);
         union.lgK = newLgK;
         return;
       }
 
-      final CpcSketch newSketch = new CpcSketch(newLgK, oldSketch.seed);
+      final CpcSketch newSketch = new CpcSketch(newLgK, oldSketch.seed, oldSketch.hasher);
       walkTableUpdatingSketch(newSketch, oldSketch.pairTable);
 
       final Flavor finalNewFlavor = newSketch.getFlavor();
@@ -278,6 +292,7 @@ public class CpcUnion {
   private static void mergeInto(final CpcUnion union, final CpcSketch source) {
     if (source == null) { return; }
     checkSeeds(union.seed, source.seed);
+    checkHashers(union.hasher, source.hasher);
 
     final int sourceFlavorOrd = source.getFlavor().ordinal();
     if (sourceFlavorOrd == 0) { return; } //EMPTY
@@ -338,7 +353,8 @@ public class CpcUnion {
 
     if (union.accumulator != null) { // start of case where union contains a sketch
       if (union.accumulator.numCoupons == 0) {
-        final CpcSketch result = new CpcSketch(union.lgK, union.accumulator.seed);
+        final CpcSketch result =
+            new CpcSketch(union.lgK, union.accumulator.seed, union.accumulator.hasher);
         result.mergeFlag = true;
         return (result);
       }
@@ -351,7 +367,7 @@ public class CpcUnion {
     // start of case where union contains a bitMatrix
     final long[] matrix = union.bitMatrix;
     final int lgK = union.lgK;
-    final CpcSketch result = new CpcSketch(union.lgK, union.seed);
+    final CpcSketch result = new CpcSketch(union.lgK, union.seed, union.hasher);
 
     final long numCoupons = countBitsSetInMatrix(matrix);
     result.numCoupons = numCoupons;
@@ -415,6 +431,13 @@ public class CpcUnion {
     }
   }
 
+  private static void checkHashers(final Hasher hasherA, final Hasher hasherB) {
+    if (hasherA != hasherB) {
+      throw new SketchesArgumentException("Hash functions do not match: "
+          + hasherA.getName() + ", " + hasherB.getName());
+    }
+  }
+
   private static void checkUnionState(final CpcUnion union) {
     if (union == null) {
       throw new SketchesStateException("union cannot be null");
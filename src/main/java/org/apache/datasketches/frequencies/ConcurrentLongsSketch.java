@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.frequencies;
+
+import static org.apache.datasketches.ParallelMerge.stripeIndex;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.frequencies.LongsSketch.Row;
+
+/**
+ * A thread-safe frequent items sketch of <i>long</i> items, built from striped
+ * {@link LongsSketch} buffers that are merged periodically into a shared LongsSketch.
+ *
+ * <p>An update goes to the stripe of the updating thread, which is locked only by the threads
+ * that map to that stripe. Once the stream weight of a stripe reaches the merge threshold, the
+ * stripe is merged into the shared sketch and reset. The queries are answered by the shared
+ * sketch alone and so do not reflect the weight still held by the stripes. After each update
+ * every stripe holds less than the merge threshold, so this extra error of the estimates and
+ * upper bounds is at most {@link #getMaxUnmergedWeight()}. The lower bounds remain guaranteed.
+ * Call {@link #flush()} to merge all stripes, or {@link #getResult()} for a complete copy.</p>
+ *
+ * <p>Merging preserves the error guarantee of the frequent items sketch: the maximum error of
+ * the merged result is at most {@link LongsSketch#getAprioriError(int, long)} for the total
+ * stream weight, as for a single LongsSketch.</p>
+ */
+public class ConcurrentLongsSketch {
+
+  private final int maxMapSize;
+  private final long mergeThreshold;
+  private final LongsSketch[] stripes; // each guarded by itself
+  private final LongsSketch shared; // guarded by itself, locked after any stripe
+
+  /**
+   * Construct this sketch with a stripe per available processor and a merge threshold of
+   * 16 times maxMapSize. A merge costs at most the number of active items of the stripe, which
+   * is less than maxMapSize, so the amortized cost of merging is below 1/16 per unit of weight.
+   *
+   * @param maxMapSize Determines the physical size of the internal hash maps of the shared sketch
+   * and of each stripe and must be a power of 2.
+   */
+  public ConcurrentLongsSketch(final int maxMapSize) {
+    this(maxMapSize, Runtime.getRuntime().availableProcessors(), 16L * maxMapSize);
+  }
+
+  /**
+   * Construct this sketch with the given number of stripes and merge threshold.
+   *
+   * @param maxMapSize Determines the physical size of the internal hash maps of the shared sketch
+   * and of each stripe and must be a power of 2.
+   * @param numStripes the number of stripes. It must be at least 1.
+   * @param mergeThreshold the stream weight at which a stripe is merged into the shared sketch.
+   * It must be at least 1.
+   */
+  public ConcurrentLongsSketch(final int maxMapSize, final int numStripes,
+      final long mergeThreshold) {
+    if (numStripes < 1) {
+      throw new SketchesArgumentException("numStripes must be at least 1: " + numStripes);
+    }
+    if (mergeThreshold < 1) {
+      throw new SketchesArgumentException("mergeThreshold must be at least 1: " + mergeThreshold);
+    }
+    this.maxMapSize = maxMapSize;
+    this.mergeThreshold = mergeThreshold;
+    shared = new LongsSketch(maxMapSize);
+    stripes = new LongsSketch[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      stripes[i] = new LongsSketch(maxMapSize);
+    }
+  }
+
+  /**
+   * Update this sketch with an item and a frequency count of one.
+   * @param item for which the frequency should be increased.
+   */
+  public void update(final long item) {
+    update(item, 1);
+  }
+
+  /**
+   * Update this sketch with a item and a positive frequency count (or weight).
+   * @param item for which the frequency should be increased. The item can be any long value
+   * and is only used by the sketch to determine uniqueness.
+   * @param count the amount by which the frequency of the item should be increased.
+   * An count of zero is a no-op, and a negative count will throw an exception.
+   */
+  public void update(final long item, final long count) {
+    final LongsSketch stripe = stripes[stripeIndex(stripes.length)];
+    synchronized (stripe) {
+      stripe.update(item, count);
+      if (stripe.getStreamLength() >= mergeThreshold) {
+        mergeStripe(stripe);
+      }
+    }
+  }
+
+  /**
+   * Merges all stripes into the shared sketch. Afterwards the queries reflect every update
+   * that completed before this call.
+   */
+  public void flush() {
+    for (final LongsSketch stripe : stripes) {
+      synchronized (stripe) {
+        mergeStripe(stripe);
+      }
+    }
+  }
+
+  /**
+   * Returns a new LongsSketch with the data of the shared sketch and all stripes.
+   * This merges all stripes first.
+   * @return a new LongsSketch with the data of the shared sketch and all stripes
+   */
+  public LongsSketch getResult() {
+    flush();
+    final LongsSketch result = new LongsSketch(maxMapSize);
+    synchronized (shared) {
+      return result.merge(shared);
+    }
+  }
+
+  /**
+   * Gets the estimate of the frequency of the given item from the shared sketch.
+   * This may be less than the estimate of {@link #getResult()} by at most
+   * {@link #getMaxUnmergedWeight()}.
+   *
+   * @param item the given item
+   * @return the estimate of the frequency of the given item
+   */
+  public long getEstimate(final long item) {
+    synchronized (shared) {
+      return shared.getEstimate(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed lower bound frequency of the given item, which can never be
+   * negative.
+   *
+   * @param item the given item.
+   * @return the guaranteed lower bound frequency of the given item. That is, a number which
+   * is guaranteed to be no larger than the real frequency.
+   */
+  public long getLowerBound(final long item) {
+    synchronized (shared) {
+      return shared.getLowerBound(item);
+    }
+  }
+
+  /**
+   * Gets the guaranteed upper bound frequency of the given item. This is the upper bound of the
+   * shared sketch plus {@link #getMaxUnmergedWeight()}.
+   *
+   * @param item the given item
+   * @return the guaranteed upper bound frequency of the given item. That is, a number which
+   * is guaranteed to be no smaller than the real frequency.
+   */
+  public long getUpperBound(final long item) {
+    synchronized (shared) {
+      return shared.getUpperBound(item) + getMaxUnmergedWeight();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the frequent items of the shared sketch given a threshold and an
+   * ErrorCondition. See {@link LongsSketch#getFrequentItems(long, ErrorType)}.
+   *
+   * <p>The rows do not reflect the weight still held by the stripes, so the estimates and
+   * upper bounds may be low by at most {@link #getMaxUnmergedWeight()}, and the
+   * NO_FALSE_NEGATIVES guarantee holds only for items whose true frequency exceeds the threshold
+   * by more than this. The lower bounds remain guaranteed, so the NO_FALSE_POSITIVES guarantee
+   * still holds. Call {@link #flush()} first to remove this extra error.</p>
+   *
+   * @param threshold to include items in the result list
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public Row[] getFrequentItems(final long threshold, final ErrorType errorType) {
+    synchronized (shared) {
+      return shared.getFrequentItems(threshold, errorType);
+    }
+  }
+
+  /**
+   * Returns a snapshot of the frequent items of the shared sketch given an ErrorCondition and
+   * the default threshold. See {@link #getFrequentItems(long, ErrorType)} for the extra error.
+   *
+   * @param errorType determines whether no false positives or no false negatives are
+   * desired.
+   * @return an array of frequent items
+   */
+  public Row[] getFrequentItems(final ErrorType errorType) {
+    synchronized (shared) {
+      return shared.getFrequentItems(errorType);
+    }
+  }
+
+  /**
+   * @return An upper bound on the maximum error of getEstimate(item) of the shared sketch
+   * for any item, not including the weight still held by the stripes.
+   */
+  public long getMaximumError() {
+    synchronized (shared) {
+      return shared.getMaximumError();
+    }
+  }
+
+  /**
+   * Returns the maximum stream weight that can be held by the stripes and not yet be reflected
+   * by the queries. This is the number of stripes times one less than the merge threshold.
+   * @return the maximum stream weight held by the stripes
+   */
+  public long getMaxUnmergedWeight() {
+    return stripes.length * (mergeThreshold - 1);
+  }
+
+  /**
+   * Returns the stream weight merged into the shared sketch so far.
+   * @return the stream weight merged into the shared sketch so far
+   */
+  public long getStreamLength() {
+    synchronized (shared) {
+      return shared.getStreamLength();
+    }
+  }
+
+  /**
+   * Returns true if the shared sketch is empty.
+   * @return true if the shared sketch is empty
+   */
+  public boolean isEmpty() {
+    synchronized (shared) {
+      return shared.isEmpty();
+    }
+  }
+
+  /**
+   * Returns the number of stripes.
+   * @return the number of stripes
+   */
+  public int getNumStripes() {
+    return stripes.length;
+  }
+
+  /**
+   * Returns the stream weight at which a stripe is merged into the shared sketch.
+   * @return the merge threshold
+   */
+  public long getMergeThreshold() {
+    return mergeThreshold;
+  }
+
+  /**
+   * Resets the shared sketch and all stripes to a virgin state.
+   */
+  public void reset() {
+    for (final LongsSketch stripe : stripes) {
+      synchronized (stripe) {
+        stripe.reset();
+      }
+    }
+    synchronized (shared) {
+      shared.reset();
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (shared) {
+      return shared.toString();
+    }
+  }
+
+  // must hold the lock of the stripe
+  private void mergeStripe(final LongsSketch stripe) {
+    if (stripe.getStreamLength() == 0) { return; }
+    synchronized (shared) {
+      shared.merge(stripe);
+    }
+    stripe.reset();
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hash;
+
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * Helper methods for the hash functions of this package.
+ */
+final class HashUtil {
+
+  private HashUtil() {}
+
+  /**
+   * Returns the UTF-8 encoding of the character at the given index of the given CharSequence, or
+   * of the surrogate pair starting there. The bytes of the encoding are packed in bits 0 to 31 of
+   * the result in encoding order, starting with the least significant byte, and the number of
+   * bytes is in bits 32 to 34. A surrogate pair is encoded as 4 bytes, which is the only case
+   * where two characters are consumed. An unpaired surrogate is encoded as '?', as
+   * by {@link String#getBytes(java.nio.charset.Charset)}.
+   *
+   * <p>This lets the hash functions encode and hash a CharSequence in a single pass, without
+   * allocating the byte array of its encoding.</p>
+   *
+   * @param in the given CharSequence
+   * @param index the index of the character to encode
+   * @return the packed UTF-8 encoding
+   */
+  static long utf8Encode(final CharSequence in, final int index) {
+    final char c = in.charAt(index);
+    if (c < 0x80) {
+      return (1L << 32) | c;
+    }
+    if (c < 0x800) {
+      return (2L << 32) | ((0x80L | (c & 0x3F)) << 8) | (0xC0 | (c >>> 6));
+    }
+    if (Character.isSurrogate(c)) {
+      final int next = index + 1;
+      if (Character.isHighSurrogate(c) && (next < in.length())
+          && Character.isLowSurrogate(in.charAt(next))) {
+        final int cp = Character.toCodePoint(c, in.charAt(next));
+        return (4L << 32)
+            | ((0x80L | (cp & 0x3F)) << 24)
+            | ((0x80L | ((cp >>> 6) & 0x3F)) << 16)
+            | ((0x80L | ((cp >>> 12) & 0x3F)) << 8)
+            | (0xF0 | (cp >>> 18));
+      }
+      return (1L << 32) | '?';
+    }
+    return (3L << 32)
+        | ((0x80L | (c & 0x3F)) << 16)
+        | ((0x80L | ((c >>> 6) & 0x3F)) << 8)
+        | (0xE0 | (c >>> 12));
+  }
+
+  /**
+   * Returns the number of bytes of a packed UTF-8 encoding returned by
+   * {@link #utf8Encode(CharSequence, int)}.
+   * @param encoding the packed UTF-8 encoding
+   * @return the number of bytes of the encoding
+   */
+  static int utf8NumBytes(final long encoding) {
+    return (int) (encoding >>> 32);
+  }
+
+  /**
+   * Checks that the given region lies within an array of the given length.
+   * @param offset the offset of the region
+   * @param length the length of the region
+   * @param arrLength the length of the array
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  static void checkBounds(final int offset, final int length, final int arrLength) {
+    if ((offset | length | (offset + length) | (arrLength - (offset + length))) < 0) {
+      throw new SketchesArgumentException("Region out of bounds: offset: " + offset
+          + ", length: " + length + ", array length: " + arrLength);
+    }
+  }
+
+}
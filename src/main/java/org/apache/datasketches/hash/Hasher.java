@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hash;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.Util;
+
+/**
+ * The hash functions that a sketch can use to hash its input items.
+ *
+ * <p>Every hash method writes a 128-bit hash into the given array of two longs and returns it,
+ * so that the update paths of the sketches are free of object allocations. The theta sketches
+ * use only the first long, while the HLL and CPC sketches use both.</p>
+ *
+ * <p>Sketches can only be merged if they use the same hash function and the same seed. The
+ * theta and CPC sketches record both in the 16-bit seed hash of their preamble, which is
+ * computed by {@link #computeSeedHash(long)}. For a given seed the seed hashes of the different
+ * hash functions are distinct, so the existing seed hash checks of the set operations reject
+ * the sketches built with a different hash function. The HLL sketches, which have no seed,
+ * record the {@link #getId() ID} of the hash function in their preamble.</p>
+ */
+public enum Hasher {
+
+  /**
+   * The 128-bit MurmurHash3, as computed by {@link MurmurHash3v2}. This is the default, and the
+   * only hash function of sketches serialized by earlier versions of the library.
+   */
+  MURMUR3(0, "MurmurHash3") {
+    @Override
+    public long[] hash(final long datum, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(datum, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final CharSequence datum, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(datum, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final byte[] data, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(data, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final byte[] data, final int offset, final int length, final long seed,
+        final long[] hashOut) {
+      return MurmurHash3v2.hash(data, offset, length, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final char[] data, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(data, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final int[] data, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(data, seed, hashOut);
+    }
+
+    @Override
+    public long[] hash(final long[] data, final long seed, final long[] hashOut) {
+      return MurmurHash3v2.hash(data, seed, hashOut);
+    }
+
+    @Override
+    public short computeSeedHash(final long seed) {
+      return Util.computeSeedHash(seed);
+    }
+  },
+
+  /**
+   * The 64-bit XxHash64, as computed by {@link XxHash}. It is faster than MurmurHash3 for short
+   * items. The second long of the hash is derived from the first by a bijective mix, which is
+   * sufficient for the HLL and CPC sketches.
+   */
+  XXHASH64(1, "XxHash64") {
+    @Override
+    public long[] hash(final long datum, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(datum, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final CharSequence datum, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(datum, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final byte[] data, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(data, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final byte[] data, final int offset, final int length, final long seed,
+        final long[] hashOut) {
+      return fill(XxHash.hash(data, offset, length, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final char[] data, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(data, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final int[] data, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(data, seed), hashOut);
+    }
+
+    @Override
+    public long[] hash(final long[] data, final long seed, final long[] hashOut) {
+      return fill(XxHash.hash(data, seed), hashOut);
+    }
+
+    @Override
+    public short computeSeedHash(final long seed) {
+      final short seedHash = (short) (XxHash.hash(seed, 0L) & 0xFFFFL);
+      if ((seedHash == 0) || (seedHash == MURMUR3.computeSeedHash(seed))) {
+        throw new SketchesArgumentException(
+            "The given seed: " + seed + " produced an unusable " + getName() + " seed hash. "
+            + "Please choose a different seed.");
+      }
+      return seedHash;
+    }
+  };
+
+  private static final Hasher[] HASHERS = values();
+
+  private final int id_;
+  private final String name_;
+
+  Hasher(final int id, final String name) {
+    id_ = id;
+    name_ = name;
+  }
+
+  /**
+   * Returns the ID of this hash function, as recorded in the preamble of the HLL sketches.
+   * @return the ID of this hash function
+   */
+  public int getId() {
+    return id_;
+  }
+
+  /**
+   * Returns the name of this hash function.
+   * @return the name of this hash function
+   */
+  public String getName() {
+    return name_;
+  }
+
+  /**
+   * Returns the 128-bit hash of the given long.
+   * @param datum the given long
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(long datum, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given double. Plus and minus zero are hashed as plus zero,
+   * and all NaN forms as a single NaN, as by {@link MurmurHash3v2#hash(double, long, long[])}.
+   * @param datum the given double
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public long[] hash(final double datum, final long seed, final long[] hashOut) {
+    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
+    return hash(Double.doubleToLongBits(d), seed, hashOut); // canonicalize all NaN forms
+  }
+
+  /**
+   * Returns the 128-bit hash of the UTF-8 encoding of the given CharSequence, such as a String.
+   * The characters are encoded and hashed in a single pass, free of object allocations.
+   * @param datum the given CharSequence. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(CharSequence datum, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given byte array.
+   * @param data the given array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(byte[] data, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given region of a byte array, which is read directly.
+   * @param data the given array. Must be non-null.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes. Must be greater than zero.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public abstract long[] hash(byte[] data, int offset, int length, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given char array.
+   * @param data the given array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(char[] data, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given int array.
+   * @param data the given array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(int[] data, long seed, long[] hashOut);
+
+  /**
+   * Returns the 128-bit hash of the given long array.
+   * @param data the given array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return hashOut
+   */
+  public abstract long[] hash(long[] data, long seed, long[] hashOut);
+
+  /**
+   * Computes the 16-bit seed hash that identifies this hash function together with the given
+   * seed. For MURMUR3 this is {@link Util#computeSeedHash(long)}.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return the seed hash
+   * @throws SketchesArgumentException if the seed hash would be unusable.
+   */
+  public abstract short computeSeedHash(long seed);
+
+  /**
+   * Returns the Hasher for the given ID.
+   * @param id the given ID
+   * @return the Hasher for the given ID
+   * @throws SketchesArgumentException if the ID is unknown.
+   */
+  public static Hasher idToHasher(final int id) {
+    if ((id < 0) || (id >= HASHERS.length)) {
+      throw new SketchesArgumentException("Possible Corruption: Unknown Hasher ID: " + id);
+    }
+    return HASHERS[id];
+  }
+
+  /**
+   * Returns the Hasher whose seed hash for the given seed is the given seed hash. This recovers
+   * the hash function of a serialized sketch from its seed hash.
+   * @param seedHash the seed hash of a serialized sketch
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return the Hasher whose seed hash for the given seed is the given seed hash
+   * @throws SketchesArgumentException if there is no such Hasher.
+   */
+  public static Hasher fromSeedHash(final short seedHash, final long seed) {
+    final Hasher hasher = findBySeedHash(seedHash, seed);
+    if (hasher == null) {
+      Util.checkSeedHashes(seedHash, MURMUR3.computeSeedHash(seed)); //throws the usual exception
+    }
+    return hasher;
+  }
+
+  /**
+   * Returns true if the given seed hash is the seed hash of some Hasher for the given seed.
+   * @param seedHash the seed hash of a serialized sketch
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return true if the given seed hash is the seed hash of some Hasher for the given seed.
+   */
+  public static boolean isSeedHash(final short seedHash, final long seed) {
+    return findBySeedHash(seedHash, seed) != null;
+  }
+
+  private static Hasher findBySeedHash(final short seedHash, final long seed) {
+    for (final Hasher hasher : HASHERS) {
+      try {
+        if (seedHash == hasher.computeSeedHash(seed)) { return hasher; }
+      } catch (final SketchesArgumentException e) {
+        //this hasher cannot be used with this seed
+      }
+    }
+    return null;
+  }
+
+  private static long[] fill(final long hash, final long[] hashOut) {
+    hashOut[0] = hash;
+    hashOut[1] = mix64(hash);
+    return hashOut;
+  }
+
+  /**
+   * The SplitMix64 finalizer, a bijective mix with full avalanche.
+   * @param h input to mix
+   * @return mix
+   */
+  private static long mix64(final long h) {
+    long z = h + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+}
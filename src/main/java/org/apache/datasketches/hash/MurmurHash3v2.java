@@ -19,9 +19,16 @@
 
 package org.apache.datasketches.hash;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.datasketches.hash.HashUtil.checkBounds;
+import static org.apache.datasketches.hash.HashUtil.utf8Encode;
+import static org.apache.datasketches.hash.HashUtil.utf8NumBytes;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_BYTE_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_CHAR_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_INT_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_LONG_BASE_OFFSET;
 import static org.apache.datasketches.memory.UnsafeUtil.unsafe;
 
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -36,7 +43,8 @@ import org.apache.datasketches.memory.WritableMemory;
  *
  * <p>This implementation of the MurmurHash3 allows hashing of a block of Memory defined by an offset
  * and length. The calling API also allows the user to supply the small output array of two longs,
- * so that the entire hash function is static and free of object allocations.</p>
+ * so that the entire hash function is static and free of object allocations.
+ * The primitive and array inputs are read directly, without wrapping them in a Memory.</p>
  *
  * <p>This implementation produces exactly the same hash result as the
  * {@link MurmurHash3#hash} function given compatible inputs.</p>
@@ -58,10 +66,7 @@ public final class MurmurHash3v2 {
    * @return the hash
    */
   public static long[] hash(final long[] in, final long seed) {
-    if ((in == null) || (in.length == 0)) {
-      return emptyOrNull(seed, new long[2]);
-    }
-    return hash(Memory.wrap(in), 0L, in.length << 3, seed, new long[2]);
+    return hash(in, seed, new long[2]);
   }
 
   /**
@@ -73,10 +78,7 @@ public final class MurmurHash3v2 {
    * @return the hash
    */
   public static long[] hash(final int[] in, final long seed) {
-    if ((in == null) || (in.length == 0)) {
-      return emptyOrNull(seed, new long[2]);
-    }
-    return hash(Memory.wrap(in), 0L, in.length << 2, seed, new long[2]);
+    return hash(in, seed, new long[2]);
   }
 
   /**
@@ -88,10 +90,7 @@ public final class MurmurHash3v2 {
    * @return the hash
    */
   public static long[] hash(final char[] in, final long seed) {
-    if ((in == null) || (in.length == 0)) {
-      return emptyOrNull(seed, new long[2]);
-    }
-    return hash(Memory.wrap(in), 0L, in.length << 1, seed, new long[2]);
+    return hash(in, seed, new long[2]);
   }
 
   /**
@@ -103,10 +102,69 @@ public final class MurmurHash3v2 {
    * @return the hash
    */
   public static long[] hash(final byte[] in, final long seed) {
+    return hash(in, seed, new long[2]);
+  }
+
+  //Array inputs, free of object allocations
+
+  /**
+   * Returns a 128-bit hash of the input.
+   * Empty or null input returns a hash.
+   * @param in long array
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   */
+  public static long[] hash(final long[] in, final long seed, final long[] hashOut) {
     if ((in == null) || (in.length == 0)) {
-      return emptyOrNull(seed, new long[2]);
+      return emptyOrNull(seed, hashOut);
     }
-    return hash(Memory.wrap(in), 0L, in.length, seed, new long[2]);
+    return hash(in, ARRAY_LONG_BASE_OFFSET, (long) in.length << 3, seed, hashOut);
+  }
+
+  /**
+   * Returns a 128-bit hash of the input.
+   * Empty or null input returns a hash.
+   * @param in int array
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   */
+  public static long[] hash(final int[] in, final long seed, final long[] hashOut) {
+    if ((in == null) || (in.length == 0)) {
+      return emptyOrNull(seed, hashOut);
+    }
+    return hash(in, ARRAY_INT_BASE_OFFSET, (long) in.length << 2, seed, hashOut);
+  }
+
+  /**
+   * Returns a 128-bit hash of the input.
+   * Empty or null input returns a hash.
+   * @param in char array
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   */
+  public static long[] hash(final char[] in, final long seed, final long[] hashOut) {
+    if ((in == null) || (in.length == 0)) {
+      return emptyOrNull(seed, hashOut);
+    }
+    return hash(in, ARRAY_CHAR_BASE_OFFSET, (long) in.length << 1, seed, hashOut);
+  }
+
+  /**
+   * Returns a 128-bit hash of the input.
+   * Empty or null input returns a hash.
+   * @param in byte array
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   */
+  public static long[] hash(final byte[] in, final long seed, final long[] hashOut) {
+    if ((in == null) || (in.length == 0)) {
+      return emptyOrNull(seed, hashOut);
+    }
+    return hash(in, ARRAY_BYTE_BASE_OFFSET, in.length, seed, hashOut);
   }
 
   //Single primitive inputs
@@ -142,18 +200,103 @@ public final class MurmurHash3v2 {
   }
 
   /**
-   * Returns a 128-bit hash of the input.
+   * Returns a 128-bit hash of the UTF-8 encoding of the input.
+   * Empty or null input returns a hash.
    * @param in a String
    * @param seed A long valued seed.
    * @param hashOut A long array of size 2
    * @return the hash
    */
   public static long[] hash(final String in, final long seed, final long[] hashOut) {
+    return hash((CharSequence) in, seed, hashOut);
+  }
+
+  /**
+   * Returns a 128-bit hash of the UTF-8 encoding of the input.
+   * Empty or null input returns a hash.
+   *
+   * <p>The characters are encoded and hashed in a single pass, free of object allocations. The
+   * result is the same as hashing the byte array returned by
+   * <i>in.toString().getBytes(StandardCharsets.UTF_8)</i>.</p>
+   *
+   * @param in a CharSequence
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   */
+  public static long[] hash(final CharSequence in, final long seed, final long[] hashOut) {
     if ((in == null) || (in.length() == 0)) {
       return emptyOrNull(seed, hashOut);
     }
-    final byte[] byteArr = in.getBytes(UTF_8);
-    return hash(Memory.wrap(byteArr), 0L, byteArr.length, seed, hashOut);
+    final int len = in.length();
+    long h1 = seed;
+    long h2 = seed;
+    long lengthBytes = 0;
+    long k1 = 0;          //the first long of the current 128-bit block, if haveK1
+    boolean haveK1 = false;
+    long word = 0;        //the bytes of the long being filled, little-endian
+    int wordBytes = 0;
+    int i = 0;
+    while (i < len) {
+      final long enc = utf8Encode(in, i);
+      final int numBytes = utf8NumBytes(enc);
+      final long bytes = enc & 0xFFFFFFFFL;
+      i += (numBytes == 4) ? 2 : 1;
+      lengthBytes += numBytes;
+      word |= bytes << (wordBytes << 3); //the bytes that do not fit are shifted out
+      wordBytes += numBytes;
+      if (wordBytes < 8) { continue; }
+      wordBytes -= 8; //the number of bytes that did not fit
+      final long k = word;
+      word = (wordBytes == 0) ? 0 : bytes >>> ((numBytes - wordBytes) << 3);
+      if (!haveK1) {
+        k1 = k;
+        haveK1 = true;
+        continue;
+      }
+      haveK1 = false;
+
+      // Process the 128-bit block into the hash
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = (h1 * 5) + 0x52dce729L;
+
+      h2 ^= mixK2(k);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = (h2 * 5) + 0x38495ab5L;
+    }
+
+    // The tail: 0 to 15 bytes. Mixing a zero long has no effect.
+    if (haveK1) {
+      h1 ^= mixK1(k1);
+      h2 ^= mixK2(word);
+    } else {
+      h1 ^= mixK1(word);
+    }
+    return finalMix128(h1, h2, lengthBytes, hashOut);
+  }
+
+  /**
+   * Returns a 128-bit hash of the given region of a byte array. The region is read directly,
+   * so fields can be hashed out of a shared buffer without copying them.
+   * An empty region returns a hash.
+   * @param in byte array. Must be non-null.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @param seed A long valued seed.
+   * @param hashOut A long array of size 2
+   * @return the hash
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public static long[] hash(final byte[] in, final int offset, final int length, final long seed,
+      final long[] hashOut) {
+    checkBounds(offset, length, in.length);
+    if (length == 0) {
+      return emptyOrNull(seed, hashOut);
+    }
+    return hash(in, ARRAY_BYTE_BASE_OFFSET + offset, length, seed, hashOut);
   }
 
   //The main API call
@@ -174,8 +317,23 @@ public final class MurmurHash3v2 {
       return emptyOrNull(seed, hashOut);
     }
     final Object uObj = ((WritableMemory) mem).getArray(); //may be null
-    long cumOff = mem.getCumulativeOffset() + offsetBytes;
+    final long cumOff = mem.getCumulativeOffset() + offsetBytes;
+    return hash(uObj, cumOff, lengthBytes, seed, hashOut);
+  }
 
+  /**
+   * Returns a 128-bit hash of the given region of an on-heap array or of off-heap memory.
+   *
+   * @param uObj the array, or null if off-heap
+   * @param startOff the starting offset in bytes as used by Unsafe
+   * @param lengthBytes the total number of bytes to be hashed. Must be greater than zero.
+   * @param seed A long valued seed.
+   * @param hashOut the size 2 long array for the resulting 128-bit hash
+   * @return the hash.
+   */
+  private static long[] hash(final Object uObj, final long startOff, final long lengthBytes,
+      final long seed, final long[] hashOut) {
+    long cumOff = startOff;
     long h1 = seed;
     long h2 = seed;
     long rem = lengthBytes;
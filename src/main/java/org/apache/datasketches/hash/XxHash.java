@@ -19,6 +19,16 @@
 
 package org.apache.datasketches.hash;
 
+import static org.apache.datasketches.hash.HashUtil.checkBounds;
+import static org.apache.datasketches.hash.HashUtil.utf8Encode;
+import static org.apache.datasketches.hash.HashUtil.utf8NumBytes;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_BYTE_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_CHAR_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_INT_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.ARRAY_LONG_BASE_OFFSET;
+import static org.apache.datasketches.memory.UnsafeUtil.unsafe;
+
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 
 /**
@@ -78,6 +88,237 @@ public class XxHash {
     return finalize(hash);
   }
 
+  /**
+   * Returns a 64-bit hash of the input. The array is read directly, free of object allocations.
+   * @param in a long array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final long[] in, final long seed) {
+    return hash(in, ARRAY_LONG_BASE_OFFSET, (long) in.length << 3, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the input. The array is read directly, free of object allocations.
+   * @param in an int array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final int[] in, final long seed) {
+    return hash(in, ARRAY_INT_BASE_OFFSET, (long) in.length << 2, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the input. The array is read directly, free of object allocations.
+   * @param in a char array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final char[] in, final long seed) {
+    return hash(in, ARRAY_CHAR_BASE_OFFSET, (long) in.length << 1, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the input. The array is read directly, free of object allocations.
+   * @param in a byte array. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final byte[] in, final long seed) {
+    return hash(in, ARRAY_BYTE_BASE_OFFSET, in.length, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the given region of a byte array. The region is read directly,
+   * so fields can be hashed out of a shared buffer without copying them.
+   * @param in a byte array. Must be non-null.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @param seed A long valued seed.
+   * @return the hash
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public static long hash(final byte[] in, final int offset, final int length, final long seed) {
+    checkBounds(offset, length, in.length);
+    return hash(in, ARRAY_BYTE_BASE_OFFSET + offset, length, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the UTF-8 encoding of the input.
+   * @param in a String. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final String in, final long seed) {
+    return hash((CharSequence) in, seed);
+  }
+
+  /**
+   * Returns a 64-bit hash of the UTF-8 encoding of the input.
+   *
+   * <p>The characters are encoded and hashed in a single pass, free of object allocations. The
+   * result is the same as hashing the byte array returned by
+   * <i>in.toString().getBytes(StandardCharsets.UTF_8)</i>.</p>
+   *
+   * @param in a CharSequence. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  public static long hash(final CharSequence in, final long seed) {
+    final int len = in.length();
+    long v1 = seed + P1 + P2;
+    long v2 = seed + P2;
+    long v3 = seed;
+    long v4 = seed - P1;
+    boolean striped = false;
+    long w0 = 0;          //the completed longs of the current 256-bit stripe
+    long w1 = 0;
+    long w2 = 0;
+    int numWords = 0;
+    long word = 0;        //the bytes of the long being filled, little-endian
+    int wordBytes = 0;
+    long lengthBytes = 0;
+    int i = 0;
+    while (i < len) {
+      final long enc = utf8Encode(in, i);
+      final int numBytes = utf8NumBytes(enc);
+      final long bytes = enc & 0xFFFFFFFFL;
+      i += (numBytes == 4) ? 2 : 1;
+      lengthBytes += numBytes;
+      word |= bytes << (wordBytes << 3); //the bytes that do not fit are shifted out
+      wordBytes += numBytes;
+      if (wordBytes < 8) { continue; }
+      wordBytes -= 8; //the number of bytes that did not fit
+      final long w = word;
+      word = (wordBytes == 0) ? 0 : bytes >>> ((numBytes - wordBytes) << 3);
+      switch (numWords++) {
+        case 0: w0 = w; break;
+        case 1: w1 = w; break;
+        case 2: w2 = w; break;
+        default: { // Process the 256-bit stripe
+          v1 = round(v1, w0);
+          v2 = round(v2, w1);
+          v3 = round(v3, w2);
+          v4 = round(v4, w);
+          striped = true;
+          numWords = 0;
+        }
+      }
+    }
+
+    long hash;
+    if (striped) {
+      hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+          + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = seed + P5;
+    }
+    hash += lengthBytes;
+
+    // The tail: 0 to 31 bytes
+    if (numWords > 0) { hash = tailRound(hash, w0); }
+    if (numWords > 1) { hash = tailRound(hash, w1); }
+    if (numWords > 2) { hash = tailRound(hash, w2); }
+    if (wordBytes >= 4) {
+      hash ^= (word & 0xFFFFFFFFL) * P1;
+      hash = (Long.rotateLeft(hash, 23) * P2) + P3;
+      word >>>= 32;
+      wordBytes -= 4;
+    }
+    while (wordBytes > 0) {
+      hash ^= (word & 0xFFL) * P5;
+      hash = Long.rotateLeft(hash, 11) * P1;
+      word >>>= 8;
+      wordBytes--;
+    }
+    return finalize(hash);
+  }
+
+  /**
+   * Returns the 64-bit hash of the given region of an on-heap array or of off-heap memory.
+   * This produces the same result as {@link Memory#xxHash64(long, long, long)}.
+   *
+   * @param uObj the array, or null if off-heap
+   * @param startOff the starting offset in bytes as used by Unsafe
+   * @param lengthBytes the total number of bytes to be hashed
+   * @param seed A long valued seed.
+   * @return the hash
+   */
+  private static long hash(final Object uObj, final long startOff, final long lengthBytes,
+      final long seed) {
+    long cumOff = startOff;
+    long rem = lengthBytes;
+    long hash;
+
+    if (rem >= 32) {
+      long v1 = seed + P1 + P2;
+      long v2 = seed + P2;
+      long v3 = seed;
+      long v4 = seed - P1;
+
+      // Process the 256-bit stripes
+      do {
+        v1 = round(v1, unsafe.getLong(uObj, cumOff));
+        v2 = round(v2, unsafe.getLong(uObj, cumOff + 8));
+        v3 = round(v3, unsafe.getLong(uObj, cumOff + 16));
+        v4 = round(v4, unsafe.getLong(uObj, cumOff + 24));
+        cumOff += 32;
+        rem -= 32;
+      } while (rem >= 32);
+
+      hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+          + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = seed + P5;
+    }
+    hash += lengthBytes;
+
+    // Get the tail (if any): 0 to 31 bytes
+    while (rem >= 8) {
+      hash = tailRound(hash, unsafe.getLong(uObj, cumOff));
+      cumOff += 8;
+      rem -= 8;
+    }
+    if (rem >= 4) {
+      hash ^= (unsafe.getInt(uObj, cumOff) & 0xFFFFFFFFL) * P1;
+      hash = (Long.rotateLeft(hash, 23) * P2) + P3;
+      cumOff += 4;
+      rem -= 4;
+    }
+    while (rem > 0) {
+      hash ^= (unsafe.getByte(uObj, cumOff) & 0xFFL) * P5;
+      hash = Long.rotateLeft(hash, 11) * P1;
+      cumOff++;
+      rem--;
+    }
+    return finalize(hash);
+  }
+
+  private static long round(long acc, final long input) {
+    acc += input * P2;
+    acc = Long.rotateLeft(acc, 31);
+    acc *= P1;
+    return acc;
+  }
+
+  private static long mergeRound(long acc, final long val) {
+    acc ^= round(0, val);
+    acc = (acc * P1) + P4;
+    return acc;
+  }
+
+  private static long tailRound(final long hash, final long input) {
+    return (Long.rotateLeft(hash ^ round(0, input), 27) * P1) + P4;
+  }
+
   private static long finalize(long hash) {
     hash ^= hash >>> 33;
     hash *= P2;
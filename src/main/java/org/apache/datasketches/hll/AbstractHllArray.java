@@ -20,6 +20,7 @@
 package org.apache.datasketches.hll;
 
 import static org.apache.datasketches.Util.invPow2;
+import static org.apache.datasketches.hll.HllUtil.KEY_BITS_26;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_PREINTS;
 import static org.apache.datasketches.hll.TgtHllType.HLL_4;
@@ -41,6 +42,17 @@ abstract class AbstractHllArray extends HllSketchImpl {
 
   abstract void addToHipAccum(double delta);
 
+  @Override
+  HllSketchImpl couponUpdate(final int[] coupons, final int count) {
+    //HLL is the final mode, so the whole batch is applied here without further dispatch
+    final int configKmask = (1 << lgConfigK) - 1;
+    for (int i = 0; i < count; i++) {
+      final int coupon = coupons[i];
+      updateSlotWithKxQ(coupon & configKmask, coupon >>> KEY_BITS_26);
+    }
+    return this;
+  }
+
   @Override
   HllArray copyAs(final TgtHllType tgtHllType) {
     if (tgtHllType == getTgtHllType()) {
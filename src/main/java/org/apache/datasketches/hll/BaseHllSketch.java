@@ -19,13 +19,14 @@
 
 package org.apache.datasketches.hll;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
-import static org.apache.datasketches.hash.MurmurHash3.hash;
 import static org.apache.datasketches.hll.HllUtil.KEY_BITS_26;
 import static org.apache.datasketches.hll.HllUtil.KEY_MASK_26;
 
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.UnsafeUtil;
 
 /**
  * Although this class is package-private, it provides a single place to define and document
@@ -34,9 +35,27 @@ import org.apache.datasketches.memory.Memory;
  * @author Kevin Lang
  */
 abstract class BaseHllSketch {
+  private static final int BATCH_SIZE = 256; //max number of coupons applied per batch
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
 
   abstract void couponUpdate(int coupon);
 
+  /**
+   * Returns the array of two longs that receives the hash of an update. Sketches that may be
+   * updated by several threads at once must override this to return an array per thread.
+   * @return the array of two longs that receives the hash of an update
+   */
+  long[] getHashOut() {
+    return hashOut;
+  }
+
+  /**
+   * Returns the hash function of this sketch. Sketches can only be merged with sketches that use
+   * the same hash function.
+   * @return the hash function of this sketch
+   */
+  public abstract Hasher getHasher();
+
   /**
    * Gets the size in bytes of the current sketch when serialized using
    * <i>toCompactByteArray()</i>.
@@ -288,8 +307,7 @@ abstract class BaseHllSketch {
    * @param datum The given long datum.
    */
   public void update(final long datum) {
-    final long[] data = { datum };
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(getHasher().hash(datum, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
@@ -302,14 +320,13 @@ abstract class BaseHllSketch {
    * @param datum The given double datum.
    */
   public void update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    //canonicalizes -0.0 and NaN
+    couponUpdate(coupon(getHasher().hash(datum, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
    * Present the given String as a potential unique item.
-   * The string is converted to a byte array using UTF8 encoding.
+   * The string is hashed as its UTF-8 encoding, without allocating a byte array.
    * If the string is null or empty no update attempt is made and the method returns.
    *
    * <p>Note: About 2X faster performance can be obtained by first converting the String to a
@@ -322,9 +339,21 @@ abstract class BaseHllSketch {
    * @param datum The given String.
    */
   public void update(final String datum) {
-    if ((datum == null) || datum.isEmpty()) { return; }
-    final byte[] data = datum.getBytes(UTF_8);
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    update((CharSequence) datum);
+  }
+
+  /**
+   * Present the given CharSequence, such as a StringBuilder or a view of a parser's character
+   * buffer, as a potential unique item. It is hashed as its UTF-8 encoding, which is computed
+   * while hashing without allocating a byte array, so the result is the same as for
+   * {@link #update(String)} with the same characters.
+   * If the CharSequence is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given CharSequence.
+   */
+  public void update(final CharSequence datum) {
+    if ((datum == null) || (datum.length() == 0)) { return; }
+    couponUpdate(coupon(getHasher().hash(datum, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
@@ -335,7 +364,24 @@ abstract class BaseHllSketch {
    */
   public void update(final byte[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(getHasher().hash(data, DEFAULT_UPDATE_SEED, getHashOut())));
+  }
+
+  /**
+   * Present the given region of a byte array, such as a field of a shared I/O buffer, as a
+   * potential unique item. The region is hashed in place and produces the same hash as a byte
+   * array holding just the region.
+   * If the byte array is null or the region is empty no update attempt is made and the method
+   * returns.
+   *
+   * @param data The given byte array.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public void update(final byte[] data, final int offset, final int length) {
+    if ((data == null) || (length == 0)) { return; }
+    couponUpdate(coupon(getHasher().hash(data, offset, length, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
@@ -349,7 +395,7 @@ abstract class BaseHllSketch {
    */
   public void update(final char[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(getHasher().hash(data, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
@@ -360,7 +406,7 @@ abstract class BaseHllSketch {
    */
   public void update(final int[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(getHasher().hash(data, DEFAULT_UPDATE_SEED, getHashOut())));
   }
 
   /**
@@ -371,7 +417,127 @@ abstract class BaseHllSketch {
    */
   public void update(final long[] data) {
     if ((data == null) || (data.length == 0)) { return; }
-    couponUpdate(coupon(hash(data, DEFAULT_UPDATE_SEED)));
+    couponUpdate(coupon(getHasher().hash(data, DEFAULT_UPDATE_SEED, getHashOut())));
+  }
+
+  //Batch updates
+
+  /**
+   * Present each long in the given range of the array as a potential unique item.
+   * The result is identical to calling {@link #update(long)} for each one, but the items are
+   * hashed into a buffer of coupons in a tight loop, which are then applied to the sketch in one
+   * pass per mode.
+   *
+   * @param data The given array of long datums.
+   * @param offset the index of the first datum in the array
+   * @param length the number of datums to present to the sketch
+   */
+  public void batchUpdate(final long[] data, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, data.length);
+    final Hasher hasher = getHasher();
+    final long[] hashOut = getHashOut();
+    final int[] coupons = new int[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      for (int i = 0; i < count; i++) {
+        coupons[i] = coupon(hasher.hash(data[base + i], DEFAULT_UPDATE_SEED, hashOut));
+      }
+      couponUpdate(coupons, count);
+      done += count;
+    }
+  }
+
+  /**
+   * Present each double in the given range of the array as a potential unique item.
+   * The result is identical to calling {@link #update(double)} for each one.
+   *
+   * @param data The given array of double datums.
+   * @param offset the index of the first datum in the array
+   * @param length the number of datums to present to the sketch
+   */
+  public void batchUpdate(final double[] data, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, data.length);
+    final Hasher hasher = getHasher();
+    final long[] hashOut = getHashOut();
+    final int[] coupons = new int[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      for (int i = 0; i < count; i++) {
+        coupons[i] = coupon(hasher.hash(data[base + i], DEFAULT_UPDATE_SEED, hashOut));
+      }
+      couponUpdate(coupons, count);
+      done += count;
+    }
+  }
+
+  /**
+   * Present each String in the given range of the array as a potential unique item.
+   * The result is identical to calling {@link #update(String)} for each one.
+   * Null or empty strings are skipped.
+   *
+   * @param data The given array of String datums.
+   * @param offset the index of the first datum in the array
+   * @param length the number of datums to present to the sketch
+   */
+  public void batchUpdate(final String[] data, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, data.length);
+    final Hasher hasher = getHasher();
+    final long[] hashOut = getHashOut();
+    final int[] coupons = new int[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      int numCoupons = 0;
+      for (int i = 0; i < count; i++) {
+        final String datum = data[base + i];
+        if ((datum == null) || datum.isEmpty()) { continue; }
+        coupons[numCoupons++] = coupon(hasher.hash(datum, DEFAULT_UPDATE_SEED, hashOut));
+      }
+      couponUpdate(coupons, numCoupons);
+      done += count;
+    }
+  }
+
+  /**
+   * Present each long in the given region of Memory as a potential unique item.
+   * The result is identical to calling {@link #update(long)} for each one.
+   *
+   * @param mem the given Memory containing an array of longs in native byte order.
+   * @param offsetBytes the offset in bytes of the first long
+   * @param numLongs the number of longs to present to the sketch
+   */
+  public void batchUpdate(final Memory mem, final long offsetBytes, final int numLongs) {
+    UnsafeUtil.checkBounds(offsetBytes, (long) numLongs << 3, mem.getCapacity());
+    final Hasher hasher = getHasher();
+    final long[] hashOut = getHashOut();
+    final int[] coupons = new int[Math.min(numLongs, BATCH_SIZE)];
+    int done = 0;
+    while (done < numLongs) {
+      final int count = Math.min(numLongs - done, BATCH_SIZE);
+      final long base = offsetBytes + ((long) done << 3);
+      for (int i = 0; i < count; i++) {
+        final long datum = mem.getLong(base + (i << 3));
+        coupons[i] = coupon(hasher.hash(datum, DEFAULT_UPDATE_SEED, hashOut));
+      }
+      couponUpdate(coupons, count);
+      done += count;
+    }
+  }
+
+  /**
+   * Batch form of {@link #couponUpdate(int)}. The default applies each coupon in turn.
+   * @param coupons the given coupons
+   * @param count the number of coupons, starting at index zero, to apply
+   */
+  void couponUpdate(final int[] coupons, final int count) {
+    for (int i = 0; i < count; i++) {
+      couponUpdate(coupons[i]);
+    }
   }
 
   private static final int coupon(final long[] hash) {
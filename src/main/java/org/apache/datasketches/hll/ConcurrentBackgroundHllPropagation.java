@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background propagation task. Propagates the coupons of a local buffer into the shared
+ * concurrent sketch, which allows the application thread to continue filling its buffer.
+ */
+final class ConcurrentBackgroundHllPropagation implements Runnable {
+
+  // Shared sketch to absorb the coupons
+  private final ConcurrentHllSketch shared;
+
+  // Propagation flag of the local buffer whose coupons are being processed.
+  // Cleared when the propagation completes, after which the buffer may reuse the coupons array.
+  private final AtomicBoolean localPropagationInProgress;
+
+  private final int[] coupons;
+  private final int count;
+
+  ConcurrentBackgroundHllPropagation(final ConcurrentHllSketch shared,
+      final AtomicBoolean localPropagationInProgress, final int[] coupons, final int count) {
+    this.shared = shared;
+    this.localPropagationInProgress = localPropagationInProgress;
+    this.coupons = coupons;
+    this.count = count;
+  }
+
+  @Override
+  public void run() {
+    try {
+      shared.couponUpdate(coupons, count);
+    } finally {
+      localPropagationInProgress.set(false);
+    }
+  }
+
+}
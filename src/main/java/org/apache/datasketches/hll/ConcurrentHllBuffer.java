@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The local coupon buffer of a {@link ConcurrentHllSketch} that operates in the context of a
+ * single writing thread. It is not thread safe and must not be shared between threads.
+ *
+ * <p>An update whose coupon cannot raise its register in the shared sketch is dropped at once.
+ * The other coupons are held in the buffer, and when it is full they are propagated to the
+ * shared sketch by a background task while the buffer continues with a second array.
+ * Call {@link #flush()} to propagate the coupons that are still buffered, for example before
+ * the writing thread finishes.</p>
+ *
+ * <p>All queries are answered by the shared sketch.</p>
+ */
+public final class ConcurrentHllBuffer extends BaseHllSketch {
+
+  private final ConcurrentHllSketch shared;
+
+  // Set while a background propagation of the spare array is in progress.
+  // It is the synchronization primitive to coordinate the work with the propagation task.
+  private final AtomicBoolean localPropagationInProgress;
+
+  private int[] coupons;
+  private int[] spareCoupons;
+  private int count;
+
+  ConcurrentHllBuffer(final ConcurrentHllSketch shared, final int bufferCapacity) {
+    this.shared = shared;
+    localPropagationInProgress = new AtomicBoolean(false);
+    coupons = new int[bufferCapacity];
+    spareCoupons = new int[bufferCapacity];
+    count = 0;
+  }
+
+  /**
+   * Returns the shared sketch of this buffer.
+   * @return the shared sketch of this buffer
+   */
+  public ConcurrentHllSketch getSharedSketch() {
+    return shared;
+  }
+
+  /**
+   * Propagates all buffered coupons to the shared sketch and waits until any background
+   * propagation of this buffer has completed. Afterwards the shared sketch reflects every
+   * update made through this buffer.
+   */
+  public void flush() {
+    awaitPropagation();
+    if (count > 0) {
+      shared.couponUpdate(coupons, count);
+      count = 0;
+    }
+  }
+
+  @Override
+  public double getCompositeEstimate() {
+    return shared.getCompositeEstimate();
+  }
+
+  @Override
+  CurMode getCurMode() {
+    return shared.getCurMode();
+  }
+
+  @Override
+  public int getCompactSerializationBytes() {
+    return shared.getCompactSerializationBytes();
+  }
+
+  @Override
+  public double getEstimate() {
+    return shared.getEstimate();
+  }
+
+  @Override
+  public Hasher getHasher() {
+    return shared.getHasher();
+  }
+
+  @Override
+  public int getLgConfigK() {
+    return shared.getLgConfigK();
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    return shared.getLowerBound(numStdDev);
+  }
+
+  @Override
+  public TgtHllType getTgtHllType() {
+    return shared.getTgtHllType();
+  }
+
+  @Override
+  public int getUpdatableSerializationBytes() {
+    return shared.getUpdatableSerializationBytes();
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    return shared.getUpperBound(numStdDev);
+  }
+
+  @Override
+  public boolean isCompact() {
+    return shared.isCompact();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return shared.isEmpty();
+  }
+
+  @Override
+  public boolean isMemory() {
+    return shared.isMemory();
+  }
+
+  @Override
+  public boolean isOffHeap() {
+    return shared.isOffHeap();
+  }
+
+  @Override
+  boolean isOutOfOrder() {
+    return shared.isOutOfOrder();
+  }
+
+  @Override
+  public boolean isSameResource(final Memory mem) {
+    return shared.isSameResource(mem);
+  }
+
+  /**
+   * Discards the coupons held by this buffer. The shared sketch is not affected.
+   */
+  @Override
+  public void reset() {
+    awaitPropagation();
+    count = 0;
+  }
+
+  @Override
+  public byte[] toCompactByteArray() {
+    throw new UnsupportedOperationException("Local HLL buffer need not be serialized");
+  }
+
+  @Override
+  public byte[] toUpdatableByteArray() {
+    throw new UnsupportedOperationException("Local HLL buffer need not be serialized");
+  }
+
+  @Override
+  public String toString(final boolean summary, final boolean detail, final boolean auxDetail,
+      final boolean all) {
+    return shared.toString(summary, detail, auxDetail, all);
+  }
+
+  @Override
+  void couponUpdate(final int coupon) {
+    if (!shared.canRaise(coupon)) { return; }
+    coupons[count++] = coupon;
+    if (count == coupons.length) {
+      propagateToSharedSketch();
+    }
+  }
+
+  /**
+   * Hands the full array to a background propagation task and continues with the spare array,
+   * once the previous propagation has released it.
+   */
+  private void propagateToSharedSketch() {
+    awaitPropagation();
+    final int[] full = coupons;
+    coupons = spareCoupons;
+    spareCoupons = full;
+    localPropagationInProgress.set(true);
+    final int fullCount = count;
+    count = 0;
+    try {
+      shared.getExecutor().execute(
+          new ConcurrentBackgroundHllPropagation(shared, localPropagationInProgress, full, fullCount));
+    } catch (final RuntimeException e) { // e.g., the executor has been shut down
+      shared.couponUpdate(full, fullCount);
+      localPropagationInProgress.set(false);
+    }
+  }
+
+  private void awaitPropagation() {
+    while (localPropagationInProgress.get()) {
+      Thread.yield(); //wait until the previous propagation completed
+    }
+  }
+
+}
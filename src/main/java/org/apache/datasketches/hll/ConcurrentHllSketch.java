@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.hll.HllUtil.KEY_BITS_26;
+import static org.apache.datasketches.hll.TgtHllType.HLL_8;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * A thread-safe HLL sketch that can be updated by many threads at once without locking.
+ *
+ * <p>The registers of this sketch are 8-bit values packed eight to a long in an
+ * AtomicLongArray. An update raises a register to the new value with a compare-and-swap,
+ * which never needs a lock because a register only ever increases. Updating this sketch
+ * directly is thread safe, but every update then touches the shared registers. For multi-core
+ * ingest each writing thread should instead use its own {@link ConcurrentHllBuffer}, obtained
+ * from {@link #newLocalBuffer()}. A buffer drops the coupons that cannot raise a register of
+ * this sketch and propagates the rest in batches on a background Executor.</p>
+ *
+ * <p>Queries are answered from a heap HLL_8 snapshot of the registers, which is rebuilt only
+ * after a register has changed. Since the coupons arrive out of order, the HIP estimator does
+ * not apply and the estimates are those of the composite estimator, as for a {@link Union}.
+ * The estimate is stale by at most the coupons still held by the local buffers, which is bounded
+ * by the number of buffers times their capacity.</p>
+ *
+ * <p>The registers always use 8 bits, so that each one can be raised atomically. Use
+ * {@link #getResult(TgtHllType)} to obtain an ordinary HllSketch of any target type.</p>
+ */
+public class ConcurrentHllSketch extends BaseHllSketch {
+
+  /**
+   * The default number of coupons a local buffer holds before it propagates them.
+   */
+  public static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+  private static final int REGISTERS_PER_LONG = 8;
+
+  // Many threads may update this sketch at once, so each one hashes into its own array.
+  private static final ThreadLocal<long[]> HASH_OUT = ThreadLocal.withInitial(() -> new long[2]);
+
+  private final int lgConfigK;
+  private final int configKmask;
+  private final AtomicLongArray registers;
+  private final Executor executor;
+
+  private volatile boolean empty = true;
+  private volatile boolean snapshotStale = false;
+  private volatile HllSketch snapshot;
+
+  /**
+   * Constructs a new concurrent sketch with the default lgConfigK. Local buffers propagate on
+   * the common ForkJoinPool.
+   */
+  public ConcurrentHllSketch() {
+    this(HllSketch.DEFAULT_LG_K);
+  }
+
+  /**
+   * Constructs a new concurrent sketch. Local buffers propagate on the common ForkJoinPool.
+   * @param lgConfigK The Log2 of K for this sketch. This value must be between 4 and 21
+   * inclusively.
+   */
+  public ConcurrentHllSketch(final int lgConfigK) {
+    this(lgConfigK, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a new concurrent sketch whose local buffers propagate on the given Executor.
+   * @param lgConfigK The Log2 of K for this sketch. This value must be between 4 and 21
+   * inclusively.
+   * @param executor the Executor that runs the background propagation of the local buffers.
+   */
+  public ConcurrentHllSketch(final int lgConfigK, final Executor executor) {
+    this.lgConfigK = HllUtil.checkLgK(lgConfigK);
+    if (executor == null) {
+      throw new SketchesArgumentException("Executor must not be null");
+    }
+    configKmask = (1 << lgConfigK) - 1;
+    registers = new AtomicLongArray((1 << lgConfigK) / REGISTERS_PER_LONG);
+    this.executor = executor;
+    snapshot = new HllSketch(lgConfigK, HLL_8);
+  }
+
+  /**
+   * Returns a new local buffer with the default capacity, to be used by a single writing thread.
+   * @return a new local buffer
+   */
+  public ConcurrentHllBuffer newLocalBuffer() {
+    return newLocalBuffer(DEFAULT_BUFFER_CAPACITY);
+  }
+
+  /**
+   * Returns a new local buffer to be used by a single writing thread.
+   * @param bufferCapacity the number of coupons the buffer holds before it propagates them to
+   * this sketch. It must be at least 1.
+   * @return a new local buffer
+   */
+  public ConcurrentHllBuffer newLocalBuffer(final int bufferCapacity) {
+    if (bufferCapacity < 1) {
+      throw new SketchesArgumentException("Buffer capacity must be at least 1: " + bufferCapacity);
+    }
+    return new ConcurrentHllBuffer(this, bufferCapacity);
+  }
+
+  /**
+   * Returns an HllSketch on the heap with the current contents of this sketch.
+   * @param tgtHllType the TgtHllType enum
+   * @return an HllSketch on the heap with the current contents of this sketch
+   */
+  public HllSketch getResult(final TgtHllType tgtHllType) {
+    return getSnapshot().copyAs(tgtHllType);
+  }
+
+  @Override
+  public double getCompositeEstimate() {
+    return getSnapshot().getCompositeEstimate();
+  }
+
+  @Override
+  CurMode getCurMode() {
+    return CurMode.HLL;
+  }
+
+  @Override
+  public int getCompactSerializationBytes() {
+    return getSnapshot().getCompactSerializationBytes();
+  }
+
+  @Override
+  public double getEstimate() {
+    return getSnapshot().getEstimate();
+  }
+
+  /**
+   * Returns {@link Hasher#MURMUR3}, the only hash function of this sketch.
+   */
+  @Override
+  public Hasher getHasher() {
+    return Hasher.MURMUR3;
+  }
+
+  @Override
+  public int getLgConfigK() {
+    return lgConfigK;
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    return getSnapshot().getLowerBound(numStdDev);
+  }
+
+  @Override
+  public TgtHllType getTgtHllType() {
+    return HLL_8;
+  }
+
+  @Override
+  public int getUpdatableSerializationBytes() {
+    return getSnapshot().getUpdatableSerializationBytes();
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    return getSnapshot().getUpperBound(numStdDev);
+  }
+
+  @Override
+  public boolean isCompact() {
+    return false;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  @Override
+  public boolean isMemory() {
+    return false;
+  }
+
+  @Override
+  public boolean isOffHeap() {
+    return false;
+  }
+
+  @Override
+  boolean isOutOfOrder() {
+    return true;
+  }
+
+  @Override
+  public boolean isSameResource(final Memory mem) {
+    return false;
+  }
+
+  /**
+   * Resets this sketch to empty. This must not be called while other threads update this sketch
+   * or while local buffers may still be propagating to it.
+   */
+  @Override
+  public void reset() {
+    for (int i = 0; i < registers.length(); i++) {
+      registers.set(i, 0L);
+    }
+    empty = true;
+    snapshotStale = false;
+    snapshot = new HllSketch(lgConfigK, HLL_8);
+  }
+
+  @Override
+  public byte[] toCompactByteArray() {
+    return getSnapshot().toCompactByteArray();
+  }
+
+  @Override
+  public byte[] toUpdatableByteArray() {
+    return getSnapshot().toUpdatableByteArray();
+  }
+
+  @Override
+  public String toString(final boolean summary, final boolean detail, final boolean auxDetail,
+      final boolean all) {
+    return getSnapshot().toString(summary, detail, auxDetail, all);
+  }
+
+  @Override
+  void couponUpdate(final int coupon) {
+    if (raiseRegister(coupon & configKmask, coupon >>> KEY_BITS_26)) {
+      registerChanged();
+    }
+  }
+
+  @Override
+  void couponUpdate(final int[] coupons, final int count) {
+    boolean changed = false;
+    for (int i = 0; i < count; i++) {
+      final int coupon = coupons[i];
+      changed |= raiseRegister(coupon & configKmask, coupon >>> KEY_BITS_26);
+    }
+    if (changed) {
+      registerChanged();
+    }
+  }
+
+  @Override
+  long[] getHashOut() {
+    return HASH_OUT.get();
+  }
+
+  //restricted methods
+
+  Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Returns true if the given coupon can raise its register. Used by the local buffers to drop
+   * coupons before they are buffered. A concurrent change may make the answer out of date,
+   * but only from true to false, which merely lets a coupon through that has no effect.
+   * @param coupon the given coupon
+   * @return true if the given coupon can raise its register
+   */
+  final boolean canRaise(final int coupon) {
+    return (coupon >>> KEY_BITS_26) > getRegister(coupon & configKmask);
+  }
+
+  final int getRegister(final int slotNo) {
+    final long word = registers.get(slotNo / REGISTERS_PER_LONG);
+    return (int) (word >>> shift(slotNo)) & 0XFF;
+  }
+
+  /**
+   * Atomically raises the given register to the given value if the value is larger.
+   * @param slotNo the register number
+   * @param value the new value
+   * @return true if the register was raised
+   */
+  private boolean raiseRegister(final int slotNo, final int value) {
+    final int index = slotNo / REGISTERS_PER_LONG;
+    final int shift = shift(slotNo);
+    final long mask = 0XFFL << shift;
+    long word = registers.get(index);
+    while (((int) (word >>> shift) & 0XFF) < value) {
+      final long newWord = (word & ~mask) | ((long) value << shift);
+      if (registers.compareAndSet(index, word, newWord)) {
+        return true;
+      }
+      word = registers.get(index);
+    }
+    return false;
+  }
+
+  private static int shift(final int slotNo) {
+    return (slotNo % REGISTERS_PER_LONG) * 8;
+  }
+
+  private void registerChanged() {
+    empty = false;
+    snapshotStale = true;
+  }
+
+  /**
+   * Returns the heap HLL_8 snapshot of the registers, rebuilding it first if a register has
+   * changed since it was built. The stale flag is cleared before the registers are read,
+   * so that a change made during the rebuild triggers another rebuild later.
+   * @return the heap HLL_8 snapshot of the registers
+   */
+  private HllSketch getSnapshot() {
+    if (snapshotStale) {
+      snapshotStale = false;
+      final Hll8Array hllArr = new Hll8Array(lgConfigK);
+      final int numSlots = 1 << lgConfigK;
+      for (int slotNo = 0; slotNo < numSlots; slotNo++) {
+        final int value = getRegister(slotNo);
+        if (value > 0) {
+          hllArr.updateSlotNoKxQ(slotNo, value);
+        }
+      }
+      hllArr.putOutOfOrder(true);
+      hllArr.putRebuildCurMinNumKxQFlag(true);
+      final HllSketch sketch = new HllSketch(hllArr, Hasher.MURMUR3);
+      Union.checkRebuildCurMinNumKxQ(sketch);
+      snapshot = sketch;
+    }
+    return snapshot;
+  }
+
+}
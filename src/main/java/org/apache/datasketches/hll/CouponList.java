@@ -26,6 +26,7 @@ import static org.apache.datasketches.hll.PreambleUtil.LIST_INT_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.LIST_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.extractLgK;
 import static org.apache.datasketches.hll.PreambleUtil.extractListCount;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseFlag;
 import static org.apache.datasketches.hll.PreambleUtil.extractTgtHllType;
 
 import org.apache.datasketches.SketchesStateException;
@@ -40,6 +41,7 @@ class CouponList extends AbstractCoupons {
   int lgCouponArrInts;
   int couponCount;
   int[] couponIntArr;
+  boolean sparse; //promotes to SPARSE rather than SET, only used by the LIST mode
 
   /**
    * New instance constructor for LIST or SET.
@@ -68,6 +70,7 @@ class CouponList extends AbstractCoupons {
     lgCouponArrInts = that.lgCouponArrInts;
     couponCount = that.couponCount;
     couponIntArr = that.couponIntArr.clone();
+    sparse = that.sparse;
   }
 
   /**
@@ -80,6 +83,7 @@ class CouponList extends AbstractCoupons {
     lgCouponArrInts = that.lgCouponArrInts;
     couponCount = that.couponCount;
     couponIntArr = that.couponIntArr.clone();
+    sparse = that.sparse;
   }
 
   static final CouponList heapifyList(final Memory mem) {
@@ -90,6 +94,7 @@ class CouponList extends AbstractCoupons {
     final int couponCount = extractListCount(mem);
     mem.getIntArray(LIST_INT_ARR_START, list.couponIntArr, 0, couponCount);
     list.couponCount = couponCount;
+    list.sparse = extractSparseFlag(mem);
     return list;
   }
 
@@ -115,6 +120,9 @@ class CouponList extends AbstractCoupons {
           if (lgConfigK < 8) {
             return promoteHeapListOrSetToHll(this); //oooFlag = false
           }
+          if (sparse) {
+            return promoteHeapListToSparse(this);
+          }
           return promoteHeapListToSet(this); //oooFlag = true
         }
         return this;
@@ -218,10 +226,21 @@ class CouponList extends AbstractCoupons {
     return chSet;
   }
 
-  //Promotional move of coupons to an HllSketch from either List or Set.
+  static final HllSketchImpl promoteHeapListToSparse(final CouponList list) {
+    final int couponCount = list.couponCount;
+    final int[] arr = list.couponIntArr;
+    final CouponSparseList sparseList = new CouponSparseList(list.lgConfigK, list.tgtHllType);
+    for (int i = 0; i < couponCount; i++) {
+      sparseList.couponUpdate(arr[i]);
+    }
+    return sparseList;
+  }
+
+  //Promotional move of coupons to an HllSketch from either List, Set or Sparse.
   //called by CouponHashSet.couponUpdate()
   //called by CouponList.couponUpdate()
-  static final HllSketchImpl promoteHeapListOrSetToHll(final CouponList src) {
+  //called by CouponSparseList.couponUpdate()
+  static final HllSketchImpl promoteHeapListOrSetToHll(final AbstractCoupons src) {
     final HllArray tgtHllArr = HllArray.newHeapHll(src.lgConfigK, src.tgtHllType);
     final PairIterator srcItr = src.iterator();
     tgtHllArr.putKxQ0(1 << src.lgConfigK);
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.hll.HllUtil.EMPTY;
+import static org.apache.datasketches.hll.HllUtil.KEY_BITS_26;
+import static org.apache.datasketches.hll.HllUtil.KEY_MASK_26;
+import static org.apache.datasketches.hll.HllUtil.LG_MIN_SPARSE_BUF_SIZE;
+import static org.apache.datasketches.hll.HllUtil.RESIZE_DENOM;
+import static org.apache.datasketches.hll.HllUtil.RESIZE_NUMER;
+import static org.apache.datasketches.hll.HllUtil.VAL_BITS_6;
+import static org.apache.datasketches.hll.HllUtil.VAL_MASK_6;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_INT_ARR_START;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_PREINTS;
+import static org.apache.datasketches.hll.PreambleUtil.extractCompactFlag;
+import static org.apache.datasketches.hll.PreambleUtil.extractLgArr;
+import static org.apache.datasketches.hll.PreambleUtil.extractLgK;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseBufCount;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseStreamBytes;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseStreamCount;
+import static org.apache.datasketches.hll.PreambleUtil.extractTgtHllType;
+import static org.apache.datasketches.hll.ToByteArrayImpl.toSparseByteArray;
+
+import java.util.Arrays;
+
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * The SPARSE mode of a sketch configured for it, which replaces the SET mode. The coupons are
+ * kept in a stream sorted by key and value, where each coupon is encoded as a varint of the
+ * difference of its key from the previous key, together with its value. See {@link PreambleUtil}
+ * for the encoding. New coupons go into a small hash set buffer, which is merged into the stream
+ * when it is 3/4 full. The buffer may hold coupons that are also in the stream.
+ *
+ * <p>A sketch stays in this mode as long as its updatable image is no larger than the HLL array
+ * that replaces it, which holds several times as many coupons as the SET mode can.</p>
+ */
+class CouponSparseList extends AbstractCoupons {
+  int lgBufInts;
+  int[] bufIntArr;
+  int bufCount;
+  byte[] streamArr;
+  int streamCount;
+
+  /**
+   * New instance constructor.
+   * @param lgConfigK the configured Lg K
+   * @param tgtHllType the configured HLL target
+   */
+  CouponSparseList(final int lgConfigK, final TgtHllType tgtHllType) {
+    super(lgConfigK, tgtHllType, CurMode.SPARSE);
+    assert lgConfigK > 7;
+    lgBufInts = lgBufInts(lgConfigK);
+    bufIntArr = new int[1 << lgBufInts];
+    bufCount = 0;
+    streamArr = new byte[0];
+    streamCount = 0;
+  }
+
+  /**
+   * Copy As constructor, also used as the copy constructor.
+   * @param that another CouponSparseList
+   * @param tgtHllType the new target Hll type
+   */
+  CouponSparseList(final CouponSparseList that, final TgtHllType tgtHllType) {
+    super(that.lgConfigK, tgtHllType, CurMode.SPARSE);
+    lgBufInts = that.lgBufInts;
+    bufIntArr = that.bufIntArr.clone();
+    bufCount = that.bufCount;
+    streamArr = that.streamArr.clone();
+    streamCount = that.streamCount;
+  }
+
+  static final CouponSparseList heapifySparse(final Memory mem) {
+    final int lgConfigK = extractLgK(mem);
+    final TgtHllType tgtHllType = extractTgtHllType(mem);
+    final boolean compact = extractCompactFlag(mem);
+
+    final CouponSparseList list = new CouponSparseList(lgConfigK, tgtHllType);
+    list.lgBufInts = extractLgArr(mem);
+    list.bufIntArr = new int[1 << list.lgBufInts];
+    if (!compact) {
+      mem.getIntArray(SPARSE_INT_ARR_START, list.bufIntArr, 0, 1 << list.lgBufInts);
+      list.bufCount = extractSparseBufCount(mem);
+    }
+    list.streamArr = new byte[extractSparseStreamBytes(mem)];
+    mem.getByteArray(streamStart(list.lgBufInts, compact), list.streamArr, 0,
+        list.streamArr.length);
+    list.streamCount = extractSparseStreamCount(mem);
+    return list;
+  }
+
+  @Override
+  CouponSparseList copy() {
+    return new CouponSparseList(this, tgtHllType);
+  }
+
+  @Override
+  CouponSparseList copyAs(final TgtHllType tgtHllType) {
+    return new CouponSparseList(this, tgtHllType);
+  }
+
+  @Override
+  HllSketchImpl couponUpdate(final int coupon) {
+    final int index = find(bufIntArr, lgBufInts, coupon);
+    if (index >= 0) {
+      return this; //found duplicate in the buffer, ignore
+    }
+    bufIntArr[~index] = coupon; //found empty
+    bufCount++;
+    if ((RESIZE_DENOM * bufCount) > (RESIZE_NUMER * (1 << lgBufInts))) {
+      return mergeBuffer();
+    }
+    return this;
+  }
+
+  //Merges the buffer into the stream, or promotes to HLL if the stream would no longer fit.
+  private HllSketchImpl mergeBuffer() {
+    final int[] coupons = getCouponIntArr();
+    final byte[] stream = encode(coupons);
+    if (!fits(lgConfigK, tgtHllType, lgBufInts, stream.length)) {
+      return CouponList.promoteHeapListOrSetToHll(this);
+    }
+    streamArr = stream;
+    streamCount = coupons.length;
+    Arrays.fill(bufIntArr, EMPTY);
+    bufCount = 0;
+    return this;
+  }
+
+  @Override
+  int getCompactSerializationBytes() {
+    return SPARSE_INT_ARR_START + encodedBytes(getCouponIntArr());
+  }
+
+  @Override
+  int getCouponCount() {
+    return (bufCount == 0) ? streamCount : getCouponIntArr().length;
+  }
+
+  /**
+   * Returns the distinct coupons of the stream and the buffer, sorted by key and value.
+   * @return the distinct coupons of the stream and the buffer, sorted by key and value.
+   */
+  @Override
+  int[] getCouponIntArr() {
+    final int[] stream = decode(Memory.wrap(streamArr), 0, streamCount);
+    return (bufCount == 0) ? stream : merge(stream, bufIntArr, bufCount);
+  }
+
+  @Override
+  int getLgCouponArrInts() {
+    return lgBufInts;
+  }
+
+  @Override
+  int getMemDataStart() {
+    return SPARSE_INT_ARR_START;
+  }
+
+  @Override
+  Memory getMemory() {
+    return null;
+  }
+
+  @Override
+  int getPreInts() {
+    return SPARSE_PREINTS;
+  }
+
+  @Override
+  int getUpdatableSerializationBytes() {
+    return streamStart(lgBufInts, false) + streamArr.length;
+  }
+
+  @Override
+  WritableMemory getWritableMemory() {
+    return null;
+  }
+
+  @Override
+  boolean isCompact() {
+    return false;
+  }
+
+  @Override
+  boolean isEmpty() {
+    return (streamCount == 0) && (bufCount == 0);
+  }
+
+  @Override
+  boolean isMemory() {
+    return false;
+  }
+
+  @Override
+  boolean isOffHeap() {
+    return false;
+  }
+
+  @Override
+  boolean isSameResource(final Memory mem) {
+    return false;
+  }
+
+  @Override
+  PairIterator iterator() {
+    return new IntArrayPairIterator(getCouponIntArr(), lgConfigK);
+  }
+
+  @Override
+  void mergeTo(final HllSketch that) {
+    final int[] coupons = getCouponIntArr();
+    for (int i = 0; i < coupons.length; i++) {
+      that.couponUpdate(coupons[i]);
+    }
+  }
+
+  @Override
+  CouponList reset() {
+    return new CouponList(lgConfigK, tgtHllType, CurMode.LIST);
+  }
+
+  @Override
+  byte[] toCompactByteArray() {
+    final int[] coupons = getCouponIntArr();
+    return toSparseByteArray(this, null, 0, encode(coupons), coupons.length, true);
+  }
+
+  @Override
+  byte[] toUpdatableByteArray() {
+    return toSparseByteArray(this, bufIntArr, bufCount, streamArr, streamCount, false);
+  }
+
+  //Shared by the heap and direct SPARSE modes
+
+  static final int lgBufInts(final int lgConfigK) {
+    return Math.max(LG_MIN_SPARSE_BUF_SIZE, lgConfigK - 7);
+  }
+
+  static final int streamStart(final int lgBufInts, final boolean compact) {
+    return SPARSE_INT_ARR_START + (compact ? 0 : 4 << lgBufInts);
+  }
+
+  //Returns true if an updatable image with the given buffer and stream is no larger than the
+  // maximum updatable image of the HLL mode.
+  static final boolean fits(final int lgConfigK, final TgtHllType tgtHllType, final int lgBufInts,
+      final int streamBytes) {
+    return (streamStart(lgBufInts, false) + streamBytes)
+        <= HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
+  }
+
+  //Merges the bufCount coupons of the given buffer hash set into the given sorted, distinct
+  // coupons. Returns the sorted, distinct union.
+  static final int[] merge(final int[] sorted, final int[] buffer, final int bufCount) {
+    final int[] keys = new int[bufCount];
+    int cnt = 0;
+    for (int i = 0; i < buffer.length; i++) {
+      if (buffer[i] != EMPTY) { keys[cnt++] = sortKey(buffer[i]); }
+    }
+    Arrays.sort(keys);
+    final int[] out = new int[sorted.length + bufCount];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while ((i < sorted.length) && (j < bufCount)) {
+      final int a = sortKey(sorted[i]);
+      if (a < keys[j]) {
+        out[k++] = sorted[i++];
+      } else {
+        if (a == keys[j]) { i++; } //duplicate
+        out[k++] = fromSortKey(keys[j++]);
+      }
+    }
+    while (i < sorted.length) { out[k++] = sorted[i++]; }
+    while (j < bufCount) { out[k++] = fromSortKey(keys[j++]); }
+    return (k == out.length) ? out : Arrays.copyOf(out, k);
+  }
+
+  //Orders coupons by key and then by value, as a signed int.
+  private static int sortKey(final int coupon) {
+    return (((coupon & KEY_MASK_26) << VAL_BITS_6) | (coupon >>> KEY_BITS_26)) ^ Integer.MIN_VALUE;
+  }
+
+  private static int fromSortKey(final int sortKey) {
+    final int bits = sortKey ^ Integer.MIN_VALUE;
+    return ((bits & VAL_MASK_6) << KEY_BITS_26) | (bits >>> VAL_BITS_6);
+  }
+
+  static final int encodedBytes(final int[] coupons) {
+    int bytes = 0;
+    int prevKey = 0;
+    for (int i = 0; i < coupons.length; i++) {
+      final int key = coupons[i] & KEY_MASK_26;
+      final int value = coupons[i] >>> KEY_BITS_26;
+      bytes += varIntBytes(((key - prevKey) << 2) | Math.min(value - 1, 3));
+      if (value > 3) { bytes++; }
+      prevKey = key;
+    }
+    return bytes;
+  }
+
+  //The given coupons must be sorted by key and value
+  static final byte[] encode(final int[] coupons) {
+    final byte[] stream = new byte[encodedBytes(coupons)];
+    int pos = 0;
+    int prevKey = 0;
+    for (int i = 0; i < coupons.length; i++) {
+      final int key = coupons[i] & KEY_MASK_26;
+      final int value = coupons[i] >>> KEY_BITS_26;
+      int delta = ((key - prevKey) << 2) | Math.min(value - 1, 3);
+      while ((delta & ~0X7F) != 0) {
+        stream[pos++] = (byte) ((delta & 0X7F) | 0X80);
+        delta >>>= 7;
+      }
+      stream[pos++] = (byte) delta;
+      if (value > 3) { stream[pos++] = (byte) value; }
+      prevKey = key;
+    }
+    return stream;
+  }
+
+  static final int[] decode(final Memory mem, final long offset, final int count) {
+    final int[] coupons = new int[count];
+    long pos = offset;
+    int prevKey = 0;
+    for (int i = 0; i < count; i++) {
+      int delta = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = mem.getByte(pos++);
+        delta |= (b & 0X7F) << shift;
+        shift += 7;
+      } while ((b & 0X80) != 0);
+      final int key = prevKey + (delta >>> 2);
+      final int lowValue = delta & 3;
+      final int value = (lowValue < 3) ? lowValue + 1 : mem.getByte(pos++) & 0XFF;
+      coupons[i] = (value << KEY_BITS_26) | key;
+      prevKey = key;
+    }
+    return coupons;
+  }
+
+  private static int varIntBytes(final int v) {
+    return (v < (1 << 7)) ? 1 : (v < (1 << 14)) ? 2 : (v < (1 << 21)) ? 3 : 4;
+  }
+
+}
@@ -20,12 +20,13 @@
 package org.apache.datasketches.hll;
 
 /**
- * Represents the three fundamental modes of the HLL Sketch.
+ * Represents the three fundamental modes of the HLL Sketch, and the optional SPARSE mode that
+ * replaces the SET mode of a sketch configured for it.
  *
  * @author Lee Rhodes
  * @author Kevin Lang
  */
-enum CurMode { LIST, SET, HLL; //do not change the order.
+enum CurMode { LIST, SET, HLL, SPARSE; //do not change the order.
 
   public static final CurMode values[] = values();
 
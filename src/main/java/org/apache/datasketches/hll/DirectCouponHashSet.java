@@ -105,9 +105,13 @@ class DirectCouponHashSet extends DirectCouponList {
       if (lgCouponArrInts == (getLgConfigK() - 3)) {
         return true; // promote
       }
-      //TODO if direct, ask for more memory
+      //a memory smaller than the maximum is moved to one that holds the larger set
+      final WritableMemory newWmem = requestCapacity(wmem,
+          HASH_SET_INT_ARR_START + (8 << lgCouponArrInts),
+          HASH_SET_INT_ARR_START + (4 << lgCouponArrInts));
+      if (newWmem != wmem) { updateMemory(newWmem); }
+      growHashSet(wmem, lgCouponArrInts + 1);
       insertLgArr(wmem, ++lgCouponArrInts);
-      growHashSet(wmem, lgCouponArrInts);
     }
     return false;
   }
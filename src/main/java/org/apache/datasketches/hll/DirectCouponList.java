@@ -24,15 +24,20 @@ import static org.apache.datasketches.hll.HllUtil.LG_INIT_LIST_SIZE;
 import static org.apache.datasketches.hll.HllUtil.LG_INIT_SET_SIZE;
 import static org.apache.datasketches.hll.HllUtil.noWriteAccess;
 import static org.apache.datasketches.hll.PreambleUtil.EMPTY_FLAG_MASK;
+import static org.apache.datasketches.hll.PreambleUtil.HASH_SET_INT_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.HASH_SET_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.LIST_INT_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.LIST_PREINTS;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_FLAG_MASK;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.computeLgArr;
 import static org.apache.datasketches.hll.PreambleUtil.extractCompactFlag;
+import static org.apache.datasketches.hll.PreambleUtil.extractFlags;
 import static org.apache.datasketches.hll.PreambleUtil.extractInt;
 import static org.apache.datasketches.hll.PreambleUtil.extractLgArr;
 import static org.apache.datasketches.hll.PreambleUtil.extractListCount;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseFlag;
 import static org.apache.datasketches.hll.PreambleUtil.insertCurMin;
 import static org.apache.datasketches.hll.PreambleUtil.insertCurMode;
 import static org.apache.datasketches.hll.PreambleUtil.insertEmptyFlag;
@@ -51,6 +56,7 @@ import static org.apache.datasketches.hll.PreambleUtil.insertSerVer;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.SketchesStateException;
 import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.MemoryRequestServer;
 import org.apache.datasketches.memory.WritableMemory;
 
 /**
@@ -108,12 +114,12 @@ class DirectCouponList extends AbstractCoupons {
   }
 
   @Override //returns on-heap List
-  CouponList copy() {
+  AbstractCoupons copy() {
     return CouponList.heapifyList(mem);
   }
 
   @Override //returns on-heap List
-  CouponList copyAs(final TgtHllType tgtHllType) {
+  AbstractCoupons copyAs(final TgtHllType tgtHllType) {
     final CouponList clist = CouponList.heapifyList(mem);
     return new CouponList(clist, tgtHllType);
   }
@@ -133,6 +139,9 @@ class DirectCouponList extends AbstractCoupons {
           if (lgConfigK < 8) {
             return promoteListOrSetToHll(this);//oooFlag = false
           }
+          if (extractSparseFlag(mem)) {
+            return promoteListToSparse(this);
+          }
           return promoteListToSet(this); //oooFlag = true
         }
         return this;
@@ -159,6 +168,15 @@ class DirectCouponList extends AbstractCoupons {
     return null;
   }
 
+  //Returns a copy of the coupon array, which may have empty slots. Overridden by
+  // DirectCouponSparseList.
+  int[] copyCouponIntArr() {
+    final int couponArrInts = 1 << getLgCouponArrInts();
+    final int[] couponArr = new int[couponArrInts];
+    mem.getIntArray(getMemDataStart(), couponArr, 0, couponArrInts);
+    return couponArr;
+  }
+
   @Override
   int getLgCouponArrInts() {
     final int lgArr = extractLgArr(mem);
@@ -233,23 +251,52 @@ class DirectCouponList extends AbstractCoupons {
     }
     insertEmptyFlag(wmem, true);
     final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
-    wmem.clear(0, bytes);
+    wmem.clear(0, Math.min(bytes, wmem.getCapacity()));
 
     return DirectCouponList.newInstance(lgConfigK, tgtHllType, wmem);
   }
 
+  //only called by DirectCouponHashSet and DirectCouponSparseList
+  final void updateMemory(final WritableMemory newWmem) {
+    wmem = newWmem;
+    mem = newWmem;
+    memObj = wmem.getArray();
+    memAdd = wmem.getCumulativeOffset(0L);
+  }
+
+  //Returns the given memory if its capacity is at least requiredBytes. Otherwise requests larger
+  // memory from its MemoryRequestServer, copies the first copyBytes into it, clears the rest and
+  // returns it. The given memory is invalid after a move.
+  static final WritableMemory requestCapacity(final WritableMemory wmem, final long requiredBytes,
+      final long copyBytes) {
+    final long oldCapBytes = wmem.getCapacity();
+    if (requiredBytes <= oldCapBytes) { return wmem; }
+    final MemoryRequestServer svr = wmem.getMemoryRequestServer();
+    if (svr == null) {
+      throw new SketchesArgumentException("Given WritableMemory is not large enough: "
+          + oldCapBytes + " < " + requiredBytes + ", and it has no MemoryRequestServer.");
+    }
+    final WritableMemory newWmem = svr.request(requiredBytes);
+    wmem.copyTo(0, newWmem, 0, copyBytes);
+    newWmem.clear(copyBytes, newWmem.getCapacity() - copyBytes);
+    svr.requestClose(wmem, newWmem); //old wmem is now invalid
+    return newWmem;
+  }
+
   //Called by DirectCouponList.couponUpdate()
   static final DirectCouponHashSet promoteListToSet(final DirectCouponList src) {
-    final WritableMemory wmem = src.wmem;
-
     //get the data from the current memory
-    HllUtil.checkPreamble(wmem); //sanity check
+    HllUtil.checkPreamble(src.wmem); //sanity check
     final int lgConfigK = src.lgConfigK;
     final TgtHllType tgtHllType = src.tgtHllType;
     final int srcOffset = LIST_INT_ARR_START;
     final int couponArrInts = 1 << src.getLgCouponArrInts();
     final int[] couponArr = new int[couponArrInts]; //buffer
-    wmem.getIntArray(srcOffset, couponArr, 0, couponArrInts);
+    src.wmem.getIntArray(srcOffset, couponArr, 0, couponArrInts);
+
+    //a memory smaller than the maximum is moved to one that holds the initial set
+    final WritableMemory wmem = requestCapacity(src.wmem,
+        HASH_SET_INT_ARR_START + (4 << LG_INIT_SET_SIZE), LIST_INT_ARR_START);
 
     //rewrite the memory image as a SET:
     insertPreInts(wmem, HASH_SET_PREINTS);
@@ -258,12 +305,12 @@ class DirectCouponList extends AbstractCoupons {
     insertCurMin(wmem, 0); //was list count
     insertCurMode(wmem, CurMode.SET);
     //tgtHllType should already be ok
-    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
+    final long maxBytes = Math.min(wmem.getCapacity(),
+        HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType));
     wmem.clear(LIST_INT_ARR_START, maxBytes - LIST_INT_ARR_START); //clear all past first 8
 
     //create the tgt
-    final DirectCouponHashSet dchSet
-        = new DirectCouponHashSet(src.lgConfigK, src.tgtHllType, src.wmem);
+    final DirectCouponHashSet dchSet = new DirectCouponHashSet(lgConfigK, tgtHllType, wmem);
 
     //now reload the coupon data into the set
     for (int i = 0; i < couponArrInts; i++) {
@@ -275,30 +322,62 @@ class DirectCouponList extends AbstractCoupons {
     return dchSet;
   }
 
-  static final DirectHllArray promoteListOrSetToHll(final DirectCouponList src) {
-    final WritableMemory wmem = src.wmem;
+  //Called by DirectCouponList.couponUpdate()
+  static final DirectCouponSparseList promoteListToSparse(final DirectCouponList src) {
+    //get the data from the current memory
+    HllUtil.checkPreamble(src.wmem); //sanity check
+    final int lgConfigK = src.lgConfigK;
+    final TgtHllType tgtHllType = src.tgtHllType;
+    final int[] couponArr = src.copyCouponIntArr();
+
+    //a memory smaller than the maximum is moved to one that holds the empty buffer
+    final int lgBufInts = CouponSparseList.lgBufInts(lgConfigK);
+    final int bufEnd = CouponSparseList.streamStart(lgBufInts, false);
+    final WritableMemory wmem = requestCapacity(src.wmem, bufEnd, LIST_INT_ARR_START);
+
+    //rewrite the memory image as SPARSE:
+    insertPreInts(wmem, SPARSE_PREINTS);
+    //SerVer, FamID, LgK, Flags should be OK
+    insertLgArr(wmem, lgBufInts);
+    insertCurMin(wmem, 0); //was list count
+    insertCurMode(wmem, CurMode.SPARSE);
+    //tgtHllType should already be ok
+    wmem.clear(LIST_INT_ARR_START, bufEnd - LIST_INT_ARR_START); //counts and buffer
 
-    //get the data from the current list or set memory
-    HllUtil.checkPreamble(wmem); //sanity check
+    //create the tgt and reload the coupon data into its buffer
+    final DirectCouponSparseList dsList = new DirectCouponSparseList(lgConfigK, tgtHllType, wmem);
+    for (int i = 0; i < couponArr.length; i++) {
+      final int coupon = couponArr[i];
+      if (coupon != EMPTY) {
+        dsList.couponUpdate(coupon);
+      }
+    }
+    return dsList;
+  }
+
+  static final DirectHllArray promoteListOrSetToHll(final DirectCouponList src) {
+    //get the data from the current list, set or sparse memory
+    HllUtil.checkPreamble(src.wmem); //sanity check
     final int lgConfigK = src.lgConfigK;
     final TgtHllType tgtHllType = src.tgtHllType;
-    final int srcMemDataStart = src.getMemDataStart();
     final double est = src.getEstimate();
-    final int couponArrInts = 1 << src.getLgCouponArrInts();
-    final int[] couponArr = new int[couponArrInts]; //buffer
-    wmem.getIntArray(srcMemDataStart, couponArr, 0, couponArrInts);
+    final int[] couponArr = src.copyCouponIntArr();
+    final int couponArrInts = couponArr.length;
+
+    //a memory smaller than the maximum is moved to one that holds the full HLL
+    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
+    final WritableMemory wmem = requestCapacity(src.wmem, maxBytes, LIST_INT_ARR_START);
 
     //rewrite the memory image as an HLL
     insertPreInts(wmem, HLL_PREINTS);
     //SerVer, FamID, LgK should be OK
     insertLgArr(wmem, 0); //no Aux possible yet
-    insertFlags(wmem, 0); //clear all flags
+    insertFlags(wmem, extractFlags(wmem) & SPARSE_FLAG_MASK); //clear all flags but SPARSE
     insertCurMin(wmem, 0);
     insertCurMode(wmem, CurMode.HLL);
     //tgtHllType should already be set
     //we update HipAccum at the end
     //clear KxQ0, KxQ1, NumAtCurMin, AuxCount, hllArray, auxArr
-    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
     wmem.clear(LIST_INT_ARR_START, maxBytes - LIST_INT_ARR_START); //clear all past first 8
     insertNumAtCurMin(wmem, 1 << lgConfigK); //set numAtCurMin
     insertKxQ0(wmem, 1 << lgConfigK);
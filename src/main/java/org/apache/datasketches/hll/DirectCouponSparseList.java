@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.hll.HllUtil.EMPTY;
+import static org.apache.datasketches.hll.HllUtil.KEY_MASK_26;
+import static org.apache.datasketches.hll.HllUtil.RESIZE_DENOM;
+import static org.apache.datasketches.hll.HllUtil.RESIZE_NUMER;
+import static org.apache.datasketches.hll.HllUtil.noWriteAccess;
+import static org.apache.datasketches.hll.PreambleUtil.LG_K_BYTE;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_INT_ARR_START;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_PREINTS;
+import static org.apache.datasketches.hll.PreambleUtil.extractInt;
+import static org.apache.datasketches.hll.PreambleUtil.extractLgArr;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseBufCount;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseStreamBytes;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseStreamCount;
+import static org.apache.datasketches.hll.PreambleUtil.insertInt;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseBufCount;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseStreamBytes;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseStreamCount;
+import static org.apache.datasketches.hll.ToByteArrayImpl.toSparseByteArray;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * The off-heap form of {@link CouponSparseList}. The buffer is a hash set in the Memory, and the
+ * stream follows it. A merge of the buffer rewrites the stream in place.
+ */
+class DirectCouponSparseList extends DirectCouponList {
+
+  //Constructs this sketch with data.
+  DirectCouponSparseList(final int lgConfigK, final TgtHllType tgtHllType,
+      final WritableMemory wmem) {
+    super(lgConfigK, tgtHllType, CurMode.SPARSE, wmem);
+    assert wmem.getByte(LG_K_BYTE) > 7;
+  }
+
+  //Constructs this sketch with read-only data, may be compact.
+  DirectCouponSparseList(final int lgConfigK, final TgtHllType tgtHllType,
+      final Memory mem) {
+    super(lgConfigK, tgtHllType, CurMode.SPARSE, mem);
+    assert mem.getByte(LG_K_BYTE) > 7;
+  }
+
+  @Override //returns on-heap Sparse
+  CouponSparseList copy() {
+    return CouponSparseList.heapifySparse(mem);
+  }
+
+  @Override //returns on-heap Sparse
+  CouponSparseList copyAs(final TgtHllType tgtHllType) {
+    return new CouponSparseList(CouponSparseList.heapifySparse(mem), tgtHllType);
+  }
+
+  @Override
+  int[] copyCouponIntArr() {
+    final int lgBufInts = getLgCouponArrInts();
+    final int[] stream = CouponSparseList.decode(mem,
+        CouponSparseList.streamStart(lgBufInts, compact), extractSparseStreamCount(mem));
+    final int bufCount = getBufCount();
+    if (bufCount == 0) { return stream; }
+    final int[] buffer = new int[1 << lgBufInts];
+    mem.getIntArray(SPARSE_INT_ARR_START, buffer, 0, buffer.length);
+    return CouponSparseList.merge(stream, buffer, bufCount);
+  }
+
+  @Override
+  HllSketchImpl couponUpdate(final int coupon) {
+    if (wmem == null) { noWriteAccess(); }
+    final int lgBufInts = getLgCouponArrInts();
+    final int index = find(mem, lgBufInts, coupon);
+    if (index >= 0) {
+      return this; //found duplicate in the buffer, ignore
+    }
+    insertInt(wmem, SPARSE_INT_ARR_START + (~index << 2), coupon);
+    final int bufCount = getBufCount() + 1;
+    insertSparseBufCount(wmem, bufCount);
+    if ((RESIZE_DENOM * bufCount) > (RESIZE_NUMER * (1 << lgBufInts))) {
+      return mergeBuffer(lgBufInts);
+    }
+    return this;
+  }
+
+  //Merges the buffer into the stream, or promotes to HLL if the stream would no longer fit.
+  private HllSketchImpl mergeBuffer(final int lgBufInts) {
+    final int[] coupons = copyCouponIntArr();
+    final byte[] stream = CouponSparseList.encode(coupons);
+    if (!CouponSparseList.fits(lgConfigK, tgtHllType, lgBufInts, stream.length)) {
+      return promoteListOrSetToHll(this);
+    }
+    //a memory smaller than the maximum is moved to one that holds the longer stream
+    final int streamStart = CouponSparseList.streamStart(lgBufInts, false);
+    final WritableMemory newWmem =
+        requestCapacity(wmem, streamStart + stream.length, SPARSE_INT_ARR_START);
+    if (newWmem != wmem) { updateMemory(newWmem); }
+    wmem.clear(SPARSE_INT_ARR_START, 4 << lgBufInts);
+    wmem.putByteArray(streamStart, stream, 0, stream.length);
+    insertSparseStreamCount(wmem, coupons.length);
+    insertSparseStreamBytes(wmem, stream.length);
+    insertSparseBufCount(wmem, 0);
+    return this;
+  }
+
+  @Override
+  int getCompactSerializationBytes() {
+    return SPARSE_INT_ARR_START + CouponSparseList.encodedBytes(copyCouponIntArr());
+  }
+
+  @Override
+  int getCouponCount() {
+    return (getBufCount() == 0) ? extractSparseStreamCount(mem) : copyCouponIntArr().length;
+  }
+
+  @Override
+  int getLgCouponArrInts() {
+    return extractLgArr(mem);
+  }
+
+  @Override
+  int getMemDataStart() {
+    return SPARSE_INT_ARR_START;
+  }
+
+  @Override
+  int getPreInts() {
+    return SPARSE_PREINTS;
+  }
+
+  @Override
+  int getUpdatableSerializationBytes() {
+    final int streamBytes = compact
+        ? CouponSparseList.encodedBytes(copyCouponIntArr())
+        : extractSparseStreamBytes(mem);
+    return CouponSparseList.streamStart(getLgCouponArrInts(), false) + streamBytes;
+  }
+
+  @Override
+  boolean isEmpty() {
+    return (extractSparseStreamCount(mem) == 0) && (getBufCount() == 0);
+  }
+
+  @Override
+  PairIterator iterator() {
+    return new IntArrayPairIterator(copyCouponIntArr(), lgConfigK);
+  }
+
+  @Override
+  void mergeTo(final HllSketch that) {
+    final int[] coupons = copyCouponIntArr();
+    for (int i = 0; i < coupons.length; i++) {
+      that.couponUpdate(coupons[i]);
+    }
+  }
+
+  @Override
+  byte[] toCompactByteArray() {
+    final int[] coupons = copyCouponIntArr();
+    return toSparseByteArray(this, null, 0, CouponSparseList.encode(coupons), coupons.length,
+        true);
+  }
+
+  @Override
+  byte[] toUpdatableByteArray() {
+    final int lgBufInts = getLgCouponArrInts();
+    final int[] buffer = new int[1 << lgBufInts];
+    if (compact) { //the buffer is empty
+      final int[] coupons = copyCouponIntArr();
+      return toSparseByteArray(this, buffer, 0, CouponSparseList.encode(coupons), coupons.length,
+          false);
+    }
+    mem.getIntArray(SPARSE_INT_ARR_START, buffer, 0, buffer.length);
+    final byte[] stream = new byte[extractSparseStreamBytes(mem)];
+    mem.getByteArray(CouponSparseList.streamStart(lgBufInts, false), stream, 0, stream.length);
+    return toSparseByteArray(this, buffer, getBufCount(), stream, extractSparseStreamCount(mem),
+        false);
+  }
+
+  private int getBufCount() {
+    return compact ? 0 : extractSparseBufCount(mem);
+  }
+
+  //Searches the buffer hash set (embedded in Memory) for an empty slot or a duplicate.
+  //See DirectCouponHashSet.find().
+  private static final int find(final Memory mem, final int lgArr, final int coupon) {
+    final int arrMask = (1 << lgArr) - 1;
+    int probe = coupon & arrMask;
+    final int loopIndex = probe;
+    do {
+      final int couponAtIndex = extractInt(mem, SPARSE_INT_ARR_START + (probe << 2));
+      if (couponAtIndex == EMPTY) { return ~probe; } //empty
+      else if (coupon == couponAtIndex) { return probe; } //duplicate
+      final int stride = ((coupon & KEY_MASK_26) >>> lgArr) | 1;
+      probe = (probe + stride) & arrMask;
+    } while (probe != loopIndex);
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+}
@@ -19,6 +19,7 @@
 
 package org.apache.datasketches.hll;
 
+import static org.apache.datasketches.hll.HllUtil.noWriteAccess;
 import static org.apache.datasketches.hll.PreambleUtil.CUR_MIN_COUNT_INT;
 import static org.apache.datasketches.hll.PreambleUtil.HIP_ACCUM_DOUBLE;
 import static org.apache.datasketches.hll.PreambleUtil.extractCompactFlag;
@@ -89,6 +90,12 @@ abstract class DirectHllArray extends AbstractHllArray {
     memAdd = wmem.getCumulativeOffset(0L);
   }
 
+  @Override
+  HllSketchImpl couponUpdate(final int[] coupons, final int count) {
+    if (wmem == null) { noWriteAccess(); }
+    return super.couponUpdate(coupons, count);
+  }
+
   @Override
   void addToHipAccum(final double delta) {
     checkReadOnly(wmem);
@@ -205,8 +212,11 @@ abstract class DirectHllArray extends AbstractHllArray {
         insertAuxCount(wmem, auxHashMap.getAuxCount());
         this.auxHashMap = new DirectAuxHashMap(this, false);
       }
-    } else { //DirectAuxHashMap
+    } else { //DirectAuxHashMap or null
       assert !compact; //must not be compact
+      if ((auxHashMap == null) && (wmem != null)) {
+        insertAuxCount(wmem, 0); //else a later wrap would find the stale exceptions
+      }
       this.auxHashMap = auxHashMap; //In case of read-only this works.
     }
   }
@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.Util.LS;
+import static org.apache.datasketches.hll.HllUtil.LG_INIT_LIST_SIZE;
+import static org.apache.datasketches.hll.PreambleUtil.LIST_INT_ARR_START;
+import static org.apache.datasketches.hll.PreambleUtil.insertHasher;
+
+import java.util.Arrays;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesStateException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.MemoryRequestServer;
+import org.apache.datasketches.memory.WritableDirectHandle;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * An off-heap arena for large populations of small, updatable HLL sketches of one
+ * configuration, such as one sketch per key of a high cardinality dimension.
+ *
+ * <p>A direct HllSketch normally needs memory of
+ * {@link HllSketch#getMaxUpdatableSerializationBytes(int, TgtHllType)} from the start, although
+ * most sketches of a large population never leave the LIST or SET mode. This arena packs the
+ * sketch images into large off-heap slabs instead, where each image occupies a block of the
+ * smallest size class that holds its current mode: 40 bytes for a new LIST, a block per
+ * hash set size for the SET mode and a full size block only for the HLL mode. Freed blocks are
+ * kept in a free list per size class for reuse. When a sketch is promoted, or its hash set or
+ * HLL_4 exception table grows, its image is moved into a block of the larger size class, and the
+ * old block is returned to its free list.</p>
+ *
+ * <p>Sketches are identified by <i>handles</i>, which are plain longs. Since the image of a
+ * sketch moves as it grows and when the arena is compacted, a handle is not a memory offset but
+ * an index into a table of block locations, so it remains valid until the sketch is freed.
+ * The handles of freed sketches are reused.</p>
+ *
+ * <p>Nothing of a sketch remains on the java heap between calls other than its entry in the
+ * location table. Each call wraps the image in a transient HllSketch, so large batches should
+ * be presented with {@link #batchUpdate(long, long[], int, int)}.
+ * {@link #compact()} slides the live images together to release slabs emptied by freed
+ * sketches.</p>
+ *
+ * <p>This class is not thread-safe. The off-heap slabs are released by {@link #close()}.</p>
+ */
+public final class HllArena implements AutoCloseable {
+  /**
+   * The default size of an off-heap slab: 16MB.
+   */
+  public static final int DEFAULT_SLAB_BYTES = 1 << 24;
+  private static final int ALIGN_MASK = 7; //blocks are long aligned
+  private static final int LIST_BYTES = LIST_INT_ARR_START + (4 << LG_INIT_LIST_SIZE);
+  private static final long FREE = -1L;
+
+  private final int lgConfigK;
+  private final TgtHllType tgtHllType;
+  private final Hasher hasher;
+  private final int slabBytes;
+  private final MemoryRequestServer server = new ArenaServer();
+
+  //slabs, filled in order; the last one is the current bump allocation target
+  private WritableDirectHandle[] slabHandles = new WritableDirectHandle[4];
+  private WritableMemory[] slabs = new WritableMemory[4];
+  private int numSlabs;
+  private long slabUsed; //bytes bump allocated from the last slab
+
+  //size classes in the order of first request, each with a stack of free block locations
+  private int[] classBytes = new int[8];
+  private long[][] freeBlocks = new long[8][];
+  private int[] numFree = new int[8];
+  private int numClasses;
+
+  //per handle: the location (slab << 32 | offset) of its block, or FREE, and its size class
+  private long[] locations = new long[1024];
+  private byte[] blockClass = new byte[1024];
+  private int numHandles;
+  private int[] freeHandles = new int[64];
+  private int numFreeHandles;
+
+  private long usedBytes;
+  private long current = FREE; //the handle being updated, which a memory request moves
+  private long pending = FREE; //the location of the block returned by the last memory request
+  private int pendingClass;
+  private boolean closed;
+
+  /**
+   * Constructs an arena for HLL sketches of the given configuration with the default hash
+   * function and slab size.
+   * @param lgConfigK The Log2 of K for the sketches. This value must be between 4 and 21
+   * inclusively.
+   * @param tgtHllType the type of the sketches.
+   */
+  public HllArena(final int lgConfigK, final TgtHllType tgtHllType) {
+    this(lgConfigK, tgtHllType, Hasher.MURMUR3, DEFAULT_SLAB_BYTES);
+  }
+
+  /**
+   * Constructs an arena for HLL sketches of the given configuration.
+   * @param lgConfigK The Log2 of K for the sketches. This value must be between 4 and 21
+   * inclusively.
+   * @param tgtHllType the type of the sketches.
+   * @param hasher the hash function of the sketches.
+   * @param slabBytes the size of the off-heap slabs to allocate. It must be at least
+   * {@link HllSketch#getMaxUpdatableSerializationBytes(int, TgtHllType)}.
+   */
+  public HllArena(final int lgConfigK, final TgtHllType tgtHllType, final Hasher hasher,
+      final int slabBytes) {
+    HllUtil.checkLgK(lgConfigK);
+    if ((tgtHllType == null) || (hasher == null)) {
+      throw new SketchesArgumentException("TgtHllType and Hasher must not be null.");
+    }
+    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
+    if (slabBytes < maxBytes) {
+      throw new SketchesArgumentException("slabBytes must be at least " + maxBytes + ": "
+          + slabBytes);
+    }
+    this.lgConfigK = lgConfigK;
+    this.tgtHllType = tgtHllType;
+    this.hasher = hasher;
+    this.slabBytes = slabBytes;
+  }
+
+  /**
+   * Creates a new, empty sketch in this arena.
+   * @return the handle of the new sketch
+   */
+  public long newSketch() {
+    checkOpen();
+    final int handle;
+    if (numFreeHandles > 0) {
+      handle = freeHandles[--numFreeHandles];
+    } else {
+      if (numHandles == Integer.MAX_VALUE) {
+        throw new SketchesStateException("Too many sketches in this arena.");
+      }
+      if (numHandles == locations.length) {
+        final int newLen = (int) Math.min(Integer.MAX_VALUE, 2L * numHandles);
+        locations = Arrays.copyOf(locations, newLen);
+        blockClass = Arrays.copyOf(blockClass, newLen);
+      }
+      handle = numHandles++;
+    }
+    final int cls = sizeClass(LIST_BYTES);
+    final long loc = allocate(cls);
+    locations[handle] = loc;
+    blockClass[handle] = (byte) cls;
+    final WritableMemory wmem = block(loc, cls);
+    wmem.clear();
+    DirectCouponList.newInstance(lgConfigK, tgtHllType, wmem);
+    insertHasher(wmem, hasher);
+    return handle;
+  }
+
+  /**
+   * Frees the sketch of the given handle. Its block and its handle are reused by later
+   * sketches.
+   * @param handle the handle of a sketch of this arena
+   */
+  public void free(final long handle) {
+    checkHandle(handle);
+    final int h = (int) handle;
+    release(locations[h], blockClass[h]);
+    locations[h] = FREE;
+    if (numFreeHandles == freeHandles.length) {
+      freeHandles = Arrays.copyOf(freeHandles, 2 * numFreeHandles);
+    }
+    freeHandles[numFreeHandles++] = h;
+  }
+
+  /**
+   * Present the given long as a potential unique item to the sketch of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @param datum The given long datum.
+   * @see HllSketch#update(long)
+   */
+  public void update(final long handle, final long datum) {
+    final HllSketch sketch = writableSketch(handle);
+    try {
+      sketch.update(datum);
+    } finally {
+      current = FREE;
+    }
+  }
+
+  /**
+   * Present the given double as a potential unique item to the sketch of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @param datum The given double datum.
+   * @see HllSketch#update(double)
+   */
+  public void update(final long handle, final double datum) {
+    final HllSketch sketch = writableSketch(handle);
+    try {
+      sketch.update(datum);
+    } finally {
+      current = FREE;
+    }
+  }
+
+  /**
+   * Present the given String as a potential unique item to the sketch of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @param datum The given String.
+   * @see HllSketch#update(String)
+   */
+  public void update(final long handle, final String datum) {
+    final HllSketch sketch = writableSketch(handle);
+    try {
+      sketch.update(datum);
+    } finally {
+      current = FREE;
+    }
+  }
+
+  /**
+   * Present the given byte array as a potential unique item to the sketch of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @param data The given byte array.
+   * @see HllSketch#update(byte[])
+   */
+  public void update(final long handle, final byte[] data) {
+    final HllSketch sketch = writableSketch(handle);
+    try {
+      sketch.update(data);
+    } finally {
+      current = FREE;
+    }
+  }
+
+  /**
+   * Present each long in the given range of the array as a potential unique item to the sketch
+   * of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @param data The given array of long datums.
+   * @param offset the index of the first datum in the array
+   * @param length the number of datums to present to the sketch
+   * @see HllSketch#batchUpdate(long[], int, int)
+   */
+  public void batchUpdate(final long handle, final long[] data, final int offset,
+      final int length) {
+    final HllSketch sketch = writableSketch(handle);
+    try {
+      sketch.batchUpdate(data, offset, length);
+    } finally {
+      current = FREE;
+    }
+  }
+
+  /**
+   * Returns a read-only HllSketch that wraps the image of the sketch of the given handle, for
+   * queries, serialization and unions. It is only valid until the next call to this arena that
+   * updates, creates or frees a sketch, or compacts or closes the arena.
+   * @param handle the handle of a sketch of this arena
+   * @return a read-only HllSketch
+   */
+  public HllSketch wrap(final long handle) {
+    checkHandle(handle);
+    final int h = (int) handle;
+    return HllSketch.wrap(block(locations[h], blockClass[h]));
+  }
+
+  /**
+   * Returns the cardinality estimate of the sketch of the given handle.
+   * @param handle the handle of a sketch of this arena
+   * @return the cardinality estimate
+   */
+  public double getEstimate(final long handle) {
+    return wrap(handle).getEstimate();
+  }
+
+  /**
+   * Moves the images of the live sketches towards the start of the arena, in their current
+   * order, and releases the slabs that are left empty. This clears the free lists. The handles
+   * remain valid.
+   */
+  public void compact() {
+    checkOpen();
+    //group the live handles by slab, then order each group by offset
+    final int[] slabStart = new int[numSlabs + 1];
+    int live = 0;
+    for (int h = 0; h < numHandles; h++) {
+      if (locations[h] != FREE) {
+        slabStart[(int) (locations[h] >>> 32) + 1]++;
+        live++;
+      }
+    }
+    for (int s = 0; s < numSlabs; s++) { slabStart[s + 1] += slabStart[s]; }
+    final long[] order = new long[live]; //offset << 32 | handle
+    final int[] fill = Arrays.copyOf(slabStart, numSlabs);
+    for (int h = 0; h < numHandles; h++) {
+      final long loc = locations[h];
+      if (loc != FREE) {
+        order[fill[(int) (loc >>> 32)]++] = ((loc & 0XFFFF_FFFFL) << 32) | h;
+      }
+    }
+    for (int s = 0; s < numSlabs; s++) { Arrays.sort(order, slabStart[s], slabStart[s + 1]); }
+
+    //slide each block down to the fill cursor, which never passes the block being moved
+    byte[] buffer = new byte[0];
+    int dstSlab = 0;
+    long dstOffset = 0;
+    for (int s = 0; s < numSlabs; s++) {
+      for (int i = slabStart[s]; i < slabStart[s + 1]; i++) {
+        final int h = (int) order[i];
+        final long srcOffset = order[i] >>> 32;
+        final int bytes = classBytes[blockClass[h]];
+        while ((dstOffset + bytes) > slabs[dstSlab].getCapacity()) {
+          dstSlab++;
+          dstOffset = 0;
+        }
+        if ((dstSlab != s) || (dstOffset + bytes) <= srcOffset) {
+          slabs[s].copyTo(srcOffset, slabs[dstSlab], dstOffset, bytes);
+        } else if (dstOffset != srcOffset) { //overlapping
+          if (buffer.length < bytes) { buffer = new byte[bytes]; }
+          slabs[s].getByteArray(srcOffset, buffer, 0, bytes);
+          slabs[dstSlab].putByteArray(dstOffset, buffer, 0, bytes);
+        }
+        locations[h] = ((long) dstSlab << 32) | dstOffset;
+        dstOffset += bytes;
+      }
+    }
+    final int keep = (live == 0) ? 0 : dstSlab + 1;
+    for (int s = keep; s < numSlabs; s++) {
+      slabHandles[s].close();
+      slabHandles[s] = null;
+      slabs[s] = null;
+    }
+    numSlabs = keep;
+    slabUsed = dstOffset;
+    Arrays.fill(numFree, 0);
+  }
+
+  /**
+   * Releases all off-heap slabs. The handles and any wrapped sketches are invalid afterwards.
+   */
+  @Override
+  public void close() {
+    if (closed) { return; }
+    closed = true;
+    for (int s = 0; s < numSlabs; s++) {
+      slabHandles[s].close();
+      slabHandles[s] = null;
+      slabs[s] = null;
+    }
+    numSlabs = 0;
+  }
+
+  /**
+   * Returns true if this arena has been closed.
+   * @return true if this arena has been closed.
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Gets the configured Log2 of K of the sketches of this arena.
+   * @return the configured Log2 of K
+   */
+  public int getLgConfigK() {
+    return lgConfigK;
+  }
+
+  /**
+   * Gets the type of the sketches of this arena.
+   * @return the type of the sketches
+   */
+  public TgtHllType getTgtHllType() {
+    return tgtHllType;
+  }
+
+  /**
+   * Returns the number of live sketches in this arena.
+   * @return the number of live sketches
+   */
+  public int getNumSketches() {
+    return numHandles - numFreeHandles;
+  }
+
+  /**
+   * Returns the number of bytes of the blocks of the live sketches.
+   * @return the number of bytes in use
+   */
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Returns the number of off-heap bytes allocated for slabs.
+   * @return the number of bytes allocated
+   */
+  public long getAllocatedBytes() {
+    long bytes = 0;
+    for (int s = 0; s < numSlabs; s++) { bytes += slabs[s].getCapacity(); }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### HLL ARENA SUMMARY: ").append(LS);
+    sb.append("  Log Config K   : ").append(lgConfigK).append(LS);
+    sb.append("  Hll Target     : ").append(tgtHllType).append(LS);
+    sb.append("  Hasher         : ").append(hasher.getName()).append(LS);
+    sb.append("  Sketches       : ").append(getNumSketches()).append(LS);
+    sb.append("  Slabs          : ").append(numSlabs).append(LS);
+    sb.append("  Used Bytes     : ").append(usedBytes).append(LS);
+    sb.append("  Allocated Bytes: ").append(getAllocatedBytes()).append(LS);
+    sb.append("  Size Classes   : ")
+      .append(Arrays.toString(Arrays.copyOf(classBytes, numClasses))).append(LS);
+    return sb.toString();
+  }
+
+  //restricted
+
+  private HllSketch writableSketch(final long handle) {
+    checkHandle(handle);
+    final int h = (int) handle;
+    current = h;
+    return HllSketch.writableWrapGrowable(block(locations[h], blockClass[h]), false);
+  }
+
+  private WritableMemory block(final long loc, final int cls) {
+    return slabs[(int) (loc >>> 32)].writableRegion(loc & 0XFFFF_FFFFL, classBytes[cls]);
+  }
+
+  //returns the size class of the given number of bytes rounded up to a multiple of 8
+  private int sizeClass(final long reqBytes) {
+    final int bytes = (int) ((reqBytes + ALIGN_MASK) & ~ALIGN_MASK);
+    for (int c = 0; c < numClasses; c++) {
+      if (classBytes[c] == bytes) { return c; }
+    }
+    if (numClasses == Byte.MAX_VALUE) {
+      throw new SketchesStateException("Too many size classes.");
+    }
+    if (numClasses == classBytes.length) {
+      classBytes = Arrays.copyOf(classBytes, 2 * numClasses);
+      freeBlocks = Arrays.copyOf(freeBlocks, 2 * numClasses);
+      numFree = Arrays.copyOf(numFree, 2 * numClasses);
+    }
+    classBytes[numClasses] = bytes;
+    freeBlocks[numClasses] = new long[16];
+    return numClasses++;
+  }
+
+  private long allocate(final int cls) {
+    final int bytes = classBytes[cls];
+    usedBytes += bytes;
+    if (numFree[cls] > 0) {
+      return freeBlocks[cls][--numFree[cls]];
+    }
+    if ((numSlabs == 0) || ((slabUsed + bytes) > slabs[numSlabs - 1].getCapacity())) {
+      if (numSlabs == slabs.length) {
+        slabs = Arrays.copyOf(slabs, 2 * numSlabs);
+        slabHandles = Arrays.copyOf(slabHandles, 2 * numSlabs);
+      }
+      //an HLL_4 exception table may outgrow the maximum size, which then gets its own slab
+      final WritableDirectHandle slabHandle =
+          WritableMemory.allocateDirect(Math.max(slabBytes, bytes), server);
+      slabHandles[numSlabs] = slabHandle;
+      slabs[numSlabs++] = slabHandle.get();
+      slabUsed = 0;
+    }
+    final long loc = ((long) (numSlabs - 1) << 32) | slabUsed;
+    slabUsed += bytes;
+    return loc;
+  }
+
+  private void release(final long loc, final int cls) {
+    usedBytes -= classBytes[cls];
+    if (numFree[cls] == freeBlocks[cls].length) {
+      freeBlocks[cls] = Arrays.copyOf(freeBlocks[cls], 2 * numFree[cls]);
+    }
+    freeBlocks[cls][numFree[cls]++] = loc;
+  }
+
+  private void checkHandle(final long handle) {
+    checkOpen();
+    if ((handle < 0) || (handle >= numHandles) || (locations[(int) handle] == FREE)) {
+      throw new SketchesArgumentException("Invalid sketch handle: " + handle);
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new SketchesStateException("This HllArena is closed.");
+    }
+  }
+
+  /**
+   * Serves the memory requests of the sketch being updated, which grows out of its block, from
+   * the arena. The slabs are allocated with this server, so all blocks wrapped from them carry it.
+   */
+  private final class ArenaServer implements MemoryRequestServer {
+
+    @Override
+    public WritableMemory request(final long capacityBytes) {
+      if (current == FREE) {
+        throw new SketchesStateException("Memory request outside of an HllArena update.");
+      }
+      pendingClass = sizeClass(capacityBytes);
+      pending = allocate(pendingClass);
+      return block(pending, pendingClass);
+    }
+
+    @Override
+    public void requestClose(final WritableMemory memToClose, final WritableMemory newMemory) {
+      final int h = (int) current;
+      assert memToClose.isSameResource(block(locations[h], blockClass[h]));
+      release(locations[h], blockClass[h]);
+      locations[h] = pending;
+      blockClass[h] = (byte) pendingClass;
+      pending = FREE;
+    }
+  }
+
+}
@@ -25,10 +25,15 @@ import static org.apache.datasketches.hll.HllUtil.LG_AUX_ARR_INTS;
 import static org.apache.datasketches.hll.HllUtil.checkPreamble;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.extractCompactFlag;
+import static org.apache.datasketches.hll.PreambleUtil.extractHasher;
 import static org.apache.datasketches.hll.PreambleUtil.extractLgK;
+import static org.apache.datasketches.hll.PreambleUtil.extractSparseFlag;
 import static org.apache.datasketches.hll.PreambleUtil.extractTgtHllType;
+import static org.apache.datasketches.hll.PreambleUtil.insertHasher;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseFlag;
 
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -61,6 +66,11 @@ import org.apache.datasketches.memory.WritableMemory;
  * to and from off-heap memory-mapped files, for example, and eliminates big garbage collection
  * delays.
  *
+ * <p>A sketch with <i>lgConfigK</i> of at least 8 may be configured for the sparse mode, which
+ * replaces the hash set of coupons that precedes the HLL array with a compressed, sorted list of
+ * coupons. Such a sketch stays in the exact coupon modes up to several times as many unique
+ * values for the same memory, at the cost of slower updates in that range.
+ *
  * @author Lee Rhodes
  * @author Kevin Lang
  */
@@ -78,6 +88,8 @@ public class HllSketch extends BaseHllSketch {
 
   private static final String LS = System.getProperty("line.separator");
   HllSketchImpl hllSketchImpl = null;
+  private final Hasher hasher;
+  private final boolean sparse;
 
   /**
    * Constructs a new on-heap sketch with the default lgConfigK and tgtHllType.
@@ -102,7 +114,40 @@ public class HllSketch extends BaseHllSketch {
    * @param tgtHllType the desired Hll type.
    */
   public HllSketch(final int lgConfigK, final TgtHllType tgtHllType) {
-    hllSketchImpl = new CouponList(HllUtil.checkLgK(lgConfigK), tgtHllType, CurMode.LIST);
+    this(lgConfigK, tgtHllType, Hasher.MURMUR3);
+  }
+
+  /**
+   * Constructs a new on-heap sketch with the type of HLL sketch to configure and the given
+   * hash function. The ID of the hash function is recorded in the serialized sketch, and only
+   * sketches with the same hash function can be merged.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param tgtHllType the desired Hll type.
+   * @param hasher the hash function of this sketch.
+   */
+  public HllSketch(final int lgConfigK, final TgtHllType tgtHllType, final Hasher hasher) {
+    this(lgConfigK, tgtHllType, hasher, false);
+  }
+
+  /**
+   * Constructs a new on-heap sketch with the type of HLL sketch to configure, the given
+   * hash function and the choice of the sparse mode, which is recorded in the serialized sketch.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param tgtHllType the desired Hll type.
+   * @param hasher the hash function of this sketch.
+   * @param sparse if true, and lgConfigK is at least 8, the sketch uses the sparse mode rather
+   * than the hash set of coupons before it becomes an HLL array.
+   */
+  public HllSketch(final int lgConfigK, final TgtHllType tgtHllType, final Hasher hasher,
+      final boolean sparse) {
+    final CouponList list =
+        new CouponList(HllUtil.checkLgK(lgConfigK), tgtHllType, CurMode.LIST);
+    list.sparse = sparse;
+    hllSketchImpl = list;
+    this.hasher = hasher;
+    this.sparse = sparse;
   }
 
   /**
@@ -119,11 +164,48 @@ public class HllSketch extends BaseHllSketch {
    * @param dstMem the destination memory for the sketch.
    */
   public HllSketch(final int lgConfigK, final TgtHllType tgtHllType, final WritableMemory dstMem) {
+    this(lgConfigK, tgtHllType, dstMem, Hasher.MURMUR3);
+  }
+
+  /**
+   * Constructs a new sketch with the type of HLL sketch to configure, the given
+   * WritableMemory as the destination for the sketch and the given hash function.
+   * See {@link #HllSketch(int, TgtHllType, WritableMemory)}.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param tgtHllType the desired Hll type.
+   * @param dstMem the destination memory for the sketch.
+   * @param hasher the hash function of this sketch.
+   */
+  public HllSketch(final int lgConfigK, final TgtHllType tgtHllType, final WritableMemory dstMem,
+      final Hasher hasher) {
+    this(lgConfigK, tgtHllType, dstMem, hasher, false);
+  }
+
+  /**
+   * Constructs a new sketch with the type of HLL sketch to configure, the given
+   * WritableMemory as the destination for the sketch, the given hash function and the choice of
+   * the sparse mode. See {@link #HllSketch(int, TgtHllType, WritableMemory)} and
+   * {@link #HllSketch(int, TgtHllType, Hasher, boolean)}.
+   * @param lgConfigK The Log2 of K for the target HLL sketch. This value must be
+   * between 4 and 21 inclusively.
+   * @param tgtHllType the desired Hll type.
+   * @param dstMem the destination memory for the sketch.
+   * @param hasher the hash function of this sketch.
+   * @param sparse if true, and lgConfigK is at least 8, the sketch uses the sparse mode rather
+   * than the hash set of coupons before it becomes an HLL array.
+   */
+  public HllSketch(final int lgConfigK, final TgtHllType tgtHllType, final WritableMemory dstMem,
+      final Hasher hasher, final boolean sparse) {
     final long minBytes = getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
     final long capBytes = dstMem.getCapacity();
     HllUtil.checkMemSize(minBytes, capBytes);
     dstMem.clear(0, minBytes);
     hllSketchImpl = DirectCouponList.newInstance(lgConfigK, tgtHllType, dstMem);
+    insertHasher(dstMem, hasher);
+    insertSparseFlag(dstMem, sparse);
+    this.hasher = hasher;
+    this.sparse = sparse;
   }
 
   /**
@@ -132,14 +214,29 @@ public class HllSketch extends BaseHllSketch {
    */
   HllSketch(final HllSketch that) {
     hllSketchImpl = that.hllSketchImpl.copy();
+    hasher = that.hasher;
+    sparse = that.sparse;
+  }
+
+  /**
+   * Special constructor used by Union for sketches not configured for the sparse mode
+   * @param that another HllSketchImpl, which must already be a copy
+   * @param hasher the hash function of the sketch
+   */
+  HllSketch(final HllSketchImpl that, final Hasher hasher) {
+    this(that, hasher, false);
   }
 
   /**
-   * Special constructor used by copyAs, heapify
+   * Special constructor used by copyAs, heapify and wrap
    * @param that another HllSketchImpl, which must already be a copy
+   * @param hasher the hash function of the sketch
+   * @param sparse true if the sketch is configured for the sparse mode
    */
-  HllSketch(final HllSketchImpl that) {
+  HllSketch(final HllSketchImpl that, final Hasher hasher, final boolean sparse) {
     hllSketchImpl = that;
+    this.hasher = hasher;
+    this.sparse = sparse;
   }
 
   /**
@@ -164,23 +261,27 @@ public class HllSketch extends BaseHllSketch {
   //used by union and above
   static final HllSketch heapify(final Memory srcMem, final boolean checkRebuild) {
     final CurMode curMode = checkPreamble(srcMem);
+    final Hasher hasher = extractHasher(srcMem);
+    final boolean sparse = extractSparseFlag(srcMem);
     final HllSketch heapSketch;
     if (curMode == CurMode.HLL) {
       final TgtHllType tgtHllType = extractTgtHllType(srcMem);
       if (tgtHllType == TgtHllType.HLL_4) {
-        heapSketch = new HllSketch(Hll4Array.heapify(srcMem));
+        heapSketch = new HllSketch(Hll4Array.heapify(srcMem), hasher, sparse);
       } else if (tgtHllType == TgtHllType.HLL_6) {
-        heapSketch = new HllSketch(Hll6Array.heapify(srcMem));
+        heapSketch = new HllSketch(Hll6Array.heapify(srcMem), hasher, sparse);
       } else { //Hll_8
-        heapSketch = new HllSketch(Hll8Array.heapify(srcMem));
+        heapSketch = new HllSketch(Hll8Array.heapify(srcMem), hasher, sparse);
         if (checkRebuild) {
           Union.checkRebuildCurMinNumKxQ(heapSketch);
         }
       }
     } else if (curMode == CurMode.LIST) {
-      heapSketch = new HllSketch(CouponList.heapifyList(srcMem));
+      heapSketch = new HllSketch(CouponList.heapifyList(srcMem), hasher, sparse);
+    } else if (curMode == CurMode.SPARSE) {
+      heapSketch = new HllSketch(CouponSparseList.heapifySparse(srcMem), hasher, sparse);
     } else {
-      heapSketch = new HllSketch(CouponHashSet.heapifySet(srcMem));
+      heapSketch = new HllSketch(CouponHashSet.heapifySet(srcMem), hasher, sparse);
     }
     return heapSketch;
   }
@@ -212,25 +313,40 @@ public class HllSketch extends BaseHllSketch {
     final long minBytes = getMaxUpdatableSerializationBytes(lgConfigK, tgtHllType);
     final long capBytes = srcWmem.getCapacity();
     HllUtil.checkMemSize(minBytes, capBytes);
+    return writableWrapGrowable(srcWmem, checkRebuild);
+  }
+
+  //used by HllArena and above. A LIST or SET image may be smaller than the maximum updatable
+  // size, in which case it requests larger memory from the MemoryRequestServer of srcWmem as it
+  // grows. An HLL image must always be full size.
+  static final HllSketch writableWrapGrowable(final WritableMemory srcWmem,
+      final boolean checkRebuild) {
+    final int lgConfigK = extractLgK(srcWmem);
+    final TgtHllType tgtHllType = extractTgtHllType(srcWmem);
     final CurMode curMode = checkPreamble(srcWmem);
+    final Hasher hasher = extractHasher(srcWmem);
+    final boolean sparse = extractSparseFlag(srcWmem);
     final HllSketch directSketch;
     if (curMode == CurMode.HLL) {
       if (tgtHllType == TgtHllType.HLL_4) {
-        directSketch = new HllSketch(new DirectHll4Array(lgConfigK, srcWmem));
+        directSketch = new HllSketch(new DirectHll4Array(lgConfigK, srcWmem), hasher, sparse);
       } else if (tgtHllType == TgtHllType.HLL_6) {
-        directSketch = new HllSketch(new DirectHll6Array(lgConfigK, srcWmem));
+        directSketch = new HllSketch(new DirectHll6Array(lgConfigK, srcWmem), hasher, sparse);
       } else { //Hll_8
-        directSketch = new HllSketch(new DirectHll8Array(lgConfigK, srcWmem));
+        directSketch = new HllSketch(new DirectHll8Array(lgConfigK, srcWmem), hasher, sparse);
         if (checkRebuild) { //union only uses HLL_8, we allow non-finalized from a union call.
           Union.checkRebuildCurMinNumKxQ(directSketch);
         }
       }
     } else if (curMode == CurMode.LIST) {
-      directSketch =
-          new HllSketch(new DirectCouponList(lgConfigK, tgtHllType, curMode, srcWmem));
+      directSketch = new HllSketch(new DirectCouponList(lgConfigK, tgtHllType, curMode, srcWmem),
+          hasher, sparse);
+    } else if (curMode == CurMode.SPARSE) {
+      directSketch = new HllSketch(new DirectCouponSparseList(lgConfigK, tgtHllType, srcWmem),
+          hasher, sparse);
     } else { //SET
-      directSketch =
-          new HllSketch(new DirectCouponHashSet(lgConfigK, tgtHllType, srcWmem));
+      directSketch = new HllSketch(new DirectCouponHashSet(lgConfigK, tgtHllType, srcWmem),
+          hasher, sparse);
     }
     return directSketch;
   }
@@ -248,23 +364,28 @@ public class HllSketch extends BaseHllSketch {
     final TgtHllType tgtHllType = extractTgtHllType(srcMem);
 
     final CurMode curMode = checkPreamble(srcMem);
+    final Hasher hasher = extractHasher(srcMem);
+    final boolean sparse = extractSparseFlag(srcMem);
     final HllSketch directSketch;
     if (curMode == CurMode.HLL) {
       if (tgtHllType == TgtHllType.HLL_4) {
-        directSketch = new HllSketch(new DirectHll4Array(lgConfigK, srcMem));
+        directSketch = new HllSketch(new DirectHll4Array(lgConfigK, srcMem), hasher, sparse);
       } else if (tgtHllType == TgtHllType.HLL_6) {
-        directSketch = new HllSketch(new DirectHll6Array(lgConfigK, srcMem));
+        directSketch = new HllSketch(new DirectHll6Array(lgConfigK, srcMem), hasher, sparse);
       } else { //Hll_8
-        directSketch = new HllSketch(new DirectHll8Array(lgConfigK, srcMem));
+        directSketch = new HllSketch(new DirectHll8Array(lgConfigK, srcMem), hasher, sparse);
         //rebuild if srcMem came from a union and was not finalized, rather than throw exception.
         Union.checkRebuildCurMinNumKxQ(directSketch);
       }
     } else if (curMode == CurMode.LIST) {
-      directSketch =
-          new HllSketch(new DirectCouponList(lgConfigK, tgtHllType, curMode, srcMem));
+      directSketch = new HllSketch(new DirectCouponList(lgConfigK, tgtHllType, curMode, srcMem),
+          hasher, sparse);
+    } else if (curMode == CurMode.SPARSE) {
+      directSketch = new HllSketch(new DirectCouponSparseList(lgConfigK, tgtHllType, srcMem),
+          hasher, sparse);
     } else { //SET
-      directSketch =
-          new HllSketch(new DirectCouponHashSet(lgConfigK, tgtHllType, srcMem));
+      directSketch = new HllSketch(new DirectCouponHashSet(lgConfigK, tgtHllType, srcMem),
+          hasher, sparse);
     }
     return directSketch;
   }
@@ -285,7 +406,7 @@ public class HllSketch extends BaseHllSketch {
    * @return a deep copy of this sketch with the specified TgtHllType.
    */
   public HllSketch copyAs(final TgtHllType tgtHllType) {
-    return new HllSketch(hllSketchImpl.copyAs(tgtHllType));
+    return new HllSketch(hllSketchImpl.copyAs(tgtHllType), hasher, sparse);
   }
 
   @Override
@@ -298,6 +419,20 @@ public class HllSketch extends BaseHllSketch {
     return hllSketchImpl.getEstimate();
   }
 
+  @Override
+  public Hasher getHasher() {
+    return hasher;
+  }
+
+  /**
+   * Returns true if this sketch is configured for the sparse mode.
+   * See {@link #HllSketch(int, TgtHllType, Hasher, boolean)}.
+   * @return true if this sketch is configured for the sparse mode.
+   */
+  public boolean isSparse() {
+    return sparse;
+  }
+
   double getHipEstimate() {
     return hllSketchImpl.getHipEstimate();
   }
@@ -408,16 +543,29 @@ public class HllSketch extends BaseHllSketch {
   @Override
   public void reset() {
     hllSketchImpl = hllSketchImpl.reset();
+    if (isMemory()) { //reset clears the Memory
+      insertHasher(getWritableMemory(), hasher);
+      insertSparseFlag(getWritableMemory(), sparse);
+    } else {
+      ((CouponList) hllSketchImpl).sparse = sparse;
+    }
   }
 
   @Override
   public byte[] toCompactByteArray() {
-    return hllSketchImpl.toCompactByteArray();
+    return withConfig(hllSketchImpl.toCompactByteArray());
   }
 
   @Override
   public byte[] toUpdatableByteArray() {
-    return hllSketchImpl.toUpdatableByteArray();
+    return withConfig(hllSketchImpl.toUpdatableByteArray());
+  }
+
+  private byte[] withConfig(final byte[] byteArr) {
+    final WritableMemory wmem = WritableMemory.wrap(byteArr);
+    insertHasher(wmem, hasher);
+    insertSparseFlag(wmem, sparse);
+    return byteArr;
   }
 
   @Override
@@ -429,6 +577,8 @@ public class HllSketch extends BaseHllSketch {
       sb.append("  Log Config K   : ").append(getLgConfigK()).append(LS);
       sb.append("  Hll Target     : ").append(getTgtHllType()).append(LS);
       sb.append("  Current Mode   : ").append(getCurMode()).append(LS);
+      sb.append("  Hasher         : ").append(hasher.getName()).append(LS);
+      sb.append("  Sparse         : ").append(sparse).append(LS);
       sb.append("  Memory         : ").append(isMemory()).append(LS);
       sb.append("  LB             : ").append(getLowerBound(1)).append(LS);
       sb.append("  Estimate       : ").append(getEstimate()).append(LS);
@@ -522,4 +672,9 @@ public class HllSketch extends BaseHllSketch {
     hllSketchImpl = hllSketchImpl.couponUpdate(coupon);
   }
 
+  @Override
+  void couponUpdate(final int[] coupons, final int count) {
+    hllSketchImpl = hllSketchImpl.couponUpdate(coupons, count);
+  }
+
 }
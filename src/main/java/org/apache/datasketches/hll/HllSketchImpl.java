@@ -54,6 +54,21 @@ abstract class HllSketchImpl {
 
   abstract HllSketchImpl couponUpdate(int coupon);
 
+  /**
+   * Batch form of {@link #couponUpdate(int)}. The coupons are applied in order, and if one of
+   * them causes a change of mode the remainder of the batch is applied to the new implementation.
+   * @param coupons the given coupons
+   * @param count the number of coupons, starting at index zero, to apply
+   * @return the resulting implementation, which may not be this one
+   */
+  HllSketchImpl couponUpdate(final int[] coupons, final int count) {
+    HllSketchImpl impl = this;
+    for (int i = 0; i < count; i++) {
+      impl = impl.couponUpdate(coupons[i]);
+    }
+    return impl;
+  }
+
   abstract int getCompactSerializationBytes();
 
   abstract double getCompositeEstimate();
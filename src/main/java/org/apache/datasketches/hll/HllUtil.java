@@ -24,6 +24,7 @@ import static java.lang.Math.sqrt;
 import static org.apache.datasketches.hll.PreambleUtil.HASH_SET_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.LIST_PREINTS;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_PREINTS;
 import static org.apache.datasketches.hll.PreambleUtil.extractCurMode;
 import static org.apache.datasketches.hll.PreambleUtil.extractFamilyId;
 import static org.apache.datasketches.hll.PreambleUtil.extractPreInts;
@@ -55,6 +56,7 @@ final class HllUtil {
 
   static final int LG_INIT_LIST_SIZE = 3;
   static final int LG_INIT_SET_SIZE = 5;
+  static final int LG_MIN_SPARSE_BUF_SIZE = 4;
   static final int RESIZE_NUMER = 3;
   static final int RESIZE_DENOM = 4;
 
@@ -101,10 +103,10 @@ final class HllUtil {
     if (
       (famId != Family.HLL.getID())
       || (serVer != 1)
-      || ((preInts != LIST_PREINTS) && (preInts != HASH_SET_PREINTS) && (preInts != HLL_PREINTS))
       || ((curMode == CurMode.LIST) && (preInts != LIST_PREINTS))
       || ((curMode == CurMode.SET) && (preInts != HASH_SET_PREINTS))
       || ((curMode == CurMode.HLL) && (preInts != HLL_PREINTS))
+      || ((curMode == CurMode.SPARSE) && (preInts != SPARSE_PREINTS))
     ) {
       throw new SketchesArgumentException("Possible Corruption, Invalid Preamble:"
           + PreambleUtil.toString(mem));
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.ParallelMerge.mergeSlices;
+import static org.apache.datasketches.ParallelMerge.reduce;
+import static org.apache.datasketches.ParallelMerge.stripeIndex;
+import static org.apache.datasketches.Util.LS;
+import static org.apache.datasketches.hll.TgtHllType.HLL_8;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * A Union of HLL sketches that merges its inputs in parallel, for merging very many sketches,
+ * such as a day's worth of per-partition sketches.
+ *
+ * <p>The inputs are spread over <i>parallelism</i> shards, each an ordinary on-heap {@link Union}
+ * with the same <i>lgMaxK</i> and hash function. An array or collection of inputs is split into
+ * one contiguous slice per shard, and the slices are merged into their shards by parallel tasks
+ * of a ForkJoinPool, so the downsampling and the conversions to HLL_8 of the inputs run on all
+ * of the workers. A stream of inputs is collected in parallel into Unions of its own, which are
+ * then merged into one shard. Single inputs may be given concurrently by many threads, and each
+ * thread merges into the shard of its own stripe. The result reduces the shards pairwise as a tree, also in
+ * parallel.</p>
+ *
+ * <p>The registers of the union are the maximum over the inputs, downsampled to the smallest
+ * <i>lgK</i> of the inputs, which does not depend on the order of the inputs. Therefore the
+ * result of this union has the same <i>lgK</i>, mode and registers as the result of a single
+ * Union given the same inputs. Once two inputs in HLL mode have been merged, a Union estimates
+ * from its registers alone, and so the estimates are also the same. Otherwise the estimate of a
+ * single Union may come from the HIP estimator, which depends on the order of the inputs, and
+ * the two estimates may differ within the error bounds.</p>
+ */
+public final class ParallelUnion {
+  private final int lgMaxK;
+  private final Hasher hasher;
+  private final ForkJoinPool pool;
+  private final Union[] shards; //each guarded by itself
+
+  /**
+   * Construct this union with the given maximum log-base-2 of <i>K</i>, one shard per worker of
+   * the common ForkJoinPool and the default hash function.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i>. This value must be
+   * between 4 and 21 inclusively.
+   */
+  public ParallelUnion(final int lgMaxK) {
+    this(lgMaxK, Hasher.MURMUR3, ForkJoinPool.commonPool().getParallelism(),
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Construct this union with the given maximum log-base-2 of <i>K</i>, hash function and number
+   * of shards. The tasks run on the common ForkJoinPool.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i>. This value must be
+   * between 4 and 21 inclusively.
+   * @param hasher the hash function of this union
+   * @param parallelism the number of shards. It must be at least 1.
+   */
+  public ParallelUnion(final int lgMaxK, final Hasher hasher, final int parallelism) {
+    this(lgMaxK, hasher, parallelism, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Construct this union with the given maximum log-base-2 of <i>K</i>, hash function, number
+   * of shards and ForkJoinPool.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i>. This value must be
+   * between 4 and 21 inclusively.
+   * @param hasher the hash function of this union
+   * @param parallelism the number of shards. It must be at least 1.
+   * @param pool the ForkJoinPool that runs the parallel tasks
+   */
+  public ParallelUnion(final int lgMaxK, final Hasher hasher, final int parallelism,
+      final ForkJoinPool pool) {
+    if (parallelism < 1) {
+      throw new SketchesArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    if (pool == null) {
+      throw new SketchesArgumentException("pool must not be null.");
+    }
+    this.lgMaxK = HllUtil.checkLgK(lgMaxK);
+    this.hasher = hasher;
+    this.pool = pool;
+    shards = new Union[parallelism];
+    for (int i = 0; i < parallelism; i++) {
+      shards[i] = new Union(lgMaxK, hasher);
+    }
+  }
+
+  /**
+   * Update this union with the given sketch. This may be called concurrently by many threads.
+   * If the given sketch is null it is interpreted as an empty sketch.
+   * @param sketch the given sketch, which must have the same hash function as this union.
+   */
+  public void update(final HllSketch sketch) {
+    final Union shard = shards[stripeIndex(shards.length)];
+    synchronized (shard) {
+      shard.update(sketch);
+    }
+  }
+
+  /**
+   * Update this union with the given Memory image of an HllSketch, which is wrapped, not copied.
+   * This may be called concurrently by many threads.
+   * If the given Memory is null it is interpreted as an empty sketch.
+   * @param mem the given Memory image, which must have the same hash function as this union.
+   */
+  public void update(final Memory mem) {
+    final Union shard = shards[stripeIndex(shards.length)];
+    synchronized (shard) {
+      shard.update(wrap(mem));
+    }
+  }
+
+  /**
+   * Update this union with all of the given sketches, merging them in parallel.
+   * Null elements are interpreted as empty sketches.
+   * @param sketches the given sketches, which must have the same hash function as this union.
+   */
+  public void update(final HllSketch[] sketches) {
+    if (sketches == null) { return; }
+    mergeSlices(pool, shards, sketches.length, (shard, i) -> shard.update(sketches[i]));
+  }
+
+  /**
+   * Update this union with all of the given sketches, merging them in parallel.
+   * Null elements are interpreted as empty sketches.
+   * @param sketches the given sketches, which must have the same hash function as this union.
+   */
+  public void update(final Collection<? extends HllSketch> sketches) {
+    if (sketches == null) { return; }
+    update(sketches.toArray(new HllSketch[0]));
+  }
+
+  /**
+   * Update this union with all of the sketches of the given stream, merging them in parallel.
+   * The stream, which need not be sized, is made parallel and is collected from within the pool
+   * of this union: each split of the stream is merged into its own Union, and these are merged
+   * pairwise as the splits are joined. The result is then merged into one shard.
+   * Null elements are interpreted as empty sketches.
+   * @param sketches the given sketches, which must have the same hash function as this union.
+   */
+  public void update(final Stream<? extends HllSketch> sketches) {
+    if (sketches == null) { return; }
+    final Callable<Union> collect = () -> sketches.parallel().collect(
+        () -> new Union(lgMaxK, hasher), Union::update, ParallelUnion::merge);
+    final Union union = pool.invoke(ForkJoinTask.adapt(collect));
+    final Union shard = shards[stripeIndex(shards.length)];
+    synchronized (shard) {
+      merge(shard, union);
+    }
+  }
+
+  /**
+   * Update this union with all of the given Memory images of HllSketches, merging them in
+   * parallel. The images are wrapped, not copied, by the parallel tasks.
+   * Null elements are interpreted as empty sketches.
+   * @param mems the given Memory images, which must have the same hash function as this union.
+   */
+  public void update(final Memory[] mems) {
+    if (mems == null) { return; }
+    mergeSlices(pool, shards, mems.length, (shard, i) -> shard.update(wrap(mems[i])));
+  }
+
+  /**
+   * Return the result of this union as an HLL_4 sketch.
+   * This does not disturb the shards, so it is OK to continue updating this union afterwards.
+   * @return the result of this union as an HLL_4 sketch.
+   */
+  public HllSketch getResult() {
+    return getResult(HllSketch.DEFAULT_HLL_TYPE);
+  }
+
+  /**
+   * Return the result of this union with the specified {@link TgtHllType}.
+   * This does not disturb the shards, so it is OK to continue updating this union afterwards.
+   * @param tgtHllType the TgtHllType enum
+   * @return the result of this union with the specified TgtHllType
+   */
+  public HllSketch getResult(final TgtHllType tgtHllType) {
+    return reduceShards().getResult(tgtHllType);
+  }
+
+  /**
+   * Return the estimate of the result of this union.
+   * @return the estimate of the result of this union.
+   */
+  public double getEstimate() {
+    return reduceShards().getEstimate();
+  }
+
+  /**
+   * Resets this union to its virgin state.
+   */
+  public void reset() {
+    for (final Union shard : shards) {
+      synchronized (shard) {
+        shard.reset();
+      }
+    }
+  }
+
+  /**
+   * Returns the maximum log-base-2 of <i>K</i> of this union.
+   * @return the maximum log-base-2 of <i>K</i> of this union.
+   */
+  public int getLgMaxK() {
+    return lgMaxK;
+  }
+
+  /**
+   * Returns the hash function of this union.
+   * @return the hash function of this union.
+   */
+  public Hasher getHasher() {
+    return hasher;
+  }
+
+  /**
+   * Returns the number of shards, which is the maximum number of inputs that are merged at
+   * the same time.
+   * @return the number of shards
+   */
+  public int getParallelism() {
+    return shards.length;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### HLL ParallelUnion SUMMARY: ").append(LS);
+    sb.append("   Log Max Config K   : ").append(lgMaxK).append(LS);
+    sb.append("   Hasher             : ").append(hasher.getName()).append(LS);
+    sb.append("   Parallelism        : ").append(shards.length).append(LS);
+    sb.append("   Pool Parallelism   : ").append(pool.getParallelism()).append(LS);
+    sb.append("### END SKETCH SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  //Returns a new Union holding a copy of the gadget of the given shard.
+  private Union copyShard(final int index) {
+    final Union shard = shards[index];
+    final Union union = new Union(lgMaxK, hasher);
+    synchronized (shard) {
+      union.update(shard.getResult(HLL_8));
+    }
+    return union;
+  }
+
+  //Returns a new Union of all of the shards.
+  private Union reduceShards() {
+    return reduce(pool, shards.length, this::copyShard, (left, right) -> {
+      merge(left, right);
+      return left;
+    });
+  }
+
+  //Merges the right union into the left one.
+  private static void merge(final Union left, final Union right) {
+    left.update(right.getResult(HLL_8));
+  }
+
+  private static HllSketch wrap(final Memory mem) {
+    return (mem == null) ? null : HllSketch.wrap(mem);
+  }
+
+}
@@ -30,6 +30,7 @@ import static org.apache.datasketches.hll.HllUtil.RESIZE_NUMER;
 import java.nio.ByteOrder;
 
 import org.apache.datasketches.Family;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -58,6 +59,24 @@ import org.apache.datasketches.memory.WritableMemory;
  * </pre>
  *
  * <pre>
+ * CouponSparseList Layout
+ * Long || Start Byte Adr, Big Endian Illustration
+ * Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |    0   |
+ *  0   ||  Mode  |        | Flags  |  LgBuf |   lgK  | FamID  | SerVer |  PI=5  |
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |    8   |
+ *  1   ||-----------Stream Bytes------------|-----------Stream Count------------|
+ *
+ *      ||   23   |   22   |   21   |   20   |   19   |   18   |   17   |   16   |
+ *  2   ||-----Coupon Int Buffer Start-------|-----------Buffer Count------------|
+ * </pre>
+ * The buffer is a hash set of 2^LgBuf ints, which is followed by the stream of coupons sorted by
+ * key and value. Each coupon of the stream is a varint of its key minus the previous key,
+ * shifted left by two, or'ed with its value minus one, capped at 3. If the cap is reached, the
+ * value follows in one byte. The compact form has no buffer.
+ *
+ * <pre>
  * HllArray Layout
  * Long || Start Byte Adr, Big Endian Illustration
  * Adr:
@@ -104,6 +123,7 @@ final class PreambleUtil {
   static int LIST_COUNT_BYTE                = 6;
   static int HLL_CUR_MIN_BYTE               = 6;
   static int MODE_BYTE                      = 7; //lo2bits = curMode, next 2 bits = tgtHllType
+                                                  //hi4bits = hasher ID
   //mode encoding of combined CurMode and TgtHllType:
   // Dec  Lo4Bits TgtHllType, CurMode
   //   0     0000      HLL_4,    LIST
@@ -115,6 +135,11 @@ final class PreambleUtil {
   //   8     1000      HLL_8,    LIST
   //   9     1001      HLL_8,     SET
   //  10     1010      HLL_8,     HLL
+  //   3     0011      HLL_4,  SPARSE
+  //   7     0111      HLL_6,  SPARSE
+  //  11     1011      HLL_8,  SPARSE
+  //The hi 4 bits are the ID of the Hasher, which is zero for MurmurHash3 and for all sketches
+  //serialized before the Hasher was selectable.
 
   //Coupon List
   static int LIST_INT_ARR_START             = 8;
@@ -123,6 +148,12 @@ final class PreambleUtil {
   static int HASH_SET_COUNT_INT             = 8;
   static int HASH_SET_INT_ARR_START         = 12;
 
+  //Coupon Sparse List
+  static int SPARSE_STREAM_COUNT_INT        = 8;
+  static int SPARSE_STREAM_BYTES_INT        = 12;
+  static int SPARSE_BUF_COUNT_INT           = 16;
+  static int SPARSE_INT_ARR_START           = 20;
+
   //HLL
   static int HIP_ACCUM_DOUBLE               = 8;
   static int KXQ0_DOUBLE                    = 16;
@@ -138,10 +169,12 @@ final class PreambleUtil {
   static final int COMPACT_FLAG_MASK        = 8;
   static final int OUT_OF_ORDER_FLAG_MASK   = 16;
   static final int REBUILD_CURMIN_NUM_KXQ_MASK = 32; //used only by Union
+  static final int SPARSE_FLAG_MASK         = 64; //configured for the SPARSE mode
 
   //Mode byte masks
   static final int CUR_MODE_MASK            = 3;
   static final int TGT_HLL_TYPE_MASK        = 12;
+  static final int HASHER_ID_MASK           = 0XF0;
 
   //Other constants
   static final int SER_VER                  = 1;
@@ -149,6 +182,7 @@ final class PreambleUtil {
   static final int LIST_PREINTS             = 2;
   static final int HASH_SET_PREINTS         = 3;
   static final int HLL_PREINTS              = 10;
+  static final int SPARSE_PREINTS           = 5;
   static final boolean NATIVE_ORDER_IS_BIG_ENDIAN  =
       (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
 
@@ -174,6 +208,7 @@ final class PreambleUtil {
     final boolean readOnly = (flags & READ_ONLY_FLAG_MASK) > 0;
     final boolean empty = (flags & EMPTY_FLAG_MASK) > 0;
     final boolean rebuildKxQ = (flags & REBUILD_CURMIN_NUM_KXQ_MASK) > 0;
+    final boolean sparse = (flags & SPARSE_FLAG_MASK) > 0;
 
     final int hllCurMin = mem.getByte(HLL_CUR_MIN_BYTE);
     final int listCount = hllCurMin;
@@ -187,10 +222,18 @@ final class PreambleUtil {
     int hashSetCount = 0;
     int curMinCount = 0;
     int exceptionCount = 0;
+    int streamCount = 0;
+    int streamBytes = 0;
+    int bufCount = 0;
 
     if (curMode == CurMode.SET) {
       hashSetCount = mem.getInt(HASH_SET_COUNT_INT);
     }
+    else if (curMode == CurMode.SPARSE) {
+      streamCount = mem.getInt(SPARSE_STREAM_COUNT_INT);
+      streamBytes = mem.getInt(SPARSE_STREAM_BYTES_INT);
+      bufCount = mem.getInt(SPARSE_BUF_COUNT_INT);
+    }
     else if (curMode == CurMode.HLL) {
       hipAccum = mem.getDouble(HIP_ACCUM_DOUBLE);
       kxq0 = mem.getDouble(KXQ0_DOUBLE);
@@ -216,6 +259,9 @@ final class PreambleUtil {
     if (curMode == CurMode.HLL) {
       sb.append("Byte 4: LgArr or Aux LgArr    : ").append(lgArr).append(LS);
     }
+    if (curMode == CurMode.SPARSE) {
+      sb.append("Byte 4: LgArr: Buffer Arr     : ").append(lgArr).append(LS);
+    }
     //expand byte 5: Flags
     sb.append("Byte 5: Flags:                : ").append(flagsStr).append(LS);
     sb.append("  BIG_ENDIAN_STORAGE          : ").append(bigEndian).append(LS);
@@ -225,21 +271,28 @@ final class PreambleUtil {
     sb.append("  COMPACT                     : ").append(compact).append(LS);
     sb.append("  OUT_OF_ORDER                : ").append(oooFlag).append(LS);
     sb.append("  REBUILD_KXQ                 : ").append(rebuildKxQ).append(LS);
+    sb.append("  SPARSE                      : ").append(sparse).append(LS);
     //expand byte 6: ListCount, CurMin
     if (curMode == CurMode.LIST) {
       sb.append("Byte 6: List Count/CurMin     : ").append(listCount).append(LS);
     }
-    if (curMode == CurMode.SET) {
+    if ((curMode == CurMode.SET) || (curMode == CurMode.SPARSE)) {
       sb.append("Byte 6: (not used)            : ").append(LS);
     }
     if (curMode == CurMode.HLL) {
       sb.append("Byte 6: Cur Min               : ").append(hllCurMin).append(LS);
     }
-    final String modes = curMode.toString() + ", " + tgtHllType.toString();
+    final String modes = curMode.toString() + ", " + tgtHllType.toString() + ", "
+        + extractHasher(mem).getName();
     sb.append("Byte 7: Mode                  : ").append(modes).append(LS);
     if (curMode == CurMode.SET) {
       sb.append("Hash Set Count                : ").append(hashSetCount).append(LS);
     }
+    if (curMode == CurMode.SPARSE) {
+      sb.append("Stream Count                  : ").append(streamCount).append(LS);
+      sb.append("Stream Bytes                  : ").append(streamBytes).append(LS);
+      sb.append("Buffer Count                  : ").append(bufCount).append(LS);
+    }
     if (curMode == CurMode.HLL) {
       sb.append("HIP Accum                     : ").append(hipAccum).append(LS);
       sb.append("KxQ0                          : ").append(kxq0).append(LS);
@@ -341,6 +394,30 @@ final class PreambleUtil {
     wmem.putInt(HASH_SET_COUNT_INT, hashSetCnt);
   }
 
+  static int extractSparseStreamCount(final Memory mem) {
+    return mem.getInt(SPARSE_STREAM_COUNT_INT);
+  }
+
+  static void insertSparseStreamCount(final WritableMemory wmem, final int streamCount) {
+    wmem.putInt(SPARSE_STREAM_COUNT_INT, streamCount);
+  }
+
+  static int extractSparseStreamBytes(final Memory mem) {
+    return mem.getInt(SPARSE_STREAM_BYTES_INT);
+  }
+
+  static void insertSparseStreamBytes(final WritableMemory wmem, final int streamBytes) {
+    wmem.putInt(SPARSE_STREAM_BYTES_INT, streamBytes);
+  }
+
+  static int extractSparseBufCount(final Memory mem) {
+    return mem.getInt(SPARSE_BUF_COUNT_INT);
+  }
+
+  static void insertSparseBufCount(final WritableMemory wmem, final int bufCount) {
+    wmem.putInt(SPARSE_BUF_COUNT_INT, bufCount);
+  }
+
   static int extractNumAtCurMin(final Memory mem) {
     return mem.getInt(CUR_MIN_COUNT_INT);
   }
@@ -386,10 +463,22 @@ final class PreambleUtil {
       final CurMode curMode) {
     final int curModeId = curMode.ordinal() & 3;
     final int typeId = (tgtHllType.ordinal() & 3) << 2;
-    final int mode = typeId | curModeId;
+    final int hasherBits = wmem.getByte(MODE_BYTE) & HASHER_ID_MASK; //keep bits 4 - 7
+    final int mode = hasherBits | typeId | curModeId;
+    wmem.putByte(MODE_BYTE, (byte) mode);
+  }
+
+  static void insertHasher(final WritableMemory wmem, final Hasher hasher) {
+    int mode = wmem.getByte(MODE_BYTE) & ~HASHER_ID_MASK; //strip bits 4 - 7
+    mode |= (hasher.getId() << 4) & HASHER_ID_MASK;
     wmem.putByte(MODE_BYTE, (byte) mode);
   }
 
+  static Hasher extractHasher(final Memory mem) {
+    final int hasherId = (mem.getByte(MODE_BYTE) & HASHER_ID_MASK) >>> 4;
+    return Hasher.idToHasher(hasherId);
+  }
+
   //Flags
   static void insertEmptyFlag(final WritableMemory wmem, final boolean empty) {
     int flags = wmem.getByte(FLAGS_BYTE);
@@ -439,6 +528,18 @@ final class PreambleUtil {
     return (flags & REBUILD_CURMIN_NUM_KXQ_MASK) > 0;
   }
 
+  static void insertSparseFlag(final WritableMemory wmem, final boolean sparse) {
+    int flags = wmem.getByte(FLAGS_BYTE);
+    if (sparse) { flags |= SPARSE_FLAG_MASK; }
+    else { flags &= ~SPARSE_FLAG_MASK; }
+    wmem.putByte(FLAGS_BYTE, (byte) flags);
+  }
+
+  static boolean extractSparseFlag(final Memory mem) {
+    final int flags = mem.getByte(FLAGS_BYTE);
+    return (flags & SPARSE_FLAG_MASK) > 0;
+  }
+
   static void insertFlags(final WritableMemory wmem, final int flags) {
     wmem.putByte(FLAGS_BYTE, (byte) flags);
   }
@@ -23,6 +23,7 @@ import static org.apache.datasketches.hll.AbstractCoupons.find;
 import static org.apache.datasketches.hll.HllUtil.LG_AUX_ARR_INTS;
 import static org.apache.datasketches.hll.PreambleUtil.AUX_COUNT_INT;
 import static org.apache.datasketches.hll.PreambleUtil.HLL_BYTE_ARR_START;
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_INT_ARR_START;
 import static org.apache.datasketches.hll.PreambleUtil.insertAuxCount;
 import static org.apache.datasketches.hll.PreambleUtil.insertCompactFlag;
 import static org.apache.datasketches.hll.PreambleUtil.insertCurMin;
@@ -42,6 +43,9 @@ import static org.apache.datasketches.hll.PreambleUtil.insertOooFlag;
 import static org.apache.datasketches.hll.PreambleUtil.insertPreInts;
 import static org.apache.datasketches.hll.PreambleUtil.insertRebuildCurMinNumKxQFlag;
 import static org.apache.datasketches.hll.PreambleUtil.insertSerVer;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseBufCount;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseStreamBytes;
+import static org.apache.datasketches.hll.PreambleUtil.insertSparseStreamCount;
 import static org.apache.datasketches.hll.PreambleUtil.insertTgtHllType;
 
 import org.apache.datasketches.SketchesStateException;
@@ -237,6 +241,24 @@ class ToByteArrayImpl {
     return byteArrOut;
   }
 
+  //To byte array for the SPARSE mode, heap or direct. The compact form has no buffer.
+  static final byte[] toSparseByteArray(final AbstractCoupons impl, final int[] bufIntArr,
+      final int bufCount, final byte[] stream, final int streamCount, final boolean dstCompact) {
+    final int streamStart = CouponSparseList.streamStart(impl.getLgCouponArrInts(), dstCompact);
+    final byte[] byteArrOut = new byte[streamStart + stream.length];
+    final WritableMemory memOut = WritableMemory.wrap(byteArrOut);
+    copyCommonListAndSet(impl, memOut);
+    insertCompactFlag(memOut, dstCompact);
+    insertSparseStreamCount(memOut, streamCount);
+    insertSparseStreamBytes(memOut, stream.length);
+    if (!dstCompact) {
+      insertSparseBufCount(memOut, bufCount);
+      memOut.putIntArray(SPARSE_INT_ARR_START, bufIntArr, 0, bufIntArr.length);
+    }
+    memOut.putByteArray(streamStart, stream, 0, stream.length);
+    return byteArrOut;
+  }
+
   private static final void copyCommonListAndSet(final AbstractCoupons impl,
       final WritableMemory wmem) {
     insertPreInts(wmem, impl.getPreInts());
@@ -26,6 +26,7 @@ import static org.apache.datasketches.hll.PreambleUtil.extractTgtHllType;
 import static org.apache.datasketches.hll.TgtHllType.HLL_8;
 
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -52,6 +53,11 @@ import org.apache.datasketches.memory.WritableMemory;
  * @author Kevin Lang
  */
 public class Union extends BaseHllSketch {
+  //words of 8 registers merged per bulk read and write of the registers
+  private static final int MERGE_CHUNK_WORDS = 128;
+  private static final long LO_BITS = 0X0101_0101_0101_0101L;
+  private static final long HI_BITS = 0X8080_8080_8080_8080L;
+
   final int lgMaxK;
   private final HllSketch gadget;
 
@@ -69,8 +75,19 @@ public class Union extends BaseHllSketch {
    * between 4 and 21 inclusively.
    */
   public Union(final int lgMaxK) {
+    this(lgMaxK, Hasher.MURMUR3);
+  }
+
+  /**
+   * Construct this Union operator with a given maximum log-base-2 of <i>K</i> and the given
+   * hash function. Only sketches with the same hash function can be merged into this Union.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i>.  This value must be
+   * between 4 and 21 inclusively.
+   * @param hasher the hash function of this Union
+   */
+  public Union(final int lgMaxK, final Hasher hasher) {
     this.lgMaxK = HllUtil.checkLgK(lgMaxK);
-    gadget = new HllSketch(lgMaxK, HLL_8);
+    gadget = new HllSketch(lgMaxK, HLL_8, hasher);
   }
 
   /**
@@ -86,8 +103,21 @@ public class Union extends BaseHllSketch {
    * @param dstWmem the destination writable memory for the sketch.
    */
   public Union(final int lgMaxK, final WritableMemory dstWmem) {
+    this(lgMaxK, dstWmem, Hasher.MURMUR3);
+  }
+
+  /**
+   * Construct this Union operator with a given maximum log-base-2 of <i>K</i>, the given
+   * WritableMemory as the destination for this Union and the given hash function.
+   * See {@link #Union(int, WritableMemory)}.
+   * @param lgMaxK the desired maximum log-base-2 of <i>K</i>.  This value must be
+   * between 4 and 21 inclusively.
+   * @param dstWmem the destination writable memory for the sketch.
+   * @param hasher the hash function of this Union
+   */
+  public Union(final int lgMaxK, final WritableMemory dstWmem, final Hasher hasher) {
     this.lgMaxK = HllUtil.checkLgK(lgMaxK);
-    gadget = new HllSketch(lgMaxK, HLL_8, dstWmem);
+    gadget = new HllSketch(lgMaxK, HLL_8, dstWmem, hasher);
   }
 
   //used only by writableWrap
@@ -113,7 +143,7 @@ public class Union extends BaseHllSketch {
   public static final Union heapify(final Memory mem) {
     final int lgK = HllUtil.checkLgK(mem.getByte(PreambleUtil.LG_K_BYTE));
     final HllSketch sk = HllSketch.heapify(mem, false); //allows non-finalized image
-    final Union union = new Union(lgK);
+    final Union union = new Union(lgK, sk.getHasher());
     union.update(sk);
     return union;
   }
@@ -161,6 +191,11 @@ public class Union extends BaseHllSketch {
     return gadget.getEstimate();
   }
 
+  @Override
+  public Hasher getHasher() {
+    return gadget.getHasher();
+  }
+
   /**
    * Gets the effective <i>lgConfigK</i> for the union operator, which may be less than
    * <i>lgMaxK</i>.
@@ -297,9 +332,14 @@ public class Union extends BaseHllSketch {
 
   /**
    * Update this union operator with the given sketch.
-   * @param sketch the given sketch.
+   * @param sketch the given sketch, which must have the same hash function as this union.
    */
   public void update(final HllSketch sketch) {
+    if ((sketch != null) && (sketch.getHasher() != gadget.getHasher())) {
+      throw new SketchesArgumentException("Incompatible hash functions: this union uses "
+          + gadget.getHasher().getName() + ", the given sketch uses "
+          + sketch.getHasher().getName());
+    }
     gadget.hllSketchImpl = unionImpl(sketch, gadget, lgMaxK);
   }
 
@@ -309,6 +349,11 @@ public class Union extends BaseHllSketch {
     gadget.hllSketchImpl = gadget.hllSketchImpl.couponUpdate(coupon);
   }
 
+  @Override
+  void couponUpdate(final int[] coupons, final int count) {
+    gadget.hllSketchImpl = gadget.hllSketchImpl.couponUpdate(coupons, count);
+  }
+
   // Union operator logic
 
   /**
@@ -342,7 +387,7 @@ public class Union extends BaseHllSketch {
     }
 
     final CurMode srcMode = source.getCurMode();
-    if (srcMode == CurMode.LIST ) {
+    if ((srcMode == CurMode.LIST) || (srcMode == CurMode.SPARSE)) {
       source.mergeTo(gadget);
       return gadget.hllSketchImpl;
     }
@@ -363,8 +408,11 @@ public class Union extends BaseHllSketch {
     }
 
     //Hereafter, the source is in HLL mode.
+    //A gadget wrapped from a sparse image may be SPARSE, which is handled like SET.
+    final CurMode gdtMode =
+        (gadget.getCurMode() == CurMode.SPARSE) ? CurMode.SET : gadget.getCurMode();
     final int bit0 = gdtIsMem ? 1 : 0;
-    final int bits1_2 = (gdtEmpty ? 3 : gadget.getCurMode().ordinal()) << 1;
+    final int bits1_2 = (gdtEmpty ? 3 : gdtMode.ordinal()) << 1;
     final int bit3 = (srcLgK < gadgetLgK) ? 8 : 0;
     final int bit4 = (srcLgK > lgMaxK) ? 16 : 0;
     final int sw = bit4 | bit3 | bits1_2 | bit0;
@@ -414,7 +462,7 @@ public class Union extends BaseHllSketch {
       case 21://src >  max, src >= gdt, gdtHLL, gdtMemory
       { //Action: forward HLL merge w/autofold, ooof=True
         //merge src(Hll4,6,8,heap/mem,Mode=HLL) -> gdt(Hll8,heap,Mode=HLL)
-        mergeHlltoHLLmode(source, gadget, srcLgK, gadgetLgK, srcIsMem, gdtIsMem);
+        mergeHlltoHLLmode(source, gadget, srcIsMem, gdtIsMem);
         hllSketchImpl = gadget.putOutOfOrderFlag(true).hllSketchImpl;
         break;
       }
@@ -422,7 +470,7 @@ public class Union extends BaseHllSketch {
       { //Action: downsample gdt to srcLgK, forward HLL merge w/autofold, ooof=True
         final HllSketch gdtHll8Heap = downsample(gadget, srcLgK);
         //merge src(Hll4,6,8;heap/mem,Mode=HLL) -> gdt(Hll8,heap,hll)
-        mergeHlltoHLLmode(source, gdtHll8Heap, srcLgK, gadgetLgK, srcIsMem, false);
+        mergeHlltoHLLmode(source, gdtHll8Heap, srcIsMem, false);
         hllSketchImpl = gdtHll8Heap.putOutOfOrderFlag(true).hllSketchImpl;
         break;
       }
@@ -430,7 +478,7 @@ public class Union extends BaseHllSketch {
       { //Action: downsample gdt to srcLgK, forward HLL merge w/autofold, use gdt memory, ooof=True
         final HllSketch gdtHll8Heap = downsample(gadget, srcLgK);
         //merge src(Hll4,6,8;heap/mem;Mode=HLL) -> gdt(Hll8,heap,Mode=HLL)
-        mergeHlltoHLLmode(source, gdtHll8Heap, srcLgK, gadgetLgK, srcIsMem, false);
+        mergeHlltoHLLmode(source, gdtHll8Heap, srcIsMem, false);
         hllSketchImpl = useGadgetMemory(gadget, gdtHll8Heap, true).hllSketchImpl;
         break;
       }
@@ -477,135 +525,148 @@ public class Union extends BaseHllSketch {
         : HllSketch.writableWrap(wmem, false);                        //wrap & return
   }
 
+  /**
+   * Merges the registers of the given source in HLL mode into the given HLL_8 target in HLL mode,
+   * folding the source registers if the lgConfigK of the source is greater. The registers are
+   * processed 8 at a time as one little-endian long of HLL_8 bytes: the source registers are read
+   * in bulk and unpacked to that form, and the bytewise maximum with the target registers is found
+   * by SWAR arithmetic.
+   * @param src the source sketch, which may be HLL_4, HLL_6 or HLL_8, on the heap or in Memory
+   * @param tgt the target HLL_8 sketch, on the heap or in Memory, whose lgConfigK is not greater
+   * than that of the source
+   * @param srcIsMem true if the source is in Memory
+   * @param tgtIsMem true if the target is in Memory
+   */
   private static final void mergeHlltoHLLmode(final HllSketch src, final HllSketch tgt,
-      final int srcLgK, final int tgtLgK, final boolean srcIsMem, final boolean tgtIsMem) {
-      final int sw = (tgtIsMem ? 1 : 0) | (srcIsMem ? 2 : 0)
-          | ((srcLgK > tgtLgK) ? 4 : 0) | ((src.getTgtHllType() != HLL_8) ? 8 : 0);
-      switch (sw) {
-        case 0: { //HLL_8, srcLgK=tgtLgK, src=heap, tgt=heap
-          final int srcK = 1 << srcLgK;
-          final byte[] srcArr = ((Hll8Array) src.hllSketchImpl).hllByteArr;
-          final byte[] tgtArr = ((Hll8Array) tgt.hllSketchImpl).hllByteArr;
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcArr[i];
-            final byte tgtV = tgtArr[i];
-            tgtArr[i] = (srcV > tgtV) ? srcV : tgtV;
-          }
-          break;
-        }
-        case 1: { //HLL_8, srcLgK=tgtLgK, src=heap, tgt=mem
-          final int srcK = 1 << srcLgK;
-          final byte[] srcArr = ((Hll8Array) src.hllSketchImpl).hllByteArr;
-          final WritableMemory tgtMem = tgt.getWritableMemory();
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcArr[i];
-            final byte tgtV = tgtMem.getByte(HLL_BYTE_ARR_START + i);
-            tgtMem.putByte(HLL_BYTE_ARR_START + i, (srcV > tgtV) ? srcV : tgtV);
-          }
-          break;
-        }
-        case 2: { //HLL_8, srcLgK=tgtLgK, src=mem,  tgt=heap
-          final int srcK = 1 << srcLgK;
-          final Memory srcMem = src.getMemory();
-          final byte[] tgtArr = ((Hll8Array) tgt.hllSketchImpl).hllByteArr;
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcMem.getByte(HLL_BYTE_ARR_START + i);
-            final byte tgtV = tgtArr[i];
-            tgtArr[i] = (srcV > tgtV) ? srcV : tgtV;
-          }
-          break;
-        }
-        case 3: { //HLL_8, srcLgK=tgtLgK, src=mem,  tgt=mem
-          final int srcK = 1 << srcLgK;
-          final Memory srcMem = src.getMemory();
-          final WritableMemory tgtMem = tgt.getWritableMemory();
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcMem.getByte(HLL_BYTE_ARR_START + i);
-            final byte tgtV = tgtMem.getByte(HLL_BYTE_ARR_START + i);
-            tgtMem.putByte(HLL_BYTE_ARR_START + i, (srcV > tgtV) ? srcV : tgtV);
-          }
-          break;
-        }
-        case 4: { //HLL_8, srcLgK>tgtLgK, src=heap, tgt=heap
-          final int srcK = 1 << srcLgK;
-          final int tgtKmask = (1 << tgtLgK) - 1;
-          final byte[] srcArr = ((Hll8Array) src.hllSketchImpl).hllByteArr;
-          final byte[] tgtArr = ((Hll8Array) tgt.hllSketchImpl).hllByteArr;
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcArr[i];
-            final int j = i & tgtKmask;
-            final byte tgtV = tgtArr[j];
-            tgtArr[j] = (srcV > tgtV) ? srcV : tgtV;
-          }
-          break;
-        }
-        case 5: { //HLL_8, srcLgK>tgtLgK, src=heap, tgt=mem
-          final int srcK = 1 << srcLgK;
-          final int tgtKmask = (1 << tgtLgK) - 1;
-          final byte[] srcArr = ((Hll8Array) src.hllSketchImpl).hllByteArr;
-          final WritableMemory tgtMem = tgt.getWritableMemory();
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcArr[i];
-            final int j = i & tgtKmask;
-            final byte tgtV = tgtMem.getByte(HLL_BYTE_ARR_START + j);
-            tgtMem.putByte(HLL_BYTE_ARR_START + j, (srcV > tgtV) ? srcV : tgtV);
-          }
-          break;
-        }
-        case 6: { //HLL_8, srcLgK>tgtLgK, src=mem,  tgt=heap
-          final int srcK = 1 << srcLgK;
-          final int tgtKmask = (1 << tgtLgK) - 1;
-          final Memory srcMem = src.getMemory();
-          final byte[] tgtArr = ((Hll8Array) tgt.hllSketchImpl).hllByteArr;
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcMem.getByte(HLL_BYTE_ARR_START + i);
-            final int j = i & tgtKmask;
-            final byte tgtV = tgtArr[j];
-            tgtArr[j] = (srcV > tgtV) ? srcV : tgtV;
-          }
-          break;
-        }
-        case 7: { //HLL_8, srcLgK>tgtLgK, src=mem,  tgt=mem
-          final int srcK = 1 << srcLgK;
-          final int tgtKmask = (1 << tgtLgK) - 1;
-          final Memory srcMem = src.getMemory();
-          final WritableMemory tgtMem = tgt.getWritableMemory();
-          for (int i = 0; i < srcK; i++) {
-            final byte srcV = srcMem.getByte(HLL_BYTE_ARR_START + i);
-            final int j = i & tgtKmask;
-            final byte tgtV = tgtMem.getByte(HLL_BYTE_ARR_START + j);
-            tgtMem.putByte(HLL_BYTE_ARR_START + j, (srcV > tgtV) ? srcV : tgtV);
-          }
+      final boolean srcIsMem, final boolean tgtIsMem) {
+    final int srcLgK = src.getLgConfigK();
+    final int tgtLgK = tgt.getLgConfigK();
+    final AbstractHllArray srcAbsHllArr = (AbstractHllArray)(src.hllSketchImpl);
+    final TgtHllType srcType = src.getTgtHllType();
+    final int srcWords = 1 << (srcLgK - 3);
+    final int tgtWords = 1 << (tgtLgK - 3);
+    final int chunkWords = Math.min(MERGE_CHUNK_WORDS, tgtWords);
+    if ((srcType == TgtHllType.HLL_6) && (chunkWords < 4)) { //too few for the groups of 4 words
+      final int tgtKmask = (1 << tgtLgK) - 1;
+      final AbstractHllArray tgtAbsHllArr = (AbstractHllArray)(tgt.hllSketchImpl);
+      for (int i = 0; i < (1 << srcLgK); i++) {
+        tgtAbsHllArr.updateSlotNoKxQ(i & tgtKmask, srcAbsHllArr.getSlotValue(i));
+      }
+      tgt.hllSketchImpl.putRebuildCurMinNumKxQFlag(true);
+      return;
+    }
+
+    final Memory srcMem = srcIsMem ? src.getMemory()
+        : Memory.wrap(((HllArray) src.hllSketchImpl).hllByteArr);
+    final long srcStart = srcIsMem ? HLL_BYTE_ARR_START : 0;
+    final WritableMemory tgtMem = tgtIsMem ? tgt.getWritableMemory()
+        : WritableMemory.wrap(((HllArray) tgt.hllSketchImpl).hllByteArr);
+    final long tgtStart = tgtIsMem ? HLL_BYTE_ARR_START : 0;
+
+    final long[] packed = new long[chunkWords]; //the packed HLL_4 or HLL_6 source registers
+    final long[] srcBuf = new long[chunkWords];
+    final long[] tgtBuf = new long[chunkWords];
+    for (int w = 0; w < srcWords; w += chunkWords) {
+      switch (srcType) {
+        case HLL_4: {
+          getHll4Words(srcAbsHllArr, srcMem, srcStart, w, packed, srcBuf);
           break;
         }
-        case 8: case 9: case 10: case 11:
-        {
-          //!HLL_8, srcLgK=tgtLgK, src=heap/mem, tgt=heap/mem
-          final int srcK = 1 << srcLgK;
-          final AbstractHllArray srcAbsHllArr = (AbstractHllArray)(src.hllSketchImpl);
-          final AbstractHllArray tgtAbsHllArr = (AbstractHllArray)(tgt.hllSketchImpl);
-          for (int i = 0; i < srcK; i++) {
-            final int srcV = srcAbsHllArr.getSlotValue(i);
-            tgtAbsHllArr.updateSlotNoKxQ(i, srcV);
-          }
+        case HLL_6: {
+          getHll6Words(srcMem, srcStart, w, packed, srcBuf);
           break;
         }
-        case 12: case 13: case 14: case 15:
-        {
-          //!HLL_8, srcLgK>tgtLgK, src=heap/mem, tgt=heap/mem
-          final int srcK = 1 << srcLgK;
-          final int tgtKmask = (1 << tgtLgK) - 1;
-          final AbstractHllArray srcAbsHllArr = (AbstractHllArray)(src.hllSketchImpl);
-          final AbstractHllArray tgtAbsHllArr = (AbstractHllArray)(tgt.hllSketchImpl);
-          for (int i = 0; i < srcK; i++) {
-            final int srcV = srcAbsHllArr.getSlotValue(i);
-            final int j = i & tgtKmask;
-            tgtAbsHllArr.updateSlotNoKxQ(j, srcV);
-          }
-          break;
+        default: { //HLL_8
+          srcMem.getLongArray(srcStart + ((long) w << 3), srcBuf, 0, chunkWords);
         }
       }
-      tgt.hllSketchImpl.putRebuildCurMinNumKxQFlag(true);
+      final long tgtOffset = tgtStart + ((long) (w & (tgtWords - 1)) << 3); //fold
+      tgtMem.getLongArray(tgtOffset, tgtBuf, 0, chunkWords);
+      for (int i = 0; i < chunkWords; i++) {
+        tgtBuf[i] = maxBytes(tgtBuf[i], srcBuf[i]);
+      }
+      tgtMem.putLongArray(tgtOffset, tgtBuf, 0, chunkWords);
+    }
+    tgt.hllSketchImpl.putRebuildCurMinNumKxQFlag(true);
+  }
+
+  /**
+   * Returns the bytewise maximum of the given words of 8 HLL_8 registers. Each register must be
+   * less than 128, which all HLL values are.
+   * @param a the first word
+   * @param b the second word
+   * @return the bytewise maximum
+   */
+  static final long maxBytes(final long a, final long b) {
+    //the high bit of each byte of (a | 0x80) - b is set if a &ge; b, with no borrows between bytes
+    final long aGeB = (((a | HI_BITS) - b) & HI_BITS) >>> 7;
+    final long mask = aGeB * 0XFFL; //0XFF in the bytes where a &ge; b
+    return (a & mask) | (b & ~mask);
+  }
+
+  /**
+   * Unpacks the HLL_4 registers of the given source, from the given word, into words of HLL_8
+   * registers. The nibbles are offset by curMin, and the nibbles of AUX_TOKEN are replaced by the
+   * values of the aux map.
+   * @param srcAbsHllArr the source, which holds curMin and the aux map
+   * @param srcMem the Memory of the packed registers
+   * @param srcStart the offset in bytes of the packed registers
+   * @param word the first word to unpack, which is a multiple of the length of the buffer
+   * @param packed a buffer for the packed registers, at least half the length of buf
+   * @param buf receives the unpacked words. Its length must be even.
+   */
+  private static final void getHll4Words(final AbstractHllArray srcAbsHllArr, final Memory srcMem,
+      final long srcStart, final int word, final long[] packed, final long[] buf) {
+    final int numLongs = buf.length >>> 1; //16 nibbles per long
+    srcMem.getLongArray(srcStart + ((long) word << 2), packed, 0, numLongs);
+    final long curMin = srcAbsHllArr.getCurMin() * LO_BITS;
+    for (int i = 0; i < buf.length; i++) {
+      long x = (packed[i >>> 1] >>> ((i & 1) << 5)) & 0XFFFF_FFFFL; //8 nibbles, slot 0 lowest
+      x = (x | (x << 16)) & 0X0000_FFFF_0000_FFFFL;
+      x = (x | (x << 8)) & 0X00FF_00FF_00FF_00FFL;
+      x = (x | (x << 4)) & 0X0F0F_0F0F_0F0F_0F0FL;
+      long aux = (x + LO_BITS) & 0X1010_1010_1010_1010L; //bit 4 set only in bytes of 15
+      x += curMin;
+      while (aux != 0) { //rare
+        final int shift = Long.numberOfTrailingZeros(aux) & ~7;
+        final int slotNo = ((word + i) << 3) + (shift >>> 3);
+        final long v = srcAbsHllArr.getAuxHashMap().mustFindValueFor(slotNo);
+        x = (x & ~(0XFFL << shift)) | (v << shift);
+        aux &= aux - 1;
+      }
+      buf[i] = x;
+    }
+  }
+
+  /**
+   * Unpacks the HLL_6 registers of the given source, from the given word, into words of HLL_8
+   * registers. Each 3 longs of the source hold 4 words, of 48 bits each.
+   * @param srcMem the Memory of the packed registers
+   * @param srcStart the offset in bytes of the packed registers
+   * @param word the first word to unpack, which is a multiple of the length of the buffer
+   * @param packed a buffer for the packed registers, at least 3/4 the length of buf
+   * @param buf receives the unpacked words. Its length must be a multiple of 4.
+   */
+  private static final void getHll6Words(final Memory srcMem, final long srcStart,
+      final int word, final long[] packed, final long[] buf) {
+    final int numLongs = (buf.length >>> 2) * 3;
+    srcMem.getLongArray(srcStart + (word * 6L), packed, 0, numLongs);
+    for (int i = 0, j = 0; i < buf.length; i += 4, j += 3) {
+      final long a = packed[j];
+      final long b = packed[j + 1];
+      final long c = packed[j + 2];
+      buf[i] = spread6(a);
+      buf[i + 1] = spread6((a >>> 48) | (b << 16));
+      buf[i + 2] = spread6((b >>> 32) | (c << 32));
+      buf[i + 3] = spread6(c >>> 16);
+    }
+  }
+
+  //Spreads the 8 6-bit values in the low 48 bits of the given long into its 8 bytes
+  private static final long spread6(final long v) {
+    long x = (v & 0XFF_FFFFL) | ((v & 0XFFFF_FF00_0000L) << 8);
+    x = (x & 0X0000_0FFF_0000_0FFFL) | ((x & 0X00FF_F000_00FF_F000L) << 4);
+    return (x & 0X003F_003F_003F_003FL) | ((x & 0X0FC0_0FC0_0FC0_0FC0L) << 2);
   }
 
   //Used by union operator.  Always copies or downsamples to Heap HLL_8.
@@ -628,7 +689,7 @@ public class Union extends BaseHllSketch {
     tgtHllArr.putHipAccum(candArr.getHipAccum());
     tgtHllArr.putOutOfOrder(candidate.isOutOfOrder());
     tgtHllArr.putRebuildCurMinNumKxQFlag(false);
-    return new HllSketch(tgtHllArr);
+    return new HllSketch(tgtHllArr, candidate.getHasher());
   }
 
   //Used to rebuild curMin, numAtCurMin and KxQ registers, due to high performance merge operation
@@ -21,11 +21,22 @@ package org.apache.datasketches.hllmap;
 
 import static org.apache.datasketches.Util.checkIfPowerOf2;
 import static org.apache.datasketches.Util.invPow2;
+import static org.apache.datasketches.hllmap.PreambleUtil.COUPON_HASH_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.SECTION_HEADER_BYTES;
+import static org.apache.datasketches.hllmap.PreambleUtil.align8;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractActiveEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractCapacityEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractDeletedEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractTableEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.insertSectionHeader;
 
 import java.util.Arrays;
 
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Implements a key-value map where the value is a hash map of coupons.
@@ -88,6 +99,77 @@ final class CouponHashMap extends Map {
     return map;
   }
 
+  /**
+   * Heapifies the serialized section of a CouponHashMap at the given offset.
+   * @param mem the Memory image of a UniqueCountMap
+   * @param offsetBytes the offset of the section
+   * @param keySizeBytes the key size in bytes
+   * @param maxCouponsPerKey the maximum coupons per key of the level of the map
+   * @return a CouponHashMap on the Java heap
+   */
+  static CouponHashMap heapify(final Memory mem, final long offsetBytes,
+      final int keySizeBytes, final int maxCouponsPerKey) {
+    checkMaxCouponsPerKey(maxCouponsPerKey);
+    final int tableEntries = extractTableEntries(mem, offsetBytes);
+    final long[] offsets = arrayOffsets(tableEntries, keySizeBytes, maxCouponsPerKey);
+    checkSectionHeader(mem, offsetBytes, COUPON_HASH_MAP, maxCouponsPerKey, offsets[5]);
+
+    final CouponHashMap map = new CouponHashMap(keySizeBytes, maxCouponsPerKey);
+    map.tableEntries_ = tableEntries;
+    map.capacityEntries_ = extractCapacityEntries(mem, offsetBytes);
+    map.numActiveKeys_ = extractActiveEntries(mem, offsetBytes);
+    map.numDeletedKeys_ = extractDeletedEntries(mem, offsetBytes);
+
+    map.keysArr_ = new byte[tableEntries * keySizeBytes];
+    map.couponsArr_ = new short[tableEntries * maxCouponsPerKey];
+    map.curCountsArr_ = new byte[tableEntries];
+    map.invPow2SumArr_ = new float[tableEntries];
+    map.hipEstAccumArr_ = new float[tableEntries];
+    mem.getByteArray(offsetBytes + offsets[0], map.keysArr_, 0, map.keysArr_.length);
+    mem.getShortArray(offsetBytes + offsets[1], map.couponsArr_, 0, map.couponsArr_.length);
+    mem.getByteArray(offsetBytes + offsets[2], map.curCountsArr_, 0, tableEntries);
+    mem.getFloatArray(offsetBytes + offsets[3], map.invPow2SumArr_, 0, tableEntries);
+    mem.getFloatArray(offsetBytes + offsets[4], map.hipEstAccumArr_, 0, tableEntries);
+    return map;
+  }
+
+  /**
+   * Returns the offsets of the keys, coupons, current counts, inverse power of 2 sums and
+   * HIP estimates arrays and of the end of the serialized section of a CouponHashMap, relative
+   * to the start of the section.
+   * @param tableEntries the number of table entries
+   * @param keySizeBytes the key size in bytes
+   * @param maxCouponsPerKey the maximum coupons per key
+   * @return the offsets of the arrays and of the end of the section
+   */
+  static long[] arrayOffsets(final int tableEntries, final int keySizeBytes,
+      final int maxCouponsPerKey) {
+    final long keys = SECTION_HEADER_BYTES;
+    final long coupons = keys + align8((long) tableEntries * keySizeBytes);
+    final long curCounts = coupons + align8((long) tableEntries * maxCouponsPerKey * Short.BYTES);
+    final long invPow2Sums = curCounts + align8(tableEntries);
+    final long hipEstAccums = invPow2Sums + align8((long) tableEntries * Float.BYTES);
+    final long end = hipEstAccums + align8((long) tableEntries * Float.BYTES);
+    return new long[] { keys, coupons, curCounts, invPow2Sums, hipEstAccums, end };
+  }
+
+  @Override
+  long getSerializationBytes() {
+    return arrayOffsets(tableEntries_, keySizeBytes_, maxCouponsPerKey_)[5];
+  }
+
+  @Override
+  void putMemory(final WritableMemory dstMem, final long offsetBytes) {
+    final long[] offsets = arrayOffsets(tableEntries_, keySizeBytes_, maxCouponsPerKey_);
+    insertSectionHeader(dstMem, offsetBytes, offsets[5], COUPON_HASH_MAP, maxCouponsPerKey_,
+        tableEntries_, capacityEntries_, numActiveKeys_, numDeletedKeys_);
+    dstMem.putByteArray(offsetBytes + offsets[0], keysArr_, 0, keysArr_.length);
+    dstMem.putShortArray(offsetBytes + offsets[1], couponsArr_, 0, couponsArr_.length);
+    dstMem.putByteArray(offsetBytes + offsets[2], curCountsArr_, 0, tableEntries_);
+    dstMem.putFloatArray(offsetBytes + offsets[3], invPow2SumArr_, 0, tableEntries_);
+    dstMem.putFloatArray(offsetBytes + offsets[4], hipEstAccumArr_, 0, tableEntries_);
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
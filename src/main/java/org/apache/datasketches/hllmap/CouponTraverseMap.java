@@ -19,10 +19,23 @@
 
 package org.apache.datasketches.hllmap;
 
+import static org.apache.datasketches.hllmap.PreambleUtil.COUPON_TRAVERSE_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.SECTION_HEADER_BYTES;
+import static org.apache.datasketches.hllmap.PreambleUtil.align8;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractActiveEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractCapacityEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractDeletedEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractTableEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.insertSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.stateArrBytes;
+
 import java.util.Arrays;
 
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Implements a key-value map where the value is a simple array of coupons. Search operations are a
@@ -77,6 +90,68 @@ final class CouponTraverseMap extends Map {
     return map;
   }
 
+  /**
+   * Heapifies the serialized section of a CouponTraverseMap at the given offset.
+   * @param mem the Memory image of a UniqueCountMap
+   * @param offsetBytes the offset of the section
+   * @param keySizeBytes the key size in bytes
+   * @param maxCouponsPerKey the maximum coupons per key of the level of the map
+   * @return a CouponTraverseMap on the Java heap
+   */
+  static CouponTraverseMap heapify(final Memory mem, final long offsetBytes,
+      final int keySizeBytes, final int maxCouponsPerKey) {
+    final int tableEntries = extractTableEntries(mem, offsetBytes);
+    final long[] offsets = arrayOffsets(tableEntries, keySizeBytes, maxCouponsPerKey);
+    checkSectionHeader(mem, offsetBytes, COUPON_TRAVERSE_MAP, maxCouponsPerKey, offsets[3]);
+
+    final CouponTraverseMap map = new CouponTraverseMap(keySizeBytes, maxCouponsPerKey);
+    map.tableEntries_ = tableEntries;
+    map.capacityEntries_ = extractCapacityEntries(mem, offsetBytes);
+    map.numActiveKeys_ = extractActiveEntries(mem, offsetBytes);
+    map.numDeletedKeys_ = extractDeletedEntries(mem, offsetBytes);
+    map.entrySizeBytes_ = updateEntrySizeBytes(tableEntries, keySizeBytes, maxCouponsPerKey);
+
+    map.keysArr_ = new byte[tableEntries * keySizeBytes];
+    map.couponsArr_ = new short[tableEntries * maxCouponsPerKey];
+    map.stateArr_ = new byte[stateArrBytes(tableEntries)];
+    mem.getByteArray(offsetBytes + offsets[0], map.keysArr_, 0, map.keysArr_.length);
+    mem.getShortArray(offsetBytes + offsets[1], map.couponsArr_, 0, map.couponsArr_.length);
+    mem.getByteArray(offsetBytes + offsets[2], map.stateArr_, 0, map.stateArr_.length);
+    return map;
+  }
+
+  /**
+   * Returns the offsets of the keys, coupons and state arrays and of the end of the serialized
+   * section of a CouponTraverseMap, relative to the start of the section.
+   * @param tableEntries the number of table entries
+   * @param keySizeBytes the key size in bytes
+   * @param maxCouponsPerKey the maximum coupons per key
+   * @return the offsets of the arrays and of the end of the section
+   */
+  static long[] arrayOffsets(final int tableEntries, final int keySizeBytes,
+      final int maxCouponsPerKey) {
+    final long keys = SECTION_HEADER_BYTES;
+    final long coupons = keys + align8((long) tableEntries * keySizeBytes);
+    final long state = coupons + align8((long) tableEntries * maxCouponsPerKey * Short.BYTES);
+    final long end = state + align8(stateArrBytes(tableEntries));
+    return new long[] { keys, coupons, state, end };
+  }
+
+  @Override
+  long getSerializationBytes() {
+    return arrayOffsets(tableEntries_, keySizeBytes_, maxCouponsPerKey_)[3];
+  }
+
+  @Override
+  void putMemory(final WritableMemory dstMem, final long offsetBytes) {
+    final long[] offsets = arrayOffsets(tableEntries_, keySizeBytes_, maxCouponsPerKey_);
+    insertSectionHeader(dstMem, offsetBytes, offsets[3], COUPON_TRAVERSE_MAP, maxCouponsPerKey_,
+        tableEntries_, capacityEntries_, numActiveKeys_, numDeletedKeys_);
+    dstMem.putByteArray(offsetBytes + offsets[0], keysArr_, 0, keysArr_.length);
+    dstMem.putShortArray(offsetBytes + offsets[1], couponsArr_, 0, couponsArr_.length);
+    dstMem.putByteArray(offsetBytes + offsets[2], stateArr_, 0, stateArr_.length);
+  }
+
   @Override //used for test
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -292,7 +367,7 @@ final class CouponTraverseMap extends Map {
     }
   }
 
-  private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
+  static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
       final int maxCouponsPerKey) {
     final double byteFraction = Math.ceil(tableEntries / 8.0) / tableEntries;
     return keySizeBytes + ((double) maxCouponsPerKey * Short.BYTES) + byteFraction;
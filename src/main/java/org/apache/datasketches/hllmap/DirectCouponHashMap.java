@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static org.apache.datasketches.hllmap.PreambleUtil.COUPON_HASH_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The read-only form of the {@link CouponHashMap}, which searches its serialized section in
+ * place.
+ */
+final class DirectCouponHashMap extends DirectMap {
+  private static final double INNER_LOAD_FACTOR = 0.75;
+  private static final byte DELETED_KEY_MARKER = (byte) 255;
+  private static final double RSE = 0.408 / Math.sqrt(1024);
+  private final int maxCouponsPerKey_;
+  private final long keysOffset_;
+  private final long curCountsOffset_;
+  private final long hipEstAccumsOffset_;
+
+  DirectCouponHashMap(final Memory mem, final long offsetBytes, final int keySizeBytes,
+      final int maxCouponsPerKey) {
+    super(mem, offsetBytes, keySizeBytes);
+    maxCouponsPerKey_ = maxCouponsPerKey;
+    final long[] offsets =
+        CouponHashMap.arrayOffsets(tableEntries_, keySizeBytes, maxCouponsPerKey);
+    checkSectionHeader(mem, offsetBytes, COUPON_HASH_MAP, maxCouponsPerKey, offsets[5]);
+    keysOffset_ = offsetBytes + offsets[0];
+    curCountsOffset_ = offsetBytes + offsets[2];
+    hipEstAccumsOffset_ = offsetBytes + offsets[4];
+  }
+
+  @Override
+  double getEstimate(final byte[] key) {
+    final int index = findKey(key);
+    if (index < 0) { return 0; }
+    return mem_.getFloat(hipEstAccumsOffset_ + ((long) index * Float.BYTES));
+  }
+
+  @Override
+  double getUpperBound(final byte[] key) {
+    return getEstimate(key) * (1 + RSE);
+  }
+
+  @Override
+  double getLowerBound(final byte[] key) {
+    return getEstimate(key) * (1 - RSE);
+  }
+
+  //See CouponHashMap.findKey()
+  @Override
+  int findKey(final byte[] key) {
+    final long[] hash = MurmurHash3.hash(key, SEED);
+    int entryIndex = getIndex(hash[0], tableEntries_);
+    int firstDeletedIndex = -1;
+    final int loopIndex = entryIndex;
+    do {
+      final byte curCount = mem_.getByte(curCountsOffset_ + entryIndex);
+      if (curCount == 0) {
+        return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // found empty or deleted
+      }
+      if (curCount == DELETED_KEY_MARKER) {
+        if (firstDeletedIndex == -1) {
+          firstDeletedIndex = entryIndex;
+        }
+      } else if (keyEquals(key, keysOffset_, entryIndex)) {
+        return entryIndex; // found key
+      }
+      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
+    } while (entryIndex != loopIndex);
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+  @Override
+  int getMaxCouponsPerEntry() {
+    return maxCouponsPerKey_;
+  }
+
+  @Override
+  int getCapacityCouponsPerEntry() {
+    return (int) (maxCouponsPerKey_ * INNER_LOAD_FACTOR);
+  }
+
+  @Override
+  double getEntrySizeBytes() {
+    return keySizeBytes_ + (maxCouponsPerKey_ * Short.BYTES) + 1 + 4 + 4;
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static org.apache.datasketches.hllmap.PreambleUtil.COUPON_TRAVERSE_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The read-only form of the {@link CouponTraverseMap}, which searches its serialized section in
+ * place.
+ */
+final class DirectCouponTraverseMap extends DirectMap {
+  private static final double RSE = 0.408 / Math.sqrt(1024);
+  private final int maxCouponsPerKey_;
+  private final long keysOffset_;
+  private final long couponsOffset_;
+  private final long stateOffset_;
+
+  DirectCouponTraverseMap(final Memory mem, final long offsetBytes, final int keySizeBytes,
+      final int maxCouponsPerKey) {
+    super(mem, offsetBytes, keySizeBytes);
+    maxCouponsPerKey_ = maxCouponsPerKey;
+    final long[] offsets =
+        CouponTraverseMap.arrayOffsets(tableEntries_, keySizeBytes, maxCouponsPerKey);
+    checkSectionHeader(mem, offsetBytes, COUPON_TRAVERSE_MAP, maxCouponsPerKey, offsets[3]);
+    keysOffset_ = offsetBytes + offsets[0];
+    couponsOffset_ = offsetBytes + offsets[1];
+    stateOffset_ = offsetBytes + offsets[2];
+  }
+
+  @Override
+  double getEstimate(final byte[] key) {
+    final int entryIndex = findKey(key);
+    if (entryIndex < 0) { return 0; }
+    for (int i = 0; i < maxCouponsPerKey_; i++) {
+      if (getCoupon(entryIndex, i) == 0) {
+        return i;
+      }
+    }
+    return maxCouponsPerKey_;
+  }
+
+  @Override
+  double getUpperBound(final byte[] key) {
+    return getEstimate(key) * (1 + RSE);
+  }
+
+  @Override
+  double getLowerBound(final byte[] key) {
+    return getEstimate(key) * (1 - RSE);
+  }
+
+  //See CouponTraverseMap.findKey()
+  @Override
+  int findKey(final byte[] key) {
+    final long[] hash = MurmurHash3.hash(key, SEED);
+    int entryIndex = getIndex(hash[0], tableEntries_);
+    int firstDeletedIndex = -1;
+    final int loopIndex = entryIndex;
+    do {
+      if (!isStateBitSet(stateOffset_, entryIndex)) {
+        return firstDeletedIndex == -1 ? ~entryIndex : ~firstDeletedIndex; // found empty or deleted
+      }
+      if (getCoupon(entryIndex, 0) == 0) { //found deleted
+        if (firstDeletedIndex == -1) { firstDeletedIndex = entryIndex; }
+      } else if (keyEquals(key, keysOffset_, entryIndex)) {
+        return entryIndex; // found key
+      }
+      entryIndex = (entryIndex + getStride(hash[1], tableEntries_)) % tableEntries_;
+    } while (entryIndex != loopIndex);
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+  @Override
+  int getMaxCouponsPerEntry() {
+    return maxCouponsPerKey_;
+  }
+
+  @Override
+  int getCapacityCouponsPerEntry() {
+    return maxCouponsPerKey_;
+  }
+
+  @Override
+  double getEntrySizeBytes() {
+    return CouponTraverseMap.updateEntrySizeBytes(tableEntries_, keySizeBytes_, maxCouponsPerKey_);
+  }
+
+  private short getCoupon(final int entryIndex, final int couponIndex) {
+    final long index = ((long) entryIndex * maxCouponsPerKey_) + couponIndex;
+    return mem_.getShort(couponsOffset_ + (index * Short.BYTES));
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static java.lang.Math.log;
+import static java.lang.Math.sqrt;
+import static org.apache.datasketches.hllmap.PreambleUtil.HLL_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The read-only form of the {@link HllMap}, which searches its serialized section in place.
+ */
+final class DirectHllMap extends DirectMap {
+  private static final double RSE = sqrt(log(2.0)) / 32.0;
+  private final int hllArrLongs_;
+  private final long keysOffset_;
+  private final long hipEstAccumsOffset_;
+  private final long stateOffset_;
+
+  DirectHllMap(final Memory mem, final long offsetBytes, final int keySizeBytes, final int k) {
+    super(mem, offsetBytes, keySizeBytes);
+    hllArrLongs_ = (k / 10) + 1;
+    final long[] offsets = HllMap.arrayOffsets(tableEntries_, keySizeBytes, hllArrLongs_);
+    checkSectionHeader(mem, offsetBytes, HLL_MAP, k, offsets[6]);
+    keysOffset_ = offsetBytes + offsets[0];
+    hipEstAccumsOffset_ = offsetBytes + offsets[4];
+    stateOffset_ = offsetBytes + offsets[5];
+  }
+
+  @Override
+  double getEstimate(final byte[] key) {
+    if (key == null) { return Double.NaN; }
+    final int entryIndex = findKey(key);
+    if (entryIndex < 0) {
+      return 0;
+    }
+    return mem_.getDouble(hipEstAccumsOffset_ + ((long) entryIndex * Double.BYTES));
+  }
+
+  @Override
+  double getUpperBound(final byte[] key) {
+    return getEstimate(key) * (1 + RSE);
+  }
+
+  @Override
+  double getLowerBound(final byte[] key) {
+    return getEstimate(key) * (1 - RSE);
+  }
+
+  //See HllMap.findKey()
+  @Override
+  int findKey(final byte[] key) {
+    final long[] hash = MurmurHash3.hash(key, SEED);
+    int entryIndex  = getIndex(hash[0], tableEntries_);
+    final int stride = getStride(hash[1], tableEntries_);
+    final int loopIndex = entryIndex;
+
+    do {
+      if (!isStateBitSet(stateOffset_, entryIndex)) { //check if slot is empty
+        return ~entryIndex;
+      }
+      if (keyEquals(key, keysOffset_, entryIndex)) { //check for key match
+        return entryIndex;
+      }
+      entryIndex = (entryIndex + stride) % tableEntries_;
+    } while (entryIndex != loopIndex);
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+  @Override
+  int getMaxCouponsPerEntry() {
+    // not applicable
+    return 0;
+  }
+
+  @Override
+  int getCapacityCouponsPerEntry() {
+    // not applicable
+    return 0;
+  }
+
+  @Override
+  double getEntrySizeBytes() {
+    return HllMap.updateEntrySizeBytes(tableEntries_, keySizeBytes_, hllArrLongs_);
+  }
+
+}
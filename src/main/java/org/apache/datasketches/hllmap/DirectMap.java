@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static org.apache.datasketches.hllmap.PreambleUtil.extractActiveEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractCapacityEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractDeletedEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractSectionBytes;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractTableEntries;
+
+import org.apache.datasketches.SketchesReadOnlyException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * Base class of the read-only maps that search the serialized section of a map in place,
+ * as used by {@link UniqueCountMap#wrap(Memory)}. The tables are laid out exactly as the arrays
+ * of the map on the heap, so the searches are the same as those of the heap maps.
+ */
+abstract class DirectMap extends Map {
+  final Memory mem_;
+  final long offset_; //start of the section
+  final int tableEntries_;
+
+  DirectMap(final Memory mem, final long offsetBytes, final int keySizeBytes) {
+    super(keySizeBytes);
+    mem_ = mem;
+    offset_ = offsetBytes;
+    tableEntries_ = extractTableEntries(mem, offsetBytes);
+  }
+
+  @Override
+  double update(final byte[] key, final short coupon) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  double update(final int index, final short coupon) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  void updateEstimate(final int index, final double estimate) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  int findOrInsertKey(final byte[] key) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  void deleteKey(final int index) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  CouponsIterator getCouponsIterator(final int index) {
+    throw new SketchesReadOnlyException();
+  }
+
+  @Override
+  int getTableEntries() {
+    return tableEntries_;
+  }
+
+  @Override
+  int getCapacityEntries() {
+    return extractCapacityEntries(mem_, offset_);
+  }
+
+  @Override
+  int getActiveEntries() {
+    return extractActiveEntries(mem_, offset_);
+  }
+
+  @Override
+  int getDeletedEntries() {
+    return extractDeletedEntries(mem_, offset_);
+  }
+
+  @Override
+  int getCurrentCountEntries() {
+    return getActiveEntries() + getDeletedEntries();
+  }
+
+  @Override
+  long getMemoryUsageBytes() {
+    return getSerializationBytes();
+  }
+
+  @Override
+  long getSerializationBytes() {
+    return extractSectionBytes(mem_, offset_);
+  }
+
+  @Override
+  void putMemory(final WritableMemory dstMem, final long offsetBytes) {
+    mem_.copyTo(offset_, dstMem, offsetBytes, getSerializationBytes());
+  }
+
+  /**
+   * Returns true if the key at the given entry index of the keys array equals the given key.
+   * @param key the given key
+   * @param keysOffset the offset of the keys array
+   * @param entryIndex the given entry index
+   * @return true if the keys are equal
+   */
+  final boolean keyEquals(final byte[] key, final long keysOffset, final int entryIndex) {
+    final long keyOffset = keysOffset + ((long) entryIndex * keySizeBytes_);
+    for (int i = 0; i < keySizeBytes_; i++) {
+      if (mem_.getByte(keyOffset + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the bit of the given index of the state array is set.
+   * @param stateOffset the offset of the state array
+   * @param bitIndex the given index
+   * @return true if the bit is set
+   */
+  final boolean isStateBitSet(final long stateOffset, final int bitIndex) {
+    final int mask = 1 << (bitIndex % 8);
+    return (mem_.getByte(stateOffset + (bitIndex / 8)) & mask) != 0;
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static org.apache.datasketches.hllmap.PreambleUtil.SINGLE_COUPON_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The read-only form of the {@link SingleCouponMap}, which searches its serialized section in
+ * place.
+ */
+final class DirectSingleCouponMap extends DirectMap {
+  private static final double RSE = 0.408 / Math.sqrt(1024);
+  private final long keysOffset_;
+  private final long couponsOffset_;
+  private final long stateOffset_;
+
+  DirectSingleCouponMap(final Memory mem, final long offsetBytes, final int keySizeBytes) {
+    super(mem, offsetBytes, keySizeBytes);
+    final long[] offsets = SingleCouponMap.arrayOffsets(tableEntries_, keySizeBytes);
+    checkSectionHeader(mem, offsetBytes, SINGLE_COUPON_MAP, 1, offsets[3]);
+    keysOffset_ = offsetBytes + offsets[0];
+    couponsOffset_ = offsetBytes + offsets[1];
+    stateOffset_ = offsetBytes + offsets[2];
+  }
+
+  @Override
+  double getEstimate(final byte[] key) {
+    final int entryIndex = findKey(key);
+    if (entryIndex < 0) { return 0; }
+    if (!isStateBitSet(stateOffset_, entryIndex)) { return 1; }
+    return -getCoupon(entryIndex); // negative: level #
+  }
+
+  @Override
+  double getUpperBound(final byte[] key) {
+    return getEstimate(key) * (1 + RSE);
+  }
+
+  @Override
+  double getLowerBound(final byte[] key) {
+    return getEstimate(key) * (1 - RSE);
+  }
+
+  //See SingleCouponMap.findKey()
+  @Override
+  int findKey(final byte[] key) {
+    final long[] hash = MurmurHash3.hash(key, SEED);
+    int entryIndex = getIndex(hash[0], tableEntries_);
+    final int stride = getStride(hash[1], tableEntries_);
+    final int loopIndex = entryIndex;
+
+    do {
+      if (getCoupon(entryIndex) == 0) {
+        return ~entryIndex; //empty
+      }
+      if (keyEquals(key, keysOffset_, entryIndex)) {
+        return entryIndex;
+      }
+      entryIndex = (entryIndex + stride) % tableEntries_;
+    } while (entryIndex != loopIndex);
+    throw new SketchesArgumentException("Key not found and no empty slots!");
+  }
+
+  @Override
+  int getMaxCouponsPerEntry() {
+    return 1;
+  }
+
+  @Override
+  int getCapacityCouponsPerEntry() {
+    return 1;
+  }
+
+  @Override
+  double getEntrySizeBytes() {
+    return SingleCouponMap.updateEntrySizeBytes(tableEntries_, keySizeBytes_);
+  }
+
+  private short getCoupon(final int entryIndex) {
+    return mem_.getShort(couponsOffset_ + ((long) entryIndex * Short.BYTES));
+  }
+
+}
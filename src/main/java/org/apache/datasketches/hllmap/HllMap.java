@@ -22,11 +22,22 @@ package org.apache.datasketches.hllmap;
 import static java.lang.Math.log;
 import static java.lang.Math.sqrt;
 import static org.apache.datasketches.Util.invPow2;
+import static org.apache.datasketches.hllmap.PreambleUtil.HLL_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.SECTION_HEADER_BYTES;
+import static org.apache.datasketches.hllmap.PreambleUtil.align8;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractActiveEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractCapacityEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractTableEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.insertSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.stateArrBytes;
 
 import java.util.Arrays;
 
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Implements a key-value map where the value is a compact HLL sketch of size k.
@@ -95,6 +106,81 @@ final class HllMap extends Map {
     return map;
   }
 
+  /**
+   * Heapifies the serialized section of an HllMap at the given offset.
+   * @param mem the Memory image of a UniqueCountMap
+   * @param offsetBytes the offset of the section
+   * @param keySizeBytes the key size in bytes
+   * @param k the size of the HLL sketches
+   * @return an HllMap on the Java heap
+   */
+  static HllMap heapify(final Memory mem, final long offsetBytes, final int keySizeBytes,
+      final int k) {
+    final int tableEntries = extractTableEntries(mem, offsetBytes);
+    final HllMap map = new HllMap(keySizeBytes, k);
+    final long[] offsets = arrayOffsets(tableEntries, keySizeBytes, map.hllArrLongs_);
+    checkSectionHeader(mem, offsetBytes, HLL_MAP, k, offsets[6]);
+
+    map.tableEntries_ = tableEntries;
+    map.capacityEntries_ = extractCapacityEntries(mem, offsetBytes);
+    map.curCountEntries_ = extractActiveEntries(mem, offsetBytes);
+    map.growthFactor_ = HLL_RESIZE_FACTOR;
+    map.entrySizeBytes_ = updateEntrySizeBytes(tableEntries, keySizeBytes, map.hllArrLongs_);
+
+    map.keysArr_ = new byte[tableEntries * keySizeBytes];
+    map.arrOfHllArr_ = new long[tableEntries * map.hllArrLongs_];
+    map.invPow2SumHiArr_ = new double[tableEntries];
+    map.invPow2SumLoArr_ = new double[tableEntries];
+    map.hipEstAccumArr_ = new double[tableEntries];
+    map.stateArr_ = new byte[stateArrBytes(tableEntries)];
+    mem.getByteArray(offsetBytes + offsets[0], map.keysArr_, 0, map.keysArr_.length);
+    mem.getLongArray(offsetBytes + offsets[1], map.arrOfHllArr_, 0, map.arrOfHllArr_.length);
+    mem.getDoubleArray(offsetBytes + offsets[2], map.invPow2SumHiArr_, 0, tableEntries);
+    mem.getDoubleArray(offsetBytes + offsets[3], map.invPow2SumLoArr_, 0, tableEntries);
+    mem.getDoubleArray(offsetBytes + offsets[4], map.hipEstAccumArr_, 0, tableEntries);
+    mem.getByteArray(offsetBytes + offsets[5], map.stateArr_, 0, map.stateArr_.length);
+    return map;
+  }
+
+  /**
+   * Returns the offsets of the keys, HLL arrays, high and low inverse power of 2 sums,
+   * HIP estimates and state arrays and of the end of the serialized section of an HllMap,
+   * relative to the start of the section.
+   * @param tableEntries the number of table entries
+   * @param keySizeBytes the key size in bytes
+   * @param hllArrLongs the number of longs of each HLL array
+   * @return the offsets of the arrays and of the end of the section
+   */
+  static long[] arrayOffsets(final int tableEntries, final int keySizeBytes,
+      final int hllArrLongs) {
+    final long keys = SECTION_HEADER_BYTES;
+    final long hllArrs = keys + align8((long) tableEntries * keySizeBytes);
+    final long invPow2SumHis = hllArrs + ((long) tableEntries * hllArrLongs * Long.BYTES);
+    final long invPow2SumLos = invPow2SumHis + ((long) tableEntries * Double.BYTES);
+    final long hipEstAccums = invPow2SumLos + ((long) tableEntries * Double.BYTES);
+    final long state = hipEstAccums + ((long) tableEntries * Double.BYTES);
+    final long end = state + align8(stateArrBytes(tableEntries));
+    return new long[] { keys, hllArrs, invPow2SumHis, invPow2SumLos, hipEstAccums, state, end };
+  }
+
+  @Override
+  long getSerializationBytes() {
+    return arrayOffsets(tableEntries_, keySizeBytes_, hllArrLongs_)[6];
+  }
+
+  @Override
+  void putMemory(final WritableMemory dstMem, final long offsetBytes) {
+    final long[] offsets = arrayOffsets(tableEntries_, keySizeBytes_, hllArrLongs_);
+    insertSectionHeader(dstMem, offsetBytes, offsets[6], HLL_MAP, k_, tableEntries_,
+        capacityEntries_, curCountEntries_, 0);
+    dstMem.putByteArray(offsetBytes + offsets[0], keysArr_, 0, keysArr_.length);
+    dstMem.putLongArray(offsetBytes + offsets[1], arrOfHllArr_, 0, arrOfHllArr_.length);
+    dstMem.putDoubleArray(offsetBytes + offsets[2], invPow2SumHiArr_, 0, tableEntries_);
+    dstMem.putDoubleArray(offsetBytes + offsets[3], invPow2SumLoArr_, 0, tableEntries_);
+    dstMem.putDoubleArray(offsetBytes + offsets[4], hipEstAccumArr_, 0, tableEntries_);
+    dstMem.putByteArray(offsetBytes + offsets[5], stateArr_, 0, stateArr_.length);
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -333,7 +419,7 @@ final class HllMap extends Map {
     stateArr_ = newStateArr;
   }
 
-  private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
+  static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes,
       final int hllArrLongs) {
     final double byteFraction = Math.ceil(tableEntries / 8.0) / tableEntries;
     return keySizeBytes + ((double) hllArrLongs * Long.BYTES) + (3.0 * Double.BYTES) + byteFraction;
@@ -22,6 +22,7 @@ package org.apache.datasketches.hllmap;
 import java.math.BigInteger;
 
 import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Base class and API for all the maps.
@@ -127,6 +128,20 @@ abstract class Map {
 
   abstract long getMemoryUsageBytes();
 
+  /**
+   * Returns the number of bytes of the serialized section of this map, including its header.
+   * See {@link PreambleUtil}.
+   * @return the number of bytes of the serialized section of this map
+   */
+  abstract long getSerializationBytes();
+
+  /**
+   * Serializes this map as a section of the image of a UniqueCountMap.
+   * @param dstMem the destination Memory
+   * @param offsetBytes the offset of the section in the destination Memory
+   */
+  abstract void putMemory(WritableMemory dstMem, long offsetBytes);
+
   int getKeySizeBytes() {
     return keySizeBytes_;
   }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hllmap;
+
+import static org.apache.datasketches.Util.LS;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+// @formatter:off
+
+/**
+ * This class defines the serialized layout of the {@link UniqueCountMap} and provides the
+ * utilities for its fields.
+ *
+ * <p>The multi-byte integers are stored in native byte order. The preamble is followed by one
+ * section for each of the internal maps that exist, in the order of their levels.</p>
+ *
+ * <pre>
+ * UniqueCountMap Preamble
+ * Long || Start Byte Adr:
+ * Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |    0   |
+ *  0   ||-------------Key Size Bytes--------|NumLvls | MapID  | SerVer | PL=3   |
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |    8   |
+ *  1   ||-------------(unused)--------------|-----------Levels Bitmap-----------|
+ *
+ *      ||   23   |   22   |   21   |   20   |   19   |   18   |   17   |   16   |
+ *  2   ||----------------------------Total Bytes--------------------------------|
+ * </pre>
+ *
+ * <p>The UniqueCountMap is not one of the sketch families shared by the DataSketches
+ * implementations, so byte 2 holds a Map ID of its own rather than a Family ID. Its value, 0x8D,
+ * is outside the range of the Family IDs.</p>
+ *
+ * <p>Bit <i>i</i> of the Levels Bitmap is set if the map of level <i>i</i> exists. The map of
+ * level 0 is a SingleCouponMap and always exists. It is followed by the CouponTraverseMaps, the
+ * CouponHashMaps and the HllMap of the last level.</p>
+ *
+ * <pre>
+ * Map Section, relative to the start of the section, which is 8-byte aligned
+ * Long || Start Byte Adr:
+ * Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |    0   |
+ *  0   ||---------------------------Section Bytes-------------------------------|
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |    8   |
+ *  1   ||-----Max Coupons Per Entry or K----|------(unused)------------|MapType |
+ *
+ *      ||   23   |   22   |   21   |   20   |   19   |   18   |   17   |   16   |
+ *  2   ||---------Capacity Entries----------|----------Table Entries------------|
+ *
+ *      ||   31   |   30   |   29   |   28   |   27   |   26   |   25   |   24   |
+ *  3   ||---------Deleted Entries-----------|----------Active Entries-----------|
+ *
+ *      ||   39   |   38   |   37   |   36   |   35   |   34   |   33   |   32   |
+ *  4   ||-----------------------Start of the first array------------------------|
+ * </pre>
+ *
+ * <p>The arrays of the map follow the section header exactly as they are on the heap, each one
+ * padded to a multiple of 8 bytes, so that the tables can be searched in place:</p>
+ * <ul>
+ * <li>SingleCouponMap: keys, coupons (short), state bits.</li>
+ * <li>CouponTraverseMap: keys, coupons (short), state bits.</li>
+ * <li>CouponHashMap: keys, coupons (short), current counts (byte), inverse power of 2 sums
+ * (float), HIP estimates (float).</li>
+ * <li>HllMap: keys, HLL arrays (long), high and low inverse power of 2 sums (double),
+ * HIP estimates (double), state bits.</li>
+ * </ul>
+ */
+final class PreambleUtil {
+
+  private PreambleUtil() {}
+
+  // ###### DO NOT MESS WITH THIS ...
+  // Preamble byte start addresses
+  static final int PREAMBLE_LONGS_BYTE     = 0;
+  static final int SER_VER_BYTE            = 1;
+  static final int MAP_ID_BYTE             = 2;
+  static final int NUM_LEVELS_BYTE         = 3;
+  static final int KEY_SIZE_BYTES_INT      = 4;
+  static final int LEVELS_BITMAP_INT       = 8;
+  static final int TOTAL_BYTES_LONG        = 16;
+  static final int MAPS_START              = 24;
+
+  // Map section byte start addresses, relative to the section
+  static final int SECTION_BYTES_LONG      = 0;
+  static final int MAP_TYPE_BYTE           = 8;
+  static final int MAX_COUPONS_INT         = 12;
+  static final int TABLE_ENTRIES_INT       = 16;
+  static final int CAPACITY_ENTRIES_INT    = 20;
+  static final int ACTIVE_ENTRIES_INT      = 24;
+  static final int DELETED_ENTRIES_INT     = 28;
+  static final int SECTION_HEADER_BYTES    = 32;
+
+  // Map types
+  static final int SINGLE_COUPON_MAP       = 1;
+  static final int COUPON_TRAVERSE_MAP     = 2;
+  static final int COUPON_HASH_MAP         = 3;
+  static final int HLL_MAP                 = 4;
+
+  static final int PREAMBLE_LONGS          = 3;
+  static final int SER_VER                 = 1;
+  static final int MAP_ID                  = 0x8D;
+  // ###### TO HERE.
+
+  /**
+   * Returns a human readable string summary of the preamble and the map section headers of the
+   * given Memory image of a UniqueCountMap.
+   * @param mem the given Memory
+   * @return the summary string
+   */
+  static String preambleToString(final Memory mem) {
+    final int levels = mem.getInt(LEVELS_BITMAP_INT);
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### UNIQUE COUNT MAP PREAMBLE SUMMARY:").append(LS);
+    sb.append("Byte  0: Preamble Longs       : ").append(mem.getByte(PREAMBLE_LONGS_BYTE))
+      .append(LS);
+    sb.append("Byte  1: Serialization Version: ").append(mem.getByte(SER_VER_BYTE)).append(LS);
+    sb.append("Byte  2: Map ID               : ").append(mem.getByte(MAP_ID_BYTE) & 0XFF)
+      .append(LS);
+    sb.append("Byte  3: Num Levels           : ").append(mem.getByte(NUM_LEVELS_BYTE)).append(LS);
+    sb.append("Bytes 4-7: Key Size Bytes     : ").append(mem.getInt(KEY_SIZE_BYTES_INT))
+      .append(LS);
+    sb.append("Bytes 8-11: Levels Bitmap     : ").append(Integer.toBinaryString(levels))
+      .append(LS);
+    sb.append("Bytes 16-23: Total Bytes      : ").append(mem.getLong(TOTAL_BYTES_LONG))
+      .append(LS);
+    long offset = MAPS_START;
+    for (int level = 0; level < 32; level++) {
+      if ((levels & (1 << level)) == 0) { continue; }
+      sb.append("  Level ").append(level).append(" at ").append(offset).append(": Type ")
+        .append(mem.getByte(offset + MAP_TYPE_BYTE))
+        .append(", Bytes ").append(mem.getLong(offset + SECTION_BYTES_LONG))
+        .append(", Max Coupons ").append(mem.getInt(offset + MAX_COUPONS_INT))
+        .append(", Table Entries ").append(mem.getInt(offset + TABLE_ENTRIES_INT))
+        .append(", Active ").append(mem.getInt(offset + ACTIVE_ENTRIES_INT))
+        .append(", Deleted ").append(mem.getInt(offset + DELETED_ENTRIES_INT)).append(LS);
+      offset += mem.getLong(offset + SECTION_BYTES_LONG);
+    }
+    sb.append("### END UNIQUE COUNT MAP PREAMBLE SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  static void insertPreamble(final WritableMemory wmem, final int numLevels,
+      final int keySizeBytes, final int levelsBitmap, final long totalBytes) {
+    wmem.putByte(PREAMBLE_LONGS_BYTE, (byte) PREAMBLE_LONGS);
+    wmem.putByte(SER_VER_BYTE, (byte) SER_VER);
+    wmem.putByte(MAP_ID_BYTE, (byte) MAP_ID);
+    wmem.putByte(NUM_LEVELS_BYTE, (byte) numLevels);
+    wmem.putInt(KEY_SIZE_BYTES_INT, keySizeBytes);
+    wmem.putInt(LEVELS_BITMAP_INT, levelsBitmap);
+    wmem.putInt(LEVELS_BITMAP_INT + 4, 0);
+    wmem.putLong(TOTAL_BYTES_LONG, totalBytes);
+  }
+
+  /**
+   * Checks the preamble of the given Memory image of a UniqueCountMap.
+   * @param mem the given Memory
+   * @param numLevels the expected number of levels
+   * @return the levels bitmap
+   */
+  static int checkPreamble(final Memory mem, final int numLevels) {
+    final long cap = mem.getCapacity();
+    if (cap < MAPS_START) {
+      throw new SketchesArgumentException("Memory too small for the preamble: " + cap);
+    }
+    final int preLongs = mem.getByte(PREAMBLE_LONGS_BYTE);
+    final int serVer = mem.getByte(SER_VER_BYTE);
+    final int mapId = mem.getByte(MAP_ID_BYTE) & 0XFF;
+    if (mapId != MAP_ID) {
+      throw new SketchesArgumentException("Not a UniqueCountMap image, Map ID: " + mapId);
+    }
+    if ((preLongs != PREAMBLE_LONGS) || (serVer != SER_VER)
+        || (mem.getByte(NUM_LEVELS_BYTE) != numLevels)) {
+      throw new SketchesArgumentException("Possible Corruption: PreLongs: " + preLongs
+          + ", SerVer: " + serVer + ", NumLevels: " + mem.getByte(NUM_LEVELS_BYTE));
+    }
+    final int levels = mem.getInt(LEVELS_BITMAP_INT);
+    if (((levels & 1) == 0) || ((levels >>> numLevels) != 0)) {
+      throw new SketchesArgumentException("Possible Corruption: Levels: " + levels);
+    }
+    final long totalBytes = mem.getLong(TOTAL_BYTES_LONG);
+    if (totalBytes > cap) {
+      throw new SketchesArgumentException(
+          "Memory too small: " + cap + ", required: " + totalBytes);
+    }
+    return levels;
+  }
+
+  static void insertSectionHeader(final WritableMemory wmem, final long offset,
+      final long sectionBytes, final int mapType, final int maxCoupons, final int tableEntries,
+      final int capacityEntries, final int activeEntries, final int deletedEntries) {
+    wmem.putLong(offset + SECTION_BYTES_LONG, sectionBytes);
+    wmem.putLong(offset + MAP_TYPE_BYTE, 0L);
+    wmem.putByte(offset + MAP_TYPE_BYTE, (byte) mapType);
+    wmem.putInt(offset + MAX_COUPONS_INT, maxCoupons);
+    wmem.putInt(offset + TABLE_ENTRIES_INT, tableEntries);
+    wmem.putInt(offset + CAPACITY_ENTRIES_INT, capacityEntries);
+    wmem.putInt(offset + ACTIVE_ENTRIES_INT, activeEntries);
+    wmem.putInt(offset + DELETED_ENTRIES_INT, deletedEntries);
+  }
+
+  /**
+   * Checks the header of the map section at the given offset.
+   * @param mem the given Memory
+   * @param offset the offset of the section
+   * @param mapType the expected map type
+   * @param maxCoupons the expected maximum coupons per entry, or K of the HllMap
+   * @param sectionBytes the size of the section computed from its table entries
+   */
+  static void checkSectionHeader(final Memory mem, final long offset, final int mapType,
+      final int maxCoupons, final long sectionBytes) {
+    final int type = mem.getByte(offset + MAP_TYPE_BYTE);
+    final int max = mem.getInt(offset + MAX_COUPONS_INT);
+    if ((type != mapType) || (max != maxCoupons) || (extractTableEntries(mem, offset) < 1)
+        || (extractSectionBytes(mem, offset) != sectionBytes)) {
+      throw new SketchesArgumentException("Possible Corruption: Map at offset " + offset
+          + ", Type: " + type + ", Max Coupons: " + max);
+    }
+    if ((offset + sectionBytes) > mem.getCapacity()) {
+      throw new SketchesArgumentException("Memory too small for the map at offset " + offset);
+    }
+  }
+
+  static long extractSectionBytes(final Memory mem, final long offset) {
+    return mem.getLong(offset + SECTION_BYTES_LONG);
+  }
+
+  static int extractTableEntries(final Memory mem, final long offset) {
+    return mem.getInt(offset + TABLE_ENTRIES_INT);
+  }
+
+  static int extractCapacityEntries(final Memory mem, final long offset) {
+    return mem.getInt(offset + CAPACITY_ENTRIES_INT);
+  }
+
+  static int extractActiveEntries(final Memory mem, final long offset) {
+    return mem.getInt(offset + ACTIVE_ENTRIES_INT);
+  }
+
+  static int extractDeletedEntries(final Memory mem, final long offset) {
+    return mem.getInt(offset + DELETED_ENTRIES_INT);
+  }
+
+  /**
+   * Returns the given number of bytes rounded up to a multiple of 8.
+   * @param bytes the given number of bytes
+   * @return the given number of bytes rounded up to a multiple of 8
+   */
+  static long align8(final long bytes) {
+    return (bytes + 7L) & ~7L;
+  }
+
+  /**
+   * Returns the number of bytes of a state bit array of the given number of table entries.
+   * @param tableEntries the given number of table entries
+   * @return the number of bytes of a state bit array
+   */
+  static int stateArrBytes(final int tableEntries) {
+    return (int) Math.ceil(tableEntries / 8.0);
+  }
+
+}
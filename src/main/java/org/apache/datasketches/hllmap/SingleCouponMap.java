@@ -19,10 +19,22 @@
 
 package org.apache.datasketches.hllmap;
 
+import static org.apache.datasketches.hllmap.PreambleUtil.SECTION_HEADER_BYTES;
+import static org.apache.datasketches.hllmap.PreambleUtil.SINGLE_COUPON_MAP;
+import static org.apache.datasketches.hllmap.PreambleUtil.align8;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractActiveEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractCapacityEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.extractTableEntries;
+import static org.apache.datasketches.hllmap.PreambleUtil.insertSectionHeader;
+import static org.apache.datasketches.hllmap.PreambleUtil.stateArrBytes;
+
 import java.util.Arrays;
 
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Implements a key-value map where the value is a single coupon or a map reference.
@@ -73,6 +85,64 @@ final class SingleCouponMap extends Map {
     return map;
   }
 
+  /**
+   * Heapifies the serialized section of a SingleCouponMap at the given offset.
+   * @param mem the Memory image of a UniqueCountMap
+   * @param offsetBytes the offset of the section
+   * @param keySizeBytes the key size in bytes
+   * @return a SingleCouponMap on the Java heap
+   */
+  static SingleCouponMap heapify(final Memory mem, final long offsetBytes,
+      final int keySizeBytes) {
+    final int tableEntries = extractTableEntries(mem, offsetBytes);
+    final long[] offsets = arrayOffsets(tableEntries, keySizeBytes);
+    checkSectionHeader(mem, offsetBytes, SINGLE_COUPON_MAP, 1, offsets[3]);
+
+    final SingleCouponMap map = new SingleCouponMap(keySizeBytes);
+    map.tableEntries_ = tableEntries;
+    map.capacityEntries_ = extractCapacityEntries(mem, offsetBytes);
+    map.curCountEntries_ = extractActiveEntries(mem, offsetBytes);
+    map.entrySizeBytes_ = updateEntrySizeBytes(tableEntries, keySizeBytes);
+
+    map.keysArr_ = new byte[tableEntries * keySizeBytes];
+    map.couponsArr_ = new short[tableEntries];
+    map.stateArr_ = new byte[stateArrBytes(tableEntries)];
+    mem.getByteArray(offsetBytes + offsets[0], map.keysArr_, 0, map.keysArr_.length);
+    mem.getShortArray(offsetBytes + offsets[1], map.couponsArr_, 0, tableEntries);
+    mem.getByteArray(offsetBytes + offsets[2], map.stateArr_, 0, map.stateArr_.length);
+    return map;
+  }
+
+  /**
+   * Returns the offsets of the keys, coupons and state arrays and of the end of the serialized
+   * section of a SingleCouponMap, relative to the start of the section.
+   * @param tableEntries the number of table entries
+   * @param keySizeBytes the key size in bytes
+   * @return the offsets of the arrays and of the end of the section
+   */
+  static long[] arrayOffsets(final int tableEntries, final int keySizeBytes) {
+    final long keys = SECTION_HEADER_BYTES;
+    final long coupons = keys + align8((long) tableEntries * keySizeBytes);
+    final long state = coupons + align8((long) tableEntries * Short.BYTES);
+    final long end = state + align8(stateArrBytes(tableEntries));
+    return new long[] { keys, coupons, state, end };
+  }
+
+  @Override
+  long getSerializationBytes() {
+    return arrayOffsets(tableEntries_, keySizeBytes_)[3];
+  }
+
+  @Override
+  void putMemory(final WritableMemory dstMem, final long offsetBytes) {
+    final long[] offsets = arrayOffsets(tableEntries_, keySizeBytes_);
+    insertSectionHeader(dstMem, offsetBytes, offsets[3], SINGLE_COUPON_MAP, 1, tableEntries_,
+        capacityEntries_, curCountEntries_, 0);
+    dstMem.putByteArray(offsetBytes + offsets[0], keysArr_, 0, keysArr_.length);
+    dstMem.putShortArray(offsetBytes + offsets[1], couponsArr_, 0, couponsArr_.length);
+    dstMem.putByteArray(offsetBytes + offsets[2], stateArr_, 0, stateArr_.length);
+  }
+
   @Override
   double update(final byte[] key, final short coupon) {
     final int entryIndex = findOrInsertKey(key);
@@ -268,7 +338,7 @@ final class SingleCouponMap extends Map {
     throw new SketchesArgumentException("Key not found and no empty slots!");
   }
 
-  private static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes) {
+  static final double updateEntrySizeBytes(final int tableEntries, final int keySizeBytes) {
     final double byteFraction = Math.ceil(tableEntries / 8.0) / tableEntries;
     return keySizeBytes + Short.BYTES + byteFraction;
   }
@@ -19,7 +19,15 @@
 
 package org.apache.datasketches.hllmap;
 
+import static org.apache.datasketches.hllmap.PreambleUtil.MAPS_START;
+import static org.apache.datasketches.hllmap.PreambleUtil.SECTION_HEADER_BYTES;
+import static org.apache.datasketches.hllmap.PreambleUtil.checkPreamble;
+import static org.apache.datasketches.hllmap.PreambleUtil.insertPreamble;
+
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesStateException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * This is a real-time, key-value HLL mapping sketch that tracks approximate unique counts of
@@ -76,6 +84,11 @@ import org.apache.datasketches.SketchesArgumentException;
  * In this same package is the VariousMapRSETest class that was used to generate the error plots
  * for the web site. Please refer to the javadocs for those classes for more information.
  *
+ * <p>The map can be serialized with {@link #toByteArray()} or {@link #putMemory(WritableMemory)}.
+ * The tables of the internal maps are stored as they are, so {@link #heapify(Memory)} only copies
+ * them and {@link #wrap(Memory)} can answer the estimates directly from the serialized image,
+ * for example a memory-mapped file, without rebuilding any table.
+ *
  * @author Lee Rhodes
  * @author Alexander Saydakov
  * @author Kevin Lang
@@ -115,6 +128,38 @@ public class UniqueCountMap {
     maps_[0] = SingleCouponMap.getInstance(initEntries, keySizeBytes);
   }
 
+  private UniqueCountMap(final int keySizeBytes, final Map[] maps) {
+    keySizeBytes_ = keySizeBytes;
+    maps_ = maps;
+  }
+
+  /**
+   * Heapify the given Memory image of a UniqueCountMap, which must have been created by
+   * {@link #toByteArray()} or {@link #putMemory(WritableMemory)}. The tables of the internal maps
+   * are copied as they are, without being rebuilt.
+   * @param srcMem the given Memory image
+   * @return a UniqueCountMap on the heap that can be updated
+   */
+  public static UniqueCountMap heapify(final Memory srcMem) {
+    return fromMemory(srcMem, false);
+  }
+
+  /**
+   * Wraps the given Memory image of a UniqueCountMap, which must have been created by
+   * {@link #toByteArray()} or {@link #putMemory(WritableMemory)}. The tables of the internal maps
+   * are searched in place, so a large map can be queried from a memory-mapped file, obtained
+   * with <i>Memory.map(File)</i>, without being loaded onto the heap.
+   *
+   * <p>The returned map is read-only: {@link #update(byte[], byte[])} with a non-null identifier
+   * throws a SketchesReadOnlyException. The given Memory must not be modified while it is
+   * wrapped.</p>
+   * @param srcMem the given Memory image
+   * @return a read-only UniqueCountMap backed by the given Memory
+   */
+  public static UniqueCountMap wrap(final Memory srcMem) {
+    return fromMemory(srcMem, true);
+  }
+
   /**
    * Updates the map with a given key and identifier and returns the estimate of the number of
    * unique identifiers encountered so far for the given key.
@@ -271,6 +316,60 @@ public class UniqueCountMap {
     return maps_[maps_.length - 1];
   }
 
+  /**
+   * Returns the number of bytes required to serialize this map.
+   * @return the number of bytes required to serialize this map
+   */
+  public long getSerializationBytes() {
+    long bytes = MAPS_START;
+    for (int i = 0; i < maps_.length; i++) {
+      if (maps_[i] != null) {
+        bytes += maps_[i].getSerializationBytes();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Serializes this map into a byte array.
+   * Maps larger than a byte array can hold must be serialized with
+   * {@link #putMemory(WritableMemory)}.
+   * @return this map serialized into a byte array
+   */
+  public byte[] toByteArray() {
+    final long bytes = getSerializationBytes();
+    if (bytes > Integer.MAX_VALUE) {
+      throw new SketchesStateException("Map too large for a byte array: " + bytes
+          + " bytes. Use putMemory(WritableMemory) instead.");
+    }
+    final byte[] byteArr = new byte[(int) bytes];
+    putMemory(WritableMemory.wrap(byteArr));
+    return byteArr;
+  }
+
+  /**
+   * Serializes this map into the given WritableMemory, starting at offset zero.
+   * @param dstMem the given WritableMemory, which must have a capacity of at least
+   * {@link #getSerializationBytes()}
+   */
+  public void putMemory(final WritableMemory dstMem) {
+    final long bytes = getSerializationBytes();
+    final long cap = dstMem.getCapacity();
+    if (cap < bytes) {
+      throw new SketchesArgumentException("Memory too small: " + cap + ", required: " + bytes);
+    }
+    int levels = 0;
+    long offset = MAPS_START;
+    for (int i = 0; i < maps_.length; i++) {
+      if (maps_[i] != null) {
+        levels |= 1 << i;
+        maps_[i].putMemory(dstMem, offset);
+        offset += maps_[i].getSerializationBytes();
+      }
+    }
+    insertPreamble(dstMem, NUM_LEVELS, keySizeBytes_, levels, bytes);
+  }
+
   /**
    * Returns a string with a human-readable summary of the UniqueCountMap and all the internal maps
    * @return human-readable summary
@@ -347,6 +446,56 @@ public class UniqueCountMap {
     return maps_[level];
   }
 
+  private static UniqueCountMap fromMemory(final Memory srcMem, final boolean wrap) {
+    final int levels = checkPreamble(srcMem, NUM_LEVELS);
+    final int keySizeBytes = srcMem.getInt(PreambleUtil.KEY_SIZE_BYTES_INT);
+    checkConstructorKeySize(keySizeBytes);
+    final long totalBytes = srcMem.getLong(PreambleUtil.TOTAL_BYTES_LONG);
+    final Map[] maps = new Map[NUM_LEVELS];
+    long offset = MAPS_START;
+    for (int level = 0; level < NUM_LEVELS; level++) {
+      if ((levels & (1 << level)) == 0) { continue; }
+      if ((offset + SECTION_HEADER_BYTES) > totalBytes) {
+        throw new SketchesArgumentException("Possible Corruption: Map of level " + level
+            + " at offset " + offset + " beyond total bytes: " + totalBytes);
+      }
+      maps[level] = wrap
+          ? wrapMap(srcMem, offset, keySizeBytes, level)
+          : heapifyMap(srcMem, offset, keySizeBytes, level);
+      offset += maps[level].getSerializationBytes();
+    }
+    if (offset != totalBytes) {
+      throw new SketchesArgumentException("Possible Corruption: Total bytes: " + totalBytes
+          + ", sum of the maps: " + offset);
+    }
+    return new UniqueCountMap(keySizeBytes, maps);
+  }
+
+  //See getMapForLevel()
+  private static Map heapifyMap(final Memory mem, final long offset, final int keySizeBytes,
+      final int level) {
+    if (level == 0) {
+      return SingleCouponMap.heapify(mem, offset, keySizeBytes);
+    } else if (level <= NUM_TRAVERSE_MAPS) {
+      return CouponTraverseMap.heapify(mem, offset, keySizeBytes, 1 << level);
+    } else if (level < (NUM_LEVELS - 1)) {
+      return CouponHashMap.heapify(mem, offset, keySizeBytes, 1 << level);
+    }
+    return HllMap.heapify(mem, offset, keySizeBytes, HLL_K);
+  }
+
+  private static Map wrapMap(final Memory mem, final long offset, final int keySizeBytes,
+      final int level) {
+    if (level == 0) {
+      return new DirectSingleCouponMap(mem, offset, keySizeBytes);
+    } else if (level <= NUM_TRAVERSE_MAPS) {
+      return new DirectCouponTraverseMap(mem, offset, keySizeBytes, 1 << level);
+    } else if (level < (NUM_LEVELS - 1)) {
+      return new DirectCouponHashMap(mem, offset, keySizeBytes, 1 << level);
+    }
+    return new DirectHllMap(mem, offset, keySizeBytes, HLL_K);
+  }
+
   private static final void checkConstructorKeySize(final int keySizeBytes) {
     if (keySizeBytes < 4) {
       throw new SketchesArgumentException("KeySizeBytes must be >= 4: " + keySizeBytes);
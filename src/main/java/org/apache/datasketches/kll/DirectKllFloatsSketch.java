@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import static org.apache.datasketches.kll.KllPreambleUtil.DATA_START;
+import static org.apache.datasketches.kll.KllPreambleUtil.FAMILY_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.FLAGS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.FLOATS_SKETCH_TYPE;
+import static org.apache.datasketches.kll.KllPreambleUtil.K_SHORT;
+import static org.apache.datasketches.kll.KllPreambleUtil.MIN_K_SHORT;
+import static org.apache.datasketches.kll.KllPreambleUtil.M_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.NUM_LEVELS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.N_LONG;
+import static org.apache.datasketches.kll.KllPreambleUtil.PREAMBLE_INTS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.PREAMBLE_INTS_FULL;
+import static org.apache.datasketches.kll.KllPreambleUtil.SER_VER_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.checkPreamble;
+import static org.apache.datasketches.kll.KllPreambleUtil.serialVersionUID3;
+
+import java.util.Arrays;
+
+import org.apache.datasketches.Family;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesReadOnlyException;
+import org.apache.datasketches.kll.KllPreambleUtil.Flags;
+import org.apache.datasketches.memory.DefaultMemoryRequestServer;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.MemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * The KllFloatsSketch that keeps all of its state in Memory using the updatable form described
+ * in KllFloatsSketch. Single updates write directly into the Memory. Compactions and merges
+ * work on heap copies of the levels and items arrays, which are written back when done.
+ */
+final class DirectKllFloatsSketch extends KllFloatsSketch {
+  private static final int LEVEL_ZERO_SORTED_MASK = 1 << Flags.IS_LEVEL_ZERO_SORTED.ordinal();
+
+  private Memory mem;
+  private WritableMemory wmem; //null if read-only
+  private MemoryRequestServer memReqSvr;
+
+  private DirectKllFloatsSketch(final int k, final Memory mem, final WritableMemory wmem,
+      final MemoryRequestServer memReqSvr) {
+    super(k, DEFAULT_M);
+    this.mem = mem;
+    this.wmem = wmem;
+    this.memReqSvr = memReqSvr;
+  }
+
+  static DirectKllFloatsSketch newInstance(final int k, final WritableMemory dstMem,
+      final MemoryRequestServer memReqSvr) {
+    KllHelper.checkK(k);
+    final int emptyBytes = getUpdatableSerializedSizeBytes(1, k);
+    if (dstMem.getCapacity() < emptyBytes) {
+      throw new SketchesArgumentException("Memory capacity must be at least " + emptyBytes
+          + " bytes for k = " + k + ": " + dstMem.getCapacity());
+    }
+    dstMem.clear(0, DATA_START);
+    dstMem.putByte(PREAMBLE_INTS_BYTE, (byte) PREAMBLE_INTS_FULL);
+    dstMem.putByte(SER_VER_BYTE, serialVersionUID3);
+    dstMem.putByte(FAMILY_BYTE, (byte) Family.KLL.getID());
+    dstMem.putShort(K_SHORT, (short) k);
+    dstMem.putByte(M_BYTE, (byte) DEFAULT_M);
+    dstMem.putShort(MIN_K_SHORT, (short) k);
+    dstMem.putByte(NUM_LEVELS_BYTE, (byte) 1);
+    dstMem.putInt(DATA_START, k);
+    dstMem.putInt(DATA_START + Integer.BYTES, k);
+    dstMem.putFloat(minValueOffset(1), Float.NaN);
+    dstMem.putFloat(minValueOffset(1) + Float.BYTES, Float.NaN);
+    return new DirectKllFloatsSketch(k, dstMem, dstMem, memReqSvr);
+  }
+
+  static DirectKllFloatsSketch wrapInstance(final Memory srcMem) {
+    final int k = checkUpdatableImage(srcMem);
+    return new DirectKllFloatsSketch(k, srcMem, null, null);
+  }
+
+  static DirectKllFloatsSketch writableWrapInstance(final WritableMemory srcMem,
+      final MemoryRequestServer memReqSvr) {
+    final int k = checkUpdatableImage(srcMem);
+    return new DirectKllFloatsSketch(k, srcMem, srcMem, memReqSvr);
+  }
+
+  @Override
+  public void update(final float value) {
+    if (wmem == null) { throw new SketchesReadOnlyException("Call to update() on read-only buffer"); }
+    super.update(value);
+  }
+
+  @Override
+  public void merge(final KllFloatsSketch other) {
+    if (wmem == null) { throw new SketchesReadOnlyException("Call to merge() on read-only buffer"); }
+    super.merge(other);
+  }
+
+  @Override
+  public boolean isDirect() {
+    return true;
+  }
+
+  @Override
+  public long getN() {
+    return mem.getLong(N_LONG);
+  }
+
+  @Override
+  void setN(final long n) {
+    wmem.putLong(N_LONG, n);
+  }
+
+  @Override
+  int getMinK() {
+    return mem.getShort(MIN_K_SHORT) & 0xffff;
+  }
+
+  @Override
+  void setMinK(final int minK) {
+    wmem.putShort(MIN_K_SHORT, (short) minK);
+  }
+
+  @Override
+  public float getMinValue() {
+    return mem.getFloat(minValueOffset(getNumLevels()));
+  }
+
+  @Override
+  void setMinValue(final float minValue) {
+    wmem.putFloat(minValueOffset(getNumLevels()), minValue);
+  }
+
+  @Override
+  public float getMaxValue() {
+    return mem.getFloat(minValueOffset(getNumLevels()) + Float.BYTES);
+  }
+
+  @Override
+  void setMaxValue(final float maxValue) {
+    wmem.putFloat(minValueOffset(getNumLevels()) + Float.BYTES, maxValue);
+  }
+
+  @Override
+  boolean isLevelZeroSorted() {
+    return (mem.getByte(FLAGS_BYTE) & LEVEL_ZERO_SORTED_MASK) != 0;
+  }
+
+  @Override
+  void setLevelZeroSorted(final boolean sorted) {
+    final int flags = mem.getByte(FLAGS_BYTE);
+    final int newFlags = sorted ? flags | LEVEL_ZERO_SORTED_MASK : flags & ~LEVEL_ZERO_SORTED_MASK;
+    if (newFlags != flags) { wmem.putByte(FLAGS_BYTE, (byte) newFlags); }
+  }
+
+  @Override
+  void sortLevelZero() {
+    if ((wmem == null) || isLevelZeroSorted()) { return; }
+    final int levelZero = getLevelsArrayAt(0);
+    final int len = getLevelsArrayAt(1) - levelZero;
+    final long offset = itemsOffset(getNumLevels()) + ((long) levelZero * Float.BYTES);
+    final float[] buf = new float[len];
+    wmem.getFloatArray(offset, buf, 0, len);
+    Arrays.sort(buf);
+    wmem.putFloatArray(offset, buf, 0, len);
+    setLevelZeroSorted(true);
+  }
+
+  @Override
+  int getNumLevels() {
+    return mem.getByte(NUM_LEVELS_BYTE) & 0xff;
+  }
+
+  @Override
+  int getLevelsArrayAt(final int index) {
+    return mem.getInt(DATA_START + ((long) index * Integer.BYTES));
+  }
+
+  @Override
+  void setLevelsArrayAt(final int index, final int value) {
+    wmem.putInt(DATA_START + ((long) index * Integer.BYTES), value);
+  }
+
+  @Override
+  int[] getLevels() {
+    final int len = getNumLevels() + 1;
+    final int[] levels = new int[len];
+    mem.getIntArray(DATA_START, levels, 0, len);
+    return levels;
+  }
+
+  @Override
+  float[] getItems() {
+    final int numLevels = getNumLevels();
+    final int levelZero = getLevelsArrayAt(0);
+    final int capacity = getLevelsArrayAt(numLevels);
+    final float[] items = new float[capacity];
+    // the free space below level zero holds no data and is not read
+    mem.getFloatArray(itemsOffset(numLevels) + ((long) levelZero * Float.BYTES), items, levelZero,
+        capacity - levelZero);
+    return items;
+  }
+
+  @Override
+  void setItemsArrayAt(final int index, final float value) {
+    wmem.putFloat(itemsOffset(getNumLevels()) + ((long) index * Float.BYTES), value);
+  }
+
+  @Override
+  void setLevelsAndItems(final int numLevels, final int[] levels, final float[] items) {
+    final int capacity = levels[numLevels];
+    assert items.length == capacity;
+    // min and max move if the number of levels changes
+    final float minValue = getMinValue();
+    final float maxValue = getMaxValue();
+    final int needBytes = getUpdatableSerializedSizeBytes(numLevels, capacity);
+    if (needBytes > wmem.getCapacity()) {
+      growMemory(needBytes);
+    }
+    wmem.putByte(NUM_LEVELS_BYTE, (byte) numLevels);
+    wmem.putIntArray(DATA_START, levels, 0, numLevels + 1);
+    final long offset = minValueOffset(numLevels);
+    wmem.putFloat(offset, minValue);
+    wmem.putFloat(offset + Float.BYTES, maxValue);
+    final int levelZero = levels[0];
+    wmem.putFloatArray(itemsOffset(numLevels) + ((long) levelZero * Float.BYTES), items, levelZero,
+        capacity - levelZero);
+  }
+
+  private void growMemory(final int needBytes) {
+    if (memReqSvr == null) {
+      memReqSvr = wmem.getMemoryRequestServer();
+      if (memReqSvr == null) { memReqSvr = new DefaultMemoryRequestServer(); }
+    }
+    final WritableMemory newMem = memReqSvr.request(needBytes);
+    // only the preamble is copied, the caller rewrites everything after it
+    wmem.copyTo(0, newMem, 0, DATA_START);
+    memReqSvr.requestClose(wmem, newMem);
+    wmem = newMem;
+    mem = newMem;
+  }
+
+  private static long minValueOffset(final int numLevels) {
+    return DATA_START + ((numLevels + 1L) * Integer.BYTES);
+  }
+
+  private static long itemsOffset(final int numLevels) {
+    return minValueOffset(numLevels) + (2 * Float.BYTES);
+  }
+
+  /**
+   * Checks that the given Memory holds a sketch in the updatable form.
+   * @param srcMem the given Memory
+   * @return the parameter k of the sketch
+   */
+  private static int checkUpdatableImage(final Memory srcMem) {
+    final long memCap = srcMem.getCapacity();
+    if (memCap < DATA_START) {
+      throw new SketchesArgumentException("Memory too small for the updatable form: " + memCap);
+    }
+    final int serVer = srcMem.getByte(SER_VER_BYTE) & 0xff;
+    if (serVer != serialVersionUID3) {
+      throw new SketchesArgumentException("Memory must hold a sketch in the updatable form "
+          + "of toUpdatableByteArray(), serial version " + serialVersionUID3 + ", got " + serVer
+          + ". Use heapify() for the compact form.");
+    }
+    checkPreamble(srcMem, FLOATS_SKETCH_TYPE);
+    final int k = srcMem.getShort(K_SHORT) & 0xffff;
+    KllHelper.checkK(k);
+    final int numLevels = srcMem.getByte(NUM_LEVELS_BYTE) & 0xff;
+    if ((numLevels < 1) || (memCap < itemsOffset(numLevels))) {
+      throw new SketchesArgumentException("Possible corruption: numLevels: " + numLevels
+          + ", Memory capacity: " + memCap);
+    }
+    final int capacity = srcMem.getInt(DATA_START + ((long) numLevels * Integer.BYTES));
+    final int needBytes = getUpdatableSerializedSizeBytes(numLevels, capacity);
+    if (memCap < needBytes) {
+      throw new SketchesArgumentException("Possible corruption: Memory capacity " + memCap
+          + " is less than the required " + needBytes + " bytes");
+    }
+    return k;
+  }
+
+}
@@ -19,23 +19,39 @@
 
 package org.apache.datasketches.kll;
 
-import static java.lang.Math.abs;
-import static java.lang.Math.ceil;
-import static java.lang.Math.exp;
-import static java.lang.Math.log;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
-import static java.lang.Math.pow;
-import static java.lang.Math.round;
+import static org.apache.datasketches.kll.KllPreambleUtil.DATA_START;
+import static org.apache.datasketches.kll.KllPreambleUtil.DATA_START_SINGLE_ITEM;
+import static org.apache.datasketches.kll.KllPreambleUtil.FAMILY_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.FLAGS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.FLOATS_SKETCH_TYPE;
+import static org.apache.datasketches.kll.KllPreambleUtil.K_SHORT;
+import static org.apache.datasketches.kll.KllPreambleUtil.MIN_K_SHORT;
+import static org.apache.datasketches.kll.KllPreambleUtil.M_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.NUM_LEVELS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.N_LONG;
+import static org.apache.datasketches.kll.KllPreambleUtil.PREAMBLE_INTS_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.PREAMBLE_INTS_FULL;
+import static org.apache.datasketches.kll.KllPreambleUtil.PREAMBLE_INTS_SHORT;
+import static org.apache.datasketches.kll.KllPreambleUtil.SER_VER_BYTE;
+import static org.apache.datasketches.kll.KllPreambleUtil.checkPreamble;
+import static org.apache.datasketches.kll.KllPreambleUtil.flags;
+import static org.apache.datasketches.kll.KllPreambleUtil.serialVersionUID1;
+import static org.apache.datasketches.kll.KllPreambleUtil.serialVersionUID2;
+import static org.apache.datasketches.kll.KllPreambleUtil.serialVersionUID3;
 
 import java.util.Arrays;
 
 import org.apache.datasketches.ByteArrayUtil;
 import org.apache.datasketches.Family;
+import org.apache.datasketches.kll.KllPreambleUtil.Flags;
 import org.apache.datasketches.QuantilesHelper;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
 import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.MemoryRequestServer;
+import org.apache.datasketches.memory.WritableMemory;
 
 /**
  * Implementation of a very compact quantiles sketch with lazy compaction scheme
@@ -154,40 +170,10 @@ public class KllFloatsSketch {
    * The default value of K.
    */
   public static final int DEFAULT_K = 200;
-  static final int DEFAULT_M = 8;
-  static final int MIN_K = DEFAULT_M;
-  static final int MAX_K = (1 << 16) - 1; // serialized as an unsigned short
-
-  /* Serialized sketch layout:
-   *  Adr:
-   *      ||    7    |   6   |    5   |    4   |    3   |    2    |    1   |      0       |
-   *  0   || unused  |   M   |--------K--------|  Flags |  FamID  | SerVer | PreambleInts |
-   *      ||   15    |   14  |   13   |   12   |   11   |   10    |    9   |      8       |
-   *  1   ||---------------------------------N_LONG---------------------------------------|
-   *      ||   23    |   22  |   21   |   20   |   19   |    18   |   17   |      16      |
-   *  2   ||---------------data----------------|--------|numLevels|-------min K-----------|
-   */
-
-  private static final int PREAMBLE_INTS_BYTE = 0;
-  private static final int SER_VER_BYTE       = 1;
-  private static final int FAMILY_BYTE        = 2;
-  private static final int FLAGS_BYTE         = 3;
-  private static final int K_SHORT            = 4;  // to 5
-  private static final int M_BYTE             = 6;
-  private static final int N_LONG             = 8;  // to 15
-  private static final int MIN_K_SHORT        = 16;  // to 17
-  private static final int NUM_LEVELS_BYTE    = 18;
-  private static final int DATA_START         = 20;
-
-  private static final int DATA_START_SINGLE_ITEM = 8;
-
-  private static final byte serialVersionUID1 = 1;
-  private static final byte serialVersionUID2 = 2;
+  static final int DEFAULT_M = KllHelper.DEFAULT_M;
+  static final int MIN_K = KllHelper.MIN_K;
+  static final int MAX_K = KllHelper.MAX_K;
 
-  private enum Flags { IS_EMPTY, IS_LEVEL_ZERO_SORTED, IS_SINGLE_ITEM }
-
-  private static final int PREAMBLE_INTS_SHORT = 2; // for empty and single item
-  private static final int PREAMBLE_INTS_FULL = 5;
 
   /*
    * Data is stored in items_.
@@ -215,6 +201,7 @@ public class KllFloatsSketch {
   private float minValue_;
   private float maxValue_;
   private boolean isLevelZeroSorted_;
+  private KllFloatsSketchSortedView sortedView_; // valid only while N is unchanged
 
   private KllFloatsSketch(final Memory mem) {
     m_ = DEFAULT_M;
@@ -222,7 +209,22 @@ public class KllFloatsSketch {
     final int flags = mem.getByte(FLAGS_BYTE) & 0xff;
     final boolean isEmpty = (flags & (1 << Flags.IS_EMPTY.ordinal())) > 0;
     final boolean isSingleItem = (flags & (1 << Flags.IS_SINGLE_ITEM.ordinal())) > 0;
-    if (isEmpty) {
+    final boolean isUpdatable = mem.getByte(SER_VER_BYTE) == serialVersionUID3;
+    if (isUpdatable) {
+      n_ = mem.getLong(N_LONG);
+      minK_ = mem.getShort(MIN_K_SHORT) & 0xffff;
+      numLevels_ = mem.getByte(NUM_LEVELS_BYTE) & 0xff;
+      levels_ = new int[numLevels_ + 1];
+      mem.getIntArray(DATA_START, levels_, 0, numLevels_ + 1);
+      int offset = DATA_START + (levels_.length * Integer.BYTES);
+      minValue_ = mem.getFloat(offset);
+      offset += Float.BYTES;
+      maxValue_ = mem.getFloat(offset);
+      offset += Float.BYTES;
+      items_ = new float[levels_[numLevels_]];
+      mem.getFloatArray(offset + (levels_[0] * Float.BYTES), items_, levels_[0], getNumRetained());
+      isLevelZeroSorted_ = (flags & (1 << Flags.IS_LEVEL_ZERO_SORTED.ordinal())) > 0;
+    } else if (isEmpty) {
       numLevels_ = 1;
       levels_ = new int[] {k_, k_};
       items_ = new float[k_];
@@ -267,17 +269,16 @@ public class KllFloatsSketch {
     }
   }
 
-  private KllFloatsSketch(final int k, final int m) {
-    checkK(k);
+  /**
+   * Constructs only the configuration of a sketch. Used directly by DirectKllFloatsSketch,
+   * which keeps the rest of its state in Memory.
+   * @param k parameter that controls size of the sketch and accuracy of estimates
+   * @param m minimum buffer width
+   */
+  KllFloatsSketch(final int k, final int m) {
+    KllHelper.checkK(k);
     k_ = k;
     m_ = m;
-    numLevels_ = 1;
-    levels_ = new int[] {k, k};
-    items_ = new float[k];
-    minValue_ = Float.NaN;
-    maxValue_ = Float.NaN;
-    isLevelZeroSorted_ = false;
-    minK_ = k;
   }
 
   /**
@@ -295,6 +296,13 @@ public class KllFloatsSketch {
    */
   public KllFloatsSketch(final int k) {
     this(k, DEFAULT_M);
+    numLevels_ = 1;
+    levels_ = new int[] {k, k};
+    items_ = new float[k];
+    minValue_ = Float.NaN;
+    maxValue_ = Float.NaN;
+    isLevelZeroSorted_ = false;
+    minK_ = k;
   }
 
   /**
@@ -318,7 +326,7 @@ public class KllFloatsSketch {
    * @return empty flag
    */
   public boolean isEmpty() {
-    return n_ == 0;
+    return getN() == 0;
   }
 
   /**
@@ -326,7 +334,7 @@ public class KllFloatsSketch {
    * @return the number of retained items (samples) in the sketch
    */
   public int getNumRetained() {
-    return levels_[numLevels_] - levels_[0];
+    return getLevelsArrayAt(getNumLevels()) - getLevelsArrayAt(0);
   }
 
   /**
@@ -334,7 +342,15 @@ public class KllFloatsSketch {
    * @return estimation mode flag
    */
   public boolean isEstimationMode() {
-    return numLevels_ > 1;
+    return getNumLevels() > 1;
+  }
+
+  /**
+   * Returns true if this sketch keeps its data in Memory rather than on the Java heap.
+   * @return true if this sketch keeps its data in Memory
+   */
+  public boolean isDirect() {
+    return false;
   }
 
   /**
@@ -344,22 +360,23 @@ public class KllFloatsSketch {
    */
   public void update(final float value) {
     if (Float.isNaN(value)) { return; }
-    if (isEmpty()) {
-      minValue_ = value;
-      maxValue_ = value;
+    final long n = getN();
+    if (n == 0) {
+      setMinValue(value);
+      setMaxValue(value);
     } else {
-      if (value < minValue_) { minValue_ = value; }
-      if (value > maxValue_) { maxValue_ = value; }
+      if (value < getMinValue()) { setMinValue(value); }
+      if (value > getMaxValue()) { setMaxValue(value); }
     }
-    if (levels_[0] == 0) {
+    if (getLevelsArrayAt(0) == 0) {
       compressWhileUpdating();
     }
-    n_++;
-    isLevelZeroSorted_ = false;
-    final int nextPos = levels_[0] - 1;
-    assert levels_[0] >= 0;
-    levels_[0] = nextPos;
-    items_[nextPos] = value;
+    setN(n + 1);
+    setLevelZeroSorted(false);
+    final int nextPos = getLevelsArrayAt(0) - 1;
+    assert nextPos >= 0;
+    setLevelsArrayAt(0, nextPos);
+    setItemsArrayAt(nextPos, value);
   }
 
   /**
@@ -371,19 +388,26 @@ public class KllFloatsSketch {
     if (m_ != other.m_) {
       throw new SketchesArgumentException("incompatible M: " + m_ + " and " + other.m_);
     }
-    final long finalN = n_ + other.n_;
-    for (int i = other.levels_[0]; i < other.levels_[1]; i++) {
-      update(other.items_[i]);
+    final long finalN = getN() + other.getN();
+    final int otherNumLevels = other.getNumLevels();
+    final int[] otherLevels = other.getLevels();
+    final float[] otherItems = other.getItems();
+    for (int i = otherLevels[0]; i < otherLevels[1]; i++) {
+      update(otherItems[i]);
     }
-    if (other.numLevels_ >= 2) {
-      mergeHigherLevels(other, finalN);
+    if (otherNumLevels >= 2) {
+      mergeHigherLevels(otherNumLevels, otherLevels, otherItems, finalN);
     }
-    if (Float.isNaN(minValue_) || (other.minValue_ < minValue_)) { minValue_ = other.minValue_; }
-    if (Float.isNaN(maxValue_) || (other.maxValue_ > maxValue_)) { maxValue_ = other.maxValue_; }
-    n_ = finalN;
+    final float otherMinValue = other.getMinValue();
+    final float otherMaxValue = other.getMaxValue();
+    final float minValue = getMinValue();
+    final float maxValue = getMaxValue();
+    if (Float.isNaN(minValue) || (otherMinValue < minValue)) { setMinValue(otherMinValue); }
+    if (Float.isNaN(maxValue) || (otherMaxValue > maxValue)) { setMaxValue(otherMaxValue); }
+    setN(finalN);
     assertCorrectTotalWeight();
     if (other.isEstimationMode()) {
-      minK_ = min(minK_, other.minK_);
+      setMinK(min(getMinK(), other.getMinK()));
     }
   }
 
@@ -412,9 +436,10 @@ public class KllFloatsSketch {
    * that would be preceded by the given fraction of a hypothetical sorted
    * version of the input stream so far.
    *
-   * <p>We note that this method has a fairly large overhead (microseconds instead of nanoseconds)
-   * so it should not be called multiple times to get different quantiles from the same
-   * sketch. Instead use getQuantiles(), which pays the overhead only once.
+   * <p>We note that the first call after the sketch has changed has a fairly large overhead
+   * (microseconds instead of nanoseconds) to build the sorted view of the sketch.
+   * Further calls reuse that view until the sketch changes again.
+   * See {@link #getSortedView()}.
    *
    * <p>If the sketch is empty this returns NaN.
    *
@@ -427,13 +452,7 @@ public class KllFloatsSketch {
    */
   public float getQuantile(final double fraction) {
     if (isEmpty()) { return Float.NaN; }
-    if (fraction == 0.0) { return minValue_; }
-    if (fraction == 1.0) { return maxValue_; }
-    if ((fraction < 0.0) || (fraction > 1.0)) {
-      throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
-    }
-    final KllFloatsQuantileCalculator quant = getQuantileCalculator();
-    return quant.getQuantile(fraction);
+    return getSortedView().getQuantile(fraction);
   }
 
   /**
@@ -444,7 +463,7 @@ public class KllFloatsSketch {
    * exists with a confidence of at least 99%. Returns NaN if the sketch is empty.
    */
   public float getQuantileUpperBound(final double fraction) {
-    return getQuantile(min(1.0, fraction + getNormalizedRankError(minK_, false)));
+    return getQuantile(min(1.0, fraction + getNormalizedRankError(getMinK(), false)));
   }
 
   /**
@@ -455,7 +474,7 @@ public class KllFloatsSketch {
    * exists with a confidence of at least 99%. Returns NaN if the sketch is empty.
    */
   public float getQuantileLowerBound(final double fraction) {
-    return getQuantile(max(0, fraction - getNormalizedRankError(minK_, false)));
+    return getQuantile(max(0, fraction - getNormalizedRankError(getMinK(), false)));
   }
 
   /**
@@ -478,21 +497,10 @@ public class KllFloatsSketch {
    */
   public float[] getQuantiles(final double[] fractions) {
     if (isEmpty()) { return null; }
-    KllFloatsQuantileCalculator quant = null;
+    final KllFloatsSketchSortedView sortedView = getSortedView();
     final float[] quantiles = new float[fractions.length];
     for (int i = 0; i < fractions.length; i++) {
-      final double fraction = fractions[i];
-      if ((fraction < 0.0) || (fraction > 1.0)) {
-        throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
-      }
-      if      (fraction == 0.0) { quantiles[i] = minValue_; }
-      else if (fraction == 1.0) { quantiles[i] = maxValue_; }
-      else {
-        if (quant == null) {
-          quant = getQuantileCalculator();
-        }
-        quantiles[i] = quant.getQuantile(fraction);
-      }
+      quantiles[i] = sortedView.getQuantile(fractions[i]);
     }
     return quantiles;
   }
@@ -530,23 +538,29 @@ public class KllFloatsSketch {
    */
   public double getRank(final float value) {
     if (isEmpty()) { return Double.NaN; }
+    final KllFloatsSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView != null) { return sortedView.getRank(value); }
+    final int numLevels = getNumLevels();
+    final int[] levels = getLevels();
+    final float[] items = getItems();
+    final boolean isLevelZeroSorted = isLevelZeroSorted();
     int level = 0;
     int weight = 1;
     long total = 0;
-    while (level < numLevels_) {
-      final int fromIndex = levels_[level];
-      final int toIndex = levels_[level + 1]; // exclusive
+    while (level < numLevels) {
+      final int fromIndex = levels[level];
+      final int toIndex = levels[level + 1]; // exclusive
       for (int i = fromIndex; i < toIndex; i++) {
-        if (items_[i] < value) {
+        if (items[i] < value) {
           total += weight;
-        } else if ((level > 0) || isLevelZeroSorted_) {
+        } else if ((level > 0) || isLevelZeroSorted) {
           break; // levels above 0 are sorted, no point comparing further
         }
       }
       level++;
       weight *= 2;
     }
-    return (double) total / n_;
+    return (double) total / getN();
   }
 
   /**
@@ -621,7 +635,7 @@ public class KllFloatsSketch {
    * @see KllFloatsSketch
    */
   public double getNormalizedRankError(final boolean pmf) {
-    return getNormalizedRankError(minK_, pmf);
+    return getNormalizedRankError(getMinK(), pmf);
   }
 
   /**
@@ -647,12 +661,8 @@ public class KllFloatsSketch {
    * Otherwise, it is the "single-sided" normalized rank error for all the other queries.
    * @see KllFloatsSketch
    */
-  // constants were derived as the best fit to 99 percentile empirically measured max error in
-  // thousands of trials
   public static double getNormalizedRankError(final int k, final boolean pmf) {
-    return pmf
-        ? 2.446 / pow(k, 0.9433)
-        : 2.296 / pow(k, 0.9723);
+    return KllHelper.getNormalizedRankError(k, pmf);
   }
 
   /**
@@ -665,18 +675,8 @@ public class KllFloatsSketch {
    * @return the value of <i>k</i> given a value of epsilon.
    * @see KllFloatsSketch
    */
-  // constants were derived as the best fit to 99 percentile empirically measured max error in
-  // thousands of trials
   public static int getKFromEpsilon(final double epsilon, final boolean pmf) {
-    //Ensure that eps is >= than the lowest possible eps given MAX_K and pmf=false.
-    final double eps = max(epsilon, 4.7634E-5);
-    final double kdbl = pmf
-        ? exp(log(2.446 / eps) / 0.9433)
-        : exp(log(2.296 / eps) / 0.9723);
-    final double krnd = round(kdbl);
-    final double del = abs(krnd - kdbl);
-    final int k = (int) ((del < 1E-6) ? krnd : ceil(kdbl));
-    return max(MIN_K, min(MAX_K, k));
+    return KllHelper.getKFromEpsilon(epsilon, pmf);
   }
 
   /**
@@ -685,7 +685,17 @@ public class KllFloatsSketch {
    */
   public int getSerializedSizeBytes() {
     if (isEmpty()) { return N_LONG; }
-    return getSerializedSizeBytes(numLevels_, getNumRetained());
+    return getSerializedSizeBytes(getNumLevels(), getNumRetained());
+  }
+
+  /**
+   * Returns the number of bytes this sketch requires in the updatable format of
+   * {@link #toUpdatableByteArray()}.
+   * @return the number of bytes this sketch requires in the updatable format
+   */
+  public int getUpdatableSerializedSizeBytes() {
+    final int numLevels = getNumLevels();
+    return getUpdatableSerializedSizeBytes(numLevels, getLevelsArrayAt(numLevels));
   }
 
   /**
@@ -703,6 +713,21 @@ public class KllFloatsSketch {
     return getSerializedSizeBytes(numLevels, maxNumItems);
   }
 
+  /**
+   * Returns upper bound on the size of a sketch in the updatable format given a parameter
+   * <em>k</em> and stream length. This can be used to size the WritableMemory given to
+   * {@link #newDirectInstance(int, WritableMemory, MemoryRequestServer)} so that it never has
+   * to request more memory.
+   * @param k parameter that controls size of the sketch and accuracy of estimates
+   * @param n stream length
+   * @return upper bound on the size in the updatable format
+   */
+  public static int getMaxUpdatableSerializedSizeBytes(final int k, final long n) {
+    final int numLevels = KllHelper.ubOnNumLevels(n);
+    final int capacity = KllHelper.computeTotalCapacity(k, DEFAULT_M, numLevels);
+    return getUpdatableSerializedSizeBytes(numLevels, capacity);
+  }
+
   @Override
   public String toString() {
     return toString(false, false);
@@ -715,49 +740,53 @@ public class KllFloatsSketch {
    * @return string representation of sketch summary
    */
   public String toString(final boolean withLevels, final boolean withData) {
+    final int numLevels = getNumLevels();
+    final int[] levels = getLevels();
     final String epsPct = String.format("%.3f%%", getNormalizedRankError(false) * 100);
     final String epsPMFPct = String.format("%.3f%%", getNormalizedRankError(true) * 100);
     final StringBuilder sb = new StringBuilder();
     sb.append(Util.LS).append("### KLL sketch summary:").append(Util.LS);
     sb.append("   K                    : ").append(k_).append(Util.LS);
-    sb.append("   min K                : ").append(minK_).append(Util.LS);
+    sb.append("   min K                : ").append(getMinK()).append(Util.LS);
     sb.append("   M                    : ").append(m_).append(Util.LS);
-    sb.append("   N                    : ").append(n_).append(Util.LS);
+    sb.append("   N                    : ").append(getN()).append(Util.LS);
     sb.append("   Epsilon              : ").append(epsPct).append(Util.LS);
     sb.append("   Epsison PMF          : ").append(epsPMFPct).append(Util.LS);
     sb.append("   Empty                : ").append(isEmpty()).append(Util.LS);
     sb.append("   Estimation Mode      : ").append(isEstimationMode()).append(Util.LS);
-    sb.append("   Levels               : ").append(numLevels_).append(Util.LS);
-    sb.append("   Sorted               : ").append(isLevelZeroSorted_).append(Util.LS);
-    sb.append("   Buffer Capacity Items: ").append(items_.length).append(Util.LS);
+    sb.append("   Direct               : ").append(isDirect()).append(Util.LS);
+    sb.append("   Levels               : ").append(numLevels).append(Util.LS);
+    sb.append("   Sorted               : ").append(isLevelZeroSorted()).append(Util.LS);
+    sb.append("   Buffer Capacity Items: ").append(levels[numLevels]).append(Util.LS);
     sb.append("   Retained Items       : ").append(getNumRetained()).append(Util.LS);
     sb.append("   Storage Bytes        : ").append(getSerializedSizeBytes()).append(Util.LS);
-    sb.append("   Min Value            : ").append(minValue_).append(Util.LS);
-    sb.append("   Max Value            : ").append(maxValue_).append(Util.LS);
+    sb.append("   Min Value            : ").append(getMinValue()).append(Util.LS);
+    sb.append("   Max Value            : ").append(getMaxValue()).append(Util.LS);
     sb.append("### End sketch summary").append(Util.LS);
 
     if (withLevels) {
       sb.append("### KLL sketch levels:").append(Util.LS)
       .append("   index: nominal capacity, actual size").append(Util.LS);
-      for (int i = 0; i < numLevels_; i++) {
+      for (int i = 0; i < numLevels; i++) {
         sb.append("   ").append(i).append(": ")
-        .append(KllHelper.levelCapacity(k_, numLevels_, i, m_))
+        .append(KllHelper.levelCapacity(k_, numLevels, i, m_))
         .append(", ").append(safeLevelSize(i)).append(Util.LS);
       }
       sb.append("### End sketch levels").append(Util.LS);
     }
 
     if (withData) {
+      final float[] items = getItems();
       sb.append("### KLL sketch data:").append(Util.LS);
       int level = 0;
-      while (level < numLevels_) {
-        final int fromIndex = levels_[level];
-        final int toIndex = levels_[level + 1]; // exclusive
+      while (level < numLevels) {
+        final int fromIndex = levels[level];
+        final int toIndex = levels[level + 1]; // exclusive
         if (fromIndex < toIndex) {
           sb.append(" level ").append(level).append(":").append(Util.LS);
         }
         for (int i = fromIndex; i < toIndex; i++) {
-          sb.append("   ").append(items_[i]).append(Util.LS);
+          sb.append("   ").append(items[i]).append(Util.LS);
         }
         level++;
       }
@@ -772,146 +801,205 @@ public class KllFloatsSketch {
    * @return serialized sketch in a byte array form.
    */
   public byte[] toByteArray() {
+    final long n = getN();
     final byte[] bytes = new byte[getSerializedSizeBytes()];
-    final boolean isSingleItem = n_ == 1;
+    final boolean isSingleItem = n == 1;
     bytes[PREAMBLE_INTS_BYTE] = (byte) (isEmpty() || isSingleItem ? PREAMBLE_INTS_SHORT : PREAMBLE_INTS_FULL);
     bytes[SER_VER_BYTE] = isSingleItem ? serialVersionUID2 : serialVersionUID1;
     bytes[FAMILY_BYTE] = (byte) Family.KLL.getID();
-    bytes[FLAGS_BYTE] = (byte) (
-        (isEmpty() ? 1 << Flags.IS_EMPTY.ordinal() : 0)
-      | (isLevelZeroSorted_ ? 1 << Flags.IS_LEVEL_ZERO_SORTED.ordinal() : 0)
-      | (isSingleItem ? 1 << Flags.IS_SINGLE_ITEM.ordinal() : 0)
-    );
+    bytes[FLAGS_BYTE] = flags(FLOATS_SKETCH_TYPE, isEmpty(), isLevelZeroSorted(), isSingleItem);
     ByteArrayUtil.putShortLE(bytes, K_SHORT, (short) k_);
     bytes[M_BYTE] = (byte) m_;
     if (isEmpty()) { return bytes; }
+    final int numLevels = getNumLevels();
+    final int[] levels = getLevels();
+    final float[] items = getItems();
     int offset = DATA_START_SINGLE_ITEM;
     if (!isSingleItem) {
-      ByteArrayUtil.putLongLE(bytes, N_LONG, n_);
-      ByteArrayUtil.putShortLE(bytes, MIN_K_SHORT, (short) minK_);
-      bytes[NUM_LEVELS_BYTE] = (byte) numLevels_;
+      ByteArrayUtil.putLongLE(bytes, N_LONG, n);
+      ByteArrayUtil.putShortLE(bytes, MIN_K_SHORT, (short) getMinK());
+      bytes[NUM_LEVELS_BYTE] = (byte) numLevels;
       offset = DATA_START;
       // the last integer in levels_ is not serialized because it can be derived
-      for (int i = 0; i < numLevels_; i++) {
-        ByteArrayUtil.putIntLE(bytes, offset, levels_[i]);
+      for (int i = 0; i < numLevels; i++) {
+        ByteArrayUtil.putIntLE(bytes, offset, levels[i]);
         offset += Integer.BYTES;
       }
-      ByteArrayUtil.putFloatLE(bytes, offset, minValue_);
+      ByteArrayUtil.putFloatLE(bytes, offset, getMinValue());
       offset += Float.BYTES;
-      ByteArrayUtil.putFloatLE(bytes, offset, maxValue_);
+      ByteArrayUtil.putFloatLE(bytes, offset, getMaxValue());
       offset += Float.BYTES;
     }
     final int numItems = getNumRetained();
     for (int i = 0; i < numItems; i++) {
-      ByteArrayUtil.putFloatLE(bytes, offset, items_[levels_[0] + i]);
+      ByteArrayUtil.putFloatLE(bytes, offset, items[levels[0] + i]);
       offset += Float.BYTES;
     }
     return bytes;
   }
 
+  /**
+   * Returns this sketch in the updatable byte array form, which is larger than the form of
+   * {@link #toByteArray()} but can be updated in place after wrapping it with
+   * {@link #writableWrap(WritableMemory, MemoryRequestServer)}.
+   * @return this sketch in the updatable byte array form.
+   */
+  public byte[] toUpdatableByteArray() {
+    final byte[] bytes = new byte[getUpdatableSerializedSizeBytes()];
+    final KllFloatsSketch dst =
+        DirectKllFloatsSketch.newInstance(k_, WritableMemory.wrap(bytes), null);
+    dst.setN(getN());
+    dst.setMinK(getMinK());
+    dst.setLevelsAndItems(getNumLevels(), getLevels(), getItems());
+    dst.setMinValue(getMinValue());
+    dst.setMaxValue(getMaxValue());
+    dst.setLevelZeroSorted(isLevelZeroSorted());
+    return bytes;
+  }
+
   /**
    * Heapify takes the sketch image in Memory and instantiates an on-heap sketch.
    * The resulting sketch will not retain any link to the source Memory.
-   * @param mem a Memory image of a sketch.
+   * @param mem a Memory image of a sketch in either the compact or the updatable form.
    * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    * @return a heap-based sketch based on the given Memory
    */
   public static KllFloatsSketch heapify(final Memory mem) {
-    final int preambleInts = mem.getByte(PREAMBLE_INTS_BYTE) & 0xff;
-    final int serialVersion = mem.getByte(SER_VER_BYTE) & 0xff;
-    final int family = mem.getByte(FAMILY_BYTE) & 0xff;
-    final int flags = mem.getByte(FLAGS_BYTE) & 0xff;
-    final int m = mem.getByte(M_BYTE) & 0xff;
-    if (m != DEFAULT_M) {
-      throw new SketchesArgumentException(
-          "Possible corruption: M must be " + DEFAULT_M + ": " + m);
-    }
-    final boolean isEmpty = (flags & (1 << Flags.IS_EMPTY.ordinal())) > 0;
-    final boolean isSingleItem = (flags & (1 << Flags.IS_SINGLE_ITEM.ordinal())) > 0;
-    if (isEmpty || isSingleItem) {
-      if (preambleInts != PREAMBLE_INTS_SHORT) {
-        throw new SketchesArgumentException("Possible corruption: preambleInts must be "
-            + PREAMBLE_INTS_SHORT + " for an empty or single item sketch: " + preambleInts);
-      }
-    } else {
-      if (preambleInts != PREAMBLE_INTS_FULL) {
-        throw new SketchesArgumentException("Possible corruption: preambleInts must be "
-            + PREAMBLE_INTS_FULL + " for a sketch with more than one item: " + preambleInts);
-      }
-    }
-    if ((serialVersion != serialVersionUID1) && (serialVersion != serialVersionUID2)) {
-      throw new SketchesArgumentException(
-          "Possible corruption: serial version mismatch: expected " + serialVersionUID1 + " or "
-              + serialVersionUID2 + ", got " + serialVersion);
-    }
-    if (family != Family.KLL.getID()) {
-      throw new SketchesArgumentException(
-      "Possible corruption: family mismatch: expected " + Family.KLL.getID() + ", got " + family);
-    }
+    checkPreamble(mem, FLOATS_SKETCH_TYPE);
     return new KllFloatsSketch(mem);
   }
 
+  /**
+   * Creates a new, empty sketch that keeps its data in the given WritableMemory, using the
+   * updatable form.
+   * @param k parameter that controls size of the sketch and accuracy of estimates
+   * @param dstMem the destination WritableMemory, which must be at least
+   * <i>getMaxUpdatableSerializedSizeBytes(k, 0)</i> bytes. Any data in it is overwritten.
+   * @param memReqSvr used to request a larger WritableMemory when the sketch outgrows dstMem.
+   * If null, the MemoryRequestServer of dstMem is used, or a DefaultMemoryRequestServer if it has
+   * none.
+   * @return a new sketch that keeps its data in the given WritableMemory
+   */
+  public static KllFloatsSketch newDirectInstance(final int k, final WritableMemory dstMem,
+      final MemoryRequestServer memReqSvr) {
+    return DirectKllFloatsSketch.newInstance(k, dstMem, memReqSvr);
+  }
+
+  /**
+   * Wraps the given Memory, which must hold a sketch in the updatable form of
+   * {@link #toUpdatableByteArray()}, as a read-only sketch. Queries read the data directly from
+   * the Memory and calls to update or merge throw a SketchesReadOnlyException.
+   * @param srcMem a Memory image of a sketch in the updatable form.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a read-only sketch that wraps the given Memory
+   */
+  public static KllFloatsSketch wrap(final Memory srcMem) {
+    return DirectKllFloatsSketch.wrapInstance(srcMem);
+  }
+
+  /**
+   * Wraps the given WritableMemory, which must hold a sketch in the updatable form of
+   * {@link #toUpdatableByteArray()}, as an updatable sketch. All changes are written to the
+   * WritableMemory.
+   * @param srcMem a WritableMemory image of a sketch in the updatable form.
+   * @param memReqSvr used to request a larger WritableMemory when the sketch outgrows srcMem.
+   * If null, the MemoryRequestServer of srcMem is used, or a DefaultMemoryRequestServer if it has
+   * none.
+   * @return an updatable sketch that wraps the given WritableMemory
+   */
+  public static KllFloatsSketch writableWrap(final WritableMemory srcMem,
+      final MemoryRequestServer memReqSvr) {
+    return DirectKllFloatsSketch.writableWrapInstance(srcMem, memReqSvr);
+  }
+
   /**
    * @return the iterator for this class
    */
   public KllFloatsSketchIterator iterator() {
-    return new KllFloatsSketchIterator(items_, levels_, numLevels_);
+    return new KllFloatsSketchIterator(getItems(), getLevels(), getNumLevels());
   }
 
   /**
-   * Checks the validity of the given value k
-   * @param k must be greater than 7 and less than 65536.
+   * Returns the sorted view of this sketch, which answers quantile, rank, PMF and CDF queries
+   * by binary search. The view is built on the first call and cached, so that repeated queries
+   * against an unchanged sketch do not merge its levels again. A new view is built after the
+   * sketch has been updated or merged into.
+   *
+   * <p>The returned view is a snapshot and does not reflect later updates of the sketch.</p>
+   *
+   * @return the sorted view of this sketch
    */
-  static void checkK(final int k) {
-    if ((k < MIN_K) || (k > MAX_K)) {
-      throw new SketchesArgumentException(
-          "K must be >= " + MIN_K + " and <= " + MAX_K + ": " + k);
+  public KllFloatsSketchSortedView getSortedView() {
+    KllFloatsSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView == null) {
+      sortedView = buildSortedView();
+      sortedView_ = sortedView;
     }
+    return sortedView;
+  }
+
+  private KllFloatsSketchSortedView getCachedSortedView() {
+    final KllFloatsSketchSortedView sortedView = sortedView_;
+    return ((sortedView != null) && (sortedView.getN() == getN())) ? sortedView : null;
   }
 
-  private KllFloatsQuantileCalculator getQuantileCalculator() {
+  private KllFloatsSketchSortedView buildSortedView() {
     sortLevelZero(); // sort in the sketch to reuse if possible
-    return new KllFloatsQuantileCalculator(items_, levels_, numLevels_, n_);
+    final int[] levels = getLevels();
+    final float[] items = getItems();
+    if (!isLevelZeroSorted()) { // a read-only sketch, so sort the copy it returned instead
+      Arrays.sort(items, levels[0], levels[1]);
+    }
+    return new KllFloatsSketchSortedView(items, levels, getNumLevels(), getN(), getMinValue(),
+        getMaxValue());
   }
 
   private double[] getPmfOrCdf(final float[] splitPoints, final boolean isCdf) {
     if (isEmpty()) { return null; }
+    final KllFloatsSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView != null) {
+      return isCdf ? sortedView.getCDF(splitPoints) : sortedView.getPMF(splitPoints);
+    }
     KllHelper.validateValues(splitPoints);
+    final int numLevels = getNumLevels();
+    final int[] levels = getLevels();
+    final float[] items = getItems();
     final double[] buckets = new double[splitPoints.length + 1];
     int level = 0;
     int weight = 1;
-    while (level < numLevels_) {
-      final int fromIndex = levels_[level];
-      final int toIndex = levels_[level + 1]; // exclusive
-      if ((level == 0) && !isLevelZeroSorted_) {
-        incrementBucketsUnsortedLevel(fromIndex, toIndex, weight, splitPoints, buckets);
+    while (level < numLevels) {
+      final int fromIndex = levels[level];
+      final int toIndex = levels[level + 1]; // exclusive
+      if ((level == 0) && !isLevelZeroSorted()) {
+        incrementBucketsUnsortedLevel(items, fromIndex, toIndex, weight, splitPoints, buckets);
       } else {
-        incrementBucketsSortedLevel(fromIndex, toIndex, weight, splitPoints, buckets);
+        incrementBucketsSortedLevel(items, fromIndex, toIndex, weight, splitPoints, buckets);
       }
       level++;
       weight *= 2;
     }
     // normalize and, if CDF, convert to cumulative
+    final long n = getN();
     if (isCdf) {
       double subtotal = 0;
       for (int i = 0; i < buckets.length; i++) {
         subtotal += buckets[i];
-        buckets[i] = subtotal / n_;
+        buckets[i] = subtotal / n;
       }
     } else {
       for (int i = 0; i < buckets.length; i++) {
-        buckets[i] /= n_;
+        buckets[i] /= n;
       }
     }
     return buckets;
   }
 
-  private void incrementBucketsUnsortedLevel(final int fromIndex, final int toIndex,
-      final int weight, final float[] splitPoints, final double[] buckets) {
+  private static void incrementBucketsUnsortedLevel(final float[] items, final int fromIndex,
+      final int toIndex, final int weight, final float[] splitPoints, final double[] buckets) {
     for (int i = fromIndex; i < toIndex; i++) {
       int j;
       for (j = 0; j < splitPoints.length; j++) {
-        if (items_[i] < splitPoints[j]) {
+        if (items[i] < splitPoints[j]) {
           break;
         }
       }
@@ -919,12 +1007,12 @@ public class KllFloatsSketch {
     }
   }
 
-  private void incrementBucketsSortedLevel(final int fromIndex, final int toIndex,
-      final int weight, final float[] splitPoints, final double[] buckets) {
+  private static void incrementBucketsSortedLevel(final float[] items, final int fromIndex,
+      final int toIndex, final int weight, final float[] splitPoints, final double[] buckets) {
     int i = fromIndex;
     int j = 0;
     while ((i <  toIndex) && (j < splitPoints.length)) {
-      if (items_[i] < splitPoints[j]) {
+      if (items[i] < splitPoints[j]) {
         buckets[j] += weight; // this sample goes into this bucket
         i++; // move on to next sample and see whether it also goes into this bucket
       } else {
@@ -946,15 +1034,18 @@ public class KllFloatsSketch {
 
     // It is important to do add the new top level right here. Be aware that this operation
     // grows the buffer and shifts the data and also the boundaries of the data and grows the
-    // levels array and increments numLevels_
-    if (level == (numLevels_ - 1)) {
+    // levels array and increments numLevels
+    if (level == (getNumLevels() - 1)) {
       addEmptyTopLevelToCompletelyFullSketch();
     }
 
-    final int rawBeg = levels_[level];
-    final int rawLim = levels_[level + 1];
+    final int numLevels = getNumLevels();
+    final int[] levels = getLevels();
+    final float[] items = getItems();
+    final int rawBeg = levels[level];
+    final int rawLim = levels[level + 1];
     // +2 is OK because we already added a new top level if necessary
-    final int popAbove = levels_[level + 2] - rawLim;
+    final int popAbove = levels[level + 2] - rawLim;
     final int rawPop = rawLim - rawBeg;
     final boolean oddPop = KllHelper.isOdd(rawPop);
     final int adjBeg = oddPop ? rawBeg + 1 : rawBeg;
@@ -963,43 +1054,45 @@ public class KllFloatsSketch {
 
     // level zero might not be sorted, so we must sort it if we wish to compact it
     if (level == 0) {
-      Arrays.sort(items_, adjBeg, adjBeg + adjPop);
+      Arrays.sort(items, adjBeg, adjBeg + adjPop);
     }
     if (popAbove == 0) {
-      KllHelper.randomlyHalveUp(items_, adjBeg, adjPop);
+      KllHelper.randomlyHalveUp(items, adjBeg, adjPop);
     } else {
-      KllHelper.randomlyHalveDown(items_, adjBeg, adjPop);
-      KllHelper.mergeSortedArrays(items_, adjBeg, halfAdjPop, items_, rawLim, popAbove,
-          items_, adjBeg + halfAdjPop);
+      KllHelper.randomlyHalveDown(items, adjBeg, adjPop);
+      KllHelper.mergeSortedArrays(items, adjBeg, halfAdjPop, items, rawLim, popAbove,
+          items, adjBeg + halfAdjPop);
     }
-    levels_[level + 1] -= halfAdjPop; // adjust boundaries of the level above
+    levels[level + 1] -= halfAdjPop; // adjust boundaries of the level above
     if (oddPop) {
-      levels_[level] = levels_[level + 1] - 1; // the current level now contains one item
-      items_[levels_[level]] = items_[rawBeg]; // namely this leftover guy
+      levels[level] = levels[level + 1] - 1; // the current level now contains one item
+      items[levels[level]] = items[rawBeg]; // namely this leftover guy
     } else {
-      levels_[level] = levels_[level + 1]; // the current level is now empty
+      levels[level] = levels[level + 1]; // the current level is now empty
     }
 
     // verify that we freed up halfAdjPop array slots just below the current level
-    assert levels_[level] == (rawBeg + halfAdjPop);
+    assert levels[level] == (rawBeg + halfAdjPop);
 
     // finally, we need to shift up the data in the levels below
     // so that the freed-up space can be used by level zero
     if (level > 0) {
-      final int amount = rawBeg - levels_[0];
-      System.arraycopy(items_, levels_[0], items_, levels_[0] + halfAdjPop, amount);
+      final int amount = rawBeg - levels[0];
+      System.arraycopy(items, levels[0], items, levels[0] + halfAdjPop, amount);
       for (int lvl = 0; lvl < level; lvl++) {
-        levels_[lvl] += halfAdjPop;
+        levels[lvl] += halfAdjPop;
       }
     }
+    setLevelsAndItems(numLevels, levels, items);
   }
 
   private int findLevelToCompact() {
+    final int numLevels = getNumLevels();
     int level = 0;
     while (true) {
-      assert level < numLevels_;
-      final int pop = levels_[level + 1] - levels_[level];
-      final int cap = KllHelper.levelCapacity(k_, numLevels_, level, m_);
+      assert level < numLevels;
+      final int pop = getLevelsArrayAt(level + 1) - getLevelsArrayAt(level);
+      final int cap = KllHelper.levelCapacity(k_, numLevels, level, m_);
       if (pop >= cap) {
         return level;
       }
@@ -1008,58 +1101,70 @@ public class KllFloatsSketch {
   }
 
   private void addEmptyTopLevelToCompletelyFullSketch() {
-    final int curTotalCap = levels_[numLevels_];
+    final int numLevels = getNumLevels();
+    int[] levels = getLevels();
+    final float[] items = getItems();
+    final int curTotalCap = levels[numLevels];
 
     // make sure that we are following a certain growth scheme
-    assert levels_[0] == 0;
-    assert items_.length == curTotalCap;
+    assert levels[0] == 0;
+    assert items.length == curTotalCap;
 
     // note that merging MIGHT over-grow levels_, in which case we might not have to grow it here
-    if (levels_.length < (numLevels_ + 2)) {
-      levels_ = KllHelper.growIntArray(levels_, numLevels_ + 2);
+    if (levels.length < (numLevels + 2)) {
+      levels = KllHelper.growIntArray(levels, numLevels + 2);
     }
 
-    final int deltaCap = KllHelper.levelCapacity(k_, numLevels_ + 1, 0, m_);
+    final int deltaCap = KllHelper.levelCapacity(k_, numLevels + 1, 0, m_);
     final int newTotalCap = curTotalCap + deltaCap;
 
     final float[] newBuf = new float[newTotalCap];
 
     // copy (and shift) the current data into the new buffer
-    System.arraycopy(items_, levels_[0], newBuf, levels_[0] + deltaCap, curTotalCap);
-    items_ = newBuf;
+    System.arraycopy(items, levels[0], newBuf, levels[0] + deltaCap, curTotalCap);
 
     // this loop includes the old "extra" index at the top
-    for (int i = 0; i <= numLevels_; i++) {
-      levels_[i] += deltaCap;
+    for (int i = 0; i <= numLevels; i++) {
+      levels[i] += deltaCap;
     }
 
-    assert levels_[numLevels_] == newTotalCap;
+    assert levels[numLevels] == newTotalCap;
 
-    numLevels_++;
-    levels_[numLevels_] = newTotalCap; // initialize the new "extra" index at the top
+    levels[numLevels + 1] = newTotalCap; // initialize the new "extra" index at the top
+    setLevelsAndItems(numLevels + 1, levels, newBuf);
   }
 
-  private void sortLevelZero() {
+  /**
+   * Sorts level zero in place if it is not already sorted.
+   * Overridden by a read-only DirectKllFloatsSketch, which cannot sort in place.
+   */
+  void sortLevelZero() {
     if (!isLevelZeroSorted_) {
       Arrays.sort(items_, levels_[0], levels_[1]);
       isLevelZeroSorted_ = true;
     }
   }
 
-  private void mergeHigherLevels(final KllFloatsSketch other, final long finalN) {
-    final int tmpSpaceNeeded = getNumRetained() + other.getNumRetainedAboveLevelZero();
+  private void mergeHigherLevels(final int otherNumLevels, final int[] otherLevels,
+      final float[] otherItems, final long finalN) {
+    final int numLevels = getNumLevels();
+    int[] levels = getLevels();
+    final float[] items = getItems();
+    final int tmpSpaceNeeded = getNumRetained()
+        + (otherLevels[otherNumLevels] - otherLevels[1]); // other's retained above level zero
     final float[] workbuf = new float[tmpSpaceNeeded];
     final int ub = KllHelper.ubOnNumLevels(finalN);
     final int[] worklevels = new int[ub + 2]; // ub+1 does not work
     final int[] outlevels  = new int[ub + 2];
 
-    final int provisionalNumLevels = max(numLevels_, other.numLevels_);
+    final int provisionalNumLevels = max(numLevels, otherNumLevels);
 
-    populateWorkArrays(other, workbuf, worklevels, provisionalNumLevels);
+    populateWorkArrays(numLevels, levels, items, otherNumLevels, otherLevels, otherItems,
+        workbuf, worklevels, provisionalNumLevels);
 
     // notice that workbuf is being used as both the input and output here
     final int[] result = KllHelper.generalCompress(k_, m_, provisionalNumLevels, workbuf,
-        worklevels, workbuf, outlevels, isLevelZeroSorted_);
+        worklevels, workbuf, outlevels, isLevelZeroSorted());
     final int finalNumLevels = result[0];
     final int finalCapacity = result[1];
     final int finalPop = result[2];
@@ -1067,61 +1172,62 @@ public class KllFloatsSketch {
     assert (finalNumLevels <= ub); // can sometimes be much bigger
 
     // now we need to transfer the results back into the "self" sketch
-    final float[] newbuf = finalCapacity == items_.length ? items_ : new float[finalCapacity];
+    final float[] newbuf = finalCapacity == items.length ? items : new float[finalCapacity];
     final int freeSpaceAtBottom = finalCapacity - finalPop;
     System.arraycopy(workbuf, outlevels[0], newbuf, freeSpaceAtBottom, finalPop);
     final int theShift = freeSpaceAtBottom - outlevels[0];
 
-    if (levels_.length < (finalNumLevels + 1)) {
-      levels_ = new int[finalNumLevels + 1];
+    if (levels.length < (finalNumLevels + 1)) {
+      levels = new int[finalNumLevels + 1];
     }
 
     for (int lvl = 0; lvl < (finalNumLevels + 1); lvl++) { // includes the "extra" index
-      levels_[lvl] = outlevels[lvl] + theShift;
+      levels[lvl] = outlevels[lvl] + theShift;
     }
 
-    items_ = newbuf;
-    numLevels_ = finalNumLevels;
+    setLevelsAndItems(finalNumLevels, levels, newbuf);
   }
 
-  private void populateWorkArrays(final KllFloatsSketch other, final float[] workbuf,
-      final int[] worklevels, final int provisionalNumLevels) {
+  private static void populateWorkArrays(final int numLevels, final int[] levels,
+      final float[] items, final int otherNumLevels, final int[] otherLevels,
+      final float[] otherItems, final float[] workbuf, final int[] worklevels,
+      final int provisionalNumLevels) {
     worklevels[0] = 0;
 
     // Note: the level zero data from "other" was already inserted into "self"
-    final int selfPopZero = safeLevelSize(0);
-    System.arraycopy(items_, levels_[0], workbuf, worklevels[0], selfPopZero);
+    final int selfPopZero = safeLevelSize(0, numLevels, levels);
+    System.arraycopy(items, levels[0], workbuf, worklevels[0], selfPopZero);
     worklevels[1] = worklevels[0] + selfPopZero;
 
     for (int lvl = 1; lvl < provisionalNumLevels; lvl++) {
-      final int selfPop = safeLevelSize(lvl);
-      final int otherPop = other.safeLevelSize(lvl);
+      final int selfPop = safeLevelSize(lvl, numLevels, levels);
+      final int otherPop = safeLevelSize(lvl, otherNumLevels, otherLevels);
       worklevels[lvl + 1] = worklevels[lvl] + selfPop + otherPop;
 
       if ((selfPop > 0) && (otherPop == 0)) {
-        System.arraycopy(items_, levels_[lvl], workbuf, worklevels[lvl], selfPop);
+        System.arraycopy(items, levels[lvl], workbuf, worklevels[lvl], selfPop);
       } else if ((selfPop == 0) && (otherPop > 0)) {
-        System.arraycopy(other.items_, other.levels_[lvl], workbuf, worklevels[lvl], otherPop);
+        System.arraycopy(otherItems, otherLevels[lvl], workbuf, worklevels[lvl], otherPop);
       } else if ((selfPop > 0) && (otherPop > 0)) {
-        KllHelper.mergeSortedArrays(items_, levels_[lvl], selfPop, other.items_,
-            other.levels_[lvl], otherPop, workbuf, worklevels[lvl]);
+        KllHelper.mergeSortedArrays(items, levels[lvl], selfPop, otherItems,
+            otherLevels[lvl], otherPop, workbuf, worklevels[lvl]);
       }
     }
   }
 
   private int safeLevelSize(final int level) {
-    if (level >= numLevels_) { return 0; }
-    return levels_[level + 1] - levels_[level];
+    final int numLevels = getNumLevels();
+    if (level >= numLevels) { return 0; }
+    return getLevelsArrayAt(level + 1) - getLevelsArrayAt(level);
   }
 
- private int getNumRetainedAboveLevelZero() {
-    if (numLevels_ == 1) { return 0; }
-    return levels_[numLevels_] - levels_[1];
+  private static int safeLevelSize(final int level, final int numLevels, final int[] levels) {
+    if (level >= numLevels) { return 0; }
+    return levels[level + 1] - levels[level];
   }
 
   private void assertCorrectTotalWeight() {
-    final long total = KllHelper.sumTheSampleWeights(numLevels_, levels_);
-    assert total == n_;
+    assert KllHelper.sumTheSampleWeights(getNumLevels(), getLevels()) == getN();
   }
 
   private static int getSerializedSizeBytes(final int numLevels, final int numRetained) {
@@ -1133,18 +1239,80 @@ public class KllFloatsSketch {
     return DATA_START + (numLevels * Integer.BYTES) + ((numRetained + 2) * Float.BYTES);
   }
 
-  // for testing
+  static int getUpdatableSerializedSizeBytes(final int numLevels, final int capacity) {
+    // all of the levels array, min and max, and all of the items array
+    return DATA_START + ((numLevels + 1) * Integer.BYTES) + ((capacity + 2) * Float.BYTES);
+  }
 
-  float[] getItems() {
-    return items_;
+  // State access. The heap sketch keeps its state in the fields of this class;
+  // DirectKllFloatsSketch overrides all of these to keep it in Memory.
+  // Arrays returned by a DirectKllFloatsSketch are copies, so any changes must be put back with
+  // setLevelsAndItems().
+
+  void setN(final long n) {
+    n_ = n;
   }
 
-  int[] getLevels() {
-    return levels_;
+  int getMinK() {
+    return minK_;
+  }
+
+  void setMinK(final int minK) {
+    minK_ = minK;
+  }
+
+  void setMinValue(final float minValue) {
+    minValue_ = minValue;
+  }
+
+  void setMaxValue(final float maxValue) {
+    maxValue_ = maxValue;
+  }
+
+  boolean isLevelZeroSorted() {
+    return isLevelZeroSorted_;
+  }
+
+  void setLevelZeroSorted(final boolean sorted) {
+    isLevelZeroSorted_ = sorted;
   }
 
   int getNumLevels() {
     return numLevels_;
   }
 
+  int getLevelsArrayAt(final int index) {
+    return levels_[index];
+  }
+
+  void setLevelsArrayAt(final int index, final int value) {
+    levels_[index] = value;
+  }
+
+  void setItemsArrayAt(final int index, final float value) {
+    items_[index] = value;
+  }
+
+  /**
+   * Replaces the levels and items of this sketch.
+   * @param numLevels the new number of levels
+   * @param levels the new levels array, with at least (numLevels + 1) entries
+   * @param items the new items array, with exactly levels[numLevels] entries
+   */
+  void setLevelsAndItems(final int numLevels, final int[] levels, final float[] items) {
+    numLevels_ = numLevels;
+    levels_ = levels;
+    items_ = items;
+  }
+
+  // also for testing
+
+  float[] getItems() {
+    return items_;
+  }
+
+  int[] getLevels() {
+    return levels_;
+  }
+
 }
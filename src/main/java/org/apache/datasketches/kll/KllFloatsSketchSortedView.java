@@ -22,24 +22,38 @@ package org.apache.datasketches.kll;
 import java.util.Arrays;
 
 import org.apache.datasketches.QuantilesHelper;
+import org.apache.datasketches.SketchesArgumentException;
 
 /**
- * Data structure for answering quantile queries based on the samples from KllSketch
+ * A sorted view of the values retained by a KllFloatsSketch, together with their cumulative
+ * weights. Building it merges the levels of the sketch once, after which quantile, rank, PMF
+ * and CDF queries are answered by binary search in O(log(retained items)).
+ *
+ * <p>A view is a snapshot of the sketch at the time it was built and does not change when the
+ * sketch is updated. {@link KllFloatsSketch#getSortedView()} caches the view and builds a new
+ * one only after the sketch has changed.</p>
+ *
+ * <p>The queries return the same results as the equivalent queries of the sketch.</p>
+ *
  * @author Kevin Lang
  * @author Alexander Saydakov
  */
-final class KllFloatsQuantileCalculator {
+public final class KllFloatsSketchSortedView {
 
-  private long n_;
-  private float[] items_;
-  private long[] weights_;
-  private int[] levels_;
+  private final long n_;
+  private final float minValue_;
+  private final float maxValue_;
+  private final float[] items_;
+  private final long[] weights_; // weights preceding each item, the extra last slot holds n
+  private final int[] levels_;
   private int numLevels_;
 
   // assumes that all levels are sorted including level 0
-  KllFloatsQuantileCalculator(final float[] items, final int[] levels, final int numLevels,
-      final long n) {
+  KllFloatsSketchSortedView(final float[] items, final int[] levels, final int numLevels,
+      final long n, final float minValue, final float maxValue) {
     n_ = n;
+    minValue_ = minValue;
+    maxValue_ = maxValue;
     final int numItems = levels[numLevels] - levels[0];
     items_ = new float[numItems];
     weights_ = new long[numItems + 1]; // one more is intentional
@@ -49,11 +63,117 @@ final class KllFloatsQuantileCalculator {
     QuantilesHelper.convertToPrecedingCummulative(weights_);
   }
 
-  float getQuantile(final double phi) {
-    final long pos = QuantilesHelper.posOfPhi(phi, n_);
+  /**
+   * Returns the length of the input stream seen by the sketch when this view was built.
+   * @return the length of the input stream
+   */
+  public long getN() {
+    return n_;
+  }
+
+  /**
+   * Returns true if the sketch was empty when this view was built.
+   * @return true if the sketch was empty when this view was built
+   */
+  public boolean isEmpty() {
+    return n_ == 0;
+  }
+
+  /**
+   * Returns the approximate quantile of the given fractional rank.
+   * This is equivalent to {@link KllFloatsSketch#getQuantile(double)}.
+   *
+   * <p>If the view is empty this returns NaN.
+   *
+   * @param fraction the given fractional rank where 0 &le; fraction &le; 1.0.
+   * If fraction = 0.0, the true minimum value of the stream is returned.
+   * If fraction = 1.0, the true maximum value of the stream is returned.
+   * @return the approximate quantile of the given fractional rank
+   */
+  public float getQuantile(final double fraction) {
+    if (isEmpty()) { return Float.NaN; }
+    if (fraction == 0.0) { return minValue_; }
+    if (fraction == 1.0) { return maxValue_; }
+    if ((fraction < 0.0) || (fraction > 1.0)) {
+      throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
+    }
+    final long pos = QuantilesHelper.posOfPhi(fraction, n_);
     return approximatelyAnswerPositonalQuery(pos);
   }
 
+  /**
+   * Returns the approximate normalized rank of the given value.
+   * This is equivalent to {@link KllFloatsSketch#getRank(float)}.
+   *
+   * <p>If the view is empty this returns NaN.</p>
+   *
+   * @param value to be ranked
+   * @return the approximate normalized rank of the given value
+   */
+  public double getRank(final float value) {
+    if (isEmpty()) { return Double.NaN; }
+    return (double) weights_[lowerBound(value)] / n_;
+  }
+
+  /**
+   * Returns the approximate PMF of the input stream given the split points.
+   * This is equivalent to {@link KllFloatsSketch#getPMF(float[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing float values
+   * that divide the real number line into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate fraction of the input stream values
+   * that fall into each interval.
+   */
+  public double[] getPMF(final float[] splitPoints) {
+    return getPmfOrCdf(splitPoints, false);
+  }
+
+  /**
+   * Returns the approximate CDF of the input stream given the split points.
+   * This is equivalent to {@link KllFloatsSketch#getCDF(float[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing float values
+   * that divide the real number line into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate CDF of the input stream given the
+   * split points.
+   */
+  public double[] getCDF(final float[] splitPoints) {
+    return getPmfOrCdf(splitPoints, true);
+  }
+
+  private double[] getPmfOrCdf(final float[] splitPoints, final boolean isCdf) {
+    if (isEmpty()) { return null; }
+    KllHelper.validateValues(splitPoints);
+    final int numSplitPoints = splitPoints.length;
+    final double[] buckets = new double[numSplitPoints + 1];
+    long prevWeight = 0;
+    for (int j = 0; j <= numSplitPoints; j++) {
+      final long weight = (j < numSplitPoints) ? weights_[lowerBound(splitPoints[j])] : n_;
+      buckets[j] = (double) (isCdf ? weight : weight - prevWeight) / n_;
+      prevWeight = weight;
+    }
+    return buckets;
+  }
+
+  // index of the first item not less than the given value, or the number of items if none
+  private int lowerBound(final float value) {
+    int lo = 0;
+    int hi = items_.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (items_[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
   private float approximatelyAnswerPositonalQuery(final long pos) {
     assert pos >= 0;
     assert pos < n_;
@@ -86,7 +206,7 @@ final class KllFloatsQuantileCalculator {
 
   private static void blockyTandemMergeSort(final float[] items, final long[] weights,
       final int[] levels, final int numLevels) {
-    if (numLevels == 1) { return; }
+    if (numLevels <= 1) { return; }
 
     // duplicate the input in preparation for the "ping-pong" copy reduction strategy.
     final float[] itemsTmp = Arrays.copyOf(items, items.length);
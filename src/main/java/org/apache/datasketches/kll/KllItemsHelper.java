@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * The comparator-based versions of the compaction methods of KllHelper,
+ * used by KllItemsSketch.
+ */
+final class KllItemsHelper {
+
+  private KllItemsHelper() {}
+
+  /**
+   * Checks the sequential validity of the given array of values.
+   * They must be unique, monotonically increasing and not null.
+   * @param <T> the data type
+   * @param values the given array of values
+   * @param comparator to compare the values
+   */
+  static <T> void validateValues(final T[] values, final Comparator<? super T> comparator) {
+    final int lenM1 = values.length - 1;
+    for (int j = 0; j < lenM1; j++) {
+      if ((values[j] != null) && (values[j + 1] != null)
+          && (comparator.compare(values[j], values[j + 1]) < 0)) {
+        continue;
+      }
+      throw new SketchesArgumentException(
+          "Values must be unique, monotonically increasing and not null.");
+    }
+    if ((values.length > 0) && (values[lenM1] == null)) {
+      throw new SketchesArgumentException(
+          "Values must be unique, monotonically increasing and not null.");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> void mergeSortedArrays(final Object[] bufA, final int startA, final int lenA,
+      final Object[] bufB, final int startB, final int lenB, final Object[] bufC,
+      final int startC, final Comparator<? super T> comparator) {
+    final int lenC = lenA + lenB;
+    final int limA = startA + lenA;
+    final int limB = startB + lenB;
+    final int limC = startC + lenC;
+
+    int a = startA;
+    int b = startB;
+
+    for (int c = startC; c < limC; c++) {
+      if (a == limA) {
+        bufC[c] = bufB[b];
+        b++;
+      } else if (b == limB) {
+        bufC[c] = bufA[a];
+        a++;
+      } else if (comparator.compare((T) bufA[a], (T) bufB[b]) < 0) {
+        bufC[c] = bufA[a];
+        a++;
+      } else {
+        bufC[c] = bufB[b];
+        b++;
+      }
+    }
+    assert a == limA;
+    assert b == limB;
+  }
+
+  /*
+   * Here is what we do for each level:
+   * If it does not need to be compacted, then simply copy it over.
+   *
+   * Otherwise, it does need to be compacted, so...
+   *   Copy zero or one guy over.
+   *   If the level above is empty, halve up.
+   *   Else the level above is nonempty, so...
+   *        halve down, then merge up.
+   *   Adjust the boundaries of the level above.
+   *
+   * It can be proved that generalCompress returns a sketch that satisfies the space constraints
+   * no matter how much data is passed in.
+   * We are pretty sure that it works correctly when inBuf and outBuf are the same.
+   * All levels except for level zero must be sorted before calling this, and will still be
+   * sorted afterwards.
+   * Level zero is not required to be sorted before, and may not be sorted afterwards.
+   *
+   * trashes inBuf and inLevels
+   * modifies outBuf and outLevels
+   *
+   * returns (finalNumLevels, finalCapacity, finalItemCount)
+   */
+  @SuppressWarnings("unchecked")
+  static <T> int[] generalCompress(final int k, final int m, final int numLevelsIn,
+      final Object[] inBuf, final int[] inLevels, final Object[] outBuf, final int[] outLevels,
+      final boolean isLevelZeroSorted, final Comparator<? super T> comparator) {
+    assert numLevelsIn > 0; // things are too weird if zero levels are allowed
+    int numLevels = numLevelsIn;
+    int currentItemCount = inLevels[numLevels] - inLevels[0]; // decreases with each compaction
+    // increases if we add levels
+    int targetItemCount = KllHelper.computeTotalCapacity(k, m, numLevels);
+    boolean doneYet = false;
+    outLevels[0] = 0;
+    int curLevel = -1;
+    while (!doneYet) {
+      curLevel++; // start out at level 0
+
+      // If we are at the current top level, add an empty level above it for convenience,
+      // but do not increment numLevels until later
+      if (curLevel == (numLevels - 1)) {
+        inLevels[curLevel + 2] = inLevels[curLevel + 1];
+      }
+
+      final int rawBeg = inLevels[curLevel];
+      final int rawLim = inLevels[curLevel + 1];
+      final int rawPop = rawLim - rawBeg;
+
+      if ((currentItemCount < targetItemCount)
+          || (rawPop < KllHelper.levelCapacity(k, numLevels, curLevel, m))) {
+        // copy level over as is
+        // because inBuf and outBuf could be the same, make sure we are not moving data upwards!
+        assert (rawBeg >= outLevels[curLevel]);
+        System.arraycopy(inBuf, rawBeg, outBuf, outLevels[curLevel], rawPop);
+        outLevels[curLevel + 1] = outLevels[curLevel] + rawPop;
+      }
+      else {
+        // The sketch is too full AND this level is too full, so we compact it
+        // Note: this can add a level and thus change the sketches capacities
+
+        final int popAbove = inLevels[curLevel + 2] - rawLim;
+        final boolean oddPop = KllHelper.isOdd(rawPop);
+        final int adjBeg = oddPop ? 1 + rawBeg : rawBeg;
+        final int adjPop = oddPop ? rawPop - 1 : rawPop;
+        final int halfAdjPop = adjPop / 2;
+
+        if (oddPop) { // copy one guy over
+          outBuf[outLevels[curLevel]] = inBuf[rawBeg];
+          outLevels[curLevel + 1] = outLevels[curLevel] + 1;
+        } else { // copy zero guys over
+          outLevels[curLevel + 1] = outLevels[curLevel];
+        }
+
+        // level zero might not be sorted, so we must sort it if we wish to compact it
+        if ((curLevel == 0) && !isLevelZeroSorted) {
+          Arrays.sort((T[]) inBuf, adjBeg, adjBeg + adjPop, comparator);
+        }
+
+        if (popAbove == 0) { // Level above is empty, so halve up
+          randomlyHalveUp(inBuf, adjBeg, adjPop);
+        } else { // Level above is nonempty, so halve down, then merge up
+          randomlyHalveDown(inBuf, adjBeg, adjPop);
+          mergeSortedArrays(inBuf, adjBeg, halfAdjPop, inBuf, rawLim, popAbove, inBuf,
+              adjBeg + halfAdjPop, comparator);
+        }
+
+        // track the fact that we just eliminated some data
+        currentItemCount -= halfAdjPop;
+
+        // Adjust the boundaries of the level above
+        inLevels[curLevel + 1] = inLevels[curLevel + 1] - halfAdjPop;
+
+        // Increment numLevels if we just compacted the old top level
+        // This creates some more capacity (the size of the new bottom level)
+        if (curLevel == (numLevels - 1)) {
+          numLevels++;
+          targetItemCount += KllHelper.levelCapacity(k, numLevels, 0, m);
+        }
+
+      } // end of code for compacting a level
+
+      // determine whether we have processed all levels yet
+      // (including any new levels that we created)
+
+      if (curLevel == (numLevels - 1)) { doneYet = true; }
+
+    } // end of loop over levels
+
+    assert (outLevels[numLevels] - outLevels[0]) == currentItemCount;
+
+    return new int[] {numLevels, targetItemCount, currentItemCount};
+  }
+
+  static void randomlyHalveDown(final Object[] buf, final int start, final int length) {
+    assert KllHelper.isEven(length);
+    final int half_length = length / 2;
+    final int offset = KllHelper.random.nextInt(2);
+    int j = start + offset;
+    for (int i = start; i < (start + half_length); i++) {
+      buf[i] = buf[j];
+      j += 2;
+    }
+  }
+
+  static void randomlyHalveUp(final Object[] buf, final int start, final int length) {
+    assert KllHelper.isEven(length);
+    final int half_length = length / 2;
+    final int offset = KllHelper.random.nextInt(2);
+    int j = (start + length) - 1 - offset;
+    for (int i = (start + length) - 1; i >= (start + half_length); i--) {
+      buf[i] = buf[j];
+      j -= 2;
+    }
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.datasketches.QuantilesHelper;
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * A sorted view of the items retained by a KllItemsSketch, together with their cumulative
+ * weights. Building it merges the levels of the sketch once, after which quantile, rank, PMF
+ * and CDF queries are answered by binary search in O(log(retained items)).
+ *
+ * <p>A view is a snapshot of the sketch at the time it was built and does not change when the
+ * sketch is updated. {@link KllItemsSketch#getSortedView()} caches the view and builds a new
+ * one only after the sketch has changed.</p>
+ *
+ * <p>The queries return the same results as the equivalent queries of the sketch.</p>
+ *
+ * @param <T> type of item
+ */
+public final class KllItemsSketchSortedView<T> {
+
+  private final long n_;
+  private final T minValue_;
+  private final T maxValue_;
+  private final Comparator<? super T> comparator_;
+  private final Object[] items_;
+  private final long[] weights_; // weights preceding each item, the extra last slot holds n
+  private final int[] levels_;
+  private int numLevels_;
+
+  // assumes that all levels are sorted including level 0
+  KllItemsSketchSortedView(final Object[] items, final int[] levels, final int numLevels,
+      final long n, final T minValue, final T maxValue, final Comparator<? super T> comparator) {
+    n_ = n;
+    minValue_ = minValue;
+    maxValue_ = maxValue;
+    comparator_ = comparator;
+    final int numItems = levels[numLevels] - levels[0];
+    items_ = new Object[numItems];
+    weights_ = new long[numItems + 1]; // one more is intentional
+    levels_ = new int[numLevels + 1];
+    populateFromSketch(items, levels, numLevels, numItems);
+    blockyTandemMergeSort(items_, weights_, levels_, numLevels_, comparator);
+    QuantilesHelper.convertToPrecedingCummulative(weights_);
+  }
+
+  /**
+   * Returns the length of the input stream seen by the sketch when this view was built.
+   * @return the length of the input stream
+   */
+  public long getN() {
+    return n_;
+  }
+
+  /**
+   * Returns true if the sketch was empty when this view was built.
+   * @return true if the sketch was empty when this view was built
+   */
+  public boolean isEmpty() {
+    return n_ == 0;
+  }
+
+  /**
+   * Returns the approximate quantile of the given fractional rank.
+   * This is equivalent to {@link KllItemsSketch#getQuantile(double)}.
+   *
+   * <p>If the view is empty this returns null.
+   *
+   * @param fraction the given fractional rank where 0 &le; fraction &le; 1.0.
+   * If fraction = 0.0, the true minimum value of the stream is returned.
+   * If fraction = 1.0, the true maximum value of the stream is returned.
+   * @return the approximate quantile of the given fractional rank
+   */
+  public T getQuantile(final double fraction) {
+    if (isEmpty()) { return null; }
+    if (fraction == 0.0) { return minValue_; }
+    if (fraction == 1.0) { return maxValue_; }
+    if ((fraction < 0.0) || (fraction > 1.0)) {
+      throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
+    }
+    final long pos = QuantilesHelper.posOfPhi(fraction, n_);
+    return approximatelyAnswerPositonalQuery(pos);
+  }
+
+  /**
+   * Returns the approximate normalized rank of the given value.
+   * This is equivalent to {@link KllItemsSketch#getRank(Object)}.
+   *
+   * <p>If the view is empty this returns NaN.</p>
+   *
+   * @param value to be ranked
+   * @return the approximate normalized rank of the given value
+   */
+  public double getRank(final T value) {
+    if (isEmpty()) { return Double.NaN; }
+    return (double) weights_[lowerBound(value)] / n_;
+  }
+
+  /**
+   * Returns the approximate PMF of the input stream given the split points.
+   * This is equivalent to {@link KllItemsSketch#getPMF(Object[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing values
+   * that divide the domain into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate fraction of the input stream values
+   * that fall into each interval.
+   */
+  public double[] getPMF(final T[] splitPoints) {
+    return getPmfOrCdf(splitPoints, false);
+  }
+
+  /**
+   * Returns the approximate CDF of the input stream given the split points.
+   * This is equivalent to {@link KllItemsSketch#getCDF(Object[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing values
+   * that divide the domain into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate CDF of the input stream given the
+   * split points.
+   */
+  public double[] getCDF(final T[] splitPoints) {
+    return getPmfOrCdf(splitPoints, true);
+  }
+
+  private double[] getPmfOrCdf(final T[] splitPoints, final boolean isCdf) {
+    if (isEmpty()) { return null; }
+    KllItemsHelper.validateValues(splitPoints, comparator_);
+    final int numSplitPoints = splitPoints.length;
+    final double[] buckets = new double[numSplitPoints + 1];
+    long prevWeight = 0;
+    for (int j = 0; j <= numSplitPoints; j++) {
+      final long weight = (j < numSplitPoints) ? weights_[lowerBound(splitPoints[j])] : n_;
+      buckets[j] = (double) (isCdf ? weight : weight - prevWeight) / n_;
+      prevWeight = weight;
+    }
+    return buckets;
+  }
+
+  // index of the first item not less than the given value, or the number of items if none
+  @SuppressWarnings("unchecked")
+  private int lowerBound(final T value) {
+    int lo = 0;
+    int hi = items_.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (comparator_.compare((T) items_[mid], value) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T approximatelyAnswerPositonalQuery(final long pos) {
+    assert pos >= 0;
+    assert pos < n_;
+    final int index = QuantilesHelper.chunkContainingPos(weights_, pos);
+    return (T) items_[index];
+  }
+
+  private void populateFromSketch(final Object[] srcItems, final int[] srcLevels,
+      final int numLevels, final int numItems) {
+    final int offset = srcLevels[0];
+    System.arraycopy(srcItems, offset, items_, 0, numItems);
+    int srcLevel = 0;
+    int dstLevel = 0;
+    long weight = 1;
+    while (srcLevel < numLevels) {
+      final int fromIndex = srcLevels[srcLevel] - offset;
+      final int toIndex = srcLevels[srcLevel + 1] - offset; // exclusive
+      if (fromIndex < toIndex) { // skip empty levels
+        Arrays.fill(weights_, fromIndex, toIndex, weight);
+        levels_[dstLevel] = fromIndex;
+        levels_[dstLevel + 1] = toIndex;
+        dstLevel++;
+      }
+      srcLevel++;
+      weight *= 2;
+    }
+    weights_[numItems] = 0;
+    numLevels_ = dstLevel;
+  }
+
+  private static <T> void blockyTandemMergeSort(final Object[] items, final long[] weights,
+      final int[] levels, final int numLevels, final Comparator<? super T> comparator) {
+    if (numLevels <= 1) { return; }
+
+    // duplicate the input in preparation for the "ping-pong" copy reduction strategy.
+    final Object[] itemsTmp = Arrays.copyOf(items, items.length);
+    final long[] weightsTmp = Arrays.copyOf(weights, items.length); // don't need the extra one here
+
+    blockyTandemMergeSortRecursion(itemsTmp, weightsTmp, items, weights, levels, 0, numLevels,
+        comparator);
+  }
+
+  private static <T> void blockyTandemMergeSortRecursion(final Object[] itemsSrc,
+      final long[] weightsSrc, final Object[] itemsDst, final long[] weightsDst, final int[] levels,
+      final int startingLevel, final int numLevels, final Comparator<? super T> comparator) {
+    if (numLevels == 1) { return; }
+    final int numLevels1 = numLevels / 2;
+    final int numLevels2 = numLevels - numLevels1;
+    assert numLevels1 >= 1;
+    assert numLevels2 >= numLevels1;
+    final int startingLevel1 = startingLevel;
+    final int startingLevel2 = startingLevel + numLevels1;
+    // swap roles of src and dst
+    blockyTandemMergeSortRecursion(itemsDst, weightsDst, itemsSrc, weightsSrc, levels,
+        startingLevel1, numLevels1, comparator);
+    blockyTandemMergeSortRecursion(itemsDst, weightsDst, itemsSrc, weightsSrc, levels,
+        startingLevel2, numLevels2, comparator);
+    tandemMerge(itemsSrc, weightsSrc, itemsDst, weightsDst, levels, startingLevel1, numLevels1,
+        startingLevel2, numLevels2, comparator);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> void tandemMerge(final Object[] itemsSrc, final long[] weightsSrc,
+      final Object[] itemsDst, final long[] weightsDst,
+      final int[] levelStarts, final int startingLevel1, final int numLevels1,
+      final int startingLevel2, final int numLevels2, final Comparator<? super T> comparator) {
+    final int fromIndex1 = levelStarts[startingLevel1];
+    final int toIndex1 = levelStarts[startingLevel1 + numLevels1]; // exclusive
+    final int fromIndex2 = levelStarts[startingLevel2];
+    final int toIndex2 = levelStarts[startingLevel2 + numLevels2]; // exclusive
+    int iSrc1 = fromIndex1;
+    int iSrc2 = fromIndex2;
+    int iDst = fromIndex1;
+
+    while ((iSrc1 < toIndex1) && (iSrc2 < toIndex2)) {
+      if (comparator.compare((T) itemsSrc[iSrc1], (T) itemsSrc[iSrc2]) < 0) {
+        itemsDst[iDst] = itemsSrc[iSrc1];
+        weightsDst[iDst] = weightsSrc[iSrc1];
+        iSrc1++;
+      } else {
+        itemsDst[iDst] = itemsSrc[iSrc2];
+        weightsDst[iDst] = weightsSrc[iSrc2];
+        iSrc2++;
+      }
+      iDst++;
+    }
+    if (iSrc1 < toIndex1) {
+      System.arraycopy(itemsSrc, iSrc1, itemsDst, iDst, toIndex1 - iSrc1);
+      System.arraycopy(weightsSrc, iSrc1, weightsDst, iDst, toIndex1 - iSrc1);
+    } else if (iSrc2 < toIndex2) {
+      System.arraycopy(itemsSrc, iSrc2, itemsDst, iDst, toIndex2 - iSrc2);
+      System.arraycopy(weightsSrc, iSrc2, weightsDst, iDst, toIndex2 - iSrc2);
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import org.apache.datasketches.Family;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * The serialization layout shared by all of the KLL sketches.
+ *
+ * <pre>
+ * Serialized sketch layout:
+ *  Adr:
+ *      ||    7    |   6   |    5   |    4   |    3   |    2    |    1   |      0       |
+ *  0   || unused  |   M   |--------K--------|  Flags |  FamID  | SerVer | PreambleInts |
+ *      ||   15    |   14  |   13   |   12   |   11   |   10    |    9   |      8       |
+ *  1   ||---------------------------------N_LONG---------------------------------------|
+ *      ||   23    |   22  |   21   |   20   |   19   |    18   |   17   |      16      |
+ *  2   ||---------------data----------------|--------|numLevels|-------min K-----------|
+ * </pre>
+ *
+ * <p>An empty sketch has only the first 8 bytes. A sketch with a single item has the first
+ * 8 bytes followed by the item. Otherwise the data starting at DATA_START is the levels array
+ * without its last integer, which can be derived, followed by the min value, the max value and
+ * the retained items.</p>
+ *
+ * <p>The flags IS_DOUBLES and IS_ITEMS record the type of the sketch, so that a sketch of one
+ * type is not mistaken for another. Neither is set for a KllFloatsSketch, which keeps the
+ * images written before these flags were added valid.
+ * A KllDoublesSketch stores its values as 8-byte doubles.
+ * A KllItemsSketch stores the min value, the max value and the retained items
+ * (or the single item) as one block written by an ArrayOfItemsSerDe.</p>
+ *
+ * <p>The updatable layout (SerVer 3), used by a KllFloatsSketch that lives in WritableMemory,
+ * always has the full preamble and stores the complete state so that it can be updated in place:
+ * starting at DATA_START, all (numLevels + 1) integers of the levels array, followed by the
+ * min value and the max value, followed by the whole items array, (levels[numLevels]) floats,
+ * including the free space at the bottom of level zero.
+ * Only the IS_LEVEL_ZERO_SORTED flag is used; emptiness is derived from N.</p>
+ */
+final class KllPreambleUtil {
+
+  private KllPreambleUtil() {}
+
+  static final int PREAMBLE_INTS_BYTE = 0;
+  static final int SER_VER_BYTE       = 1;
+  static final int FAMILY_BYTE        = 2;
+  static final int FLAGS_BYTE         = 3;
+  static final int K_SHORT            = 4;  // to 5
+  static final int M_BYTE             = 6;
+  static final int N_LONG             = 8;  // to 15
+  static final int MIN_K_SHORT        = 16;  // to 17
+  static final int NUM_LEVELS_BYTE    = 18;
+  static final int DATA_START         = 20;
+
+  static final int DATA_START_SINGLE_ITEM = 8;
+
+  static final byte serialVersionUID1 = 1;
+  static final byte serialVersionUID2 = 2; // single item
+  static final byte serialVersionUID3 = 3; // updatable
+
+  enum Flags { IS_EMPTY, IS_LEVEL_ZERO_SORTED, IS_SINGLE_ITEM, IS_DOUBLES, IS_ITEMS }
+
+  static final int PREAMBLE_INTS_SHORT = 2; // for empty and single item
+  static final int PREAMBLE_INTS_FULL = 5;
+
+  // the type flags of each kind of sketch
+  static final int FLOATS_SKETCH_TYPE = 0;
+  static final int DOUBLES_SKETCH_TYPE = 1 << Flags.IS_DOUBLES.ordinal();
+  static final int ITEMS_SKETCH_TYPE = 1 << Flags.IS_ITEMS.ordinal();
+  private static final int SKETCH_TYPE_MASK = DOUBLES_SKETCH_TYPE | ITEMS_SKETCH_TYPE;
+
+  /**
+   * Returns the flags byte for a sketch in the compact form.
+   * @param sketchType one of the sketch type flags
+   * @param isEmpty true if the sketch is empty
+   * @param isLevelZeroSorted true if level zero of the sketch is sorted
+   * @param isSingleItem true if the sketch has exactly one item
+   * @return the flags byte
+   */
+  static byte flags(final int sketchType, final boolean isEmpty, final boolean isLevelZeroSorted,
+      final boolean isSingleItem) {
+    return (byte) (sketchType
+        | (isEmpty ? 1 << Flags.IS_EMPTY.ordinal() : 0)
+        | (isLevelZeroSorted ? 1 << Flags.IS_LEVEL_ZERO_SORTED.ordinal() : 0)
+        | (isSingleItem ? 1 << Flags.IS_SINGLE_ITEM.ordinal() : 0));
+  }
+
+  static boolean isFlagSet(final int flags, final Flags flag) {
+    return (flags & (1 << flag.ordinal())) > 0;
+  }
+
+  /**
+   * Checks the preamble of a sketch image in either the compact or the updatable form.
+   * @param mem the given Memory image
+   * @param sketchType the type flags expected for the calling sketch
+   */
+  static void checkPreamble(final Memory mem, final int sketchType) {
+    final int preambleInts = mem.getByte(PREAMBLE_INTS_BYTE) & 0xff;
+    final int serialVersion = mem.getByte(SER_VER_BYTE) & 0xff;
+    final int family = mem.getByte(FAMILY_BYTE) & 0xff;
+    final int flags = mem.getByte(FLAGS_BYTE) & 0xff;
+    final int m = mem.getByte(M_BYTE) & 0xff;
+    if (m != KllHelper.DEFAULT_M) {
+      throw new SketchesArgumentException(
+          "Possible corruption: M must be " + KllHelper.DEFAULT_M + ": " + m);
+    }
+    final boolean isEmpty = isFlagSet(flags, Flags.IS_EMPTY);
+    final boolean isSingleItem = isFlagSet(flags, Flags.IS_SINGLE_ITEM);
+    if ((isEmpty || isSingleItem) && (serialVersion != serialVersionUID3)) {
+      if (preambleInts != PREAMBLE_INTS_SHORT) {
+        throw new SketchesArgumentException("Possible corruption: preambleInts must be "
+            + PREAMBLE_INTS_SHORT + " for an empty or single item sketch: " + preambleInts);
+      }
+    } else {
+      if (preambleInts != PREAMBLE_INTS_FULL) {
+        throw new SketchesArgumentException("Possible corruption: preambleInts must be "
+            + PREAMBLE_INTS_FULL + " for a sketch with more than one item: " + preambleInts);
+      }
+    }
+    if ((serialVersion != serialVersionUID1) && (serialVersion != serialVersionUID2)
+        && (serialVersion != serialVersionUID3)) {
+      throw new SketchesArgumentException(
+          "Possible corruption: serial version mismatch: expected " + serialVersionUID1 + ", "
+              + serialVersionUID2 + " or " + serialVersionUID3 + ", got " + serialVersion);
+    }
+    if (family != Family.KLL.getID()) {
+      throw new SketchesArgumentException(
+      "Possible corruption: family mismatch: expected " + Family.KLL.getID() + ", got " + family);
+    }
+    if ((flags & SKETCH_TYPE_MASK) != sketchType) {
+      throw new SketchesArgumentException("Sketch type mismatch: expected a "
+          + typeName(sketchType) + " sketch, got a " + typeName(flags & SKETCH_TYPE_MASK)
+          + " sketch");
+    }
+    if ((serialVersion == serialVersionUID3) && (sketchType != FLOATS_SKETCH_TYPE)) {
+      throw new SketchesArgumentException("Possible corruption: serial version "
+          + serialVersionUID3 + " is only used by a floats sketch");
+    }
+  }
+
+  private static String typeName(final int sketchType) {
+    if (sketchType == FLOATS_SKETCH_TYPE) { return "floats"; }
+    if (sketchType == DOUBLES_SKETCH_TYPE) { return "doubles"; }
+    if (sketchType == ITEMS_SKETCH_TYPE) { return "items"; }
+    return "unknown";
+  }
+
+}
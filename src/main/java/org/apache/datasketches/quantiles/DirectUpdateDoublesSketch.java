@@ -189,6 +189,7 @@ final class DirectUpdateDoublesSketch extends DirectUpdateDoublesSketchR {
 
   @Override
   public void reset() {
+    clearSortedView();
     if (mem_.getCapacity() >= COMBINED_BUFFER) {
       mem_.putByte(FLAGS_BYTE, (byte) EMPTY_FLAG_MASK); //not compact, not ordered
       mem_.putLong(N_LONG, 0L);
@@ -154,6 +154,12 @@ public abstract class DoublesSketch {
    */
   final int k_;
 
+  /**
+   * The sorted view built by the last query that needed one. It is valid only while N is the
+   * same as when it was built.
+   */
+  private DoublesSketchSortedView sortedView_;
+
   DoublesSketch(final int k) {
     Util.checkK(k);
     k_ = k;
@@ -203,9 +209,10 @@ public abstract class DoublesSketch {
    * that would be preceded by the given fraction of a hypothetical sorted
    * version of the input stream so far.
    *
-   * <p>We note that this method has a fairly large overhead (microseconds instead of nanoseconds)
-   * so it should not be called multiple times to get different quantiles from the same
-   * sketch. Instead use getQuantiles(), which pays the overhead only once.
+   * <p>We note that the first call after the sketch has changed has a fairly large overhead
+   * (microseconds instead of nanoseconds) to build the sorted view of the sketch.
+   * Further calls reuse that view until the sketch changes again.
+   * See {@link #getSortedView()}.
    *
    * <p>If the sketch is empty this returns Double.NaN.
    *
@@ -218,15 +225,7 @@ public abstract class DoublesSketch {
    */
   public double getQuantile(final double fraction) {
     if (isEmpty()) { return Double.NaN; }
-    if ((fraction < 0.0) || (fraction > 1.0)) {
-      throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
-    }
-    if      (fraction == 0.0) { return getMinValue(); }
-    else if (fraction == 1.0) { return getMaxValue(); }
-    else {
-      final DoublesAuxiliary aux = new DoublesAuxiliary(this);
-      return aux.getQuantile(fraction);
-    }
+    return getSortedView().getQuantile(fraction);
   }
 
   /**
@@ -271,18 +270,10 @@ public abstract class DoublesSketch {
    */
   public double[] getQuantiles(final double[] fRanks) {
     if (isEmpty()) { return null; }
-    DoublesAuxiliary aux = null;
+    final DoublesSketchSortedView sortedView = getSortedView();
     final double[] quantiles = new double[fRanks.length];
     for (int i = 0; i < fRanks.length; i++) {
-      final double fRank = fRanks[i];
-      if      (fRank == 0.0) { quantiles[i] = getMinValue(); }
-      else if (fRank == 1.0) { quantiles[i] = getMaxValue(); }
-      else {
-        if (aux == null) {
-          aux = new DoublesAuxiliary(this);
-        }
-        quantiles[i] = aux.getQuantile(fRank);
-      }
+      quantiles[i] = sortedView.getQuantile(fRanks[i]);
     }
     return quantiles;
   }
@@ -320,6 +311,8 @@ public abstract class DoublesSketch {
    */
   public double getRank(final double value) {
     if (isEmpty()) { return Double.NaN; }
+    final DoublesSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView != null) { return sortedView.getRank(value); }
     final DoublesSketchAccessor samples = DoublesSketchAccessor.wrap(this);
     long total = 0;
     int weight = 1;
@@ -369,6 +362,8 @@ public abstract class DoublesSketch {
    */
   public double[] getPMF(final double[] splitPoints) {
     if (isEmpty()) { return null; }
+    final DoublesSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView != null) { return sortedView.getPMF(splitPoints); }
     return DoublesPmfCdfImpl.getPMFOrCDF(this, splitPoints, false);
   }
 
@@ -395,6 +390,8 @@ public abstract class DoublesSketch {
    */
   public double[] getCDF(final double[] splitPoints) {
     if (isEmpty()) { return null; }
+    final DoublesSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView != null) { return sortedView.getCDF(splitPoints); }
     return DoublesPmfCdfImpl.getPMFOrCDF(this, splitPoints, true);
   }
 
@@ -727,8 +724,44 @@ public abstract class DoublesSketch {
     return new DoublesSketchIterator(this, getBitPattern());
   }
 
+  /**
+   * Returns the sorted view of this sketch, which answers quantile, rank, PMF and CDF queries
+   * by binary search. The view is built on the first call and cached, so that repeated queries
+   * against an unchanged sketch do not merge its levels again. A new view is built after the
+   * sketch has been updated.
+   *
+   * <p>The returned view is a snapshot and does not reflect later updates of the sketch.</p>
+   *
+   * @return the sorted view of this sketch
+   */
+  public DoublesSketchSortedView getSortedView() {
+    DoublesSketchSortedView sortedView = getCachedSortedView();
+    if (sortedView == null) {
+      sortedView = new DoublesSketchSortedView(this);
+      sortedView_ = sortedView;
+    }
+    return sortedView;
+  }
+
   //Restricted
 
+  /**
+   * Returns the cached sorted view if it is still valid for this sketch, otherwise null.
+   * @return the cached sorted view if it is still valid for this sketch, otherwise null.
+   */
+  final DoublesSketchSortedView getCachedSortedView() {
+    final DoublesSketchSortedView sortedView = sortedView_;
+    return ((sortedView != null) && (sortedView.getN() == getN())) ? sortedView : null;
+  }
+
+  /**
+   * Discards the cached sorted view. Used by operations that change the sketch without
+   * necessarily changing N, such as reset().
+   */
+  final void clearSortedView() {
+    sortedView_ = null;
+  }
+
   /*
    * DoublesMergeImpl.downSamplingMergeInto requires the target sketch to implement update(), so
    * we ensure that the target is an UpdateSketch. The public API, on the other hand, just
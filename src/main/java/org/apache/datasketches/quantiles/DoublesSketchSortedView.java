@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.quantiles;
+
+import org.apache.datasketches.QuantilesHelper;
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * A sorted view of the values retained by a DoublesSketch, together with their cumulative
+ * weights. Building it merges the levels of the sketch once, after which quantile, rank, PMF
+ * and CDF queries are answered by binary search in O(log(retained items)).
+ *
+ * <p>A view is a snapshot of the sketch at the time it was built and does not change when the
+ * sketch is updated. {@link DoublesSketch#getSortedView()} caches the view and builds a new
+ * one only after the sketch has changed.</p>
+ *
+ * <p>The queries return the same results as the equivalent queries of the sketch.</p>
+ */
+public final class DoublesSketchSortedView {
+  private final long n_;
+  private final double minValue_;
+  private final double maxValue_;
+  private final double[] items_;
+  private final long[] cumWeights_; // weights preceding each item, the extra last slot holds n
+
+  DoublesSketchSortedView(final DoublesSketch sketch) {
+    final DoublesAuxiliary aux = new DoublesAuxiliary(sketch);
+    n_ = aux.auxN_;
+    minValue_ = sketch.getMinValue();
+    maxValue_ = sketch.getMaxValue();
+    items_ = aux.auxSamplesArr_;
+    cumWeights_ = aux.auxCumWtsArr_;
+  }
+
+  /**
+   * Returns the length of the input stream seen by the sketch when this view was built.
+   * @return the length of the input stream
+   */
+  public long getN() {
+    return n_;
+  }
+
+  /**
+   * Returns true if the sketch was empty when this view was built.
+   * @return true if the sketch was empty when this view was built
+   */
+  public boolean isEmpty() {
+    return n_ == 0;
+  }
+
+  /**
+   * Returns the approximate quantile of the given fractional rank.
+   * This is equivalent to {@link DoublesSketch#getQuantile(double)}.
+   *
+   * <p>If the view is empty this returns Double.NaN.
+   *
+   * @param fraction the given fractional rank where 0 &le; fraction &le; 1.0.
+   * If fraction = 0.0, the true minimum value of the stream is returned.
+   * If fraction = 1.0, the true maximum value of the stream is returned.
+   * @return the approximate quantile of the given fractional rank
+   */
+  public double getQuantile(final double fraction) {
+    if (isEmpty()) { return Double.NaN; }
+    if ((fraction < 0.0) || (fraction > 1.0)) {
+      throw new SketchesArgumentException("Fraction cannot be less than zero or greater than 1.0");
+    }
+    if (fraction == 0.0) { return minValue_; }
+    if (fraction == 1.0) { return maxValue_; }
+    final long pos = QuantilesHelper.posOfPhi(fraction, n_);
+    return items_[QuantilesHelper.chunkContainingPos(cumWeights_, pos)];
+  }
+
+  /**
+   * Returns the approximate normalized rank of the given value.
+   * This is equivalent to {@link DoublesSketch#getRank(double)}.
+   *
+   * <p>If the view is empty this returns NaN.</p>
+   *
+   * @param value to be ranked
+   * @return the approximate normalized rank of the given value
+   */
+  public double getRank(final double value) {
+    if (isEmpty()) { return Double.NaN; }
+    return (double) cumWeights_[lowerBound(value)] / n_;
+  }
+
+  /**
+   * Returns the approximate PMF of the input stream given the split points.
+   * This is equivalent to {@link DoublesSketch#getPMF(double[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing double values
+   * that divide the real number line into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate fraction of the input stream values
+   * that fall into each interval.
+   */
+  public double[] getPMF(final double[] splitPoints) {
+    return getPmfOrCdf(splitPoints, false);
+  }
+
+  /**
+   * Returns the approximate CDF of the input stream given the split points.
+   * This is equivalent to {@link DoublesSketch#getCDF(double[])}.
+   *
+   * <p>If the view is empty this returns null.</p>
+   *
+   * @param splitPoints an array of <i>m</i> unique, monotonically increasing double values
+   * that divide the real number line into <i>m+1</i> consecutive disjoint intervals.
+   * @return an array of m+1 doubles, the approximate CDF of the input stream given the
+   * split points.
+   */
+  public double[] getCDF(final double[] splitPoints) {
+    return getPmfOrCdf(splitPoints, true);
+  }
+
+  private double[] getPmfOrCdf(final double[] splitPoints, final boolean isCdf) {
+    if (isEmpty()) { return null; }
+    Util.checkSplitPointsOrder(splitPoints);
+    final int numSplitPoints = splitPoints.length;
+    final double[] buckets = new double[numSplitPoints + 1];
+    long prevWeight = 0;
+    for (int j = 0; j <= numSplitPoints; j++) {
+      final long weight = (j < numSplitPoints) ? cumWeights_[lowerBound(splitPoints[j])] : n_;
+      buckets[j] = (double) (isCdf ? weight : weight - prevWeight) / n_;
+      prevWeight = weight;
+    }
+    return buckets;
+  }
+
+  // index of the first item not less than the given value, or the number of items if none
+  private int lowerBound(final double value) {
+    int lo = 0;
+    int hi = items_.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (items_[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+}
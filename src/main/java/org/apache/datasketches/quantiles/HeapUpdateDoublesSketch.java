@@ -184,6 +184,7 @@ final class HeapUpdateDoublesSketch extends UpdateDoublesSketch {
 
   @Override
   public void reset() {
+    clearSortedView();
     n_ = 0;
     final int combinedBufferItemCapacity = 2 * Math.min(DoublesSketch.MIN_K, k_); //min is important
     combinedBuffer_ = new double[combinedBufferItemCapacity];
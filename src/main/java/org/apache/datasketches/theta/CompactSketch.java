@@ -71,6 +71,33 @@ public abstract class CompactSketch extends Sketch {
     return true;
   }
 
+  /**
+   * Serializes this sketch to a byte array in the compressed compact form (Serialization Version
+   * 4). The hashes are stored in ascending order as the deltas between them, bit-packed with the
+   * width of the largest delta. With <i>n</i> retained entries this takes about
+   * 63 - log2(<i>n</i>) bits per entry, plus a few, instead of 64, which saves the most for the
+   * largest sketches. The result can be wrapped by {@link Sketch#wrap(Memory)}, which iterates and
+   * estimates without decoding it, and given directly to {@link Union#update(Memory)}.
+   *
+   * <p>The empty sketch and the single item sketch with theta = 1.0 have no compressed form,
+   * and for them this returns {@link #toByteArray()}.</p>
+   *
+   * @return this sketch in compressed compact form, or as {@link #toByteArray()}
+   */
+  public byte[] toByteArrayCompressed() {
+    final int curCount = getRetainedEntries(true);
+    final long thetaLong = getThetaLong();
+    if ((curCount == 0) || ((curCount == 1) && (thetaLong == Long.MAX_VALUE))) {
+      return toByteArray();
+    }
+    long[] cache = getCache();
+    if (!isOrdered()) {
+      cache = Arrays.copyOf(cache, curCount);
+      Arrays.sort(cache);
+    }
+    return DirectCompactCompressedSketch.compress(cache, curCount, thetaLong, getSeedHash());
+  }
+
   //restricted methods
 
   /**
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * Iterates over the hashes of a compressed compact sketch in ascending order, decoding the
+ * bit-packed deltas as it goes.
+ */
+class CompressedHashIterator implements HashIterator {
+  private final Memory mem;
+  private final long capacity;
+  private final int entryBits;
+  private final long mask;
+  private final int count;
+  private long bitPos;
+  private int index;
+  private long hash;
+
+  CompressedHashIterator(final Memory mem, final int entriesOffset, final int entryBits,
+      final int count) {
+    this.mem = mem;
+    capacity = mem.getCapacity();
+    this.entryBits = entryBits;
+    mask = (1L << entryBits) - 1;
+    this.count = count;
+    bitPos = (long) entriesOffset << 3;
+    index = -1;
+    hash = 0;
+  }
+
+  @Override
+  public long get() {
+    return hash;
+  }
+
+  @Override
+  public boolean next() {
+    if (++index >= count) { return false; }
+    hash += readDelta();
+    return true;
+  }
+
+  private long readDelta() {
+    final long offsetBytes = bitPos >>> 3;
+    final int shift = (int) (bitPos & 7);
+    bitPos += entryBits;
+    if ((offsetBytes + 9) <= capacity) { //one little-endian long read, plus a byte if needed
+      long v = mem.getLong(offsetBytes) >>> shift;
+      if ((shift + entryBits) > 64) {
+        v |= (mem.getByte(offsetBytes + 8) & 0XFFL) << (64 - shift);
+      }
+      return v & mask;
+    }
+    long v = 0; //near the end of the image, byte by byte
+    int bits = 0;
+    long pos = offsetBytes;
+    int offset = shift;
+    while (bits < entryBits) {
+      v |= ((mem.getByte(pos++) & 0XFFL) >>> offset) << bits;
+      bits += 8 - offset;
+      offset = 0;
+    }
+    return v & mask;
+  }
+
+}
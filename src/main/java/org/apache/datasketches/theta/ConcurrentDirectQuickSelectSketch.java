@@ -21,11 +21,10 @@ package org.apache.datasketches.theta;
 
 import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.datasketches.ResizeFactor;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.WritableMemory;
 
 /**
@@ -41,8 +40,11 @@ import org.apache.datasketches.memory.WritableMemory;
 class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
     implements ConcurrentSharedThetaSketch {
 
-  // The propagation thread
-  private ExecutorService executorService_;
+  // The scheduler of the background propagation tasks
+  private final PropagationScheduler scheduler_;
+
+  // The serial queue of the background propagation tasks of this sketch
+  private volatile SerialPropagationExecutor propagationExecutor_;
 
   // A flag to coordinate between several eager propagation threads
   private final AtomicBoolean sharedPropagationInProgress_;
@@ -66,12 +68,15 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
    * @param seed       <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param hasher     the hash function of this sketch
    * @param maxConcurrencyError the max error value including error induced by concurrency.
+   * @param scheduler  the scheduler of the background propagation tasks
    * @param dstMem     the given Memory object destination. It cannot be null.
    */
-  ConcurrentDirectQuickSelectSketch(final int lgNomLongs, final long seed,
-      final double maxConcurrencyError, final WritableMemory dstMem) {
-    super(lgNomLongs, seed, 1.0F, //p
+  ConcurrentDirectQuickSelectSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final double maxConcurrencyError, final PropagationScheduler scheduler,
+      final WritableMemory dstMem) {
+    super(lgNomLongs, seed, hasher, 1.0F, //p
       ResizeFactor.X1, //rf,
       null, dstMem, false); //unionGadget
 
@@ -81,12 +86,14 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
         maxConcurrencyError);
     sharedPropagationInProgress_ = new AtomicBoolean(false);
     epoch_ = 0;
+    scheduler_ = scheduler;
     initBgPropagationService();
   }
 
   ConcurrentDirectQuickSelectSketch(final UpdateSketch sketch, final long seed,
-      final double maxConcurrencyError, final WritableMemory dstMem) {
-    super(sketch.getLgNomLongs(), seed, 1.0F, //p
+      final Hasher hasher, final double maxConcurrencyError, final PropagationScheduler scheduler,
+      final WritableMemory dstMem) {
+    super(sketch.getLgNomLongs(), seed, hasher, 1.0F, //p
         ResizeFactor.X1, //rf,
         null, //mem Req Svr
         dstMem,
@@ -96,6 +103,7 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
         maxConcurrencyError);
     sharedPropagationInProgress_ = new AtomicBoolean(false);
     epoch_ = 0;
+    scheduler_ = scheduler;
     initBgPropagationService();
     for (final long hashIn : sketch.getCache()) {
       propagate(hashIn);
@@ -153,6 +161,13 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
     throw new UnsupportedOperationException(msg);
   }
 
+  @Override
+  void hashUpdate(final long[] hashes, final int count) {
+    for (int i = 0; i < count; i++) { //must go through the hash at a time path
+      hashUpdate(hashes[i]);
+    }
+  }
+
   //ConcurrentSharedThetaSketch declarations
 
   @Override
@@ -186,19 +201,14 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
 
   @Override
   public void awaitBgPropagationTermination() {
-    try {
-      executorService_.shutdown();
-      while (!executorService_.awaitTermination(1, TimeUnit.MILLISECONDS)) {
-        Thread.sleep(1);
-      }
-    } catch (final InterruptedException e) {
-      e.printStackTrace();
-    }
+    propagationExecutor_.awaitQuiescence();
   }
 
   @Override
   public void initBgPropagationService() {
-    executorService_ = ConcurrentPropagationService.getExecutorService(Thread.currentThread().getId());
+    if (propagationExecutor_ == null) {
+      propagationExecutor_ = new SerialPropagationExecutor(scheduler_);
+    }
   }
 
   @Override
@@ -222,7 +232,7 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
     // otherwise, be nonblocking, let background thread do the work
     final ConcurrentBackgroundThetaPropagation job = new ConcurrentBackgroundThetaPropagation(
         this, localPropagationInProgress, sketchIn, singleHash, epoch);
-    executorService_.execute(job);
+    propagationExecutor_.execute(job);
     return true;
   }
 
@@ -256,13 +266,11 @@ class ConcurrentDirectQuickSelectSketch extends DirectQuickSelectSketch
   private void advanceEpoch() {
     awaitBgPropagationTermination();
     startEagerPropagation();
-    ConcurrentPropagationService.resetExecutorService(Thread.currentThread().getId());
     //noinspection NonAtomicOperationOnVolatileField
     // this increment of a volatile field is done within the scope of the propagation
     // synchronization and hence is done by a single thread.
     epoch_++;
     endPropagation(null, true);
-    initBgPropagationService();
   }
 
 }
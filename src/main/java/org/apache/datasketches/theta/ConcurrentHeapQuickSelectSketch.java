@@ -19,11 +19,10 @@
 
 package org.apache.datasketches.theta;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.datasketches.ResizeFactor;
+import org.apache.datasketches.hash.Hasher;
 
 /**
  * A concurrent shared sketch that is based on HeapQuickSelectSketch.
@@ -38,8 +37,11 @@ import org.apache.datasketches.ResizeFactor;
 class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
     implements ConcurrentSharedThetaSketch {
 
-  // The propagation thread
-  private volatile ExecutorService executorService_;
+  // The scheduler of the background propagation tasks
+  private final PropagationScheduler scheduler_;
+
+  // The serial queue of the background propagation tasks of this sketch
+  private volatile SerialPropagationExecutor propagationExecutor_;
 
   //A flag to coordinate between several eager propagation threads
   private final AtomicBoolean sharedPropagationInProgress_;
@@ -63,12 +65,13 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>.
    * @param seed       <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher     the hash function of this sketch
    * @param maxConcurrencyError the max error value including error induced by concurrency
-   *
+   * @param scheduler  the scheduler of the background propagation tasks
    */
-  ConcurrentHeapQuickSelectSketch(final int lgNomLongs, final long seed,
-      final double maxConcurrencyError) {
-    super(lgNomLongs, seed, 1.0F, //p
+  ConcurrentHeapQuickSelectSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final double maxConcurrencyError, final PropagationScheduler scheduler) {
+    super(lgNomLongs, seed, hasher, 1.0F, //p
         ResizeFactor.X1, //rf,
         false); //unionGadget
 
@@ -78,12 +81,13 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
         maxConcurrencyError);
     sharedPropagationInProgress_ = new AtomicBoolean(false);
     epoch_ = 0;
+    scheduler_ = scheduler;
     initBgPropagationService();
   }
 
   ConcurrentHeapQuickSelectSketch(final UpdateSketch sketch, final long seed,
-      final double maxConcurrencyError) {
-    super(sketch.getLgNomLongs(), seed, 1.0F, //p
+      final Hasher hasher, final double maxConcurrencyError, final PropagationScheduler scheduler) {
+    super(sketch.getLgNomLongs(), seed, hasher, 1.0F, //p
         ResizeFactor.X1, //rf,
         false); //unionGadget
 
@@ -91,6 +95,7 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
         maxConcurrencyError);
     sharedPropagationInProgress_ = new AtomicBoolean(false);
     epoch_ = 0;
+    scheduler_ = scheduler;
     initBgPropagationService();
     for (final long hashIn : sketch.getCache()) {
       propagate(hashIn);
@@ -148,6 +153,13 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
     throw new UnsupportedOperationException(msg);
   }
 
+  @Override
+  void hashUpdate(final long[] hashes, final int count) {
+    for (int i = 0; i < count; i++) { //must go through the hash at a time path
+      hashUpdate(hashes[i]);
+    }
+  }
+
   //ConcurrentSharedThetaSketch declarations
 
   @Override
@@ -181,19 +193,14 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
 
   @Override
   public void awaitBgPropagationTermination() {
-    try {
-      executorService_.shutdown();
-      while (!executorService_.awaitTermination(1, TimeUnit.MILLISECONDS)) {
-        Thread.sleep(1);
-      }
-    } catch (final InterruptedException e) {
-      e.printStackTrace();
-    }
+    propagationExecutor_.awaitQuiescence();
   }
 
   @Override
   public void initBgPropagationService() {
-    executorService_ = ConcurrentPropagationService.getExecutorService(Thread.currentThread().getId());
+    if (propagationExecutor_ == null) {
+      propagationExecutor_ = new SerialPropagationExecutor(scheduler_);
+    }
   }
 
   @Override
@@ -217,7 +224,7 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
     // otherwise, be nonblocking, let background thread do the work
     final ConcurrentBackgroundThetaPropagation job = new ConcurrentBackgroundThetaPropagation(
         this, localPropagationInProgress, sketchIn, singleHash, epoch);
-    executorService_.execute(job);
+    propagationExecutor_.execute(job);
     return true;
   }
 
@@ -251,14 +258,12 @@ class ConcurrentHeapQuickSelectSketch extends HeapQuickSelectSketch
   private void advanceEpoch() {
     awaitBgPropagationTermination();
     startEagerPropagation();
-    ConcurrentPropagationService.resetExecutorService(Thread.currentThread().getId());
     //noinspection NonAtomicOperationOnVolatileField
     // this increment of a volatile field is done within the scope of the propagation
     // synchronization and hence is done by a single thread
     // Ignore a FindBugs warning
     epoch_++;
     endPropagation(null, true);
-    initBgPropagationService();
   }
 
 }
@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.ResizeFactor;
+import org.apache.datasketches.hash.Hasher;
 
 /**
  * The theta filtering buffer that operates in the context of a single writing thread.
@@ -56,11 +57,11 @@ final class ConcurrentHeapThetaBuffer extends HeapQuickSelectSketch {
   // It is the synchronization primitive to coordinate the work with the propagation thread.
   private final AtomicBoolean localPropagationInProgress;
 
-  ConcurrentHeapThetaBuffer(final int lgNomLongs, final long seed,
+  ConcurrentHeapThetaBuffer(final int lgNomLongs, final long seed, final Hasher hasher,
       final ConcurrentSharedThetaSketch shared, final boolean propagateOrderedCompact,
       final int maxNumLocalThreads) {
     super(computeLogBufferSize(lgNomLongs, shared.getExactLimit(), maxNumLocalThreads),
-      seed, 1.0F, //p
+      seed, hasher, 1.0F, //p
       ResizeFactor.X1, //rf
       false); //not a union gadget
 
@@ -168,6 +169,13 @@ final class ConcurrentHeapThetaBuffer extends HeapQuickSelectSketch {
     return state;
   }
 
+  @Override
+  void hashUpdate(final long[] hashes, final int count) {
+    for (int i = 0; i < count; i++) { //must go through the hash at a time path
+      hashUpdate(hashes[i]);
+    }
+  }
+
   /**
    * Propagates a single hash value to the shared sketch
    *
@@ -19,51 +19,36 @@
 
 package org.apache.datasketches.theta;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
- * Pool of threads to serve <i>all</i> propagation tasks in the system.
+ * Holds the default {@link PropagationScheduler}, which serves the propagation tasks of
+ * all shared sketches that were built without a scheduler of their own.
  *
  * @author eshcar
  */
 final class ConcurrentPropagationService {
 
   static int NUM_POOL_THREADS = 3; // Default: 3 threads
-  private static volatile ConcurrentPropagationService instance = null; // Singleton
-  private static ExecutorService[] propagationExecutorService = null;
-
-
-  private ConcurrentPropagationService() {
-    propagationExecutorService = new ExecutorService[NUM_POOL_THREADS];
-  }
-
-  //Factory: Get the singleton
-  private static ConcurrentPropagationService getInstance() {
-    if (instance == null) {
+  private static volatile PropagationScheduler defaultScheduler = null; // Singleton
+
+  private ConcurrentPropagationService() {}
+
+  /**
+   * Returns the default scheduler. It is created on first use with NUM_POOL_THREADS threads, and
+   * created again if it has been shut down.
+   * @return the default scheduler
+   */
+  static PropagationScheduler getDefaultScheduler() {
+    PropagationScheduler scheduler = defaultScheduler;
+    if ((scheduler == null) || scheduler.isShutdown()) {
       synchronized (ConcurrentPropagationService.class) {
-        if (instance == null) {
-          instance = new ConcurrentPropagationService();
+        scheduler = defaultScheduler;
+        if ((scheduler == null) || scheduler.isShutdown()) {
+          scheduler = new ForkJoinPropagationScheduler(NUM_POOL_THREADS);
+          defaultScheduler = scheduler;
         }
       }
     }
-    return instance;
+    return scheduler;
   }
 
-  public static ExecutorService getExecutorService(final long id) {
-    return getInstance().initExecutorService((int) id % NUM_POOL_THREADS);
-  }
-
-  @SuppressWarnings("static-access")
-  public static ExecutorService resetExecutorService(final long id) {
-    return getInstance().propagationExecutorService[(int) id % NUM_POOL_THREADS] = null;
-  }
-
-  @SuppressWarnings("static-method")
-  private ExecutorService initExecutorService(final int i) {
-    if (propagationExecutorService[i] == null) {
-      propagationExecutorService[i] = Executors.newSingleThreadExecutor();
-    }
-    return propagationExecutorService[i];
-  }
 }
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.apache.datasketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static org.apache.datasketches.theta.PreambleUtil.ENTRY_BITS_BYTE_V4;
+import static org.apache.datasketches.theta.PreambleUtil.NUM_ENTRIES_BYTES_BYTE_V4;
+import static org.apache.datasketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static org.apache.datasketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG_V4;
+import static org.apache.datasketches.theta.PreambleUtil.extractFlags;
+import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
+import static org.apache.datasketches.theta.PreambleUtil.insertFamilyID;
+import static org.apache.datasketches.theta.PreambleUtil.insertFlags;
+import static org.apache.datasketches.theta.PreambleUtil.insertPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.insertSeedHash;
+import static org.apache.datasketches.theta.PreambleUtil.insertSerVer;
+
+import org.apache.datasketches.Family;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * An off-heap (Direct), compact, ordered, read-only sketch in the compressed Serialization
+ * Version 4 format, which stores the deltas between successive hashes bit-packed with the width
+ * of the largest delta. See {@link PreambleUtil} for the layout.
+ *
+ * <p>The count, theta and estimate are read from the preamble. The hashes are decoded as they are
+ * iterated, so the set operations can stream them without decoding the whole sketch first.
+ * Only {@link #getCache()} decodes all hashes onto the heap.</p>
+ */
+final class DirectCompactCompressedSketch extends CompactSketch {
+  private final Memory mem_;
+
+  DirectCompactCompressedSketch(final Memory mem) {
+    mem_ = mem;
+  }
+
+  /**
+   * Wraps the given Memory, which must be a SerVer 4 Compact Sketch image.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed the update seed
+   * @return this sketch
+   */
+  static DirectCompactCompressedSketch wrapInstance(final Memory srcMem, final long seed) {
+    final DirectCompactCompressedSketch sk = wrapInstance(srcMem);
+    Hasher.fromSeedHash(sk.getSeedHash(), seed); //checks for a seed hash conflict
+    return sk;
+  }
+
+  /**
+   * Wraps the given Memory, which must be a SerVer 4 Compact Sketch image, without checking its
+   * seed hash. The caller must check it.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return this sketch
+   */
+  static DirectCompactCompressedSketch wrapInstance(final Memory srcMem) {
+    checkImage(srcMem);
+    return new DirectCompactCompressedSketch(srcMem);
+  }
+
+  /**
+   * Heapifies the given Memory, which must be a SerVer 4 Compact Sketch image, into an ordered
+   * CompactSketch of the usual form.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed the update seed
+   * @return a HeapCompactOrderedSketch
+   */
+  static CompactSketch heapifyInstance(final Memory srcMem, final long seed) {
+    final DirectCompactCompressedSketch sk = wrapInstance(srcMem, seed);
+    return HeapCompactOrderedSketch.compact(sk.getCache(), false, sk.getSeedHash(),
+        sk.getRetainedEntries(true), sk.getThetaLong());
+  }
+
+  /**
+   * Returns the compressed image of the given valid, ordered compact cache.
+   * @param cache the hashes in ascending order
+   * @param curCount the number of hashes, which must be at least one
+   * @param thetaLong the theta of the sketch
+   * @param seedHash the seed hash of the sketch
+   * @return the compressed image
+   */
+  static byte[] compress(final long[] cache, final int curCount, final long thetaLong,
+      final short seedHash) {
+    long allBits = 0;
+    long prev = 0;
+    for (int i = 0; i < curCount; i++) {
+      allBits |= cache[i] - prev;
+      prev = cache[i];
+    }
+    final int entryBits = 64 - Long.numberOfLeadingZeros(allBits);
+    final int numEntriesBytes = ((32 - Integer.numberOfLeadingZeros(curCount)) + 7) >>> 3;
+    final int preLongs = (thetaLong < Long.MAX_VALUE) ? 2 : 1;
+    final int entriesOffset = (preLongs << 3) + numEntriesBytes;
+    final int dataBytes = (int) ((((long) curCount * entryBits) + 7) >>> 3);
+    final byte[] byteArr = new byte[entriesOffset + dataBytes];
+
+    final WritableMemory wmem = WritableMemory.wrap(byteArr);
+    insertPreLongs(wmem, preLongs);
+    insertSerVer(wmem, SER_VER_COMPRESSED);
+    insertFamilyID(wmem, Family.COMPACT.getID());
+    wmem.putByte(ENTRY_BITS_BYTE_V4, (byte) entryBits);
+    wmem.putByte(NUM_ENTRIES_BYTES_BYTE_V4, (byte) numEntriesBytes);
+    insertFlags(wmem, READ_ONLY_FLAG_MASK | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK);
+    insertSeedHash(wmem, seedHash);
+    if (preLongs == 2) {
+      wmem.putLong(THETA_LONG_V4, thetaLong);
+    }
+    for (int i = 0; i < numEntriesBytes; i++) {
+      byteArr[(preLongs << 3) + i] = (byte) (curCount >>> (i << 3));
+    }
+
+    long bitPos = (long) entriesOffset << 3;
+    prev = 0;
+    for (int i = 0; i < curCount; i++) {
+      long delta = cache[i] - prev;
+      prev = cache[i];
+      int bits = entryBits;
+      while (bits > 0) { //least significant bits first, into the free bits of each byte
+        final int index = (int) (bitPos >>> 3);
+        final int offset = (int) (bitPos & 7);
+        final int take = Math.min(8 - offset, bits);
+        byteArr[index] |= (byte) ((delta & ((1 << take) - 1)) << offset);
+        delta >>>= take;
+        bits -= take;
+        bitPos += take;
+      }
+    }
+    return byteArr;
+  }
+
+  //Sketch
+
+  @Override
+  public int getCurrentBytes(final boolean compact) { //compact is ignored here
+    final int curCount = getRetainedEntries(true);
+    return entriesOffset(mem_)
+        + (int) ((((long) curCount * (mem_.getByte(ENTRY_BITS_BYTE_V4) & 0XFF)) + 7) >>> 3);
+  }
+
+  @Override
+  public double getEstimate() {
+    return Sketch.estimate(getThetaLong(), getRetainedEntries(true));
+  }
+
+  @Override
+  public int getRetainedEntries(final boolean valid) { //compact is always valid
+    return extractNumEntries(mem_);
+  }
+
+  @Override
+  public long getThetaLong() {
+    return (extractPreLongs(mem_) > 1) ? mem_.getLong(THETA_LONG_V4) : Long.MAX_VALUE;
+  }
+
+  @Override
+  public boolean hasMemory() {
+    return true;
+  }
+
+  @Override
+  public boolean isDirect() {
+    return mem_.isDirect();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return false; //the empty sketch is never compressed
+  }
+
+  @Override
+  public boolean isOrdered() {
+    return true;
+  }
+
+  @Override
+  public boolean isSameResource(final Memory that) {
+    return mem_.isSameResource(that);
+  }
+
+  @Override
+  public HashIterator iterator() {
+    return new CompressedHashIterator(mem_, entriesOffset(mem_),
+        mem_.getByte(ENTRY_BITS_BYTE_V4) & 0XFF, getRetainedEntries(true));
+  }
+
+  /**
+   * Returns a copy of the compressed image.
+   */
+  @Override
+  public byte[] toByteArray() {
+    return toByteArrayCompressed();
+  }
+
+  @Override
+  public byte[] toByteArrayCompressed() {
+    final int bytes = getCurrentBytes(true);
+    final byte[] byteArr = new byte[bytes];
+    mem_.getByteArray(0, byteArr, 0, bytes);
+    return byteArr;
+  }
+
+  //restricted methods
+
+  @Override
+  long[] getCache() {
+    final long[] cache = new long[getRetainedEntries(true)];
+    final HashIterator it = iterator();
+    for (int i = 0; it.next(); i++) { cache[i] = it.get(); }
+    return cache;
+  }
+
+  @Override
+  int getCurrentPreambleLongs(final boolean compact) { //already compact; ignore
+    return extractPreLongs(mem_);
+  }
+
+  @Override
+  Memory getMemory() {
+    return mem_;
+  }
+
+  @Override
+  short getSeedHash() {
+    return (short) extractSeedHash(mem_);
+  }
+
+  static int extractNumEntries(final Memory mem) {
+    final int numEntriesBytes = mem.getByte(NUM_ENTRIES_BYTES_BYTE_V4) & 0XFF;
+    final int offset = extractPreLongs(mem) << 3;
+    int numEntries = 0;
+    for (int i = 0; i < numEntriesBytes; i++) {
+      numEntries |= (mem.getByte(offset + i) & 0XFF) << (i << 3);
+    }
+    return numEntries;
+  }
+
+  private static int entriesOffset(final Memory mem) {
+    return (extractPreLongs(mem) << 3) + (mem.getByte(NUM_ENTRIES_BYTES_BYTE_V4) & 0XFF);
+  }
+
+  private static void checkImage(final Memory srcMem) {
+    final long cap = srcMem.getCapacity();
+    if (cap < 8) {
+      throw new SketchesArgumentException("Corrupted: compressed compact image too small: " + cap);
+    }
+    final int preLongs = extractPreLongs(srcMem);
+    final int entryBits = srcMem.getByte(ENTRY_BITS_BYTE_V4) & 0XFF;
+    final int numEntriesBytes = srcMem.getByte(NUM_ENTRIES_BYTES_BYTE_V4) & 0XFF;
+    final int flags = extractFlags(srcMem);
+    final int requiredFlags = READ_ONLY_FLAG_MASK | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK;
+    if (((preLongs != 1) && (preLongs != 2)) || (entryBits < 1) || (entryBits > 63)
+        || (numEntriesBytes < 1) || (numEntriesBytes > 4)
+        || ((flags & requiredFlags) != requiredFlags)
+        || (cap < ((preLongs << 3) + numEntriesBytes))) {
+      throw new SketchesArgumentException("Corrupted: invalid compressed compact preamble.");
+    }
+    final long numEntries = extractNumEntries(srcMem) & 0XFFFFFFFFL;
+    final long required =
+        (preLongs << 3) + numEntriesBytes + (((numEntries * entryBits) + 7) >>> 3);
+    if (cap < required) {
+      throw new SketchesArgumentException("Corrupted: compressed compact image capacity: " + cap
+          + ", Need: " + required);
+    }
+  }
+
+}
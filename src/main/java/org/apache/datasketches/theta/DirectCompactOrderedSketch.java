@@ -19,14 +19,13 @@
 
 package org.apache.datasketches.theta;
 
-import static org.apache.datasketches.Util.checkSeedHashes;
-import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.SEED_HASH_SHORT;
 
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -55,8 +54,7 @@ final class DirectCompactOrderedSketch extends DirectCompactSketch {
    */
   static DirectCompactOrderedSketch wrapInstance(final Memory srcMem, final long seed) {
     final short memSeedHash = srcMem.getShort(SEED_HASH_SHORT);
-    final short computedSeedHash = computeSeedHash(seed);
-    checkSeedHashes(memSeedHash, computedSeedHash);
+    Hasher.fromSeedHash(memSeedHash, seed); //checks for a seed hash conflict
     return new DirectCompactOrderedSketch(srcMem);
   }
 
@@ -20,6 +20,7 @@
 package org.apache.datasketches.theta;
 
 import static org.apache.datasketches.Util.MIN_LG_ARR_LONGS;
+import static org.apache.datasketches.theta.PreambleUtil.BUCKETIZED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.FLAGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
@@ -32,6 +33,7 @@ import static org.apache.datasketches.theta.PreambleUtil.extractLgArrLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgNomLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgResizeFactor;
 import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.getMemBytes;
 import static org.apache.datasketches.theta.PreambleUtil.insertCurCount;
 import static org.apache.datasketches.theta.PreambleUtil.insertFamilyID;
@@ -58,6 +60,7 @@ import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.MemoryRequestServer;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -77,8 +80,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
 
   private DirectQuickSelectSketch(
       final long seed,
+      final Hasher hasher,
       final WritableMemory wmem) {
-    super(seed, wmem);
+    super(seed, hasher, wmem);
   }
 
   /**
@@ -86,6 +90,7 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param hasher the hash function of the input items
    * @param p
    * <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf Currently internally fixed at 2. Unless dstMem is not configured with a valid
@@ -101,12 +106,44 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
   DirectQuickSelectSketch(
       final int lgNomLongs,
       final long seed,
+      final Hasher hasher,
       final float p,
       final ResizeFactor rf,
       final MemoryRequestServer memReqSvr,
       final WritableMemory dstMem,
       final boolean unionGadget) {
-    super(seed, dstMem);
+    this(lgNomLongs, seed, hasher, p, rf, memReqSvr, dstMem, unionGadget,
+        HashTableLayout.DOUBLE_HASHING);
+  }
+
+  /**
+   * Construct a new sketch instance and initialize the given Memory as its backing store.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param hasher the hash function of the input items
+   * @param p
+   * <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param memReqSvr the given MemoryRequestServer
+   * @param dstMem the given Memory object destination. It cannot be null.
+   * It will be cleared prior to use.
+   * @param unionGadget true if this sketch is implementing the Union gadget function.
+   * Otherwise, it is behaving as a normal QuickSelectSketch.
+   * @param layout the layout of the hash table, which is recorded in the flags.
+   * See {@link UpdateSketchBuilder#setHashTableLayout(HashTableLayout)}.
+   */
+  DirectQuickSelectSketch(
+      final int lgNomLongs,
+      final long seed,
+      final Hasher hasher,
+      final float p,
+      final ResizeFactor rf,
+      final MemoryRequestServer memReqSvr,
+      final WritableMemory dstMem,
+      final boolean unionGadget,
+      final HashTableLayout layout) {
+    super(seed, hasher, dstMem);
 
     //Choose family, preambleLongs
     final Family family;
@@ -141,8 +178,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
     insertLgNomLongs(dstMem, lgNomLongs);                  //byte 3
     insertLgArrLongs(dstMem, lgArrLongs);                  //byte 4
     //flags: bigEndian = readOnly = compact = ordered = false; empty = true : 00100 = 4
-    insertFlags(dstMem, EMPTY_FLAG_MASK);                  //byte 5
-    insertSeedHash(dstMem, Util.computeSeedHash(seed));    //bytes 6,7
+    final int bucketized = (layout == HashTableLayout.BUCKETIZED) ? BUCKETIZED_FLAG_MASK : 0;
+    insertFlags(dstMem, EMPTY_FLAG_MASK | bucketized);     //byte 5
+    insertSeedHash(dstMem, hasher.computeSeedHash(seed));  //bytes 6,7
     insertCurCount(dstMem, 0);                             //bytes 8-11
     insertP(dstMem, p);                                    //bytes 12-15
     final long thetaLong = (long)(p * MAX_THETA_LONG_AS_DOUBLE);
@@ -182,8 +220,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
       insertLgResizeFactor(srcMem, ResizeFactor.X2.lg());
     }
 
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
     final DirectQuickSelectSketch dqss =
-        new DirectQuickSelectSketch(seed, srcMem);
+        new DirectQuickSelectSketch(seed, hasher, srcMem);
     dqss.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     return dqss;
   }
@@ -200,8 +239,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
     final int lgNomLongs = extractLgNomLongs(srcMem);                   //byte 3
     final int lgArrLongs = extractLgArrLongs(srcMem);                   //byte 4
 
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
     final DirectQuickSelectSketch dqss =
-        new DirectQuickSelectSketch(seed, srcMem);
+        new DirectQuickSelectSketch(seed, hasher, srcMem);
     dqss.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     return dqss;
   }
@@ -230,8 +270,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
     final int preambleLongs = mem_.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
     final int preBytes = preambleLongs << 3;
     mem_.clear(preBytes, arrLongs * 8L); //clear data array
-    //flags: bigEndian = readOnly = compact = ordered = false; empty = true.
-    mem_.putByte(FLAGS_BYTE, (byte) EMPTY_FLAG_MASK);
+    //flags: bigEndian = readOnly = compact = ordered = false; empty = true; bucketized stays.
+    mem_.putByte(FLAGS_BYTE,
+        (byte) (EMPTY_FLAG_MASK | (mem_.getByte(FLAGS_BYTE) & BUCKETIZED_FLAG_MASK)));
     mem_.putInt(RETAINED_ENTRIES_INT, 0);
     final float p = mem_.getFloat(P_FLOAT);
     final long thetaLong = (long) (p * MAX_THETA_LONG_AS_DOUBLE);
@@ -244,7 +285,8 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
   UpdateReturnState hashUpdate(final long hash) {
     HashOperations.checkHashCorruption(hash);
 
-    mem_.putByte(FLAGS_BYTE, (byte) (mem_.getByte(FLAGS_BYTE) & ~EMPTY_FLAG_MASK));
+    final int flags = mem_.getByte(FLAGS_BYTE);
+    mem_.putByte(FLAGS_BYTE, (byte) (flags & ~EMPTY_FLAG_MASK));
     final long thetaLong = getThetaLong();
     final int lgNomLongs = getLgNomLongs();
     //The over-theta test
@@ -256,8 +298,9 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
     final int preambleLongs = mem_.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
 
     //The duplicate test
-    final int index =
-        HashOperations.fastHashSearchOrInsert(mem_, lgArrLongs, hash, preambleLongs << 3);
+    final int index = ((flags & BUCKETIZED_FLAG_MASK) != 0)
+        ? HashOperations.fastBucketSearchOrInsert(mem_, lgArrLongs, hash, preambleLongs << 3)
+        : HashOperations.fastHashSearchOrInsert(mem_, lgArrLongs, hash, preambleLongs << 3);
     if (index >= 0) {
       return RejectedDuplicate; //Duplicate, not inserted
     }
@@ -266,48 +309,96 @@ class DirectQuickSelectSketch extends DirectQuickSelectSketchR {
     mem_.putInt(RETAINED_ENTRIES_INT, curCount); //update curCount
 
     if (isOutOfSpace(curCount)) { //we need to do something, we are out of space
+      rebuildOrResize(lgArrLongs, lgNomLongs, preambleLongs, thetaLong);
+    }
+    return InsertedCountIncremented;
+  }
+
+  @Override
+  void hashUpdate(final long[] hashes, final int count) {
+    if (count == 0) { return; }
+    final int flags = mem_.getByte(FLAGS_BYTE);
+    mem_.putByte(FLAGS_BYTE, (byte) (flags & ~EMPTY_FLAG_MASK));
+    final boolean bucketized = (flags & BUCKETIZED_FLAG_MASK) != 0;
+    final int lgNomLongs = getLgNomLongs();
+    final int preambleLongs = mem_.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
+    //the preamble is read once and curCount written once per batch unless the table fills up
+    long thetaLong = getThetaLong();
+    int lgArrLongs = getLgArrLongs();
+    int curCount = getRetainedEntries();
+    for (int i = 0; i < count; i++) {
+      final long hash = hashes[i];
+      HashOperations.checkHashCorruption(hash);
+      if (HashOperations.continueCondition(thetaLong, hash)) {
+        continue; //rejected due to theta or zero
+      }
+      final int index = bucketized
+          ? HashOperations.fastBucketSearchOrInsert(mem_, lgArrLongs, hash, preambleLongs << 3)
+          : HashOperations.fastHashSearchOrInsert(mem_, lgArrLongs, hash, preambleLongs << 3);
+      if (index >= 0) {
+        continue; //duplicate
+      }
+      curCount++;
+      if (isOutOfSpace(curCount)) {
+        mem_.putInt(RETAINED_ENTRIES_INT, curCount);
+        rebuildOrResize(lgArrLongs, lgNomLongs, preambleLongs, thetaLong);
+        thetaLong = getThetaLong();
+        lgArrLongs = getLgArrLongs();
+        curCount = getRetainedEntries();
+      }
+    }
+    mem_.putInt(RETAINED_ENTRIES_INT, curCount);
+  }
 
-      if (lgArrLongs > lgNomLongs) { //at full size, rebuild
-        //Assumes no dirty values, changes thetaLong, curCount_
-        assert (lgArrLongs == (lgNomLongs + 1))
-            : "lgArr: " + lgArrLongs + ", lgNom: " + lgNomLongs;
-        //rebuild, refresh curCount based on # values in the hashtable.
-        quickSelectAndRebuild(mem_, preambleLongs, lgNomLongs);
-      } //end of rebuild, exit
+  /**
+   * Called when the hash table is out of space. Either rebuilds the hash table at full size,
+   * which changes thetaLong and curCount, or resizes it, possibly into newly requested Memory.
+   * @param lgArrLongs the current lgArrLongs
+   * @param lgNomLongs the configured lgNomLongs
+   * @param preambleLongs the number of preamble longs
+   * @param thetaLong the current thetaLong
+   */
+  private void rebuildOrResize(final int lgArrLongs, final int lgNomLongs, final int preambleLongs,
+      final long thetaLong) {
+    if (lgArrLongs > lgNomLongs) { //at full size, rebuild
+      //Assumes no dirty values, changes thetaLong, curCount_
+      assert (lgArrLongs == (lgNomLongs + 1))
+          : "lgArr: " + lgArrLongs + ", lgNom: " + lgNomLongs;
+      //rebuild, refresh curCount based on # values in the hashtable.
+      quickSelectAndRebuild(mem_, preambleLongs, lgNomLongs);
+    } //end of rebuild, exit
 
-      else { //Not at full size, resize. Should not get here if lgRF = 0 and memCap is too small.
-        final int lgRF = getLgRF();
-        final int actLgRF = actLgResizeFactor(mem_.getCapacity(), lgArrLongs, preambleLongs, lgRF);
-        int tgtLgArrLongs = Math.min(lgArrLongs + actLgRF, lgNomLongs + 1);
+    else { //Not at full size, resize. Should not get here if lgRF = 0 and memCap is too small.
+      final int lgRF = getLgRF();
+      final int actLgRF = actLgResizeFactor(mem_.getCapacity(), lgArrLongs, preambleLongs, lgRF);
+      int tgtLgArrLongs = Math.min(lgArrLongs + actLgRF, lgNomLongs + 1);
 
-        if (actLgRF > 0) { //Expand in current Memory
-          //lgArrLongs will change; thetaLong, curCount will not
-          resize(mem_, preambleLongs, lgArrLongs, tgtLgArrLongs);
-          hashTableThreshold_ = setHashTableThreshold(lgNomLongs, tgtLgArrLongs);
-        } //end of Expand in current memory, exit.
+      if (actLgRF > 0) { //Expand in current Memory
+        //lgArrLongs will change; thetaLong, curCount will not
+        resize(mem_, preambleLongs, lgArrLongs, tgtLgArrLongs);
+        hashTableThreshold_ = setHashTableThreshold(lgNomLongs, tgtLgArrLongs);
+      } //end of Expand in current memory, exit.
 
-        else {
-          //Request more memory, then resize. lgArrLongs will change; thetaLong, curCount will not
-          final int preBytes = preambleLongs << 3;
-          tgtLgArrLongs = Math.min(lgArrLongs + lgRF, lgNomLongs + 1);
-          final int tgtArrBytes = 8 << tgtLgArrLongs;
-          final int reqBytes = tgtArrBytes + preBytes;
+      else {
+        //Request more memory, then resize. lgArrLongs will change; thetaLong, curCount will not
+        final int preBytes = preambleLongs << 3;
+        tgtLgArrLongs = Math.min(lgArrLongs + lgRF, lgNomLongs + 1);
+        final int tgtArrBytes = 8 << tgtLgArrLongs;
+        final int reqBytes = tgtArrBytes + preBytes;
 
-          memReqSvr_ = (memReqSvr_ == null) ? mem_.getMemoryRequestServer() : memReqSvr_;
+        memReqSvr_ = (memReqSvr_ == null) ? mem_.getMemoryRequestServer() : memReqSvr_;
 
-          final WritableMemory newDstMem = memReqSvr_.request(reqBytes);
+        final WritableMemory newDstMem = memReqSvr_.request(reqBytes);
 
-          moveAndResize(mem_, preambleLongs, lgArrLongs, newDstMem, tgtLgArrLongs, thetaLong);
+        moveAndResize(mem_, preambleLongs, lgArrLongs, newDstMem, tgtLgArrLongs, thetaLong);
 
-          memReqSvr_.requestClose(mem_, newDstMem);
+        memReqSvr_.requestClose(mem_, newDstMem);
 
-          mem_ = newDstMem;
-          hashTableThreshold_ = setHashTableThreshold(lgNomLongs, tgtLgArrLongs);
+        mem_ = newDstMem;
+        hashTableThreshold_ = setHashTableThreshold(lgNomLongs, tgtLgArrLongs);
 
-        } //end of Request more memory to resize
-      } //end of resize
-    }
-    return InsertedCountIncremented;
+      } //end of Request more memory to resize
+    } //end of resize
   }
 
 }
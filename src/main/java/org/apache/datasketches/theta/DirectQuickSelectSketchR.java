@@ -32,11 +32,13 @@ import static org.apache.datasketches.theta.PreambleUtil.extractCurCount;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgArrLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgNomLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.extractThetaLong;
 
 import org.apache.datasketches.Family;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesReadOnlyException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -54,12 +56,14 @@ import org.apache.datasketches.memory.WritableMemory;
 class DirectQuickSelectSketchR extends UpdateSketch {
   static final double DQS_RESIZE_THRESHOLD  = 15.0 / 16.0; //tuned for space
   final long seed_; //provided, kept only on heap, never serialized.
+  final Hasher hasher_; //provided, or recovered from the seed hash, never serialized.
   int hashTableThreshold_; //computed, kept only on heap, never serialized.
   WritableMemory mem_; //A WritableMemory for child class, but no write methods here
 
   //only called by DirectQuickSelectSketch and below
-  DirectQuickSelectSketchR(final long seed, final WritableMemory wmem) {
+  DirectQuickSelectSketchR(final long seed, final Hasher hasher, final WritableMemory wmem) {
     seed_ = seed;
+    hasher_ = hasher;
     mem_ = wmem;
   }
 
@@ -79,8 +83,9 @@ class DirectQuickSelectSketchR extends UpdateSketch {
     UpdateSketch.checkUnionQuickSelectFamily(srcMem, preambleLongs, lgNomLongs);
     checkMemIntegrity(srcMem, seed, preambleLongs, lgNomLongs, lgArrLongs);
 
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
     final DirectQuickSelectSketchR dqssr =
-        new DirectQuickSelectSketchR(seed, (WritableMemory) srcMem);
+        new DirectQuickSelectSketchR(seed, hasher, (WritableMemory) srcMem);
     dqssr.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     return dqssr;
   }
@@ -98,8 +103,9 @@ class DirectQuickSelectSketchR extends UpdateSketch {
     final int lgNomLongs = srcMem.getByte(LG_NOM_LONGS_BYTE) & 0XFF;
     final int lgArrLongs = srcMem.getByte(LG_ARR_LONGS_BYTE) & 0XFF;
 
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
     final DirectQuickSelectSketchR dqss =
-        new DirectQuickSelectSketchR(seed, (WritableMemory) srcMem);
+        new DirectQuickSelectSketchR(seed, hasher, (WritableMemory) srcMem);
     dqss.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     return dqss;
   }
@@ -191,6 +197,11 @@ class DirectQuickSelectSketchR extends UpdateSketch {
     return ResizeFactor.getRF(getLgRF());
   }
 
+  @Override
+  public Hasher getHasher() {
+    return hasher_;
+  }
+
   @Override
   public UpdateSketch rebuild() {
     throw new SketchesReadOnlyException();
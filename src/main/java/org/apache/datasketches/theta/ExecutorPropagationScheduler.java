@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * A {@link PropagationScheduler} that runs the propagation tasks on a given ExecutorService.
+ *
+ * <p>This adapts any ExecutorService, for example a fixed thread pool, or on Java 21 and later
+ * the executor returned by <code>Executors.newVirtualThreadPerTaskExecutor()</code>, which runs
+ * each propagation task on its own virtual thread. The lifecycle methods are delegated to the
+ * ExecutorService.</p>
+ */
+public class ExecutorPropagationScheduler implements PropagationScheduler {
+  private final ExecutorService executorService;
+  private final PropagationStats stats;
+
+  /**
+   * Constructs a scheduler that runs the propagation tasks on the given ExecutorService.
+   * @param executorService the given ExecutorService
+   */
+  public ExecutorPropagationScheduler(final ExecutorService executorService) {
+    if (executorService == null) {
+      throw new SketchesArgumentException("ExecutorService must not be null");
+    }
+    this.executorService = executorService;
+    stats = new PropagationStats();
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    executorService.execute(task);
+  }
+
+  @Override
+  public void shutdown() {
+    executorService.shutdown();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return executorService.isShutdown();
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    return executorService.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public PropagationStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " [" + executorService + "]";
+  }
+
+}
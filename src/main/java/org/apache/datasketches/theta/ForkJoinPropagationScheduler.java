@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.apache.datasketches.SketchesArgumentException;
+
+/**
+ * A {@link PropagationScheduler} that runs the propagation tasks on its own work-stealing
+ * ForkJoinPool. Idle threads steal queued tasks from busy ones, so many shared sketches cannot
+ * pile up behind a single hot thread.
+ *
+ * <p>The pool runs in FIFO (async) mode and its threads are daemon threads, so an application
+ * that never shuts the scheduler down can still exit.</p>
+ */
+public class ForkJoinPropagationScheduler extends ExecutorPropagationScheduler {
+
+  /**
+   * Constructs a scheduler with as many threads as there are available processors.
+   */
+  public ForkJoinPropagationScheduler() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a scheduler with the given number of threads.
+   * @param parallelism the number of threads of the pool. It must be at least 1.
+   */
+  public ForkJoinPropagationScheduler(final int parallelism) {
+    super(newPool(parallelism));
+  }
+
+  private static ForkJoinPool newPool(final int parallelism) {
+    if (parallelism < 1) {
+      throw new SketchesArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    return new ForkJoinPool(parallelism, pool -> {
+      final ForkJoinWorkerThread thread =
+          ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setDaemon(true);
+      thread.setName("theta-propagation-" + thread.getPoolIndex());
+      return thread;
+    }, null, true);
+  }
+
+}
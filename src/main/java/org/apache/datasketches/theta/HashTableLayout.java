@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+/**
+ * The layout of the hash table of a QuickSelect UpdateSketch, which decides the order of the
+ * slots probed by a search or insert. The layout is recorded in the flags of the serialized
+ * hash table form, so a sketch keeps its layout when it is heapified or wrapped.
+ */
+public enum HashTableLayout {
+  /**
+   * Open addressing with double hashing: each probe moves by a stride of up to 255 slots, so
+   * each usually lands on a different cache line. This is the default, and the only layout that
+   * earlier versions of the library can read as an UpdateSketch.
+   */
+  DOUBLE_HASHING,
+  /**
+   * Open addressing with double hashing over buckets of 8 slots, which is one 64-byte cache line.
+   * The slots of a bucket are probed in order before the next bucket, so a search usually
+   * touches a single cache line, which pays once the hash table is larger than the CPU caches.
+   */
+  BUCKETIZED
+}
@@ -34,6 +34,7 @@ import static org.apache.datasketches.theta.PreambleUtil.extractLgNomLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgResizeFactor;
 import static org.apache.datasketches.theta.PreambleUtil.extractP;
 import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.extractThetaLong;
 import static org.apache.datasketches.theta.UpdateReturnState.InsertedCountIncremented;
 import static org.apache.datasketches.theta.UpdateReturnState.InsertedCountNotIncremented;
@@ -45,6 +46,7 @@ import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -72,9 +74,9 @@ final class HeapAlphaSketch extends HeapUpdateSketch {
   private long[] cache_;
   private boolean dirty_ = false;
 
-  private HeapAlphaSketch(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf, final double alpha, final long split1) {
-    super(lgNomLongs, seed, p, rf);
+  private HeapAlphaSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final float p, final ResizeFactor rf, final double alpha, final long split1) {
+    super(lgNomLongs, seed, hasher, p, rf);
     alpha_ = alpha;
     split1_ = split1;
   }
@@ -84,12 +86,13 @@ final class HeapAlphaSketch extends HeapUpdateSketch {
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>
+   * @param hasher the hash function of the input items
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @return instance of this sketch
    */
-  static HeapAlphaSketch newHeapInstance(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf) {
+  static HeapAlphaSketch newHeapInstance(final int lgNomLongs, final long seed,
+      final Hasher hasher, final float p, final ResizeFactor rf) {
 
     if (lgNomLongs < ALPHA_MIN_LG_NOM_LONGS) {
       throw new SketchesArgumentException(
@@ -100,7 +103,8 @@ final class HeapAlphaSketch extends HeapUpdateSketch {
     final double alpha = nomLongs / (nomLongs + 1.0);
     final long split1 = (long) (((p * (alpha + 1.0)) / 2.0) * MAX_THETA_LONG_AS_DOUBLE);
 
-    final HeapAlphaSketch has = new HeapAlphaSketch(lgNomLongs, seed, p, rf, alpha, split1);
+    final HeapAlphaSketch has =
+        new HeapAlphaSketch(lgNomLongs, seed, hasher, p, rf, alpha, split1);
 
     final int lgArrLongs = Util.startingSubMultiple(lgNomLongs + 1, rf, MIN_LG_ARR_LONGS);
     has.lgArrLongs_ = lgArrLongs;
@@ -141,7 +145,9 @@ final class HeapAlphaSketch extends HeapUpdateSketch {
               + "array too small for sketch size");
     }
 
-    final HeapAlphaSketch has = new HeapAlphaSketch(lgNomLongs, seed, p, myRF, alpha, split1);
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
+    final HeapAlphaSketch has =
+        new HeapAlphaSketch(lgNomLongs, seed, hasher, p, myRF, alpha, split1);
     has.lgArrLongs_ = lgArrLongs;
     has.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     has.curCount_ = extractCurCount(srcMem);
@@ -19,13 +19,12 @@
 
 package org.apache.datasketches.theta;
 
-import static org.apache.datasketches.Util.checkSeedHashes;
-import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.extractCurCount;
 import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.extractThetaLong;
 
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 
 /**
@@ -58,8 +57,7 @@ final class HeapCompactUnorderedSketch extends HeapCompactSketch {
    */
   static CompactSketch heapifyInstance(final Memory srcMem, final long seed) {
     final short memSeedHash = (short) extractSeedHash(srcMem);
-    final short computedSeedHash = computeSeedHash(seed);
-    checkSeedHashes(memSeedHash, computedSeedHash);
+    Hasher.fromSeedHash(memSeedHash, seed); //checks for a seed hash conflict
 
     final int preLongs = extractPreLongs(srcMem); //must be > 1
     final boolean empty = PreambleUtil.isEmpty(srcMem); //checks for cap <= 8
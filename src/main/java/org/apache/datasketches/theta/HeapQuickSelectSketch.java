@@ -21,18 +21,22 @@ package org.apache.datasketches.theta;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import static org.apache.datasketches.QuickSelect.select;
 import static org.apache.datasketches.QuickSelect.selectExcludingZeros;
 import static org.apache.datasketches.Util.MIN_LG_ARR_LONGS;
 import static org.apache.datasketches.Util.REBUILD_THRESHOLD;
 import static org.apache.datasketches.Util.RESIZE_THRESHOLD;
+import static org.apache.datasketches.theta.PreambleUtil.BUCKETIZED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
 import static org.apache.datasketches.theta.PreambleUtil.extractCurCount;
 import static org.apache.datasketches.theta.PreambleUtil.extractFamilyID;
+import static org.apache.datasketches.theta.PreambleUtil.extractFlags;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgArrLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgNomLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgResizeFactor;
 import static org.apache.datasketches.theta.PreambleUtil.extractP;
 import static org.apache.datasketches.theta.PreambleUtil.extractPreLongs;
+import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 import static org.apache.datasketches.theta.PreambleUtil.extractThetaLong;
 import static org.apache.datasketches.theta.UpdateReturnState.InsertedCountIncremented;
 import static org.apache.datasketches.theta.UpdateReturnState.RejectedDuplicate;
@@ -42,6 +46,7 @@ import org.apache.datasketches.Family;
 import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -50,9 +55,13 @@ import org.apache.datasketches.memory.WritableMemory;
  * @author Kevin Lang
  */
 class HeapQuickSelectSketch extends HeapUpdateSketch {
+  //hash table slots of incremental rebuild work done by each update
+  static final int REBUILD_SLOTS_PER_UPDATE = 32;
+
   private final Family MY_FAMILY;
 
   private final int preambleLongs_;
+  private final boolean bucketized_; //the hash table is of HashTableLayout.BUCKETIZED
   private int lgArrLongs_;
   private int hashTableThreshold_;  //never serialized
   int curCount_;
@@ -60,12 +69,15 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
   boolean empty_;
 
   private long[] cache_;
+  private IncrementalRebuild incremental_; //null unless the rebuild is incremental
 
-  private HeapQuickSelectSketch(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf, final int preambleLongs, final Family family) {
-    super(lgNomLongs, seed, p, rf);
+  private HeapQuickSelectSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final float p, final ResizeFactor rf, final int preambleLongs, final Family family,
+      final boolean bucketized) {
+    super(lgNomLongs, seed, hasher, p, rf);
     preambleLongs_ = preambleLongs;
     MY_FAMILY = family;
+    bucketized_ = bucketized;
   }
 
   /**
@@ -73,14 +85,36 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of the input items
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @param unionGadget true if this sketch is implementing the Union gadget function.
    * Otherwise, it is behaving as a normal QuickSelectSketch.
    */
-  HeapQuickSelectSketch(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf, final boolean unionGadget) {
-    super(lgNomLongs, seed, p, rf);
+  HeapQuickSelectSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final float p, final ResizeFactor rf, final boolean unionGadget) {
+    this(lgNomLongs, seed, hasher, p, rf, unionGadget, false, HashTableLayout.DOUBLE_HASHING);
+  }
+
+  /**
+   * Construct a new sketch instance on the java heap.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of the input items
+   * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param unionGadget true if this sketch is implementing the Union gadget function.
+   * Otherwise, it is behaving as a normal QuickSelectSketch.
+   * @param incrementalRebuild true if the rebuilds of the full hash table are spread over the
+   * following updates. See {@link UpdateSketchBuilder#setIncrementalRebuild(boolean)}.
+   * @param layout the layout of the hash table.
+   * See {@link UpdateSketchBuilder#setHashTableLayout(HashTableLayout)}.
+   */
+  HeapQuickSelectSketch(final int lgNomLongs, final long seed, final Hasher hasher,
+      final float p, final ResizeFactor rf, final boolean unionGadget,
+      final boolean incrementalRebuild, final HashTableLayout layout) {
+    super(lgNomLongs, seed, hasher, p, rf);
 
     //Choose family, preambleLongs
     if (unionGadget) {
@@ -91,6 +125,7 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
       preambleLongs_ = Family.QUICKSELECT.getMinPreLongs();
       MY_FAMILY = Family.QUICKSELECT;
     }
+    bucketized_ = layout == HashTableLayout.BUCKETIZED;
 
     lgArrLongs_ = Util.startingSubMultiple(lgNomLongs + 1, rf, MIN_LG_ARR_LONGS);
     hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs_);
@@ -98,6 +133,8 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
     thetaLong_ = (long)(p * MAX_THETA_LONG_AS_DOUBLE);
     empty_ = true; //other flags: bigEndian = readOnly = compact = ordered = false;
     cache_ = new long[1 << lgArrLongs_];
+    incremental_ = incrementalRebuild ? new IncrementalRebuild() : null;
+    if (incrementalRebuild && (lgArrLongs_ > lgNomLongs)) { incremental_.allocate(); }
   }
 
   /**
@@ -127,8 +164,9 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
       myRF = ResizeFactor.X2;
     }
 
-    final HeapQuickSelectSketch hqss = new HeapQuickSelectSketch(lgNomLongs, seed, p, myRF,
-        preambleLongs, family);
+    final Hasher hasher = Hasher.fromSeedHash((short) extractSeedHash(srcMem), seed);
+    final HeapQuickSelectSketch hqss = new HeapQuickSelectSketch(lgNomLongs, seed, hasher, p,
+        myRF, preambleLongs, family, (extractFlags(srcMem) & BUCKETIZED_FLAG_MASK) != 0);
     hqss.lgArrLongs_ = lgArrLongs;
     hqss.hashTableThreshold_ = setHashTableThreshold(lgNomLongs, lgArrLongs);
     hqss.curCount_ = extractCurCount(srcMem);
@@ -143,6 +181,7 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
 
   @Override
   public double getEstimate() {
+    finishRebuild();
     return Sketch.estimate(thetaLong_, curCount_);
   }
 
@@ -153,11 +192,13 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
 
   @Override
   public int getRetainedEntries(final boolean valid) {
+    finishRebuild();
     return curCount_;
   }
 
   @Override
   public long getThetaLong() {
+    finishRebuild();
     return thetaLong_;
   }
 
@@ -168,11 +209,13 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
 
   @Override
   public HashIterator iterator() {
+    finishRebuild();
     return new HeapHashIterator(cache_, 1 << lgArrLongs_, thetaLong_);
   }
 
   @Override
   public byte[] toByteArray() {
+    finishRebuild();
     return toByteArray(preambleLongs_, (byte) MY_FAMILY.getID());
   }
 
@@ -180,6 +223,7 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
 
   @Override
   public UpdateSketch rebuild() {
+    finishRebuild();
     if (getRetainedEntries(true) > (1 << getLgNomLongs())) {
       quickSelectAndRebuild();
     }
@@ -203,18 +247,24 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
     empty_ = true;
     curCount_ = 0;
     thetaLong_ =  (long)(getP() * MAX_THETA_LONG_AS_DOUBLE);
+    if (incremental_ != null) {
+      incremental_ = new IncrementalRebuild();
+      if (lgArrLongs_ > lgNomLongs_) { incremental_.allocate(); }
+    }
   }
 
   //restricted methods
 
   @Override
   long[] getCache() {
+    finishRebuild();
     return cache_;
   }
 
   @Override
   int getCurrentPreambleLongs(final boolean compact) {
     if (!compact) { return preambleLongs_; }
+    finishRebuild();
     return computeCompactPreLongs(thetaLong_, empty_, curCount_);
   }
 
@@ -237,6 +287,12 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
   UpdateReturnState hashUpdate(final long hash) {
     HashOperations.checkHashCorruption(hash);
     empty_ = false;
+    if (incremental_ != null) {
+      incremental_.step(REBUILD_SLOTS_PER_UPDATE);
+      if (incremental_.isRebuilding()) {
+        return incremental_.hashUpdate(hash);
+      }
+    }
 
     //The over-theta test
     if (HashOperations.continueCondition(thetaLong_, hash)) {
@@ -244,7 +300,7 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
     }
 
     //The duplicate test
-    if (HashOperations.hashSearchOrInsert(cache_, lgArrLongs_, hash) >= 0) {
+    if (searchOrInsert(cache_, lgArrLongs_, hash) >= 0) {
       return RejectedDuplicate; //Duplicate, not inserted
     }
     //insertion occurred, must increment curCount
@@ -257,15 +313,49 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
       }
       else { //Already at tgt size, must rebuild
         assert (lgArrLongs_ == (lgNomLongs_ + 1)) : "lgArr: " + lgArrLongs_ + ", lgNom: " + lgNomLongs_;
-        quickSelectAndRebuild(); //Changes thetaLong_, curCount_, reassigns cache
+        if (incremental_ != null) {
+          incremental_.start(); //the following updates change thetaLong_, curCount_ and cache
+        } else {
+          quickSelectAndRebuild(); //Changes thetaLong_, curCount_, reassigns cache
+        }
       }
     }
     return InsertedCountIncremented;
   }
 
+  @Override
+  void hashUpdate(final long[] hashes, final int count) {
+    if (count == 0) { return; }
+    if (incremental_ != null) {
+      for (int i = 0; i < count; i++) { hashUpdate(hashes[i]); }
+      return;
+    }
+    empty_ = false;
+    long thetaLong = thetaLong_; //only changes on a rebuild
+    for (int i = 0; i < count; i++) {
+      final long hash = hashes[i];
+      HashOperations.checkHashCorruption(hash);
+      if (HashOperations.continueCondition(thetaLong, hash)) {
+        continue; //rejected due to theta
+      }
+      if (searchOrInsert(cache_, lgArrLongs_, hash) >= 0) {
+        continue; //duplicate
+      }
+      curCount_++;
+      if (isOutOfSpace(curCount_)) {
+        if (lgArrLongs_ <= lgNomLongs_) {
+          resizeCache();
+        } else {
+          quickSelectAndRebuild();
+          thetaLong = thetaLong_;
+        }
+      }
+    }
+  }
+
   @Override
   boolean isDirty() {
-    return false;
+    return (incremental_ != null) && incremental_.isRebuilding();
   }
 
   @Override
@@ -283,13 +373,16 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
     lgArrLongs_ += lgResizeFactor; // new tgt size
 
     final long[] tgtArr = new long[1 << lgArrLongs_];
-    final int newCount = HashOperations.hashArrayInsert(cache_, tgtArr, lgArrLongs_, thetaLong_);
+    final int newCount = arrayInsert(cache_, tgtArr, lgArrLongs_, thetaLong_);
 
     assert newCount == curCount_;  //Assumes no dirty values.
     curCount_ = newCount;
 
     cache_ = tgtArr;
     hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, lgArrLongs_);
+    if ((incremental_ != null) && (lgArrLongs_ > lgNomLongs_)) {
+      incremental_.allocate(); //while this update is already O(k)
+    }
   }
 
   //array stays the same size. Changes theta and thus count
@@ -302,11 +395,278 @@ class HeapQuickSelectSketch extends HeapUpdateSketch {
 
     // now we rebuild to clean up dirty data, update count, reconfigure as a hash table
     final long[] tgtArr = new long[arrLongs];
-    curCount_ = HashOperations.hashArrayInsert(cache_, tgtArr, lgArrLongs_, thetaLong_);
+    curCount_ = arrayInsert(cache_, tgtArr, lgArrLongs_, thetaLong_);
     cache_ = tgtArr;
     //hashTableThreshold stays the same
   }
 
+  @Override
+  boolean isBucketized() {
+    return bucketized_;
+  }
+
+  //The hash table operations of the layout of this sketch
+
+  private int search(final long[] table, final int lgArrLongs, final long hash) {
+    return bucketized_ ? HashOperations.bucketSearch(table, lgArrLongs, hash)
+        : HashOperations.hashSearch(table, lgArrLongs, hash);
+  }
+
+  private int searchOrInsert(final long[] table, final int lgArrLongs, final long hash) {
+    return bucketized_ ? HashOperations.bucketSearchOrInsert(table, lgArrLongs, hash)
+        : HashOperations.hashSearchOrInsert(table, lgArrLongs, hash);
+  }
+
+  private int insertOnly(final long[] table, final int lgArrLongs, final long hash) {
+    return bucketized_ ? HashOperations.bucketInsertOnly(table, lgArrLongs, hash)
+        : HashOperations.hashInsertOnly(table, lgArrLongs, hash);
+  }
+
+  private int arrayInsert(final long[] srcArr, final long[] table, final int lgArrLongs,
+      final long thetaLong) {
+    return bucketized_ ? HashOperations.bucketArrayInsert(srcArr, table, lgArrLongs, thetaLong)
+        : HashOperations.hashArrayInsert(srcArr, table, lgArrLongs, thetaLong);
+  }
+
+  //Completes any incremental rebuild in progress, so that the state is that of an eager rebuild
+  private void finishRebuild() {
+    if (incremental_ != null) { incremental_.finish(); }
+  }
+
+  //only used by Test
+  boolean isRebuilding() {
+    return (incremental_ != null) && incremental_.isRebuilding();
+  }
+
+  /**
+   * Spreads the rebuild of the full hash table over the following updates, each of which does
+   * {@link #REBUILD_SLOTS_PER_UPDATE} slots of the work. The full table is frozen, and the rebuild
+   * goes through these phases:
+   * <ol>
+   * <li>COUNT: the hashes of the frozen table are counted into buckets of equal width below the
+   * old theta.</li>
+   * <li>FIND: the buckets are summed to find the one that holds the new theta, which is the
+   * (k+1)th smallest frozen hash.</li>
+   * <li>COLLECT: the hashes of that bucket are collected, and the new theta is selected from
+   * them.</li>
+   * <li>MIGRATE: the frozen hashes below the new theta are inserted into the target table.</li>
+   * <li>MERGE: the hashes that arrived before the new theta was known, which are held in a small
+   * delta table, are merged into the target table, which then becomes the cache.</li>
+   * <li>CLEAR: the frozen and delta tables are cleared for the next rebuild.</li>
+   * </ol>
+   *
+   * <p>Until the new theta is known, the arriving hashes are checked against the old theta and
+   * the frozen and delta tables, and inserted into the delta table. After that, they are rejected
+   * at the new theta, or checked against all three tables and inserted into the target table.
+   * The hashes of the delta table at or above the new theta are dropped by the merge, so the
+   * retained hashes, the count and theta are those of an eager rebuild at the time the table
+   * filled up. Any read of the sketch finishes the rebuild first, so these are what it sees.</p>
+   *
+   * <p>The {@link UpdateReturnState} of an update that arrives before the new theta is known is
+   * provisional: a hash that the eager sketch rejects at the new theta is reported as
+   * InsertedCountIncremented, or as RejectedDuplicate if it is in the frozen or delta table.
+   * Once the new theta is known, the return states are those of the eager sketch.</p>
+   */
+  private final class IncrementalRebuild {
+    private static final int IDLE = 0;
+    private static final int COUNT = 1;
+    private static final int FIND = 2;
+    private static final int COLLECT = 3;
+    private static final int MIGRATE = 4;
+    private static final int MERGE = 5;
+    private static final int CLEAR = 6;
+
+    private int phase = IDLE;
+    private int pos;
+    private long[] frozen;
+    private long[] target; //a cleared table of the full size, reused by every rebuild
+    private long[] delta;
+    private int lgDeltaLongs;
+    private int deltaThreshold;
+    private int deltaCount;
+    private int[] buckets;
+    private int shift;
+    private int bucket;
+    private int rank;
+    private int sum;
+    private long[] collected;
+    private int numCollected;
+    private int targetCount;
+
+    boolean isRebuilding() {
+      return (phase != IDLE) && (phase != CLEAR);
+    }
+
+    void allocate() {
+      final int arrLongs = 1 << lgArrLongs_;
+      if ((target == null) || (target.length != arrLongs)) {
+        target = new long[arrLongs];
+        lgDeltaLongs = max(lgArrLongs_ - 2, MIN_LG_ARR_LONGS);
+        delta = new long[1 << lgDeltaLongs];
+        deltaThreshold = (int) Math.floor(REBUILD_THRESHOLD * delta.length);
+        buckets = new int[1 << max(lgNomLongs_ - 3, 1)];
+      }
+    }
+
+    void start() {
+      while (phase != IDLE) { step(Integer.MAX_VALUE); } //the last clear is still unfinished
+      allocate();
+      frozen = cache_;
+      final int bitsBelowTheta = 64 - Long.numberOfLeadingZeros(thetaLong_ - 1);
+      shift = max(bitsBelowTheta - Integer.numberOfTrailingZeros(buckets.length), 0);
+      deltaCount = 0;
+      targetCount = 0;
+      pos = 0;
+      phase = COUNT;
+    }
+
+    void finish() {
+      while (isRebuilding()) { step(Integer.MAX_VALUE); }
+    }
+
+    //The update of a hash while rebuilding, which has passed the hash corruption check
+    UpdateReturnState hashUpdate(final long hash) {
+      if (HashOperations.continueCondition(thetaLong_, hash)) {
+        return RejectedOverTheta;
+      }
+      if (search(frozen, lgArrLongs_, hash) >= 0) {
+        return RejectedDuplicate;
+      }
+      if (phase < MIGRATE) { //the new theta is not yet known
+        if (HashOperations.hashSearchOrInsert(delta, lgDeltaLongs, hash) >= 0) {
+          return RejectedDuplicate;
+        }
+        deltaCount++;
+        curCount_++;
+        if (deltaCount > deltaThreshold) { finish(); } //only if far more updates than slots
+        return InsertedCountIncremented;
+      }
+      if ((HashOperations.hashSearch(delta, lgDeltaLongs, hash) >= 0)
+          || (searchOrInsert(target, lgArrLongs_, hash) >= 0)) {
+        return RejectedDuplicate;
+      }
+      targetCount++;
+      curCount_++;
+      return InsertedCountIncremented;
+    }
+
+    /**
+     * Does the given number of slots of the rebuild work, or less if the rebuild finishes.
+     */
+    void step(int slots) {
+      while ((slots > 0) && (phase != IDLE)) {
+        switch (phase) {
+          case COUNT: {
+            final int end = (int) min((long) pos + slots, frozen.length);
+            for (int i = pos; i < end; i++) {
+              final long hash = frozen[i];
+              if ((hash != 0) && (hash < thetaLong_)) { buckets[(int) (hash >>> shift)]++; }
+            }
+            slots -= end - pos;
+            pos = end;
+            if (pos == frozen.length) { next(FIND); }
+            break;
+          }
+          case FIND: {
+            final int pivot = (1 << lgNomLongs_) + 1; //the 1-based rank of the new theta
+            final int end = (int) min((long) pos + slots, buckets.length);
+            slots -= end - pos;
+            for (; pos < end; pos++) {
+              if ((sum + buckets[pos]) >= pivot) {
+                bucket = pos;
+                rank = pivot - sum;
+                collected = new long[buckets[pos]];
+                numCollected = 0;
+                next(COLLECT);
+                break;
+              }
+              sum += buckets[pos];
+            }
+            if ((phase == FIND) && (pos == buckets.length)) {
+              next(MIGRATE); //not reachable, as the full table holds more than k hashes
+            }
+            break;
+          }
+          case COLLECT: {
+            final int end = (int) min((long) pos + slots, frozen.length);
+            for (int i = pos; i < end; i++) {
+              final long hash = frozen[i];
+              if ((hash != 0) && (hash < thetaLong_) && ((int) (hash >>> shift) == bucket)) {
+                collected[numCollected++] = hash;
+              }
+            }
+            slots -= end - pos;
+            pos = end;
+            if (pos == frozen.length) {
+              thetaLong_ = select(collected, 0, numCollected - 1, rank - 1);
+              slots -= numCollected;
+              collected = null;
+              next(MIGRATE);
+            }
+            break;
+          }
+          case MIGRATE: {
+            final int end = (int) min((long) pos + slots, frozen.length);
+            for (int i = pos; i < end; i++) {
+              final long hash = frozen[i];
+              if ((hash != 0) && (hash < thetaLong_)) {
+                insertOnly(target, lgArrLongs_, hash);
+                targetCount++;
+              }
+            }
+            slots -= end - pos;
+            pos = end;
+            if (pos == frozen.length) { next(MERGE); }
+            break;
+          }
+          case MERGE: {
+            final int end = (int) min((long) pos + slots, delta.length);
+            for (int i = pos; i < end; i++) {
+              final long hash = delta[i];
+              if ((hash != 0) && (hash < thetaLong_)) {
+                insertOnly(target, lgArrLongs_, hash);
+                targetCount++;
+              }
+            }
+            slots -= end - pos;
+            pos = end;
+            if (pos == delta.length) { //switch to the rebuilt table
+              cache_ = target;
+              curCount_ = targetCount;
+              target = frozen;
+              frozen = null;
+              next(CLEAR);
+            }
+            break;
+          }
+          default: { //CLEAR the target, delta and bucket arrays as one range
+            final int total = target.length + delta.length + buckets.length;
+            final int end = (int) min((long) pos + slots, total);
+            for (int i = pos; i < end; i++) {
+              if (i < target.length) {
+                target[i] = 0;
+              } else if (i < (target.length + delta.length)) {
+                delta[i - target.length] = 0;
+              } else {
+                buckets[i - target.length - delta.length] = 0;
+              }
+            }
+            slots -= end - pos;
+            pos = end;
+            if (pos == total) { next(IDLE); }
+            break;
+          }
+        }
+      }
+    }
+
+    private void next(final int nextPhase) {
+      phase = nextPhase;
+      pos = 0;
+      sum = 0;
+    }
+  }
+
   /**
    * Returns the cardinality limit given the current size of the hash table array.
    *
@@ -20,6 +20,7 @@
 package org.apache.datasketches.theta;
 
 import static org.apache.datasketches.Util.MIN_LG_NOM_LONGS;
+import static org.apache.datasketches.theta.PreambleUtil.BUCKETIZED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER;
 import static org.apache.datasketches.theta.PreambleUtil.insertCurCount;
@@ -35,7 +36,7 @@ import static org.apache.datasketches.theta.PreambleUtil.insertSerVer;
 import static org.apache.datasketches.theta.PreambleUtil.insertThetaLong;
 
 import org.apache.datasketches.ResizeFactor;
-import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.WritableMemory;
 
 /**
@@ -46,12 +47,16 @@ import org.apache.datasketches.memory.WritableMemory;
 abstract class HeapUpdateSketch extends UpdateSketch {
   final int lgNomLongs_;
   private final long seed_;
+  private final Hasher hasher_;
   private final float p_;
   private final ResizeFactor rf_;
 
-  HeapUpdateSketch(final int lgNomLongs, final long seed, final float p, final ResizeFactor rf) {
+  HeapUpdateSketch(final int lgNomLongs, final long seed, final Hasher hasher, final float p,
+      final ResizeFactor rf) {
     lgNomLongs_ = Math.max(lgNomLongs, MIN_LG_NOM_LONGS);
     seed_ = seed;
+    hasher.computeSeedHash(seed); //throws if this seed is unusable with this hasher
+    hasher_ = hasher;
     p_ = p;
     rf_ = rf;
   }
@@ -87,6 +92,11 @@ abstract class HeapUpdateSketch extends UpdateSketch {
     return rf_;
   }
 
+  @Override
+  public Hasher getHasher() {
+    return hasher_;
+  }
+
   //restricted methods
 
   @Override
@@ -101,7 +111,15 @@ abstract class HeapUpdateSketch extends UpdateSketch {
 
   @Override
   short getSeedHash() {
-    return Util.computeSeedHash(getSeed());
+    return hasher_.computeSeedHash(getSeed());
+  }
+
+  /**
+   * Returns true if the hash table is of {@link HashTableLayout#BUCKETIZED}.
+   * @return true if the hash table is of {@link HashTableLayout#BUCKETIZED}.
+   */
+  boolean isBucketized() {
+    return false;
   }
 
   byte[] toByteArray(final int preLongs, final byte familyID) {
@@ -125,8 +143,9 @@ abstract class HeapUpdateSketch extends UpdateSketch {
     insertP(memOut, getP());
     insertThetaLong(memOut, getThetaLong());
 
-    //Flags: BigEnd=0, ReadOnly=0, Empty=X, compact=0, ordered=0
-    final byte flags = isEmpty() ? (byte) EMPTY_FLAG_MASK : 0;
+    //Flags: BigEnd=0, ReadOnly=0, Empty=X, compact=0, ordered=0, bucketized=X
+    final int flags =
+        (isEmpty() ? EMPTY_FLAG_MASK : 0) | (isBucketized() ? BUCKETIZED_FLAG_MASK : 0);
     insertFlags(memOut, flags);
 
     //Data
@@ -21,12 +21,14 @@ package org.apache.datasketches.theta;
 
 import static java.lang.Math.min;
 import static org.apache.datasketches.Util.MIN_LG_ARR_LONGS;
+import static org.apache.datasketches.theta.CompactSketch.compactCachePart;
 import static org.apache.datasketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.FAMILY_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.FLAGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.LG_ARR_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static org.apache.datasketches.theta.PreambleUtil.SEED_HASH_SHORT;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG;
@@ -46,13 +48,18 @@ import org.apache.datasketches.Family;
 import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
 final class IntersectionImpl extends IntersectionImplR {
+  //On heap only: if not null, its first curCount_ elements are the hashes of the HT in order.
+  //Compact sketches are immutable, so this may be the cache of an ordered input sketch.
+  private long[] sortedCache_ = null;
 
-  private IntersectionImpl(final WritableMemory wmem, final long seed, final boolean newMem) {
-    super(wmem, seed, newMem);
+  private IntersectionImpl(final WritableMemory wmem, final long seed, final Hasher hasher,
+      final boolean newMem) {
+    super(wmem, seed, hasher, newMem);
   }
 
   IntersectionImpl(final short seedHash) {
@@ -66,7 +73,18 @@ final class IntersectionImpl extends IntersectionImplR {
    * @return a new IntersectionImpl on the Java heap
    */
   static IntersectionImpl initNewHeapInstance(final long seed) {
-    final IntersectionImpl impl = new IntersectionImpl(null, seed, false);
+    return initNewHeapInstance(seed, Hasher.MURMUR3);
+  }
+
+  /**
+   * Construct a new Intersection target on the java heap.
+   *
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Seed</a>
+   * @param hasher the hash function of the sketches to be intersected
+   * @return a new IntersectionImpl on the Java heap
+   */
+  static IntersectionImpl initNewHeapInstance(final long seed, final Hasher hasher) {
+    final IntersectionImpl impl = new IntersectionImpl(null, seed, hasher, false);
     impl.lgArrLongs_ = 0;
     impl.curCount_ = -1;  //Universal Set is true
     impl.thetaLong_ = Long.MAX_VALUE;
@@ -86,7 +104,22 @@ final class IntersectionImpl extends IntersectionImplR {
    * @return a new IntersectionImpl that may be off-heap
    */
   static IntersectionImpl initNewDirectInstance(final long seed, final WritableMemory dstMem) {
-    final IntersectionImpl impl = new IntersectionImpl(dstMem, seed, true);
+    return initNewDirectInstance(seed, Hasher.MURMUR3, dstMem);
+  }
+
+  /**
+   * Construct a new Intersection target direct to the given destination Memory.
+   * Called by SetOperation.Builder.
+   *
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Seed</a>
+   * @param hasher the hash function of the sketches to be intersected
+   * @param dstMem destination Memory.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a new IntersectionImpl that may be off-heap
+   */
+  static IntersectionImpl initNewDirectInstance(final long seed, final Hasher hasher,
+      final WritableMemory dstMem) {
+    final IntersectionImpl impl = new IntersectionImpl(dstMem, seed, hasher, true);
 
     //Load Preamble
     insertPreLongs(dstMem, CONST_PREAMBLE_LONGS); //RF not used = 0
@@ -119,7 +152,8 @@ final class IntersectionImpl extends IntersectionImplR {
    * @return a IntersectionImplR instance on the Java heap
    */
   static IntersectionImplR heapifyInstance(final Memory srcMem, final long seed) {
-    final IntersectionImpl impl = new IntersectionImpl(null, seed, false);
+    final Hasher hasher = Hasher.fromSeedHash(srcMem.getShort(SEED_HASH_SHORT), seed);
+    final IntersectionImpl impl = new IntersectionImpl(null, seed, hasher, false);
 
     //Get Preamble
     //Note: Intersection does not use lgNomLongs (or k), per se.
@@ -176,7 +210,7 @@ final class IntersectionImpl extends IntersectionImplR {
    * @return a IntersectionImpl that wraps a source Memory that contains an Intersection image
    */
   static IntersectionImpl wrapInstance(final WritableMemory srcMem, final long seed) {
-    final IntersectionImpl impl = new IntersectionImpl(srcMem, seed, false);
+    final IntersectionImpl impl = new IntersectionImpl(srcMem, seed, null, false);
     return (IntersectionImpl) internalWrapInstance(srcMem, impl);
   }
 
@@ -193,6 +227,7 @@ final class IntersectionImpl extends IntersectionImplR {
       lgArrLongs_ = 0;
       maxLgArrLongs_ = 0;
       hashTable_ = null;
+      sortedCache_ = null;
       if (mem_ != null) {
         PreambleUtil.setEmpty(mem_); //true
         insertThetaLong(mem_, thetaLong_);
@@ -230,6 +265,7 @@ final class IntersectionImpl extends IntersectionImplR {
         curCount_ = 0;
         if (mem_ != null) { insertCurCount(mem_, 0); }
         hashTable_ = null; //No need for a HT. Don't bother clearing mem if valid
+        sortedCache_ = null;
         break;
       }
       case 5: { // curCount_ < 0; This is the 1st update, clone the incoming sketch
@@ -253,7 +289,10 @@ final class IntersectionImpl extends IntersectionImplR {
         else { //On the heap, allocate a HT
           hashTable_ = new long[1 << lgArrLongs_];
         }
-        moveDataToTgt(sketchIn.getCache(), curCount_);
+        final long[] cacheIn = sketchIn.getCache();
+        moveDataToTgt(cacheIn, curCount_);
+        sortedCache_ = ((mem_ == null) && sketchIn.isOrdered() && (cacheIn.length == curCount_))
+            ? cacheIn : null;
         break;
       }
       case 7: { // (curCount > 0) && (sketchInEntries > 0); Perform full intersect
@@ -280,6 +319,7 @@ final class IntersectionImpl extends IntersectionImplR {
     thetaLong_ = Long.MAX_VALUE;
     empty_ = false;
     hashTable_ = null;
+    sortedCache_ = null;
     if (mem_ != null) {
       insertLgArrLongs(mem_, lgArrLongs_); //make sure
       insertCurCount(mem_, -1);
@@ -293,18 +333,53 @@ final class IntersectionImpl extends IntersectionImplR {
   private void performIntersect(final Sketch sketchIn) {
     // curCount and input data are nonzero, match against HT
     assert ((curCount_ > 0) && (!empty_));
-    final long[] cacheIn = sketchIn.getCache();
-    final int arrLongsIn = cacheIn.length;
-    final long[] hashTable;
+    final int countIn = sketchIn.getRetainedEntries(true);
+    final boolean orderedIn = sketchIn.isOrdered();
+    //allocate space for matching
+    final long[] matchSet = new long[ min(curCount_, countIn) ];
+
+    final int matchSetCount;
+    if (sketchIn instanceof DirectCompactCompressedSketch) {
+      matchSetCount = streamIntersect(sketchIn, matchSet);
+    } else if (orderedIn && ((sortedCache_ != null) || (countIn >= (curCount_ << 2)))) {
+      //the input is ordered compact and much larger, or the current hashes are known in order
+      matchSetCount = gallopIntersect(sketchIn, countIn, matchSet);
+    } else {
+      matchSetCount = probeIntersect(sketchIn, matchSet);
+    }
+    //with an ordered input the matches are found in order
+    sortedCache_ = (orderedIn && (mem_ == null)) ? matchSet : null;
+
+    //reduce effective array size to minimum
+    curCount_ = matchSetCount;
+    lgArrLongs_ = computeMinLgArrLongsFromCount(matchSetCount);
     if (mem_ != null) {
-      final int htLen = 1 << lgArrLongs_;
-      hashTable = new long[htLen];
-      mem_.getLongArray(CONST_PREAMBLE_LONGS << 3, hashTable, 0, htLen);
+      insertCurCount(mem_, matchSetCount);
+      insertLgArrLongs(mem_, lgArrLongs_);
+      mem_.clear(CONST_PREAMBLE_LONGS << 3, 8 << lgArrLongs_); //clear for rebuild
     } else {
-      hashTable = hashTable_;
+      Arrays.fill(hashTable_, 0, 1 << lgArrLongs_, 0L); //clear for rebuild
     }
-    //allocate space for matching
-    final long[] matchSet = new long[ min(curCount_, sketchIn.getRetainedEntries(true)) ];
+
+    if (curCount_ > 0) {
+      moveDataToTgt(matchSet, matchSetCount); //move matchSet to target
+    } else {
+      if (thetaLong_ == Long.MAX_VALUE) {
+        empty_ = true;
+      }
+    }
+  }
+
+  /**
+   * Matches the hashes of the given sketch against the current hash table.
+   * @param sketchIn the given sketch
+   * @param matchSet receives the matching hashes, in the order of the given sketch
+   * @return the number of matching hashes
+   */
+  private int probeIntersect(final Sketch sketchIn, final long[] matchSet) {
+    final long[] cacheIn = sketchIn.getCache();
+    final int arrLongsIn = cacheIn.length;
+    final long[] hashTable = getHashTable();
 
     int matchSetCount = 0;
     if (sketchIn.isOrdered()) {
@@ -330,24 +405,118 @@ final class IntersectionImpl extends IntersectionImplR {
         matchSet[matchSetCount++] = hashIn;
       }
     }
-    //reduce effective array size to minimum
-    curCount_ = matchSetCount;
-    lgArrLongs_ = computeMinLgArrLongsFromCount(matchSetCount);
-    if (mem_ != null) {
-      insertCurCount(mem_, matchSetCount);
-      insertLgArrLongs(mem_, lgArrLongs_);
-      mem_.clear(CONST_PREAMBLE_LONGS << 3, 8 << lgArrLongs_); //clear for rebuild
-    } else {
-      Arrays.fill(hashTable_, 0, 1 << lgArrLongs_, 0L); //clear for rebuild
+    return matchSetCount;
+  }
+
+  /**
+   * Matches the hashes of the given compressed sketch, which are decoded as they are read,
+   * against the current hashes in order, or else against the current hash table.
+   * @param sketchIn the given compressed sketch
+   * @param matchSet receives the matching hashes, in ascending order
+   * @return the number of matching hashes
+   */
+  private int streamIntersect(final Sketch sketchIn, final long[] matchSet) {
+    final long[] hashTable = (sortedCache_ == null) ? getHashTable() : null;
+    final HashIterator it = sketchIn.iterator();
+    int matchSetCount = 0;
+    int j = 0; //all current hashes before j are less than the current hash
+    while (it.next()) {
+      final long hashIn = it.get();
+      if (hashIn >= thetaLong_) { break; } //early stop, the hashes are ordered
+      if (hashTable == null) {
+        while ((j < curCount_) && (sortedCache_[j] < hashIn)) { j++; }
+        if (j == curCount_) { break; }
+        if (sortedCache_[j] == hashIn) { matchSet[matchSetCount++] = hashIn; }
+      } else if (HashOperations.hashSearch(hashTable, lgArrLongs_, hashIn) != -1) {
+        matchSet[matchSetCount++] = hashIn;
+      }
     }
+    return matchSetCount;
+  }
 
-    if (curCount_ > 0) {
-      moveDataToTgt(matchSet, matchSetCount); //move matchSet to target
+  /**
+   * Matches the current hashes, in ascending order, against the given ordered compact sketch.
+   * The sketch is read in place, also when it is backed by Memory.
+   * @param sketchIn the given ordered compact sketch
+   * @param countIn the number of hashes of the given sketch
+   * @param matchSet receives the matching hashes, in ascending order
+   * @return the number of matching hashes
+   */
+  private int gallopIntersect(final Sketch sketchIn, final int countIn, final long[] matchSet) {
+    final long[] hashes = (sortedCache_ != null) ? sortedCache_
+        : compactCachePart(getHashTable(), lgArrLongs_, curCount_, Long.MAX_VALUE, true);
+    final Memory memIn;
+    final long offsetIn;
+    if (sketchIn.hasMemory()) {
+      memIn = ((CompactSketch) sketchIn).getMemory();
+      offsetIn = (memIn.getByte(PREAMBLE_LONGS_BYTE) & 0X3F) << 3;
     } else {
-      if (thetaLong_ == Long.MAX_VALUE) {
-        empty_ = true;
+      memIn = Memory.wrap(sketchIn.getCache()); //not a copy
+      offsetIn = 0;
+    }
+    final Memory memCur = Memory.wrap(hashes);
+    return (curCount_ <= countIn)
+        ? gallopIntersect(memCur, 0, curCount_, memIn, offsetIn, countIn, thetaLong_, matchSet)
+        : gallopIntersect(memIn, offsetIn, countIn, memCur, 0, curCount_, thetaLong_, matchSet);
+  }
+
+  /**
+   * Intersects two ascending arrays of hashes. For each hash of the smaller array the position in
+   * the larger array is found by an exponential search from the previous position followed by a
+   * binary search. So the cost grows with the size of the smaller array times the log of the
+   * gaps between its hashes in the larger array, rather than with the size of the larger array.
+   * The search stops at the first hash that is not less than theta, or at the end of either.
+   * @param small the smaller array
+   * @param smallOffset the offset in bytes of the smaller array
+   * @param smallCount the number of hashes of the smaller array
+   * @param large the larger array
+   * @param largeOffset the offset in bytes of the larger array
+   * @param largeCount the number of hashes of the larger array
+   * @param thetaLong only hashes less than this are matched
+   * @param matchSet receives the matching hashes, in ascending order
+   * @return the number of matching hashes
+   */
+  static int gallopIntersect(final Memory small, final long smallOffset, final int smallCount,
+      final Memory large, final long largeOffset, final int largeCount, final long thetaLong,
+      final long[] matchSet) {
+    int matchSetCount = 0;
+    int lo = 0; //all hashes of the larger array before lo are less than the current hash
+    for (int j = 0; j < smallCount; j++) {
+      final long hash = small.getLong(smallOffset + ((long) j << 3));
+      if (hash >= thetaLong) { break; } //all remaining hashes are too large
+      int hi = lo;
+      int step = 1;
+      while ((hi < largeCount) && (large.getLong(largeOffset + ((long) hi << 3)) < hash)) {
+        lo = hi + 1;
+        hi += step;
+        step <<= 1;
+      }
+      hi = min(hi, largeCount);
+      while (lo < hi) { //the first hash not less than the current hash is in [lo, hi]
+        final int mid = (lo + hi) >>> 1;
+        if (large.getLong(largeOffset + ((long) mid << 3)) < hash) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
       }
+      if (lo == largeCount) { break; } //all remaining hashes of the larger array are too small
+      if (large.getLong(largeOffset + ((long) lo << 3)) == hash) {
+        matchSet[matchSetCount++] = hash;
+        lo++;
+      }
+    }
+    return matchSetCount;
+  }
+
+  private long[] getHashTable() {
+    if (mem_ != null) {
+      final int htLen = 1 << lgArrLongs_;
+      final long[] hashTable = new long[htLen];
+      mem_.getLongArray(CONST_PREAMBLE_LONGS << 3, hashTable, 0, htLen);
+      return hashTable;
     }
+    return hashTable_;
   }
 
   private void moveDataToTgt(final long[] arr, final int count) {
@@ -40,6 +40,7 @@ import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.SketchesReadOnlyException;
 import org.apache.datasketches.SketchesStateException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -67,18 +68,27 @@ class IntersectionImplR extends Intersection {
   protected long[] hashTable_ = null;  //HT => Data.  Only used On Heap
   protected int maxLgArrLongs_ = 0; //max size of hash table. Only used Off Heap
 
-  IntersectionImplR(final WritableMemory mem, final long seed, final boolean newMem) {
+  /**
+   * Construct a new intersection, or wrap the given Memory if it holds an existing one.
+   * @param mem the given Memory, or null for an intersection on the java heap
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of a new intersection. When wrapping an existing intersection
+   * the hash function is recovered from its seed hash and this may be null.
+   * @param newMem true if the given Memory is to be initialized as a new intersection
+   */
+  IntersectionImplR(final WritableMemory mem, final long seed, final Hasher hasher,
+      final boolean newMem) {
     mem_ = mem;
     if (mem != null) {
       if (newMem) {
-        seedHash_ = computeSeedHash(seed);
+        seedHash_ = hasher.computeSeedHash(seed);
         mem_.putShort(SEED_HASH_SHORT, seedHash_);
       } else {
         seedHash_ = mem_.getShort(SEED_HASH_SHORT);
-        Util.checkSeedHashes(seedHash_, computeSeedHash(seed)); //check for seed hash conflict
+        Hasher.fromSeedHash(seedHash_, seed); //check for seed hash conflict
       }
     } else {
-      seedHash_ = computeSeedHash(seed);
+      seedHash_ = hasher.computeSeedHash(seed);
     }
   }
 
@@ -100,7 +110,8 @@ class IntersectionImplR extends Intersection {
    * @return an IntersectionImplR that wraps a read-only Intersection image referenced by srcMem
    */
   static IntersectionImplR wrapInstance(final Memory srcMem, final long seed) {
-    final IntersectionImplR impl = new IntersectionImplR((WritableMemory) srcMem, seed, false);
+    final IntersectionImplR impl =
+        new IntersectionImplR((WritableMemory) srcMem, seed, null, false);
     return internalWrapInstance(srcMem, impl);
   }
 
@@ -24,13 +24,31 @@ import static java.lang.Math.min;
 import static org.apache.datasketches.BoundsOnRatiosInThetaSketchedSets.getEstimateOfBoverA;
 import static org.apache.datasketches.BoundsOnRatiosInThetaSketchedSets.getLowerBoundForBoverA;
 import static org.apache.datasketches.BoundsOnRatiosInThetaSketchedSets.getUpperBoundForBoverA;
+import static org.apache.datasketches.ParallelMerge.mergeSlices;
 import static org.apache.datasketches.Util.MAX_LG_NOM_LONGS;
 import static org.apache.datasketches.Util.MIN_LG_NOM_LONGS;
 import static org.apache.datasketches.Util.ceilingPowerOf2;
+import static org.apache.datasketches.Util.checkSeedHashes;
+import static org.apache.datasketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.datasketches.BoundsOnRatiosInSampledSets;
+import org.apache.datasketches.ParallelMerge.SliceMerger;
+import org.apache.datasketches.SketchesArgumentException;
 
 /**
  * Jaccard similarity of two Theta Sketches.
  *
+ * <p>The batch methods, which compare a query against many sketches or all pairs of sketches,
+ * give the same results as {@link #jaccard(Sketch, Sketch)} for every pair. They extract the
+ * ordered hashes of each sketch once and count the union and intersection of each pair by a merge
+ * of the hashes below the smaller theta, without building any set operation. Given a
+ * ForkJoinPool, the pairs are compared in parallel.</p>
+ *
  * @author Lee Rhodes
  */
 public final class JaccardSimilarity {
@@ -176,4 +194,301 @@ public final class JaccardSimilarity {
     return jRatioUB <= threshold;
   }
 
+
+  /**
+   * Computes the Jaccard similarity ratios of the given query against each of the given sketches
+   * in the calling thread. See {@link #jaccardAll(Sketch, Sketch[], ForkJoinPool)}.
+   *
+   * @param query the given query sketch
+   * @param sketches the given sketches, which may contain nulls
+   * @return for each sketch, in the same order, a double array {LowerBound, Estimate, UpperBound}
+   * of the Jaccard ratio.
+   */
+  public static double[][] jaccardAll(final Sketch query, final Sketch[] sketches) {
+    return jaccardAll(query, sketches, null);
+  }
+
+  /**
+   * Computes the Jaccard similarity ratios of the given query against each of the given sketches.
+   * Element <i>i</i> of the result equals <i>jaccard(query, sketches[i])</i>.
+   *
+   * @param query the given query sketch
+   * @param sketches the given sketches, which may contain nulls
+   * @param pool the ForkJoinPool that compares the sketches, or null to compare them in the
+   * calling thread
+   * @return for each sketch, in the same order, a double array {LowerBound, Estimate, UpperBound}
+   * of the Jaccard ratio.
+   */
+  public static double[][] jaccardAll(final Sketch query, final Sketch[] sketches,
+      final ForkJoinPool pool) {
+    final SortedHashes q = SortedHashes.of(query);
+    final SortedHashes[] all = prepare(q, sketches, pool);
+    final double[][] results = new double[all.length][];
+    forEach(pool, newSlices(pool, all.length), all.length,
+        (slice, i) -> results[i] = jaccard(q, all[i]));
+    return results;
+  }
+
+  /**
+   * Computes the estimates of the Jaccard similarity ratios of all pairs of the given sketches.
+   * Element <i>[i][j]</i> of the result equals <i>jaccard(sketches[i], sketches[j])[1]</i>.
+   * The result takes <i>8N<sup>2</sup></i> bytes for <i>N</i> sketches.
+   *
+   * @param sketches the given sketches, which may contain nulls
+   * @param pool the ForkJoinPool that compares the sketches, or null to compare them in the
+   * calling thread
+   * @return the symmetric matrix of the estimates of the Jaccard ratios
+   */
+  public static double[][] jaccardMatrix(final Sketch[] sketches, final ForkJoinPool pool) {
+    final SortedHashes[] all = prepare(null, sketches, pool);
+    final int n = all.length;
+    final double[][] matrix = new double[n][n];
+    //Row i compares n - i pairs, so the rows are taken as 0, n-1, 1, n-2, ..., and each
+    //contiguous slice of this order compares about the same number of pairs.
+    forEach(pool, newSlices(pool, n), n, (slice, r) -> {
+      final int i = ((r & 1) == 0) ? (r >>> 1) : (n - 1 - (r >>> 1));
+      matrix[i][i] = jaccard(all[i], all[i])[1];
+      for (int j = i + 1; j < n; j++) {
+        final double est = jaccard(all[i], all[j])[1];
+        matrix[i][j] = est; //each element is written by one row only
+        matrix[j][i] = est;
+      }
+    });
+    return matrix;
+  }
+
+  /**
+   * Returns the indices of the given sketches with the <i>k</i> largest estimates of the Jaccard
+   * similarity ratio to the given query, largest first. Equal estimates are ranked by the smaller
+   * index.
+   *
+   * <p>The estimate of a pair is at most the ratio of the smaller to the larger of their counts of
+   * hashes below the smaller theta, which is found without a merge. A sketch whose ratio cannot
+   * exceed the <i>k</i>-th largest estimate found so far is not merged.</p>
+   *
+   * @param query the given query sketch
+   * @param sketches the given sketches, which may contain nulls
+   * @param k the number of indices to return, which must be at least one
+   * @param pool the ForkJoinPool that compares the sketches, or null to compare them in the
+   * calling thread
+   * @return the indices of at most <i>k</i> sketches, by descending estimate of the Jaccard ratio
+   */
+  public static int[] topK(final Sketch query, final Sketch[] sketches, final int k,
+      final ForkJoinPool pool) {
+    if (k < 1) {
+      throw new SketchesArgumentException("k must be at least one: " + k);
+    }
+    final SortedHashes q = SortedHashes.of(query);
+    final SortedHashes[] all = prepare(q, sketches, pool);
+    final int numSlices = numSlices(pool, all.length);
+    @SuppressWarnings("unchecked")
+    final PriorityQueue<Candidate>[] best = new PriorityQueue[numSlices];
+    for (int s = 0; s < numSlices; s++) { best[s] = new PriorityQueue<>(k, Candidate.WORST_FIRST); }
+    forEach(pool, best, all.length, (heap, i) -> {
+      if ((heap.size() == k) && (upperBound(q, all[i]) <= heap.peek().est)) { return; }
+      final Candidate c = new Candidate(i, jaccard(q, all[i])[1]);
+      if (heap.size() < k) {
+        heap.add(c);
+      } else if (Candidate.WORST_FIRST.compare(c, heap.peek()) > 0) {
+        heap.poll();
+        heap.add(c);
+      }
+    });
+    final PriorityQueue<Candidate> merged = new PriorityQueue<>(k, Candidate.WORST_FIRST);
+    for (final PriorityQueue<Candidate> heap : best) {
+      for (final Candidate c : heap) {
+        merged.add(c);
+        if (merged.size() > k) { merged.poll(); }
+      }
+    }
+    final int[] indices = new int[merged.size()];
+    for (int i = indices.length; i-- > 0; ) { indices[i] = merged.poll().index; }
+    return indices;
+  }
+
+  /**
+   * The same as jaccard(Sketch, Sketch), from the ordered hashes.
+   */
+  private static double[] jaccard(final SortedHashes a, final SortedHashes b) {
+    if ((a == null) || (b == null)) { return ZEROS.clone(); }
+    if (a.sketch == b.sketch) { return ONES.clone(); }
+    if (a.empty && b.empty) { return ONES.clone(); }
+    if (a.empty || b.empty) { return ZEROS.clone(); }
+
+    //The union would keep every hash below the smaller theta, and the intersection is within it
+    final long thetaLong = min(a.thetaLong, b.thetaLong);
+    final int countA = a.countLessThan(thetaLong);
+    final int countB = b.countLessThan(thetaLong);
+    final int countI = countMatches(a.hashes, countA, b.hashes, countB);
+    final int countU = (countA + countB) - countI;
+
+    if ((countU == a.count) && (countU == b.count)
+        && (a.thetaLong == thetaLong) && (b.thetaLong == thetaLong)) {
+      return ONES.clone();
+    }
+    if (countU <= 0) { return new double[] {0.0, 0.5, 1.0}; }
+
+    final double theta = thetaLong / MAX_THETA_LONG_AS_DOUBLE;
+    return new double[] {
+        BoundsOnRatiosInSampledSets.getLowerBoundForBoverA(countU, countI, theta),
+        (double) countI / (double) countU,
+        BoundsOnRatiosInSampledSets.getUpperBoundForBoverA(countU, countI, theta)};
+  }
+
+  /**
+   * An upper bound of the estimate of jaccard(a, b) that does not merge the hashes.
+   */
+  private static double upperBound(final SortedHashes a, final SortedHashes b) {
+    if ((a == null) || (b == null)) { return 0.0; }
+    if ((a.sketch == b.sketch) || (a.empty && b.empty)) { return 1.0; }
+    if (a.empty || b.empty) { return 0.0; }
+    final long thetaLong = min(a.thetaLong, b.thetaLong);
+    final int countA = a.countLessThan(thetaLong);
+    final int countB = b.countLessThan(thetaLong);
+    final int larger = max(countA, countB);
+    return (larger == 0) ? 1.0 : (double) min(countA, countB) / larger;
+  }
+
+  //the number of common hashes in the given ascending ranges
+  private static int countMatches(final long[] a, final int countA, final long[] b,
+      final int countB) {
+    int i = 0;
+    int j = 0;
+    int matches = 0;
+    while ((i < countA) && (j < countB)) {
+      final long ha = a[i];
+      final long hb = b[j];
+      if (ha < hb) {
+        i++;
+      } else if (hb < ha) {
+        j++;
+      } else {
+        matches++;
+        i++;
+        j++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Extracts the ordered hashes of the given sketches, and checks that their seed hashes agree
+   * with each other and with the query, if any.
+   */
+  private static SortedHashes[] prepare(final SortedHashes query, final Sketch[] sketches,
+      final ForkJoinPool pool) {
+    if (sketches == null) {
+      throw new SketchesArgumentException("sketches must not be null.");
+    }
+    final SortedHashes[] all = new SortedHashes[sketches.length];
+    forEach(pool, newSlices(pool, sketches.length), sketches.length,
+        (slice, i) -> all[i] = SortedHashes.of(sketches[i]));
+    SortedHashes first = ((query == null) || query.empty) ? null : query;
+    for (final SortedHashes sh : all) {
+      if ((sh == null) || sh.empty) { continue; }
+      if (first == null) {
+        first = sh;
+      } else {
+        checkSeedHashes(first.sketch.getSeedHash(), sh.sketch.getSeedHash());
+      }
+    }
+    return all;
+  }
+
+  private static int numSlices(final ForkJoinPool pool, final int length) {
+    return (pool == null) ? min(1, length) : min(length, 4 * pool.getParallelism());
+  }
+
+  /**
+   * Runs the given merger over the indices, one contiguous slice of the indices per element of
+   * the given slices, in parallel if there is a pool.
+   */
+  private static <S> void forEach(final ForkJoinPool pool, final S[] slices, final int length,
+      final SliceMerger<S> merger) {
+    if (pool == null) {
+      for (int i = 0; i < length; i++) { merger.merge(slices[0], i); }
+    } else {
+      mergeSlices(pool, slices, length, merger);
+    }
+  }
+
+  //the slices of the indices, which hold no state
+  private static Object[] newSlices(final ForkJoinPool pool, final int length) {
+    final Object[] slices = new Object[numSlices(pool, length)];
+    for (int s = 0; s < slices.length; s++) { slices[s] = new Object(); }
+    return slices;
+  }
+
+  private static final class Candidate {
+    //the lower estimate is worse; of equal estimates, the larger index is worse
+    static final Comparator<Candidate> WORST_FIRST = new Comparator<Candidate>() {
+      @Override
+      public int compare(final Candidate a, final Candidate b) {
+        final int c = Double.compare(a.est, b.est);
+        return (c != 0) ? c : Integer.compare(b.index, a.index);
+      }
+    };
+    final int index;
+    final double est;
+
+    Candidate(final int index, final double est) {
+      this.index = index;
+      this.est = est;
+    }
+  }
+
+  /**
+   * The valid hashes of a sketch in ascending order.
+   */
+  private static final class SortedHashes {
+    final Sketch sketch;
+    final boolean empty;
+    final long thetaLong;
+    final long[] hashes;
+    final int count;
+
+    private SortedHashes(final Sketch sketch, final long[] hashes, final int count) {
+      this.sketch = sketch;
+      empty = sketch.isEmpty();
+      thetaLong = sketch.getThetaLong();
+      this.hashes = hashes;
+      this.count = count;
+    }
+
+    static SortedHashes of(final Sketch sketch) {
+      if (sketch == null) { return null; }
+      final int count = sketch.getRetainedEntries(true);
+      if (sketch.isCompact() && sketch.isOrdered()) {
+        if (!sketch.hasMemory()) { //already in order on the heap
+          return new SortedHashes(sketch, sketch.getCache(), count);
+        }
+        final long[] hashes = new long[count]; //decodes compressed images as well
+        final HashIterator it = sketch.iterator();
+        for (int i = 0; it.next(); i++) { hashes[i] = it.get(); }
+        return new SortedHashes(sketch, hashes, count);
+      }
+      final long thetaLong = sketch.getThetaLong();
+      final long[] cache = sketch.getCache();
+      final long[] hashes = new long[count];
+      int i = 0;
+      for (final long hash : cache) {
+        if ((hash > 0) && (hash < thetaLong)) { hashes[i++] = hash; }
+      }
+      Arrays.sort(hashes, 0, i);
+      return new SortedHashes(sketch, hashes, i);
+    }
+
+    //the number of hashes less than the given theta, which is at most the theta of this sketch
+    int countLessThan(final long theta) {
+      if (theta >= thetaLong) { return count; }
+      int lo = 0;
+      int hi = count;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (hashes[mid] < theta) { lo = mid + 1; } else { hi = mid; }
+      }
+      return lo;
+    }
+  }
+
 }
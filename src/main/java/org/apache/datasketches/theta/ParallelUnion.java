@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.apache.datasketches.ParallelMerge.mergeSlices;
+import static org.apache.datasketches.ParallelMerge.reduce;
+import static org.apache.datasketches.ParallelMerge.stripeIndex;
+import static org.apache.datasketches.Util.LS;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.datasketches.ResizeFactor;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+
+/**
+ * A Union of Theta sketches that merges its inputs in parallel, for merging very many sketches.
+ * It is built by {@link SetOperationBuilder#buildParallelUnion(int)}.
+ *
+ * <p>The inputs are spread over <i>parallelism</i> shards, each an ordinary on-heap
+ * {@link Union} configured by the builder. An array of inputs given to {@link #update(Sketch[])}
+ * or {@link #update(Memory[])} is split into one contiguous slice per shard, and the slices are
+ * merged into their shards by parallel tasks of a ForkJoinPool. Single inputs may be given
+ * concurrently by many threads, and each thread merges into the shard of its own stripe. The
+ * result reduces the shards pairwise as a tree, also in parallel.</p>
+ *
+ * <p>The union of Theta sketches does not depend on the order of its inputs: the result retains
+ * the <i>k</i> smallest hashes below the minimum theta of the inputs, and every shard retains all
+ * of its hashes below its own theta. Therefore the ordered result of this union is identical,
+ * byte for byte, to the result of a single Union given the same inputs in any order. An
+ * unordered result has the same hashes, but their order depends on the internal hash tables.</p>
+ */
+public final class ParallelUnion {
+  private final int lgNomLongs;
+  private final long seed;
+  private final Hasher hasher;
+  private final float p;
+  private final ResizeFactor rf;
+  private final ForkJoinPool pool;
+  private final Union[] shards; //each guarded by itself
+
+  /**
+   * Called by SetOperationBuilder.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of this union
+   * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param parallelism the number of shards. It must be at least 1.
+   * @param pool the ForkJoinPool that runs the parallel tasks
+   */
+  ParallelUnion(final int lgNomLongs, final long seed, final Hasher hasher, final float p,
+      final ResizeFactor rf, final int parallelism, final ForkJoinPool pool) {
+    if (parallelism < 1) {
+      throw new SketchesArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    if (pool == null) {
+      throw new SketchesArgumentException("pool must not be null.");
+    }
+    this.lgNomLongs = lgNomLongs;
+    this.seed = seed;
+    this.hasher = hasher;
+    this.p = p;
+    this.rf = rf;
+    this.pool = pool;
+    shards = new Union[parallelism];
+    for (int i = 0; i < parallelism; i++) {
+      shards[i] = newUnion();
+    }
+  }
+
+  /**
+   * Perform a Union operation with <i>this</i> union and the given on-heap sketch of the Theta
+   * Family. This may be called concurrently by many threads.
+   * If the given sketch is null it is interpreted as an empty sketch.
+   *
+   * @param sketchIn The incoming sketch.
+   */
+  public void update(final Sketch sketchIn) {
+    final Union shard = shards[stripeIndex(shards.length)];
+    synchronized (shard) {
+      shard.update(sketchIn);
+    }
+  }
+
+  /**
+   * Perform a Union operation with <i>this</i> union and the given Memory image of any sketch of
+   * the Theta Family. This may be called concurrently by many threads.
+   * If the given Memory is null it is interpreted as an empty sketch.
+   *
+   * @param mem Memory image of sketch to be merged
+   */
+  public void update(final Memory mem) {
+    final Union shard = shards[stripeIndex(shards.length)];
+    synchronized (shard) {
+      shard.update(mem);
+    }
+  }
+
+  /**
+   * Perform a Union operation with <i>this</i> union and all of the given on-heap sketches of the
+   * Theta Family, merging them in parallel. Null elements are interpreted as empty sketches.
+   *
+   * @param sketchesIn The incoming sketches.
+   */
+  public void update(final Sketch[] sketchesIn) {
+    if (sketchesIn == null) { return; }
+    mergeSlices(pool, shards, sketchesIn.length, (shard, i) -> shard.update(sketchesIn[i]));
+  }
+
+  /**
+   * Perform a Union operation with <i>this</i> union and all of the given Memory images of
+   * sketches of the Theta Family, merging them in parallel. Null elements are interpreted as
+   * empty sketches.
+   *
+   * @param memsIn Memory images of the sketches to be merged
+   */
+  public void update(final Memory[] memsIn) {
+    if (memsIn == null) { return; }
+    mergeSlices(pool, shards, memsIn.length, (shard, i) -> shard.update(memsIn[i]));
+  }
+
+  /**
+   * Gets the result of this operation as an ordered CompactSketch on the Java heap.
+   * This does not disturb the shards, so it is OK to continue updating this union afterwards.
+   * @return the result of this operation as an ordered CompactSketch on the Java heap
+   */
+  public CompactSketch getResult() {
+    return getResult(true, null);
+  }
+
+  /**
+   * Gets the result of this operation as a CompactSketch of the chosen form.
+   * This does not disturb the shards, so it is OK to continue updating this union afterwards.
+   *
+   * @param dstOrdered
+   * <a href="{@docRoot}/resources/dictionary.html#dstOrdered">See Destination Ordered</a>
+   *
+   * @param dstMem
+   * <a href="{@docRoot}/resources/dictionary.html#dstMem">See Destination Memory</a>.
+   *
+   * @return the result of this operation as a CompactSketch of the chosen form
+   */
+  public CompactSketch getResult(final boolean dstOrdered, final WritableMemory dstMem) {
+    final CompactSketch reduced = reduce(pool, shards.length, this::shardResult, this::union);
+    final Union union = newUnion();
+    union.update(reduced);
+    return union.getResult(dstOrdered, dstMem);
+  }
+
+  /**
+   * Resets this union to its virgin state.
+   */
+  public void reset() {
+    for (final Union shard : shards) {
+      synchronized (shard) {
+        shard.reset();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of shards, which is the maximum number of inputs that are merged at
+   * the same time.
+   * @return the number of shards
+   */
+  public int getParallelism() {
+    return shards.length;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("### ParallelUnion SUMMARY: ").append(LS);
+    sb.append("   Nominal Entries (k)     : ").append(1 << lgNomLongs).append(LS);
+    sb.append("   Parallelism             : ").append(shards.length).append(LS);
+    sb.append("   Pool Parallelism        : ").append(pool.getParallelism()).append(LS);
+    sb.append("### END SKETCH SUMMARY").append(LS);
+    return sb.toString();
+  }
+
+  private Union newUnion() {
+    return UnionImpl.initNewHeapInstance(lgNomLongs, seed, hasher, p, rf);
+  }
+
+  private CompactSketch shardResult(final int index) {
+    final Union shard = shards[index];
+    synchronized (shard) {
+      return shard.getResult();
+    }
+  }
+
+  private CompactSketch union(final CompactSketch left, final CompactSketch right) {
+    final Union union = newUnion();
+    union.update(left);
+    union.update(right);
+    return union.getResult();
+  }
+
+}
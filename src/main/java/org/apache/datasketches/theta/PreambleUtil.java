@@ -104,8 +104,28 @@ import org.apache.datasketches.memory.WritableMemory;
  *  3   ||----------------------Start of Compact Long Array----------------------------------|
  *  </pre>
  *
+ * <p>A compressed CompactSketch (SerVer 4) is always ordered. It requires 8 bytes of preamble,
+ * plus THETA_LONG if estimating, plus the Retained Entries Count in the given number of bytes,
+ * little-endian, plus the deltas between successive hashes, starting from zero, bit-packed with
+ * the given number of bits each, least significant bits first. It is never empty and never a
+ * single item with theta = 1.0, which use the SerVer 3 forms above.</p>
+ *
+ * <pre>
+ * Long || Start Byte Adr:
+ * Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||    Seed Hash    | Flags  | CntByt |EntBits | FamID  | SerVer |  PreLongs = 1 or 2 |
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+ *  1   ||-------------------------THETA_LONG, only if PreLongs = 2--------------------------|
+ *
+ *      ||   (8 * PreLongs) ...
+ *      ||  Retained Entries Count in CntByt bytes, then the bit-packed deltas of EntBits each |
+ * </pre>
+ *
  * <p>An UpdateSketch requires 24 bytes of preamble plus a non-compact array of longs representing a
- * hash table.</p>
+ * hash table. The Bucketized flag is set if the hash table is of
+ * {@link HashTableLayout#BUCKETIZED}.</p>
  *
  * <pre>
  * Long || Start Byte Adr:
@@ -166,6 +186,9 @@ final class PreambleUtil {
   static final int P_FLOAT                    = 12; //4 byte aligned, not used by compact
   static final int THETA_LONG                 = 16; //8-byte aligned
   static final int UNION_THETA_LONG           = 24; //8-byte aligned, only used by Union
+  static final int ENTRY_BITS_BYTE_V4         = 3;  //only used by compressed compact
+  static final int NUM_ENTRIES_BYTES_BYTE_V4  = 4;  //only used by compressed compact
+  static final int THETA_LONG_V4              = 8;  //only used by compressed compact
 
   // flag bit masks
   static final int BIG_ENDIAN_FLAG_MASK = 1; //SerVer 1, 2, 3
@@ -174,7 +197,8 @@ final class PreambleUtil {
   static final int COMPACT_FLAG_MASK    = 8; //SerVer 2 was NO_REBUILD_FLAG_MASK, 3
   static final int ORDERED_FLAG_MASK    = 16;//SerVer 2 was UNORDERED_FLAG_MASK, 3
   static final int SINGLEITEM_FLAG_MASK = 32;//SerVer 3
-  //The last 2 bits of the flags byte are reserved and assumed to be zero, for now.
+  static final int BUCKETIZED_FLAG_MASK = 64;//SerVer 3, hash table form only
+  //The last bit of the flags byte is reserved and assumed to be zero, for now.
 
   //Backward compatibility: SerVer1 preamble always 3 longs, SerVer2 preamble: 1, 2, 3 longs
   //               SKETCH_TYPE_BYTE             2  //SerVer1, SerVer2
@@ -184,6 +208,7 @@ final class PreambleUtil {
 
   //Other constants
   static final int SER_VER                    = 3;
+  static final int SER_VER_COMPRESSED         = 4; //compressed, ordered compact sketches only
 
   static final boolean NATIVE_ORDER_IS_BIG_ENDIAN  =
       (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
@@ -242,6 +267,7 @@ final class PreambleUtil {
     final boolean empty = (flags & EMPTY_FLAG_MASK) > 0;
     final boolean compact = (flags & COMPACT_FLAG_MASK) > 0;
     final boolean ordered = (flags & ORDERED_FLAG_MASK) > 0;
+    final boolean bucketized = (flags & BUCKETIZED_FLAG_MASK) > 0;
     final boolean singleItem = !empty && (preLongs == 1);
 
     final int seedHash = extractSeedHash(mem);
@@ -291,6 +317,7 @@ final class PreambleUtil {
     sb.append("  EMPTY                       : ").append(empty).append(LS);
     sb.append("  COMPACT                     : ").append(compact).append(LS);
     sb.append("  ORDERED                     : ").append(ordered).append(LS);
+    sb.append("  BUCKETIZED                  : ").append(bucketized).append(LS);
     sb.append("  SINGLEITEM  (derived)       : ").append(singleItem).append(LS);
     sb.append("Bytes 6-7  : Seed Hash        : ").append(Integer.toHexString(seedHash)).append(LS);
     if (preLongs == 1) {
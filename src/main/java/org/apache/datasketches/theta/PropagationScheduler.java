@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the background propagation tasks of the concurrent shared theta sketches.
+ *
+ * <p>A scheduler may be shared by any number of shared sketches and may run their tasks on any
+ * number of threads. The tasks of one shared sketch are never run concurrently with each other,
+ * since each shared sketch submits them one at a time through its own serial queue.</p>
+ *
+ * <p>Set a scheduler with {@link UpdateSketchBuilder#setPropagationScheduler(PropagationScheduler)}.
+ * If none is set, the shared sketches use a default {@link ForkJoinPropagationScheduler} with
+ * daemon threads. Any ExecutorService can be used through {@link ExecutorPropagationScheduler},
+ * for example one that starts a virtual thread per task.</p>
+ */
+public interface PropagationScheduler extends Executor {
+
+  /**
+   * Initiates an orderly shutdown: tasks already submitted are run, but no new tasks are
+   * accepted. A shared sketch that propagates after its scheduler has been shut down does so
+   * on the updating thread.
+   */
+  void shutdown();
+
+  /**
+   * Returns true if this scheduler has been shut down.
+   * @return true if this scheduler has been shut down
+   */
+  boolean isShutdown();
+
+  /**
+   * Blocks until all tasks have completed after a shutdown request, or the timeout occurs,
+   * or the current thread is interrupted, whichever happens first.
+   * @param timeout the maximum time to wait
+   * @param unit the time unit of the timeout argument
+   * @return true if this scheduler terminated and false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Returns the statistics of the propagation tasks run by this scheduler.
+   * @return the statistics of the propagation tasks run by this scheduler
+   */
+  PropagationStats getStats();
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the background propagation tasks of a {@link PropagationScheduler}.
+ * The shared sketches record every task they submit and complete.
+ *
+ * <p>The propagation latency of a task is the time from its submission until its completion,
+ * so it includes the time the task waited behind other tasks.</p>
+ */
+public final class PropagationStats {
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder totalLatencyNanos = new LongAdder();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  /**
+   * Returns the number of propagation tasks submitted.
+   * @return the number of propagation tasks submitted
+   */
+  public long getSubmittedCount() {
+    return submitted.sum();
+  }
+
+  /**
+   * Returns the number of propagation tasks completed.
+   * @return the number of propagation tasks completed
+   */
+  public long getCompletedCount() {
+    return completed.sum();
+  }
+
+  /**
+   * Returns the number of propagation tasks submitted but not yet completed.
+   * @return the number of propagation tasks submitted but not yet completed
+   */
+  public long getQueueDepth() {
+    return Math.max(0L, getSubmittedCount() - getCompletedCount());
+  }
+
+  /**
+   * Returns the mean propagation latency of the completed tasks in nanoseconds,
+   * or zero if no task has completed.
+   * @return the mean propagation latency of the completed tasks in nanoseconds
+   */
+  public double getMeanLatencyNanos() {
+    final long count = getCompletedCount();
+    return (count == 0) ? 0.0 : (double) totalLatencyNanos.sum() / count;
+  }
+
+  /**
+   * Returns the maximum propagation latency of the completed tasks in nanoseconds.
+   * @return the maximum propagation latency of the completed tasks in nanoseconds
+   */
+  public long getMaxLatencyNanos() {
+    return maxLatencyNanos.get();
+  }
+
+  /**
+   * Resets all statistics to zero. Tasks in flight at the time of the reset are not counted.
+   */
+  public void reset() {
+    submitted.reset();
+    completed.reset();
+    totalLatencyNanos.reset();
+    maxLatencyNanos.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return "PropagationStats [submitted=" + getSubmittedCount()
+        + ", completed=" + getCompletedCount()
+        + ", queueDepth=" + getQueueDepth()
+        + ", meanLatencyNanos=" + getMeanLatencyNanos()
+        + ", maxLatencyNanos=" + getMaxLatencyNanos() + "]";
+  }
+
+  void recordSubmitted() {
+    submitted.increment();
+  }
+
+  void recordCompleted(final long latencyNanos) {
+    completed.increment();
+    totalLatencyNanos.add(latencyNanos);
+    maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+  }
+
+}
@@ -20,8 +20,10 @@
 package org.apache.datasketches.theta;
 
 import static org.apache.datasketches.QuickSelect.selectExcludingZeros;
+import static org.apache.datasketches.theta.PreambleUtil.BUCKETIZED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.LG_ARR_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.extractCurCount;
+import static org.apache.datasketches.theta.PreambleUtil.extractFlags;
 import static org.apache.datasketches.theta.PreambleUtil.extractLgArrLongs;
 import static org.apache.datasketches.theta.PreambleUtil.extractThetaLong;
 import static org.apache.datasketches.theta.PreambleUtil.insertCurCount;
@@ -75,8 +77,7 @@ final class Rebuilder {
 
     //Rebuild to clean up dirty data, update count
     final long[] tgtArr = new long[arrLongs];
-    final int newCurCount =
-        HashOperations.hashArrayInsert(tmpArr, tgtArr, lgArrLongs, newThetaLong);
+    final int newCurCount = arrayInsert(mem, tmpArr, tgtArr, lgArrLongs, newThetaLong);
     insertCurCount(mem, newCurCount); //UPDATE curCount
 
     //put the rebuilt array back into memory
@@ -117,7 +118,7 @@ final class Rebuilder {
     final long[] dstHTArr = new long[dstHTLen];
 
     //Rebuild hash table in destination buffer
-    HashOperations.hashArrayInsert(srcHTArr, dstHTArr, dstLgArrLongs, thetaLong);
+    arrayInsert(srcMem, srcHTArr, dstHTArr, dstLgArrLongs, thetaLong);
 
     //Bulk copy to destination memory
     dstMem.putLongArray(preBytes, dstHTArr, 0, dstHTLen);
@@ -154,12 +155,29 @@ final class Rebuilder {
     final long[] dstHTArr = new long[dstHTLen]; //on-heap dst buffer
     //Rebuild hash table in destination buffer
     final long thetaLong = extractThetaLong(mem);
-    HashOperations.hashArrayInsert(srcHTArr, dstHTArr, tgtLgArrLongs, thetaLong);
+    arrayInsert(mem, srcHTArr, dstHTArr, tgtLgArrLongs, thetaLong);
     //Bulk copy to destination memory
     mem.putLongArray(preBytes, dstHTArr, 0, dstHTLen);  //put it back, no need to clear
     insertLgArrLongs(mem, tgtLgArrLongs); //update in mem
   }
 
+  /**
+   * Inserts the given source hashes into the given hash table by the layout given by the flags of
+   * the given Memory.
+   * @param mem the Memory of the sketch, which holds the flags
+   * @param srcArr the source hash array
+   * @param tgtArr the target hash table
+   * @param lgArrLongs the size (log_base2) of the target hash table
+   * @param thetaLong theta as a long
+   * @return the count of values inserted
+   */
+  private static int arrayInsert(final Memory mem, final long[] srcArr, final long[] tgtArr,
+      final int lgArrLongs, final long thetaLong) {
+    return ((extractFlags(mem) & BUCKETIZED_FLAG_MASK) != 0)
+        ? HashOperations.bucketArrayInsert(srcArr, tgtArr, lgArrLongs, thetaLong)
+        : HashOperations.hashArrayInsert(srcArr, tgtArr, lgArrLongs, thetaLong);
+  }
+
   /**
    * Returns the actual log2 Resize Factor that can be used to grow the hash table. This will be
    * an integer value between zero and the given lgRF, inclusive;
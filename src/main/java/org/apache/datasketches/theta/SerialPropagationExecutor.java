@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The serial queue of the background propagation tasks of one shared sketch.
+ * The tasks are run one at a time, in submission order, by a drain task on the scheduler.
+ * A drain task is submitted only when the queue turns non-empty, so a shared sketch occupies at
+ * most one scheduler thread at a time, while different shared sketches run in parallel.
+ */
+final class SerialPropagationExecutor {
+  private final PropagationScheduler scheduler;
+  private final PropagationStats stats;
+  private final ConcurrentLinkedQueue<Runnable> queue;
+
+  // The number of tasks submitted and not yet completed.
+  // Incremented after the task is queued, and decremented after it has run.
+  private final AtomicInteger pending;
+
+  SerialPropagationExecutor(final PropagationScheduler scheduler) {
+    this.scheduler = scheduler;
+    stats = scheduler.getStats();
+    queue = new ConcurrentLinkedQueue<>();
+    pending = new AtomicInteger();
+  }
+
+  /**
+   * Queues the given task and makes sure a drain task is scheduled.
+   * @param task the given task
+   */
+  void execute(final Runnable task) {
+    final long submitNanos = System.nanoTime();
+    stats.recordSubmitted();
+    queue.add(() -> {
+      try {
+        task.run();
+      } finally {
+        stats.recordCompleted(System.nanoTime() - submitNanos);
+      }
+    });
+    if (pending.getAndIncrement() == 0) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Waits until all tasks submitted so far have completed.
+   */
+  void awaitQuiescence() {
+    while (pending.get() > 0) {
+      Thread.yield();
+    }
+  }
+
+  private void scheduleDrain() {
+    try {
+      scheduler.execute(this::drain);
+    } catch (final RejectedExecutionException e) { //the scheduler has been shut down
+      drain();
+    }
+  }
+
+  private void drain() {
+    try {
+      do {
+        queue.poll().run();
+      } while (pending.decrementAndGet() > 0);
+    } catch (final RuntimeException | Error e) {
+      if (pending.decrementAndGet() > 0) { //do not strand the tasks behind the failed one
+        scheduleDrain();
+      }
+      throw e;
+    }
+  }
+
+}
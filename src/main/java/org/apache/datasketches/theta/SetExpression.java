@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.Util;
+import org.apache.datasketches.memory.Memory;
+
+/**
+ * An expression of set operations over Theta sketches, such as <i>((A &cup; B) &cap; C &cap; D)
+ * \ E</i>, that is evaluated as a whole.
+ *
+ * <p>An expression is built from operands, given by {@link #of(Sketch)} or {@link #of(Memory)},
+ * with {@link #union(SetExpression...)}, {@link #intersection(SetExpression...)} and
+ * {@link #aNotB(SetExpression, SetExpression)}. Expressions are immutable and may be shared
+ * between expressions and evaluations. The evaluation chooses the order of the work:</p>
+ *
+ * <ul>
+ * <li>The operands of an intersection are intersected in the order of their retained entries
+ * and then their theta, smallest first, so that the running result is as small as possible.
+ * The plain operands are intersected before the subexpressions.</li>
+ * <li>Once the running result of an intersection retains no hashes, its remaining plain
+ * operands are not intersected and its remaining subexpressions are not evaluated. The same
+ * holds for the B operand of an A-not-B whose A retains no hashes. Such a result has an estimate
+ * of zero, but its theta, and therefore its upper bound, may be larger than that of a complete
+ * evaluation.</li>
+ * <li>Operands given as Memory are wrapped rather than heapified, and the set operations read
+ * them in place.</li>
+ * <li>Given a ForkJoinPool, the independent subexpressions of each operation are evaluated in
+ * parallel, all at once. Then the subexpressions of an intersection are skipped only if its plain
+ * operands already leave no hashes, and the B operand of an A-not-B is always evaluated.</li>
+ * </ul>
+ *
+ * <p>The set operations are built by a {@link SetOperationBuilder}, which gives the nominal
+ * entries of the unions, the seed and the hash function. The seed hashes of all of the operands
+ * that are not empty are checked against the seed of the builder before any work is done, so an
+ * incompatible operand is rejected even if the evaluation would have skipped it.</p>
+ */
+public abstract class SetExpression {
+
+  //Intersect the smallest first: fewest retained entries, then smallest theta
+  private static final Comparator<Sketch> COST_ORDER = new Comparator<Sketch>() {
+    @Override
+    public int compare(final Sketch a, final Sketch b) {
+      final int c = Integer.compare(a.getRetainedEntries(true), b.getRetainedEntries(true));
+      return (c != 0) ? c : Long.compare(a.getThetaLong(), b.getThetaLong());
+    }
+  };
+
+  SetExpression() {}
+
+  /**
+   * Returns an expression of the given sketch.
+   * @param sketch the given sketch of the Theta Family
+   * @return an expression of the given sketch
+   */
+  public static SetExpression of(final Sketch sketch) {
+    if (sketch == null) {
+      throw new SketchesArgumentException("sketch must not be null.");
+    }
+    return new Operand(sketch);
+  }
+
+  /**
+   * Returns an expression of the sketch in the given Memory, which is wrapped, not heapified.
+   * The sketch must have been built with the default seed.
+   * @param srcMem an image of a sketch of the Theta Family
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return an expression of the sketch in the given Memory
+   */
+  public static SetExpression of(final Memory srcMem) {
+    return of(srcMem, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns an expression of the sketch in the given Memory, which is wrapped, not heapified.
+   * @param srcMem an image of a sketch of the Theta Family
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return an expression of the sketch in the given Memory
+   */
+  public static SetExpression of(final Memory srcMem, final long seed) {
+    if (srcMem == null) {
+      throw new SketchesArgumentException("srcMem must not be null.");
+    }
+    return new Operand(Sketch.wrap(srcMem, seed));
+  }
+
+  /**
+   * Returns the union of the given expressions.
+   * @param operands the given expressions. There must be at least one.
+   * @return the union of the given expressions
+   */
+  public static SetExpression union(final SetExpression... operands) {
+    return new UnionExpression(checkOperands(operands));
+  }
+
+  /**
+   * Returns the intersection of the given expressions.
+   * @param operands the given expressions. There must be at least one.
+   * @return the intersection of the given expressions
+   */
+  public static SetExpression intersection(final SetExpression... operands) {
+    return new IntersectionExpression(checkOperands(operands));
+  }
+
+  /**
+   * Returns the expression <i>a</i> and not <i>b</i>.
+   * @param a the first operand
+   * @param b the second operand
+   * @return the expression <i>a</i> and not <i>b</i>
+   */
+  public static SetExpression aNotB(final SetExpression a, final SetExpression b) {
+    return new AnotBExpression(checkOperands(new SetExpression[] { a, b }));
+  }
+
+  /**
+   * Evaluates this expression in the calling thread with the set operations of a default
+   * SetOperationBuilder.
+   * @return the result as an ordered CompactSketch on the Java heap
+   */
+  public CompactSketch evaluate() {
+    return evaluate(new SetOperationBuilder());
+  }
+
+  /**
+   * Evaluates this expression in the calling thread with the set operations of the given builder.
+   * @param bldr the builder of the set operations
+   * @return the result as an ordered CompactSketch on the Java heap
+   */
+  public CompactSketch evaluate(final SetOperationBuilder bldr) {
+    return evaluate(bldr, null);
+  }
+
+  /**
+   * Evaluates this expression with the set operations of the given builder, and the independent
+   * subexpressions in parallel on the given pool.
+   * @param bldr the builder of the set operations
+   * @param pool the ForkJoinPool that evaluates the subexpressions, or null to evaluate them in
+   * the calling thread
+   * @return the result as an ordered CompactSketch on the Java heap
+   * @throws SketchesArgumentException if an operand that is not empty has a seed hash that
+   * differs from that of the seed of the builder
+   */
+  public CompactSketch evaluate(final SetOperationBuilder bldr, final ForkJoinPool pool) {
+    if (bldr == null) {
+      throw new SketchesArgumentException("bldr must not be null.");
+    }
+    checkSeedHashes(Util.computeSeedHash(bldr.getSeed()));
+    final Evaluator ev = new Evaluator(bldr, pool);
+    final Sketch result = (pool == null) ? eval(ev) : pool.invoke(new EvalTask(this, ev));
+    if (!result.isCompact()) {
+      return result.compact(true, null);
+    }
+    if (result.isOrdered() && !result.hasMemory()) {
+      return (CompactSketch) result;
+    }
+    //an operand that is compact, but unordered or in Memory
+    final long[] cache = Arrays.copyOf(result.getCache(), result.getRetainedEntries(true));
+    Arrays.sort(cache);
+    return SetOperation.createCompactSketch(cache, result.isEmpty(), result.getSeedHash(),
+        cache.length, result.getThetaLong(), true, null);
+  }
+
+  /**
+   * Evaluates this expression.
+   * @param ev the context of the evaluation
+   * @return the result, which may be an operand
+   */
+  abstract Sketch eval(Evaluator ev);
+
+  /**
+   * Checks the seed hashes of all of the operands of this expression that are not empty, as the
+   * set operations ignore empty sketches.
+   * @param seedHash the seed hash of the set operations
+   */
+  abstract void checkSeedHashes(short seedHash);
+
+  private static SetExpression[] checkOperands(final SetExpression[] operands) {
+    if ((operands == null) || (operands.length == 0)) {
+      throw new SketchesArgumentException("There must be at least one operand.");
+    }
+    for (final SetExpression operand : operands) {
+      if (operand == null) {
+        throw new SketchesArgumentException("Operands must not be null.");
+      }
+    }
+    return operands.clone();
+  }
+
+  //the running intersection retains no hashes, so nor will its result
+  private static boolean hasNoHashes(final Intersection inter) {
+    return inter.hasResult() && (inter.getRetainedEntries(true) == 0);
+  }
+
+  /**
+   * The context of an evaluation.
+   */
+  static final class Evaluator {
+    final SetOperationBuilder bldr;
+    final ForkJoinPool pool;
+
+    Evaluator(final SetOperationBuilder bldr, final ForkJoinPool pool) {
+      this.bldr = bldr;
+      this.pool = pool;
+    }
+
+    /**
+     * Evaluates the given subexpressions in parallel. Must be called in a task of the pool.
+     * @param exprs the given subexpressions
+     * @return their results, in the same order
+     */
+    Sketch[] evalAll(final List<SetExpression> exprs) {
+      final List<EvalTask> tasks = new ArrayList<>(exprs.size());
+      for (final SetExpression expr : exprs) { tasks.add(new EvalTask(expr, this)); }
+      ForkJoinTask.invokeAll(tasks);
+      final Sketch[] results = new Sketch[tasks.size()];
+      for (int i = 0; i < results.length; i++) { results[i] = tasks.get(i).join(); }
+      return results;
+    }
+  }
+
+  private static final class EvalTask extends RecursiveTask<Sketch> {
+    private static final long serialVersionUID = 1L;
+    private final SetExpression expr;
+    private final Evaluator ev;
+
+    EvalTask(final SetExpression expr, final Evaluator ev) {
+      this.expr = expr;
+      this.ev = ev;
+    }
+
+    @Override
+    protected Sketch compute() {
+      return expr.eval(ev);
+    }
+  }
+
+  private static final class Operand extends SetExpression {
+    private final Sketch sketch;
+
+    Operand(final Sketch sketch) {
+      this.sketch = sketch;
+    }
+
+    @Override
+    Sketch eval(final Evaluator ev) {
+      return sketch;
+    }
+
+    @Override
+    void checkSeedHashes(final short seedHash) {
+      if (!sketch.isEmpty()) {
+        Util.checkSeedHashes(seedHash, sketch.getSeedHash());
+      }
+    }
+  }
+
+  private static final class UnionExpression extends SetExpression {
+    private final SetExpression[] operands;
+
+    UnionExpression(final SetExpression[] operands) {
+      this.operands = operands;
+    }
+
+    @Override
+    Sketch eval(final Evaluator ev) {
+      final Union union = ev.bldr.buildUnion();
+      final List<SetExpression> subexprs = new ArrayList<>();
+      for (final SetExpression operand : operands) {
+        if ((ev.pool == null) || (operand instanceof Operand)) {
+          union.update(operand.eval(ev));
+        } else {
+          subexprs.add(operand);
+        }
+      }
+      if (!subexprs.isEmpty()) {
+        for (final Sketch result : ev.evalAll(subexprs)) { union.update(result); }
+      }
+      return union.getResult();
+    }
+
+    @Override
+    void checkSeedHashes(final short seedHash) {
+      for (final SetExpression operand : operands) { operand.checkSeedHashes(seedHash); }
+    }
+  }
+
+  private static final class IntersectionExpression extends SetExpression {
+    private final SetExpression[] operands;
+
+    IntersectionExpression(final SetExpression[] operands) {
+      this.operands = operands;
+    }
+
+    @Override
+    Sketch eval(final Evaluator ev) {
+      final List<Sketch> sketches = new ArrayList<>();
+      final List<SetExpression> subexprs = new ArrayList<>();
+      for (final SetExpression operand : operands) {
+        if (operand instanceof Operand) {
+          sketches.add(operand.eval(ev));
+        } else {
+          subexprs.add(operand);
+        }
+      }
+      final Intersection inter = ev.bldr.buildIntersection();
+      sketches.sort(COST_ORDER);
+      for (final Sketch sketch : sketches) {
+        if (hasNoHashes(inter)) { break; }
+        inter.update(sketch);
+      }
+
+      if (ev.pool == null) {
+        for (final SetExpression subexpr : subexprs) {
+          if (hasNoHashes(inter)) { break; }
+          inter.update(subexpr.eval(ev));
+        }
+      } else if (!subexprs.isEmpty() && !hasNoHashes(inter)) {
+        final Sketch[] results = ev.evalAll(subexprs);
+        Arrays.sort(results, COST_ORDER);
+        for (final Sketch result : results) { inter.update(result); }
+      }
+      return inter.getResult();
+    }
+
+    @Override
+    void checkSeedHashes(final short seedHash) {
+      for (final SetExpression operand : operands) { operand.checkSeedHashes(seedHash); }
+    }
+  }
+
+  private static final class AnotBExpression extends SetExpression {
+    private final SetExpression a;
+    private final SetExpression b;
+
+    AnotBExpression(final SetExpression[] operands) {
+      a = operands[0];
+      b = operands[1];
+    }
+
+    @Override
+    Sketch eval(final Evaluator ev) {
+      final AnotB aNotB = ev.bldr.buildANotB();
+      if (ev.pool == null) {
+        final Sketch resultA = a.eval(ev);
+        if (resultA.getRetainedEntries(true) == 0) {
+          return aNotB.aNotB(resultA, null);
+        }
+        return aNotB.aNotB(resultA, b.eval(ev));
+      }
+      final Sketch[] results = ev.evalAll(Arrays.asList(a, b));
+      return aNotB.aNotB(results[0], results[1]);
+    }
+
+    @Override
+    void checkSeedHashes(final short seedHash) {
+      a.checkSeedHashes(seedHash);
+      b.checkSeedHashes(seedHash);
+    }
+  }
+
+}
@@ -27,9 +27,12 @@ import static org.apache.datasketches.Util.MIN_LG_NOM_LONGS;
 import static org.apache.datasketches.Util.TAB;
 import static org.apache.datasketches.Util.ceilingPowerOf2;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.apache.datasketches.Family;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.DefaultMemoryRequestServer;
 import org.apache.datasketches.memory.MemoryRequestServer;
 import org.apache.datasketches.memory.WritableMemory;
@@ -42,6 +45,7 @@ import org.apache.datasketches.memory.WritableMemory;
 public class SetOperationBuilder {
   private int bLgNomLongs;
   private long bSeed;
+  private Hasher bHasher;
   private ResizeFactor bRF;
   private float bP;
   private MemoryRequestServer bMemReqSvr;
@@ -51,6 +55,7 @@ public class SetOperationBuilder {
    * <ul>
    * <li>Nominal Entries: {@value org.apache.datasketches.Util#DEFAULT_NOMINAL_ENTRIES}</li>
    * <li>Seed: {@value org.apache.datasketches.Util#DEFAULT_UPDATE_SEED}</li>
+   * <li>Hasher: {@link Hasher#MURMUR3}</li>
    * <li>{@link ResizeFactor#X8}</li>
    * <li>Input Sampling Probability: 1.0</li>
    * <li>Memory: null</li>
@@ -59,6 +64,7 @@ public class SetOperationBuilder {
   public SetOperationBuilder() {
     bLgNomLongs = Integer.numberOfTrailingZeros(DEFAULT_NOMINAL_ENTRIES);
     bSeed = DEFAULT_UPDATE_SEED;
+    bHasher = Hasher.MURMUR3;
     bP = (float) 1.0;
     bRF = ResizeFactor.X8;
     bMemReqSvr = new DefaultMemoryRequestServer();
@@ -109,6 +115,28 @@ public class SetOperationBuilder {
     return bSeed;
   }
 
+  /**
+   * Sets the hash function of the sketches that this set operation will accept. For a Union this
+   * is also the hash function of its own updates.
+   * @param hasher the hash function. The default is {@link Hasher#MURMUR3}.
+   * @return this SetOperationBuilder
+   */
+  public SetOperationBuilder setHasher(final Hasher hasher) {
+    if (hasher == null) {
+      throw new SketchesArgumentException("hasher must not be null.");
+    }
+    bHasher = hasher;
+    return this;
+  }
+
+  /**
+   * Returns the hash function
+   * @return the hash function
+   */
+  public Hasher getHasher() {
+    return bHasher;
+  }
+
   /**
    * Sets the upfront uniform sampling probability, <i>p</i>. Although this functionality is
    * implemented for Unions only, it rarely makes sense to use it. The proper use of upfront
@@ -189,25 +217,26 @@ public class SetOperationBuilder {
     switch (family) {
       case UNION: {
         if (dstMem == null) {
-          setOp = UnionImpl.initNewHeapInstance(bLgNomLongs, bSeed, bP, bRF);
+          setOp = UnionImpl.initNewHeapInstance(bLgNomLongs, bSeed, bHasher, bP, bRF);
         }
         else {
-          setOp = UnionImpl.initNewDirectInstance(bLgNomLongs, bSeed, bP, bRF, bMemReqSvr, dstMem);
+          setOp = UnionImpl.initNewDirectInstance(bLgNomLongs, bSeed, bHasher, bP, bRF, bMemReqSvr,
+              dstMem);
         }
         break;
       }
       case INTERSECTION: {
         if (dstMem == null) {
-          setOp = IntersectionImpl.initNewHeapInstance(bSeed);
+          setOp = IntersectionImpl.initNewHeapInstance(bSeed, bHasher);
         }
         else {
-          setOp = IntersectionImpl.initNewDirectInstance(bSeed, dstMem);
+          setOp = IntersectionImpl.initNewDirectInstance(bSeed, bHasher, dstMem);
         }
         break;
       }
       case A_NOT_B: {
         if (dstMem == null) {
-          setOp = new HeapAnotB(bSeed);
+          setOp = new HeapAnotB(bHasher.computeSeedHash(bSeed));
         }
         else {
           throw new SketchesArgumentException(
@@ -242,6 +271,29 @@ public class SetOperationBuilder {
     return (Union) build(Family.UNION, dstMem);
   }
 
+  /**
+   * Returns a ParallelUnion with the current configuration of this Builder, which merges its
+   * inputs with the given number of shards in parallel on the common ForkJoinPool.
+   * The MemoryRequestServer is not used, as the shards are on the Java heap.
+   * @param parallelism the number of shards that are merged in parallel. It must be at least 1.
+   * @return a ParallelUnion
+   */
+  public ParallelUnion buildParallelUnion(final int parallelism) {
+    return buildParallelUnion(parallelism, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Returns a ParallelUnion with the current configuration of this Builder, which merges its
+   * inputs with the given number of shards in parallel on the given ForkJoinPool.
+   * The MemoryRequestServer is not used, as the shards are on the Java heap.
+   * @param parallelism the number of shards that are merged in parallel. It must be at least 1.
+   * @param pool the ForkJoinPool that runs the parallel tasks
+   * @return a ParallelUnion
+   */
+  public ParallelUnion buildParallelUnion(final int parallelism, final ForkJoinPool pool) {
+    return new ParallelUnion(bLgNomLongs, bSeed, bHasher, bP, bRF, parallelism, pool);
+  }
+
   /**
    * Convenience method, returns a configured SetOperation Intersection with
    * <a href="{@docRoot}/resources/dictionary.html#defaultNomEntries">Default Nominal Entries</a>
@@ -279,6 +331,7 @@ public class SetOperationBuilder {
     sb.append("LgK:").append(TAB).append(bLgNomLongs).append(LS);
     sb.append("K:").append(TAB).append(1 << bLgNomLongs).append(LS);
     sb.append("Seed:").append(TAB).append(bSeed).append(LS);
+    sb.append("Hasher:").append(TAB).append(bHasher.getName()).append(LS);
     sb.append("p:").append(TAB).append(bP).append(LS);
     sb.append("ResizeFactor:").append(TAB).append(bRF).append(LS);
     final String mrsStr = bMemReqSvr.getClass().getSimpleName();
@@ -19,9 +19,7 @@
 
 package org.apache.datasketches.theta;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
-import static org.apache.datasketches.Util.checkSeedHashes;
 import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.hash.MurmurHash3.hash;
 import static org.apache.datasketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
@@ -29,6 +27,8 @@ import static org.apache.datasketches.theta.PreambleUtil.SINGLEITEM_FLAG_MASK;
 
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.hash.MurmurHash3v2;
 import org.apache.datasketches.memory.Memory;
 
 /**
@@ -100,12 +100,11 @@ public final class SingleItemSketch extends CompactSketch {
   public static SingleItemSketch heapify(final Memory srcMem, final long seed) {
     final long memPre0 = srcMem.getLong(0);
     final short seedHashMem = srcMem.getShort(6);
-    final short seedHashCk = computeSeedHash(seed);
-    checkSeedHashes(seedHashMem, seedHashCk);
-    if (testPre0SeedHash(memPre0, seedHashCk)) {
-      return new SingleItemSketch(srcMem.getLong(8), seedHashCk);
+    Hasher.fromSeedHash(seedHashMem, seed); //checks for a seed hash conflict
+    if (testPre0SeedHash(memPre0, seedHashMem)) {
+      return new SingleItemSketch(srcMem.getLong(8), seedHashMem);
     }
-    final long def = (((long)seedHashCk << 48) | PRE0_LO6);
+    final long def = (((long)seedHashMem << 48) | PRE0_LO6);
     throw new SketchesArgumentException("Input Memory does not match required Preamble. " + LS
         + "Memory    Pre0 : " + Long.toHexString(memPre0) + LS
         + "Should be Pre0 : " + Long.toHexString(def));
@@ -154,8 +153,8 @@ public final class SingleItemSketch extends CompactSketch {
    */
   public static SingleItemSketch create(final String datum) {
     if ((datum == null) || datum.isEmpty()) { return null; }
-    final byte[] data = datum.getBytes(UTF_8);
-    return new SingleItemSketch(hash(data, DEFAULT_UPDATE_SEED)[0] >>> 1);
+    final long[] hashOut = MurmurHash3v2.hash(datum, DEFAULT_UPDATE_SEED, new long[2]);
+    return new SingleItemSketch(hashOut[0] >>> 1);
   }
 
   /**
@@ -255,8 +254,8 @@ public final class SingleItemSketch extends CompactSketch {
    */
   public static SingleItemSketch create(final String datum, final long seed) {
     if ((datum == null) || datum.isEmpty()) { return null; }
-    final byte[] data = datum.getBytes(UTF_8);
-    return new SingleItemSketch(hash(data, seed)[0] >>> 1, seed);
+    final long[] hashOut = MurmurHash3v2.hash(datum, seed, new long[2]);
+    return new SingleItemSketch(hashOut[0] >>> 1, seed);
   }
 
   /**
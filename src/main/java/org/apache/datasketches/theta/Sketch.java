@@ -24,7 +24,6 @@ import static org.apache.datasketches.HashOperations.count;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
 import static org.apache.datasketches.Util.LS;
 import static org.apache.datasketches.Util.ceilingPowerOf2;
-import static org.apache.datasketches.Util.computeSeedHash;
 import static org.apache.datasketches.Util.zeroPad;
 import static org.apache.datasketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.FAMILY_BYTE;
@@ -34,12 +33,14 @@ import static org.apache.datasketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER_BYTE;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static org.apache.datasketches.theta.PreambleUtil.extractSeedHash;
 
 import org.apache.datasketches.BinomialBoundsN;
 import org.apache.datasketches.Family;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -91,6 +92,9 @@ public abstract class Sketch {
     if (serVer == 2) {
       return ForwardCompatibility.heapify2to3(srcMem, seed);
     }
+    if (serVer == SER_VER_COMPRESSED) {
+      return DirectCompactCompressedSketch.heapifyInstance(srcMem, seed);
+    }
     throw new SketchesArgumentException("Unknown Serialization Version: " + serVer);
   }
 
@@ -111,7 +115,8 @@ public abstract class Sketch {
   /**
    * Wrap takes the sketch image in Memory and refers to it directly. There is no data copying onto
    * the java heap.  Only "Direct" Serialization Version 3 (i.e, OpenSource) sketches that have
-   * been explicitly stored as direct objects can be wrapped.
+   * been explicitly stored as direct objects, and compressed Serialization Version 4 compact
+   * sketches, can be wrapped.
    * An attempt to "wrap" earlier version sketches will result in a "heapified", normal
    * Java Heap version of the sketch where all data will be copied to the heap.
    * @param srcMem an image of a Sketch where the image seed hash matches the given seed hash.
@@ -134,7 +139,7 @@ public abstract class Sketch {
               "Corrupted: " + family + " family image: must have SerVer = 3 and preLongs = 3");
         }
       }
-      case COMPACT: { //serVer 1, 2, or 3, preLongs = 1, 2, or 3
+      case COMPACT: { //serVer 1, 2, 3 or 4, preLongs = 1, 2, or 3
         if (serVer == 3) {
           final long cap = srcMem.getCapacity();
           if (cap < 16) { //EMPTY?
@@ -165,6 +170,9 @@ public abstract class Sketch {
         else if (serVer == 2) {
           return ForwardCompatibility.heapify2to3(srcMem, seed);
         }
+        else if (serVer == SER_VER_COMPRESSED) {
+          return DirectCompactCompressedSketch.wrapInstance(srcMem, seed);
+        }
         throw new SketchesArgumentException(
             "Corrupted: Serialization Version " + serVer + " not recognized.");
       }
@@ -684,8 +692,7 @@ public abstract class Sketch {
         //cap >= 16 and not emptyFlag. Note older sketches may have missing empty flag.
         if (preLongs == 1) {
           final short memSeedHash = (short) extractSeedHash(srcMem);
-          final short computedSeedHash = computeSeedHash(seed);
-          if ((memSeedHash == computedSeedHash) && orderedFlag) { //SINGLE ITEM
+          if (Hasher.isSeedHash(memSeedHash, seed) && orderedFlag) { //SINGLE ITEM
             return SingleItemSketch.heapify(srcMem, seed);
           } else { //EMPTY
             return EmptyCompactSketch.getInstance(srcMem);
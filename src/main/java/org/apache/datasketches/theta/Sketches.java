@@ -26,7 +26,9 @@ import static org.apache.datasketches.theta.PreambleUtil.FLAGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER_BYTE;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG;
+import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG_V4;
 
 import org.apache.datasketches.Family;
 import org.apache.datasketches.SketchesArgumentException;
@@ -340,6 +342,9 @@ public final class Sketches {
       }
       return entries;
     }
+    if (serVer == SER_VER_COMPRESSED) {
+      return DirectCompactCompressedSketch.extractNumEntries(srcMem);
+    }
     //SerVer 2 or 3
     final int preLongs = getPreambleLongs(srcMem);
     final boolean empty = (srcMem.getByte(FLAGS_BYTE) & EMPTY_FLAG_MASK) != 0; //for SerVer 2 & 3
@@ -352,6 +357,9 @@ public final class Sketches {
 
   static long getThetaLong(final Memory srcMem) {
     final int preLongs = getPreambleLongs(srcMem);
+    if (srcMem.getByte(SER_VER_BYTE) == SER_VER_COMPRESSED) {
+      return (preLongs > 1) ? srcMem.getLong(THETA_LONG_V4) : Long.MAX_VALUE;
+    }
     return (preLongs < 3) ? Long.MAX_VALUE : srcMem.getLong(THETA_LONG); //for SerVer 1,2,3
   }
 
@@ -25,6 +25,7 @@ import static org.apache.datasketches.theta.CompactSketch.compactCache;
 import static org.apache.datasketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
 import static org.apache.datasketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static org.apache.datasketches.theta.PreambleUtil.THETA_LONG;
 import static org.apache.datasketches.theta.PreambleUtil.UNION_THETA_LONG;
 import static org.apache.datasketches.theta.PreambleUtil.clearEmpty;
@@ -44,6 +45,7 @@ import org.apache.datasketches.HashOperations;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.MemoryRequestServer;
 import org.apache.datasketches.memory.WritableMemory;
@@ -72,7 +74,7 @@ final class UnionImpl extends Union {
 
   private UnionImpl(final UpdateSketch gadget, final long seed) {
     gadget_ = gadget;
-    seedHash_ = computeSeedHash(seed);
+    seedHash_ = gadget.getHasher().computeSeedHash(seed);
   }
 
   /**
@@ -81,14 +83,15 @@ final class UnionImpl extends Union {
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of this union
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @return instance of this sketch
    */
-  static UnionImpl initNewHeapInstance(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf) {
+  static UnionImpl initNewHeapInstance(final int lgNomLongs, final long seed,
+      final Hasher hasher, final float p, final ResizeFactor rf) {
     final UpdateSketch gadget = //create with UNION family
-        new HeapQuickSelectSketch(lgNomLongs, seed, p, rf, true);
+        new HeapQuickSelectSketch(lgNomLongs, seed, hasher, p, rf, true);
     final UnionImpl unionImpl = new UnionImpl(gadget, seed);
     unionImpl.unionThetaLong_ = gadget.getThetaLong();
     unionImpl.unionEmpty_ = gadget.isEmpty();
@@ -101,6 +104,7 @@ final class UnionImpl extends Union {
    *
    * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hasher the hash function of this union
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @param memReqSvr a given instance of a MemoryRequestServer
@@ -110,12 +114,13 @@ final class UnionImpl extends Union {
   static UnionImpl initNewDirectInstance(
       final int lgNomLongs,
       final long seed,
+      final Hasher hasher,
       final float p,
       final ResizeFactor rf,
       final MemoryRequestServer memReqSvr,
       final WritableMemory dstMem) {
     final UpdateSketch gadget = //create with UNION family
-        new DirectQuickSelectSketch(lgNomLongs, seed, p, rf, memReqSvr, dstMem, true);
+        new DirectQuickSelectSketch(lgNomLongs, seed, hasher, p, rf, memReqSvr, dstMem, true);
     final UnionImpl unionImpl = new UnionImpl(gadget, seed);
     unionImpl.unionThetaLong_ = gadget.getThetaLong();
     unionImpl.unionEmpty_ = gadget.isEmpty();
@@ -284,7 +289,15 @@ final class UnionImpl extends Union {
     if (curCountIn > 0) {
       if (sketchIn.isOrdered()) { //Only true if Compact. Use early stop
         //Ordered, thus compact
-        if (sketchIn.hasMemory()) {
+        if (sketchIn instanceof DirectCompactCompressedSketch) { //decoded as it is read
+          final HashIterator it = sketchIn.iterator();
+          while (it.next()) {
+            final long hashIn = it.get();
+            if (hashIn >= unionThetaLong_) { break; } // "early stop"
+            gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
+          }
+        }
+        else if (sketchIn.hasMemory()) {
           final Memory skMem = ((CompactSketch) sketchIn).getMemory();
           final int preambleLongs = skMem.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
           for (int i = 0; i < curCountIn; i++ ) {
@@ -326,10 +339,16 @@ final class UnionImpl extends Union {
   public void update(final Memory skMem) {
     if (skMem == null) { return; }
     final int cap = (int) skMem.getCapacity();
-    if (cap < 16) { return; } //empty or garbage
+    if (cap < 8) { return; } //garbage, as every image has at least one preamble long
     final int serVer = extractSerVer(skMem);
     final int fam = extractFamilyID(skMem);
 
+    if ((serVer == SER_VER_COMPRESSED) && (fam == Family.COMPACT.getID())) { //may be < 16 bytes
+      update(DirectCompactCompressedSketch.wrapInstance(skMem)); //checks the seed hash
+      return;
+    }
+    if (cap < 16) { return; } //empty or garbage
+
     if (serVer == 3) { //The OpenSource sketches (Aug 4, 2015)
       if ((fam < 1) || (fam > 3)) {
         throw new SketchesArgumentException(
@@ -19,10 +19,8 @@
 
 package org.apache.datasketches.theta;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
 import static org.apache.datasketches.Util.MIN_LG_NOM_LONGS;
-import static org.apache.datasketches.hash.MurmurHash3.hash;
 import static org.apache.datasketches.theta.CompactSketch.compactCache;
 import static org.apache.datasketches.theta.CompactSketch.loadCompactMemory;
 import static org.apache.datasketches.theta.PreambleUtil.BIG_ENDIAN_FLAG_MASK;
@@ -47,7 +45,9 @@ import org.apache.datasketches.Family;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.UnsafeUtil;
 import org.apache.datasketches.memory.WritableMemory;
 
 /**
@@ -58,6 +58,8 @@ import org.apache.datasketches.memory.WritableMemory;
  * @author Lee Rhodes
  */
 public abstract class UpdateSketch extends Sketch {
+  private static final int BATCH_SIZE = 256; //max number of hashes presented per batch
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
 
   UpdateSketch() {}
 
@@ -254,6 +256,12 @@ public abstract class UpdateSketch extends Sketch {
    */
   public abstract ResizeFactor getResizeFactor();
 
+  /**
+   * Returns the hash function that this sketch applies to its input items.
+   * @return the hash function that this sketch applies to its input items
+   */
+  public abstract Hasher getHasher();
+
   /**
    * Present this sketch with a long.
    *
@@ -262,8 +270,7 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final long datum) {
-    final long[] data = { datum };
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(datum, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
@@ -278,14 +285,13 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    //canonicalizes -0.0 and NaN
+    return hashUpdate(getHasher().hash(datum, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
    * Present this sketch with the given String.
-   * The string is converted to a byte array using UTF8 encoding.
+   * The string is hashed as its UTF-8 encoding, without allocating a byte array.
    * If the string is null or empty no update attempt is made and the method returns.
    *
    * <p>Note: this will not produce the same output hash values as the {@link #update(char[])}
@@ -297,11 +303,25 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final String datum) {
-    if ((datum == null) || datum.isEmpty()) {
+    return update((CharSequence) datum);
+  }
+
+  /**
+   * Present this sketch with the given CharSequence, such as a StringBuilder or a view of a
+   * parser's character buffer. It is hashed as its UTF-8 encoding, which is computed while
+   * hashing without allocating a byte array, so the result is the same as for
+   * {@link #update(String)} with the same characters.
+   * If the CharSequence is null or empty no update attempt is made and the method returns.
+   *
+   * @param datum The given CharSequence.
+   * @return
+   * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
+   */
+  public UpdateReturnState update(final CharSequence datum) {
+    if ((datum == null) || (datum.length() == 0)) {
       return RejectedNullOrEmpty;
     }
-    final byte[] data = datum.getBytes(UTF_8);
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(datum, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
@@ -316,7 +336,28 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(data, getSeed(), hashOut)[0] >>> 1);
+  }
+
+  /**
+   * Present this sketch with the given region of a byte array, such as a field of a shared I/O
+   * buffer. The region is hashed in place and produces the same hash as a byte array holding
+   * just the region.
+   * If the byte array is null or the region is empty no update attempt is made and the method
+   * returns.
+   *
+   * @param data The given byte array.
+   * @param offset the offset of the region within the array
+   * @param length the length of the region in bytes
+   * @return
+   * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public UpdateReturnState update(final byte[] data, final int offset, final int length) {
+    if ((data == null) || (length == 0)) {
+      return RejectedNullOrEmpty;
+    }
+    return hashUpdate(getHasher().hash(data, offset, length, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
@@ -334,7 +375,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(data, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
@@ -349,7 +390,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(data, getSeed(), hashOut)[0] >>> 1);
   }
 
   /**
@@ -364,7 +405,118 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(getHasher().hash(data, getSeed(), hashOut)[0] >>> 1);
+  }
+
+  //Batch updates
+
+  /**
+   * Present this sketch with each long in the given range of the array.
+   * Each long is a separate datum and the result is identical to calling {@link #update(long)}
+   * for each one, but the keys are hashed in a tight loop and inserted as a batch, which is
+   * much faster for columnar data.
+   *
+   * @param keys The given array of long datums.
+   * @param offset the index of the first key in the array
+   * @param length the number of keys to present to the sketch
+   */
+  public void batchUpdate(final long[] keys, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, keys.length);
+    final Hasher hasher = getHasher();
+    final long seed = getSeed();
+    final long[] hashes = new long[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      for (int i = 0; i < count; i++) {
+        hashes[i] = hasher.hash(keys[base + i], seed, hashOut)[0] >>> 1;
+      }
+      hashUpdate(hashes, count);
+      done += count;
+    }
+  }
+
+  /**
+   * Present this sketch with each double in the given range of the array.
+   * Each double is a separate datum and the result is identical to calling
+   * {@link #update(double)} for each one, including the canonicalization of -0.0 and NaN.
+   *
+   * @param keys The given array of double datums.
+   * @param offset the index of the first key in the array
+   * @param length the number of keys to present to the sketch
+   */
+  public void batchUpdate(final double[] keys, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, keys.length);
+    final Hasher hasher = getHasher();
+    final long seed = getSeed();
+    final long[] hashes = new long[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      for (int i = 0; i < count; i++) {
+        hashes[i] = hasher.hash(keys[base + i], seed, hashOut)[0] >>> 1;
+      }
+      hashUpdate(hashes, count);
+      done += count;
+    }
+  }
+
+  /**
+   * Present this sketch with each String in the given range of the array.
+   * Each String is a separate datum and the result is identical to calling
+   * {@link #update(String)} for each one. Null or empty strings are skipped.
+   *
+   * @param keys The given array of String datums.
+   * @param offset the index of the first key in the array
+   * @param length the number of keys to present to the sketch
+   */
+  public void batchUpdate(final String[] keys, final int offset, final int length) {
+    UnsafeUtil.checkBounds(offset, length, keys.length);
+    final Hasher hasher = getHasher();
+    final long seed = getSeed();
+    final long[] hashes = new long[Math.min(length, BATCH_SIZE)];
+    int done = 0;
+    while (done < length) {
+      final int count = Math.min(length - done, BATCH_SIZE);
+      final int base = offset + done;
+      int numHashes = 0;
+      for (int i = 0; i < count; i++) {
+        final String key = keys[base + i];
+        if ((key == null) || key.isEmpty()) { continue; }
+        hashes[numHashes++] = hasher.hash(key, seed, hashOut)[0] >>> 1;
+      }
+      hashUpdate(hashes, numHashes);
+      done += count;
+    }
+  }
+
+  /**
+   * Present this sketch with each long in the given region of Memory.
+   * Each long is a separate datum and the result is identical to calling {@link #update(long)}
+   * for each one. This allows columns of keys to be read directly from off-heap buffers.
+   *
+   * @param mem the given Memory containing an array of longs in native byte order.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param offsetBytes the offset in bytes of the first long
+   * @param numLongs the number of longs to present to the sketch
+   */
+  public void batchUpdate(final Memory mem, final long offsetBytes, final int numLongs) {
+    UnsafeUtil.checkBounds(offsetBytes, (long) numLongs << 3, mem.getCapacity());
+    final Hasher hasher = getHasher();
+    final long seed = getSeed();
+    final long[] hashes = new long[Math.min(numLongs, BATCH_SIZE)];
+    int done = 0;
+    while (done < numLongs) {
+      final int count = Math.min(numLongs - done, BATCH_SIZE);
+      mem.getLongArray(offsetBytes + ((long) done << 3), hashes, 0, count);
+      for (int i = 0; i < count; i++) {
+        hashes[i] = hasher.hash(hashes[i], seed, hashOut)[0] >>> 1;
+      }
+      hashUpdate(hashes, count);
+      done += count;
+    }
   }
 
   //restricted methods
@@ -379,6 +531,21 @@ public abstract class UpdateSketch extends Sketch {
    */
   abstract UpdateReturnState hashUpdate(long hash);
 
+  /**
+   * Batch form of {@link #hashUpdate(long)}. All potential batch updates converge here.
+   * The default presents each hash in turn. Sketches that can do better, e.g., by reading theta
+   * and their other state only once per batch, override this.
+   *
+   * @param hashes the given input hash values. Hashes of zero or Long.MAX_VALUE are ignored.
+   * A negative hash value will throw an exception.
+   * @param count the number of hashes, starting at index zero, to present to the sketch.
+   */
+  void hashUpdate(final long[] hashes, final int count) {
+    for (int i = 0; i < count; i++) {
+      hashUpdate(hashes[i]);
+    }
+  }
+
   /**
    * Gets the Log base 2 of the current size of the internal cache
    * @return the Log base 2 of the current size of the internal cache
@@ -468,7 +635,7 @@ public abstract class UpdateSketch extends Sketch {
 
     //Check seed hashes
     final short seedHash = (short)extractSeedHash(srcMem);              //byte 6,7
-    Util.checkSeedHashes(seedHash, Util.computeSeedHash(seed));
+    Hasher.fromSeedHash(seedHash, seed); //the seed hash of one of the hash functions
 
     //Check mem capacity, lgArrLongs
     final long curCapBytes = srcMem.getCapacity();
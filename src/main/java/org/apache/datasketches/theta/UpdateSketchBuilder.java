@@ -32,6 +32,7 @@ import org.apache.datasketches.Family;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.SketchesStateException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.DefaultMemoryRequestServer;
 import org.apache.datasketches.memory.MemoryRequestServer;
 import org.apache.datasketches.memory.WritableMemory;
@@ -44,13 +45,17 @@ import org.apache.datasketches.memory.WritableMemory;
 public class UpdateSketchBuilder {
   private int bLgNomLongs;
   private long bSeed;
+  private Hasher bHasher;
   private ResizeFactor bRF;
   private Family bFam;
   private float bP;
   private MemoryRequestServer bMemReqSvr;
+  private boolean bIncrementalRebuild;
+  private HashTableLayout bLayout;
 
   //Fields for concurrent theta sketch
   private int bNumPoolThreads;
+  private PropagationScheduler bPropagationScheduler;
   private int bLocalLgNomLongs;
   private boolean bPropagateOrderedCompact;
   private double bMaxConcurrencyError;
@@ -61,6 +66,7 @@ public class UpdateSketchBuilder {
    * <ul>
    * <li>Nominal Entries: {@value org.apache.datasketches.Util#DEFAULT_NOMINAL_ENTRIES}</li>
    * <li>Seed: {@value org.apache.datasketches.Util#DEFAULT_UPDATE_SEED}</li>
+   * <li>Hasher: {@link Hasher#MURMUR3}</li>
    * <li>Input Sampling Probability: 1.0</li>
    * <li>Family: {@link org.apache.datasketches.Family#QUICKSELECT}</li>
    * <li>Resize Factor: The default for sketches on the Java heap is {@link ResizeFactor#X8}.
@@ -68,11 +74,14 @@ public class UpdateSketchBuilder {
    * be fixed at either {@link ResizeFactor#X1} or {@link ResizeFactor#X2}.</li>
    * <li>MemoryRequestServer (Direct only):
    * {@link org.apache.datasketches.memory.DefaultMemoryRequestServer}.</li>
+   * <li>Incremental Rebuild (Heap QuickSelect only): false</li>
+   * <li>Hash Table Layout (QuickSelect only): {@link HashTableLayout#DOUBLE_HASHING}</li>
    * </ul>
    * Parameters unique to the concurrent sketches only:
    * <ul>
    * <li>Number of local Nominal Entries: 4</li>
    * <li>Concurrent NumPoolThreads: 3</li>
+   * <li>Concurrent PropagationScheduler: null, which selects the default scheduler</li>
    * <li>Concurrent PropagateOrderedCompact: true</li>
    * <li>Concurrent MaxConcurrencyError: 0</li>
    * </ul>
@@ -80,12 +89,16 @@ public class UpdateSketchBuilder {
   public UpdateSketchBuilder() {
     bLgNomLongs = Integer.numberOfTrailingZeros(DEFAULT_NOMINAL_ENTRIES);
     bSeed = DEFAULT_UPDATE_SEED;
+    bHasher = Hasher.MURMUR3;
     bP = (float) 1.0;
     bRF = ResizeFactor.X8;
     bFam = Family.QUICKSELECT;
     bMemReqSvr = new DefaultMemoryRequestServer();
+    bIncrementalRebuild = false;
+    bLayout = HashTableLayout.DOUBLE_HASHING;
     // Default values for concurrent sketch
     bNumPoolThreads = ConcurrentPropagationService.NUM_POOL_THREADS;
+    bPropagationScheduler = null;
     bLocalLgNomLongs = 4; //default is smallest legal QS sketch
     bPropagateOrderedCompact = true;
     bMaxConcurrencyError = 0;
@@ -195,6 +208,28 @@ public class UpdateSketchBuilder {
     return bSeed;
   }
 
+  /**
+   * Sets the hash function of the sketch. Sketches can only be merged with sketches that use the
+   * same hash function and seed.
+   * @param hasher the hash function. The default is {@link Hasher#MURMUR3}.
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setHasher(final Hasher hasher) {
+    if (hasher == null) {
+      throw new SketchesArgumentException("hasher must not be null.");
+    }
+    bHasher = hasher;
+    return this;
+  }
+
+  /**
+   * Returns the hash function
+   * @return the hash function
+   */
+  public Hasher getHasher() {
+    return bHasher;
+  }
+
   /**
    * Sets the upfront uniform sampling probability, <i>p</i>
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
@@ -270,8 +305,76 @@ public class UpdateSketchBuilder {
     return bMemReqSvr;
   }
 
+  /**
+   * Sets whether the rebuilds of a QuickSelect sketch on the Java heap are incremental.
+   *
+   * <p>Once the hash table of a QuickSelect sketch is full, an update normally selects the new
+   * theta and rebuilds the whole table, which takes time proportional to <i>k</i>. With
+   * incremental rebuilds, the full table is kept while a new one is built, and each of the
+   * following updates does a small, fixed amount of that work, so no update pauses for a
+   * rebuild. Reading the sketch, for example by <i>getEstimate()</i>, <i>compact()</i> or
+   * <i>toByteArray()</i>, finishes a rebuild in progress, so the results are identical to those
+   * of a sketch with eager rebuilds.</p>
+   *
+   * <p>The {@link UpdateReturnState} returned by an update during the first part of a rebuild,
+   * before the new theta is known, is provisional. A hash that an eager sketch would return as
+   * RejectedOverTheta may be returned as InsertedCountIncremented or RejectedDuplicate, and is
+   * then dropped when the new theta is known. The estimates and all other results are not
+   * affected.</p>
+   *
+   * <p>The sketch keeps a second table of the full size, and a smaller one, for the rebuilds.
+   * The resizes of a sketch that starts below its full size are not incremental, so a
+   * {@link ResizeFactor#X1} sketch, which starts at its full size, has no pauses at all.
+   * This option cannot be used for Direct sketches, whose Memory holds a single table.</p>
+   *
+   * @param incrementalRebuild true if the rebuilds are to be incremental
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setIncrementalRebuild(final boolean incrementalRebuild) {
+    bIncrementalRebuild = incrementalRebuild;
+    return this;
+  }
+
+  /**
+   * Returns true if the rebuilds of QuickSelect sketches on the Java heap are incremental
+   * @return true if the rebuilds of QuickSelect sketches on the Java heap are incremental
+   */
+  public boolean getIncrementalRebuild() {
+    return bIncrementalRebuild;
+  }
+
+  /**
+   * Sets the layout of the hash table of QuickSelect sketches, on the Java heap or Direct.
+   *
+   * <p>{@link HashTableLayout#BUCKETIZED} probes the table by buckets of 8 slots, which is one
+   * cache line, so that most updates of a large sketch touch a single cache line instead of one
+   * per probe. The estimates and the compact forms of the sketch are the same for both layouts.
+   * The layout is recorded in the serialized hash table form, and is kept by heapify and wrap.
+   * The Alpha and concurrent sketches always use {@link HashTableLayout#DOUBLE_HASHING}.</p>
+   *
+   * @param layout the layout of the hash table
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setHashTableLayout(final HashTableLayout layout) {
+    if (layout == null) {
+      throw new SketchesArgumentException("layout must not be null.");
+    }
+    bLayout = layout;
+    return this;
+  }
+
+  /**
+   * Returns the layout of the hash table of QuickSelect sketches
+   * @return the layout of the hash table of QuickSelect sketches
+   */
+  public HashTableLayout getHashTableLayout() {
+    return bLayout;
+  }
+
   /**
    * Sets the number of pool threads used for background propagation in the concurrent sketches.
+   * This applies to the default scheduler only, which is created with this number of threads by
+   * the first shared sketch built without a PropagationScheduler of its own.
    * @param numPoolThreads the given number of pool threads
    */
   public void setNumPoolThreads(final int numPoolThreads) {
@@ -286,6 +389,28 @@ public class UpdateSketchBuilder {
     return bNumPoolThreads;
   }
 
+  /**
+   * Sets the scheduler that runs the background propagation tasks of the concurrent shared
+   * sketches built by this builder. One scheduler may serve any number of shared sketches.
+   * If null, which is the default, the shared sketches use a default
+   * {@link ForkJoinPropagationScheduler} of {@link #getNumPoolThreads()} daemon threads.
+   *
+   * @param scheduler the given PropagationScheduler, or null for the default scheduler
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setPropagationScheduler(final PropagationScheduler scheduler) {
+    bPropagationScheduler = scheduler;
+    return this;
+  }
+
+  /**
+   * Returns the PropagationScheduler, or null if the default scheduler is used.
+   * @return the PropagationScheduler, or null if the default scheduler is used
+   */
+  public PropagationScheduler getPropagationScheduler() {
+    return bPropagationScheduler;
+  }
+
   /**
    * Sets the Propagate Ordered Compact flag to the given value. Used with concurrent sketches.
    *
@@ -360,7 +485,7 @@ public class UpdateSketchBuilder {
     switch (bFam) {
       case ALPHA: {
         if (dstMem == null) {
-          sketch = HeapAlphaSketch.newHeapInstance(bLgNomLongs, bSeed, bP, bRF);
+          sketch = HeapAlphaSketch.newHeapInstance(bLgNomLongs, bSeed, bHasher, bP, bRF);
         }
         else {
           throw new SketchesArgumentException("AlphaSketch cannot be made Direct to Memory.");
@@ -369,11 +494,16 @@ public class UpdateSketchBuilder {
       }
       case QUICKSELECT: {
         if (dstMem == null) {
-          sketch =  new HeapQuickSelectSketch(bLgNomLongs, bSeed, bP, bRF, false);
+          sketch = new HeapQuickSelectSketch(bLgNomLongs, bSeed, bHasher, bP, bRF, false,
+              bIncrementalRebuild, bLayout);
+        }
+        else if (bIncrementalRebuild) {
+          throw new SketchesArgumentException(
+              "Incremental rebuilds are only supported for sketches on the Java heap.");
         }
         else {
           sketch = new DirectQuickSelectSketch(
-              bLgNomLongs, bSeed, bP, bRF, bMemReqSvr, dstMem, false);
+              bLgNomLongs, bSeed, bHasher, bP, bRF, bMemReqSvr, dstMem, false, bLayout);
         }
         break;
       }
@@ -392,6 +522,7 @@ public class UpdateSketchBuilder {
    * <p>The parameters unique to the shared concurrent sketch are:
    * <ul>
    * <li>Number of Pool Threads (default is 3)</li>
+   * <li>Propagation Scheduler (default is null, which selects the default scheduler)</li>
    * <li>Maximum Concurrency Error</li>
    * </ul>
    *
@@ -414,6 +545,7 @@ public class UpdateSketchBuilder {
    * <p>The parameters unique to the shared concurrent sketch are:
    * <ul>
    * <li>Number of Pool Threads (default is 3)</li>
+   * <li>Propagation Scheduler (default is null, which selects the default scheduler)</li>
    * <li>Maximum Concurrency Error</li>
    * </ul>
    *
@@ -428,11 +560,13 @@ public class UpdateSketchBuilder {
    * and the given destination WritableMemory.
    */
   public UpdateSketch buildShared(final WritableMemory dstMem) {
-    ConcurrentPropagationService.NUM_POOL_THREADS = bNumPoolThreads;
+    final PropagationScheduler scheduler = getSchedulerForShared();
     if (dstMem == null) {
-      return new ConcurrentHeapQuickSelectSketch(bLgNomLongs, bSeed, bMaxConcurrencyError);
+      return new ConcurrentHeapQuickSelectSketch(bLgNomLongs, bSeed, bHasher,
+          bMaxConcurrencyError, scheduler);
     } else {
-      return new ConcurrentDirectQuickSelectSketch(bLgNomLongs, bSeed, bMaxConcurrencyError, dstMem);
+      return new ConcurrentDirectQuickSelectSketch(bLgNomLongs, bSeed, bHasher,
+          bMaxConcurrencyError, scheduler, dstMem);
     }
   }
 
@@ -445,6 +579,7 @@ public class UpdateSketchBuilder {
    * <p>The parameters unique to the shared concurrent sketch are:
    * <ul>
    * <li>Number of Pool Threads (default is 3)</li>
+   * <li>Propagation Scheduler (default is null, which selects the default scheduler)</li>
    * <li>Maximum Concurrency Error</li>
    * </ul>
    *
@@ -461,14 +596,22 @@ public class UpdateSketchBuilder {
    * and the given destination WritableMemory.
    */
   public UpdateSketch buildSharedFromSketch(final UpdateSketch sketch, final WritableMemory dstMem) {
-    ConcurrentPropagationService.NUM_POOL_THREADS = bNumPoolThreads;
+    final PropagationScheduler scheduler = getSchedulerForShared();
     if (dstMem == null) {
-      return new ConcurrentHeapQuickSelectSketch(sketch, bSeed, bMaxConcurrencyError);
+      return new ConcurrentHeapQuickSelectSketch(sketch, bSeed, bHasher, bMaxConcurrencyError,
+          scheduler);
     } else {
-      return new ConcurrentDirectQuickSelectSketch(sketch, bSeed, bMaxConcurrencyError, dstMem);
+      return new ConcurrentDirectQuickSelectSketch(sketch, bSeed, bHasher, bMaxConcurrencyError,
+          scheduler, dstMem);
     }
   }
 
+  private PropagationScheduler getSchedulerForShared() {
+    if (bPropagationScheduler != null) { return bPropagationScheduler; }
+    ConcurrentPropagationService.NUM_POOL_THREADS = bNumPoolThreads;
+    return ConcurrentPropagationService.getDefaultScheduler();
+  }
+
   /**
    * Returns a local, on-heap, concurrent UpdateSketch to be used as a per-thread local buffer
    * along with the given concurrent shared UpdateSketch and the current configuration of this
@@ -487,7 +630,7 @@ public class UpdateSketchBuilder {
     if ((shared == null) || !(shared instanceof ConcurrentSharedThetaSketch)) {
       throw new SketchesStateException("The concurrent shared sketch must be built first.");
     }
-    return new ConcurrentHeapThetaBuffer(bLocalLgNomLongs, bSeed,
+    return new ConcurrentHeapThetaBuffer(bLocalLgNomLongs, bSeed, shared.getHasher(),
         (ConcurrentSharedThetaSketch) shared, bPropagateOrderedCompact, bMaxNumLocalThreads);
   }
 
@@ -500,13 +643,19 @@ public class UpdateSketchBuilder {
     sb.append("LgLocalK:").append(TAB).append(bLocalLgNomLongs).append(LS);
     sb.append("LocalK:").append(TAB).append(1 << bLocalLgNomLongs).append(LS);
     sb.append("Seed:").append(TAB).append(bSeed).append(LS);
+    sb.append("Hasher:").append(TAB).append(bHasher.getName()).append(LS);
     sb.append("p:").append(TAB).append(bP).append(LS);
     sb.append("ResizeFactor:").append(TAB).append(bRF).append(LS);
     sb.append("Family:").append(TAB).append(bFam).append(LS);
     final String mrsStr = bMemReqSvr.getClass().getSimpleName();
     sb.append("MemoryRequestServer:").append(TAB).append(mrsStr).append(LS);
+    sb.append("IncrementalRebuild:").append(TAB).append(bIncrementalRebuild).append(LS);
+    sb.append("HashTableLayout:").append(TAB).append(bLayout).append(LS);
     sb.append("Propagate Ordered Compact").append(TAB).append(bPropagateOrderedCompact).append(LS);
     sb.append("NumPoolThreads").append(TAB).append(bNumPoolThreads).append(LS);
+    final String schedStr = (bPropagationScheduler == null) ? "default"
+        : bPropagationScheduler.getClass().getSimpleName();
+    sb.append("PropagationScheduler").append(TAB).append(schedStr).append(LS);
     sb.append("MaxConcurrencyError").append(TAB).append(bMaxConcurrencyError).append(LS);
     sb.append("MaxNumLocalThreads").append(TAB).append(bMaxNumLocalThreads).append(LS);
     return sb.toString();
@@ -20,8 +20,9 @@
 package org.apache.datasketches.tuple;
 
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+import static org.apache.datasketches.hash.MurmurHash3v2.hash;
 
-import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 
 /**
@@ -39,6 +40,7 @@ import org.apache.datasketches.memory.Memory;
  * @param <S> Type of the UpdatableSummary&lt;U&gt;
  */
 public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSelectSketch<S> {
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
 
   /**
    * This is to create a new instance of an UpdatableQuickSelectSketch.
@@ -79,7 +81,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final long key, final U value) {
-    update(new long[] {key}, value);
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   /**
@@ -90,7 +92,8 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final double key, final U value) {
-    update(Util.doubleToLongArray(key), value);
+    //canonicalizes -0.0 and NaN
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   /**
@@ -101,7 +104,21 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final String key, final U value) {
-    update(Util.stringToByteArray(key), value);
+    update((CharSequence) key, value);
+  }
+
+  /**
+   * Updates this sketch with a CharSequence key and U value.
+   * The key is hashed as its UTF-8 encoding without allocating a byte array, so the result is
+   * the same as for a String key with the same characters.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given CharSequence key
+   * @param value The given U value
+   */
+  public void update(final CharSequence key, final U value) {
+    if ((key == null) || (key.length() == 0)) { return; }
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   /**
@@ -113,7 +130,24 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final byte[] key, final U value) {
     if ((key == null) || (key.length == 0)) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a key given by a region of a byte array and U value.
+   * The region is hashed in place and produces the same hash as a byte[] key holding just the
+   * region, so keys can be read out of a shared I/O buffer without copying them.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The byte array holding the key
+   * @param offset the offset of the key within the array
+   * @param length the length of the key in bytes
+   * @param value The given U value
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public void update(final byte[] key, final int offset, final int length, final U value) {
+    if ((key == null) || (length == 0)) { return; }
+    insertOrIgnore(hash(key, offset, length, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   /**
@@ -125,7 +159,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final int[] key, final U value) {
     if ((key == null) || (key.length == 0)) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   /**
@@ -137,7 +171,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final long[] key, final U value) {
     if ((key == null) || (key.length == 0)) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hash(key, DEFAULT_UPDATE_SEED, hashOut)[0] >>> 1, value);
   }
 
   private void insertOrIgnore(final long key, final U value) {
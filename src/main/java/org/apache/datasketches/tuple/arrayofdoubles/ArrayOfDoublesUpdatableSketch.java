@@ -20,9 +20,10 @@
 package org.apache.datasketches.tuple.arrayofdoubles;
 
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+import static org.apache.datasketches.hash.MurmurHash3v2.hash;
 
 import org.apache.datasketches.ResizeFactor;
-import org.apache.datasketches.hash.MurmurHash3;
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 import org.apache.datasketches.tuple.Util;
@@ -33,6 +34,7 @@ import org.apache.datasketches.tuple.Util;
 public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch {
 
   final long seed_;
+  private final long[] hashOut = new long[2]; //reused by every update, so hashing never allocates
 
   ArrayOfDoublesUpdatableSketch(final int numValues, final long seed) {
     super(numValues);
@@ -85,7 +87,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final long key, final double[] values) {
-    update(new long[] {key}, values);
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -96,7 +98,8 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final double key, final double[] values) {
-    update(Util.doubleToLongArray(key), values);
+    //canonicalizes -0.0 and NaN
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -107,7 +110,21 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    * @param values The given values
    */
   public void update(final String key, final double[] values) {
-    update(Util.stringToByteArray(key), values);
+    update((CharSequence) key, values);
+  }
+
+  /**
+   * Updates this sketch with a CharSequence key and double values.
+   * The key is hashed as its UTF-8 encoding without allocating a byte array, so the result is
+   * the same as for a String key with the same characters.
+   * The values will be stored or added to the ones associated with the key
+   *
+   * @param key The given CharSequence key
+   * @param values The given values
+   */
+  public void update(final CharSequence key, final double[] values) {
+    if ((key == null) || (key.length() == 0)) { return; }
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -119,7 +136,24 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final byte[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
+  }
+
+  /**
+   * Updates this sketch with a key given by a region of a byte array and double values.
+   * The region is hashed in place and produces the same hash as a byte[] key holding just the
+   * region, so keys can be read out of a shared I/O buffer without copying them.
+   * The values will be stored or added to the ones associated with the key
+   *
+   * @param key The byte array holding the key
+   * @param offset the offset of the key within the array
+   * @param length the length of the key in bytes
+   * @param values The given values
+   * @throws SketchesArgumentException if the region does not lie within the array.
+   */
+  public void update(final byte[] key, final int offset, final int length, final double[] values) {
+    if ((key == null) || (length == 0)) { return; }
+    insertOrIgnore(hash(key, offset, length, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -131,7 +165,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final int[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -143,7 +177,7 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   public void update(final long[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hash(key, seed_, hashOut)[0] >>> 1, values);
   }
 
   /**
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches;
+
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the heap allocations of the current thread, for tests that assert that a code path
+ * does not allocate. The measurement requires the HotSpot extension of ThreadMXBean. On other
+ * JVMs the assertions pass trivially.
+ */
+@SuppressWarnings("javadoc")
+public final class AllocationTestUtil {
+
+  private AllocationTestUtil() {}
+
+  /**
+   * Runs the given task and returns the bytes allocated by the current thread while it ran,
+   * or -1 if the JVM cannot measure this.
+   * @param task the given task
+   * @return the bytes allocated by the task, or -1
+   */
+  public static long allocatedBytes(final Runnable task) {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      task.run();
+      return -1;
+    }
+    final com.sun.management.ThreadMXBean hsBean = (com.sun.management.ThreadMXBean) bean;
+    if (!hsBean.isThreadAllocatedMemorySupported() || !hsBean.isThreadAllocatedMemoryEnabled()) {
+      task.run();
+      return -1;
+    }
+    final long threadId = Thread.currentThread().getId();
+    final long before = hsBean.getThreadAllocatedBytes(threadId);
+    task.run();
+    return hsBean.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  /**
+   * Asserts that the given task, which performs the given number of operations, allocates less
+   * than one byte per operation. The task is run once first, so that class loading and lazy
+   * initialization are not counted. A path that allocates even one small object per operation
+   * fails this, while the constant overhead of the measurement itself does not.
+   * @param numOps the number of operations performed by the task
+   * @param task the given task
+   */
+  public static void assertAllocationFree(final int numOps, final Runnable task) {
+    task.run();
+    final long bytes = allocatedBytes(task);
+    assertTrue(bytes < numOps, "Allocated " + bytes + " bytes in " + numOps + " operations");
+  }
+
+}
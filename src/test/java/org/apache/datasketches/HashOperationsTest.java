@@ -19,9 +19,14 @@
 
 package org.apache.datasketches;
 
+import static org.apache.datasketches.HashOperations.bucketArrayInsert;
+import static org.apache.datasketches.HashOperations.bucketInsertOnly;
+import static org.apache.datasketches.HashOperations.bucketSearch;
+import static org.apache.datasketches.HashOperations.bucketSearchOrInsert;
 import static org.apache.datasketches.HashOperations.checkHashCorruption;
 import static org.apache.datasketches.HashOperations.checkThetaCorruption;
 import static org.apache.datasketches.HashOperations.continueCondition;
+import static org.apache.datasketches.HashOperations.fastBucketSearchOrInsert;
 import static org.apache.datasketches.HashOperations.fastHashInsertOnly;
 import static org.apache.datasketches.HashOperations.fastHashSearchOrInsert;
 import static org.apache.datasketches.HashOperations.hashArrayInsert;
@@ -199,6 +204,86 @@ public class HashOperationsTest {
     }
   }
 
+  @Test
+  public void checkBucketOperations() {
+    final int lgArrLongs = 10;
+    final long[] table = new long[1 << lgArrLongs];
+    final long[] direct = new long[1 << lgArrLongs];
+    final WritableMemory wmem = WritableMemory.wrap(direct);
+    final long[] hashes = new long[(1 << lgArrLongs) - 1]; //all but one slot
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = hash(new long[] { i }, 0)[0] >>> 1;
+      final int index = bucketSearchOrInsert(table, lgArrLongs, hashes[i]);
+      assertTrue(index < 0);
+      assertEquals(table[~index], hashes[i]);
+      assertEquals(fastBucketSearchOrInsert(wmem, lgArrLongs, hashes[i], 0), index);
+    }
+    assertEquals(direct, table);
+    for (int i = 0; i < hashes.length; i++) {
+      final int index = bucketSearch(table, lgArrLongs, hashes[i]);
+      assertEquals(table[index], hashes[i]);
+      assertEquals(bucketSearchOrInsert(table, lgArrLongs, hashes[i]), index);
+      assertEquals(fastBucketSearchOrInsert(wmem, lgArrLongs, hashes[i], 0), index);
+    }
+    assertEquals(bucketSearch(table, lgArrLongs, 1L), -1);
+
+    //the same hashes inserted again, into a table by insert only or array insert
+    final long[] table2 = new long[1 << lgArrLongs];
+    for (int i = 0; i < hashes.length; i++) { bucketInsertOnly(table2, lgArrLongs, hashes[i]); }
+    assertEquals(table2, table);
+    final long[] table3 = new long[1 << lgArrLongs];
+    assertEquals(bucketArrayInsert(table, table3, lgArrLongs, Long.MAX_VALUE), hashes.length);
+    for (int i = 0; i < hashes.length; i++) {
+      assertTrue(bucketSearch(table3, lgArrLongs, hashes[i]) >= 0);
+    }
+  }
+
+  @Test
+  public void checkBucketProbesStayInBucket() {
+    //hashes of the same first bucket fill it in order before the probe moves on
+    final long[] table = new long[32];
+    for (int i = 1; i <= 8; i++) {
+      assertEquals(bucketInsertOnly(table, 5, i << 5), i - 1); //hash & 31 == 0
+    }
+  }
+
+  @Test
+  public void checkFullBucketTableCatchesInfiniteLoop() {
+    final long[] table = new long[32];
+    for (int i = 1; i <= 32; ++i) {
+      bucketInsertOnly(table, 5, i);
+    }
+    final WritableMemory wmem = WritableMemory.wrap(table.clone());
+
+    // table full; search returns not found, others throw exception
+    assertEquals(bucketSearch(table, 5, 33), -1);
+
+    try {
+      bucketInsertOnly(table, 5, 33);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+
+    try {
+      bucketSearchOrInsert(table, 5, 33);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+
+    try {
+      fastBucketSearchOrInsert(wmem, 5, 33, 0);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBucketSearchZero() {
+    bucketSearch(new long[32], 5, 0);
+  }
 
   @Test
   public void printlnTest() {
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.cpc;
+
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+import static org.apache.datasketches.cpc.CpcUtil.bitMatrixOfSketch;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ConcurrentCpcSketchTest {
+
+  @Test
+  public void checkConcurrentBuffersMatchSequentialSketch() throws Exception {
+    final int lgK = 11;
+    final int numThreads = 4;
+    final int perThread = 50_000;
+    final ExecutorService propagation = Executors.newFixedThreadPool(2);
+    final ConcurrentCpcSketch shared = new ConcurrentCpcSketch(lgK, DEFAULT_UPDATE_SEED, propagation);
+    final Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int base = t * perThread;
+      final ConcurrentCpcBuffer buffer = shared.newLocalBuffer(64);
+      writers[t] = new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          buffer.update(base + i);
+        }
+        buffer.flush();
+      });
+      writers[t].start();
+    }
+    for (final Thread writer : writers) { writer.join(); }
+    propagation.shutdown();
+    assertTrue(propagation.awaitTermination(10, TimeUnit.SECONDS));
+
+    final CpcSketch sequential = new CpcSketch(lgK);
+    for (int i = 0; i < (numThreads * perThread); i++) { sequential.update(i); }
+    final CpcSketch result = shared.getResult();
+    assertTrue(result.validate());
+    assertEquals(result.numCoupons, sequential.numCoupons);
+    assertEquals(bitMatrixOfSketch(result), bitMatrixOfSketch(sequential));
+    assertFalse(result.mergeFlag); //still a HIP sketch
+    assertEquals(shared.getEstimate(), result.getEstimate(), 0.0);
+    final int n = numThreads * perThread;
+    assertTrue(shared.getLowerBound(3) < n);
+    assertTrue(shared.getUpperBound(3) > n);
+  }
+
+  @Test
+  public void checkSingleBufferMatchesSequentialSketchExactly() {
+    final int lgK = 10;
+    final ConcurrentCpcSketch shared = new ConcurrentCpcSketch(lgK, DEFAULT_UPDATE_SEED, Runnable::run);
+    final ConcurrentCpcBuffer buffer = shared.newLocalBuffer(7);
+    final CpcSketch sequential = new CpcSketch(lgK);
+    for (int i = 0; i < 100_000; i++) {
+      buffer.update(i);
+      sequential.update(i);
+    }
+    buffer.flush();
+    final CpcSketch result = shared.getResult();
+    assertEquals(result.getEstimate(), sequential.getEstimate(), 0.0);
+    assertEquals(result.toByteArray(), sequential.toByteArray());
+    assertEquals(shared.toByteArray(), sequential.toByteArray());
+  }
+
+  @Test
+  public void checkUpdateMethods() {
+    final ConcurrentCpcSketch shared = new ConcurrentCpcSketch(10, 0, Runnable::run);
+    final ConcurrentCpcBuffer buffer = shared.newLocalBuffer();
+    final CpcSketch sequential = new CpcSketch(10, 0);
+    buffer.update(1L);
+    buffer.update(2.0);
+    buffer.update("3");
+    buffer.update(new byte[] { 4 });
+    buffer.update(new char[] { 5 });
+    buffer.update(new int[] { 6 });
+    buffer.update(new long[] { 7 });
+    buffer.update(-0.0);
+    buffer.update("");
+    buffer.update((String) null);
+    buffer.update(new byte[0]);
+    buffer.update(new char[0]);
+    buffer.update(new int[0]);
+    buffer.update(new long[0]);
+    sequential.update(1L);
+    sequential.update(2.0);
+    sequential.update("3");
+    sequential.update(new byte[] { 4 });
+    sequential.update(new char[] { 5 });
+    sequential.update(new int[] { 6 });
+    sequential.update(new long[] { 7 });
+    sequential.update(0.0);
+    assertTrue(shared.isEmpty()); //still buffered
+    assertEquals(shared.getEstimate(), 0.0);
+    buffer.flush();
+    assertFalse(shared.isEmpty());
+    assertEquals(shared.getEstimate(), sequential.getEstimate(), 0.0);
+    assertEquals(shared.toByteArray(), sequential.toByteArray());
+    assertTrue(buffer.getSharedSketch() == shared);
+    assertEquals(shared.getLgK(), 10);
+    assertEquals(shared.toString(), sequential.toString());
+  }
+
+  @Test
+  public void checkResets() {
+    final ConcurrentCpcSketch shared = new ConcurrentCpcSketch(8);
+    final ConcurrentCpcBuffer buffer = shared.newLocalBuffer(1_000);
+    for (int i = 0; i < 100; i++) { buffer.update(i); }
+    buffer.reset();
+    buffer.flush();
+    assertTrue(shared.isEmpty());
+    for (int i = 0; i < 10_000; i++) { buffer.update(i); }
+    buffer.flush();
+    assertEquals(shared.getEstimate(), 10_000, 10_000 * 0.2);
+    shared.reset();
+    assertTrue(shared.isEmpty());
+    assertEquals(shared.getEstimate(), 0.0);
+    assertEquals(shared.getFiCol(), 0);
+  }
+
+  @Test
+  public void checkResultIsCopy() {
+    final ConcurrentCpcSketch shared = new ConcurrentCpcSketch(10, 0, Runnable::run);
+    final ConcurrentCpcBuffer buffer = shared.newLocalBuffer(1);
+    buffer.update(1);
+    final CpcSketch result = shared.getResult();
+    buffer.update(2);
+    assertEquals(result.getEstimate(), 1.0, 0.0);
+    assertEquals(shared.getEstimate(), 2.0, 0.01);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadMaxStaleness() {
+    new ConcurrentCpcSketch().newLocalBuffer(0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullExecutor() {
+    new ConcurrentCpcSketch(10, DEFAULT_UPDATE_SEED, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadLgK() {
+    new ConcurrentCpcSketch(3);
+  }
+
+}
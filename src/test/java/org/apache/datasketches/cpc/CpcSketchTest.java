@@ -19,6 +19,8 @@
 
 package org.apache.datasketches.cpc;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.datasketches.AllocationTestUtil.assertAllocationFree;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
 import static org.apache.datasketches.cpc.TestUtil.specialEquals;
 import static org.testng.Assert.assertEquals;
@@ -29,6 +31,7 @@ import java.io.PrintStream;
 
 import org.apache.datasketches.Family;
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.testng.annotations.Test;
 
@@ -235,6 +238,86 @@ public class CpcSketchTest {
     //org.apache.datasketches.tuple.TestUtil.writeBytesToFile(sketch.toByteArray(), "cpc-negative-one.sk");
   }
 
+  @Test
+  public void checkUpdatesDoNotAllocate() {
+    final CpcSketch sk = new CpcSketch(11);
+    final byte[] barr = { 1, 2, 3 };
+    final char[] carr = { 'a', 'b' };
+    final int[] iarr = { 4, 5 };
+    final long[] larr = { 6L, 7L };
+    final int n = 1000;
+    assertAllocationFree(6 * n, () -> { //the first run fills the sketch
+      for (int i = 0; i < n; i++) {
+        sk.update(i);
+        sk.update(i + 0.5);
+        sk.update(barr);
+        sk.update(carr);
+        sk.update(iarr);
+        sk.update(larr);
+      }
+    });
+    assertEquals(sk.getEstimate(), (2 * n) + 4, ((2 * n) + 4) * 0.05);
+  }
+
+  @Test
+  public void checkCharSequenceAndByteSliceUpdates() {
+    final int n = 1000;
+    final String[] keys = new String[n];
+    final StringBuilder[] builders = new StringBuilder[n];
+    final byte[] buf = new byte[n * 8];
+    for (int i = 0; i < n; i++) {
+      keys[i] = "k\u00e9y" + i;
+      builders[i] = new StringBuilder(keys[i]);
+      final byte[] bytes = keys[i].getBytes(UTF_8);
+      System.arraycopy(bytes, 0, buf, i * 8, bytes.length);
+    }
+    final CpcSketch strings = new CpcSketch(11);
+    final CpcSketch seqs = new CpcSketch(11);
+    final CpcSketch slices = new CpcSketch(11);
+    for (int i = 0; i < n; i++) {
+      strings.update(keys[i]);
+      seqs.update(builders[i]);
+      slices.update(buf, i * 8, keys[i].getBytes(UTF_8).length);
+    }
+    assertEquals(seqs.toByteArray(), strings.toByteArray());
+    assertEquals(slices.toByteArray(), strings.toByteArray());
+    assertAllocationFree(2 * n, () -> {
+      for (int i = 0; i < n; i++) {
+        strings.update(keys[i]);
+        seqs.update(builders[i]);
+      }
+    });
+  }
+
+  @Test
+  public void checkXxHash64() {
+    final int n = 10_000;
+    final CpcSketch xx = new CpcSketch(11, DEFAULT_UPDATE_SEED, Hasher.XXHASH64);
+    final CpcSketch murmur = new CpcSketch(11);
+    for (int i = 0; i < n; i++) {
+      xx.update(i);
+      murmur.update(i);
+    }
+    assertEquals(xx.getHasher(), Hasher.XXHASH64);
+    assertEquals(xx.getEstimate(), n, n * 0.05);
+    final CpcSketch heapified = CpcSketch.heapify(xx.toByteArray());
+    assertEquals(heapified.getHasher(), Hasher.XXHASH64);
+    assertEquals(heapified.getEstimate(), xx.getEstimate());
+
+    final CpcUnion xxUnion = new CpcUnion(11, DEFAULT_UPDATE_SEED, Hasher.XXHASH64);
+    xxUnion.update(xx);
+    assertEquals(xxUnion.getResult().getHasher(), Hasher.XXHASH64);
+    assertEquals(xxUnion.getResult().getEstimate(), xx.getEstimate(), n * 0.05);
+    try {
+      xxUnion.update(murmur);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+    try {
+      new CpcUnion(11).update(xx);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+  }
+
   /**
    * @param s the string to print
    */
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.frequencies;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.frequencies.ItemsSketch.Row;
+
+@SuppressWarnings("javadoc")
+public class ConcurrentItemsSketchTest {
+
+  @Test
+  public void checkConcurrentUpdates() throws Exception {
+    final int maxMapSize = 64;
+    final ConcurrentItemsSketch<String> sketch = new ConcurrentItemsSketch<>(maxMapSize, 3, 500);
+    final int numThreads = 4;
+    final int perThread = 20_000;
+    final Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final long base = (t + 1) * 1_000_000L;
+      writers[t] = new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          sketch.update(Integer.toString(i % 5)); //heavy hitters 0..4, each 1/10th of the stream
+          sketch.update(Long.toString(base + i)); //unique noise
+        }
+      });
+      writers[t].start();
+    }
+    for (final Thread writer : writers) { writer.join(); }
+
+    final long total = 2L * numThreads * perThread;
+    assertTrue(sketch.getStreamLength() <= total);
+    assertTrue(sketch.getStreamLength() >= (total - sketch.getMaxUnmergedWeight()));
+    final ItemsSketch<String> result = sketch.getResult();
+    assertEquals(result.getStreamLength(), total);
+    assertEquals(sketch.getStreamLength(), total);
+    assertTrue(result.getMaximumError() <= ItemsSketch.getAprioriError(maxMapSize, total));
+
+    final long trueFreq = total / 10;
+    final Row<String>[] rows = sketch.getFrequentItems(ErrorType.NO_FALSE_POSITIVES);
+    assertEquals(rows.length, 5);
+    for (final Row<String> row : rows) {
+      assertEquals(row.getItem().length(), 1);
+      assertTrue(row.getLowerBound() <= trueFreq);
+      assertTrue(row.getUpperBound() >= trueFreq);
+    }
+    for (int i = 0; i < 5; i++) {
+      final String item = Integer.toString(i);
+      assertTrue(sketch.getLowerBound(item) <= trueFreq);
+      assertTrue(sketch.getUpperBound(item) >= trueFreq);
+      assertTrue(sketch.getEstimate(item) >= sketch.getLowerBound(item));
+    }
+    assertEquals(sketch.getFrequentItems(trueFreq / 2, ErrorType.NO_FALSE_NEGATIVES).length, 5);
+  }
+
+  @Test
+  public void checkStaleness() {
+    final ConcurrentItemsSketch<String> sketch = new ConcurrentItemsSketch<>(16, 1, 100);
+    assertEquals(sketch.getNumStripes(), 1);
+    assertEquals(sketch.getMergeThreshold(), 100);
+    assertEquals(sketch.getMaxUnmergedWeight(), 99);
+    for (int i = 0; i < 99; i++) { sketch.update("a"); }
+    assertTrue(sketch.isEmpty()); //all in the stripe
+    assertEquals(sketch.getEstimate("a"), 0);
+    assertEquals(sketch.getLowerBound("a"), 0);
+    assertTrue(sketch.getUpperBound("a") >= 99);
+    assertEquals(sketch.getFrequentItems(ErrorType.NO_FALSE_POSITIVES).length, 0);
+    sketch.update("a");
+    assertFalse(sketch.isEmpty()); //merged at the threshold
+    assertEquals(sketch.getEstimate("a"), 100);
+    assertEquals(sketch.getMaximumError(), 0);
+    sketch.update("b", 250); //a single update may exceed the threshold
+    assertEquals(sketch.getEstimate("b"), 250);
+    sketch.update("c");
+    sketch.update(null);
+    sketch.update("c", 0);
+    assertEquals(sketch.getEstimate("c"), 0);
+    sketch.flush();
+    assertEquals(sketch.getEstimate("c"), 1);
+    assertEquals(sketch.getStreamLength(), 351);
+    assertTrue(sketch.toString().contains("FrequentItemsSketch"));
+  }
+
+  @Test
+  public void checkResetAndResult() {
+    final ConcurrentItemsSketch<String> sketch = new ConcurrentItemsSketch<>(32);
+    assertEquals(sketch.getNumStripes(), Runtime.getRuntime().availableProcessors());
+    assertEquals(sketch.getMergeThreshold(), 16 * 32);
+    for (int i = 0; i < 1_000; i++) { sketch.update(Integer.toString(i % 10)); }
+    final ItemsSketch<String> result = sketch.getResult();
+    assertEquals(result.getStreamLength(), 1_000);
+    assertEquals(result.getEstimate("3"), 100);
+    sketch.reset();
+    assertTrue(sketch.isEmpty());
+    assertTrue(sketch.getResult().isEmpty());
+    assertEquals(result.getEstimate("3"), 100); //the result is a copy
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNegativeCount() {
+    new ConcurrentItemsSketch<>(16).update("a", -1);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadNumStripes() {
+    new ConcurrentItemsSketch<>(16, 0, 10);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadMergeThreshold() {
+    new ConcurrentItemsSketch<>(16, 2, 0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadMapSize() {
+    new ConcurrentItemsSketch<>(15);
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hash;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.Util;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class HasherTest {
+
+  @Test
+  public void checkIds() {
+    for (final Hasher hasher : Hasher.values()) {
+      assertEquals(Hasher.idToHasher(hasher.getId()), hasher);
+    }
+    assertEquals(Hasher.MURMUR3.getId(), 0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadId() {
+    Hasher.idToHasher(15);
+  }
+
+  @Test
+  public void checkMurmur3MatchesMurmurHash3v2() {
+    final long seed = DEFAULT_UPDATE_SEED;
+    final long[] out = new long[2];
+    assertEquals(Hasher.MURMUR3.hash(123L, seed, out), MurmurHash3v2.hash(123L, seed, new long[2]));
+    assertEquals(Hasher.MURMUR3.hash("abc", seed, out), MurmurHash3v2.hash("abc".getBytes(UTF_8),
+        seed));
+    final int[] ints = { 1, 2, 3 };
+    assertEquals(Hasher.MURMUR3.hash(ints, seed, out), MurmurHash3v2.hash(ints, seed));
+    assertEquals(Hasher.MURMUR3.computeSeedHash(seed), Util.computeSeedHash(seed));
+  }
+
+  @Test
+  public void checkXxHash64() {
+    final long seed = DEFAULT_UPDATE_SEED;
+    final long[] out = new long[2];
+    assertEquals(Hasher.XXHASH64.hash(123L, seed, out)[0], XxHash.hash(123L, seed));
+    assertEquals(Hasher.XXHASH64.hash("abc", seed, out)[0], XxHash.hash("abc", seed));
+    final byte[] bytes = { 1, 2, 3, 4, 5 };
+    assertEquals(Hasher.XXHASH64.hash(bytes, seed, out)[0], XxHash.hash(bytes, seed));
+    final char[] chars = { 'a', 'b' };
+    assertEquals(Hasher.XXHASH64.hash(chars, seed, out)[0], XxHash.hash(chars, seed));
+    final long[] longs = { 7L, 8L };
+    assertEquals(Hasher.XXHASH64.hash(longs, seed, out)[0], XxHash.hash(longs, seed));
+    assertNotEquals(out[1], out[0]);
+  }
+
+  @Test
+  public void checkCharSequenceAndSlice() {
+    final String s = "caf\u00e9 \ud83d\ude00";
+    final byte[] buf = ("|" + s + "|").getBytes(UTF_8);
+    final int len = buf.length - 2;
+    for (final Hasher hasher : Hasher.values()) {
+      final long[] expected = hasher.hash(s.getBytes(UTF_8), 3L, new long[2]);
+      assertEquals(hasher.hash(s, 3L, new long[2]), expected);
+      assertEquals(hasher.hash(new StringBuilder(s), 3L, new long[2]), expected);
+      assertEquals(hasher.hash(buf, 1, len, 3L, new long[2]), expected);
+    }
+  }
+
+  @Test
+  public void checkDoubleCanonicalization() {
+    for (final Hasher hasher : Hasher.values()) {
+      final long h0 = hasher.hash(0.0, 1L, new long[2])[0];
+      assertEquals(hasher.hash(-0.0, 1L, new long[2])[0], h0);
+      final long hNaN = hasher.hash(Double.NaN, 1L, new long[2])[0];
+      final double nan2 = Double.longBitsToDouble(0x7FF8000000000001L);
+      assertEquals(hasher.hash(nan2, 1L, new long[2])[0], hNaN);
+    }
+  }
+
+  @Test
+  public void checkSeedHashes() {
+    final long seed = DEFAULT_UPDATE_SEED;
+    final short murmur = Hasher.MURMUR3.computeSeedHash(seed);
+    final short xx = Hasher.XXHASH64.computeSeedHash(seed);
+    assertNotEquals(xx, murmur);
+    assertEquals(Hasher.fromSeedHash(murmur, seed), Hasher.MURMUR3);
+    assertEquals(Hasher.fromSeedHash(xx, seed), Hasher.XXHASH64);
+    assertTrue(Hasher.isSeedHash(xx, seed));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkUnknownSeedHash() {
+    final long seed = DEFAULT_UPDATE_SEED;
+    short bad = 1;
+    while ((bad == Hasher.MURMUR3.computeSeedHash(seed))
+        || (bad == Hasher.XXHASH64.computeSeedHash(seed))) {
+      bad++;
+    }
+    assertFalse(Hasher.isSeedHash(bad, seed));
+    Hasher.fromSeedHash(bad, seed);
+  }
+
+}
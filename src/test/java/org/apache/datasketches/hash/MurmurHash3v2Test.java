@@ -19,11 +19,17 @@
 
 package org.apache.datasketches.hash;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
+import static org.apache.datasketches.AllocationTestUtil.assertAllocationFree;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.testng.annotations.Test;
 
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 
@@ -198,6 +204,106 @@ public class MurmurHash3v2Test {
     assertEquals(MurmurHash3v2.hash(larr, seed)[0], hash0); //long[] empty
   }
 
+  @Test
+  public void checkArraysWithHashOut() {
+    long seed = 123;
+    long[] hashOut = new long[2];
+    for (int n = 1; n <= 40; n++) {
+      byte[] barr = new byte[n];
+      char[] carr = new char[n];
+      int[] iarr = new int[n];
+      long[] larr = new long[n];
+      for (int i = 0; i < n; i++) {
+        barr[i] = (byte) (i * 37);
+        carr[i] = (char) (i * 4099);
+        iarr[i] = i * 0x9E3779B9;
+        larr[i] = i * 0x9E3779B97F4A7C15L;
+      }
+      assertEquals(MurmurHash3v2.hash(barr, seed, hashOut), MurmurHash3.hash(barr, seed));
+      assertEquals(MurmurHash3v2.hash(carr, seed, hashOut), MurmurHash3.hash(carr, seed));
+      assertEquals(MurmurHash3v2.hash(iarr, seed, hashOut), MurmurHash3.hash(iarr, seed));
+      assertEquals(MurmurHash3v2.hash(larr, seed, hashOut), MurmurHash3.hash(larr, seed));
+    }
+    long hash0 = MurmurHash3v2.hash((Memory) null, 0, 0, seed, hashOut)[0];
+    assertEquals(MurmurHash3v2.hash(new byte[0], seed, hashOut)[0], hash0);
+    assertEquals(MurmurHash3v2.hash((long[]) null, seed, hashOut)[0], hash0);
+  }
+
+  @Test
+  public void checkHashOutDoesNotAllocate() {
+    final long seed = 123;
+    final long[] hashOut = new long[2];
+    final byte[] barr = new byte[23];
+    final char[] carr = new char[11];
+    final int[] iarr = new int[5];
+    final long[] larr = new long[3];
+    final int n = 10_000;
+    assertAllocationFree(6 * n, () -> {
+      for (int i = 0; i < n; i++) {
+        MurmurHash3v2.hash((long) i, seed, hashOut);
+        MurmurHash3v2.hash((double) i, seed, hashOut);
+        MurmurHash3v2.hash(barr, seed, hashOut);
+        MurmurHash3v2.hash(carr, seed, hashOut);
+        MurmurHash3v2.hash(iarr, seed, hashOut);
+        MurmurHash3v2.hash(larr, seed, hashOut);
+      }
+    });
+  }
+
+  @Test
+  public void checkCharSequenceMatchesUtf8Bytes() {
+    final Random rand = new Random(1);
+    final long[] hashOut = new long[2];
+    for (int len = 1; len <= 100; len++) {
+      for (int trial = 0; trial < 10; trial++) {
+        final String s = randomString(rand, len);
+        final long seed = rand.nextLong();
+        final long[] expected = MurmurHash3.hash(s.getBytes(UTF_8), seed);
+        assertEquals(MurmurHash3v2.hash(s, seed, hashOut), expected);
+        assertEquals(MurmurHash3v2.hash(new StringBuilder(s), seed, hashOut), expected);
+      }
+    }
+    final long hash0 = MurmurHash3v2.hash(new byte[0], 0, hashOut)[0];
+    assertEquals(MurmurHash3v2.hash(new StringBuilder(), 0, hashOut)[0], hash0);
+    assertEquals(MurmurHash3v2.hash((CharSequence) null, 0, hashOut)[0], hash0);
+  }
+
+  @Test
+  public void checkByteArraySlice() {
+    final Random rand = new Random(2);
+    final long[] hashOut = new long[2];
+    final byte[] buf = new byte[100];
+    rand.nextBytes(buf);
+    for (int off = 0; off < 8; off++) {
+      for (int len = 0; len <= 40; len++) {
+        final byte[] field = Arrays.copyOfRange(buf, off, off + len);
+        assertEquals(MurmurHash3v2.hash(buf, off, len, 7L, hashOut)[0],
+            MurmurHash3v2.hash(field, 7L, hashOut)[0]);
+      }
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkByteArraySliceOutOfBounds() {
+    MurmurHash3v2.hash(new byte[10], 4, 7, 0, new long[2]);
+  }
+
+  @Test
+  public void checkStringHashDoesNotAllocate() {
+    final long[] hashOut = new long[2];
+    final String s = "The quick brown fox \u00e9\u4e2d\ud83d\ude00";
+    final StringBuilder sb = new StringBuilder(s);
+    final byte[] buf = new byte[64];
+    final int n = 10_000;
+    assertAllocationFree(3 * n, () -> {
+      for (int i = 0; i < n; i++) {
+        MurmurHash3v2.hash(s, i, hashOut);
+        MurmurHash3v2.hash(sb, i, hashOut);
+        MurmurHash3v2.hash(buf, 3, 17, i, hashOut);
+      }
+    });
+  }
+
   @Test
   public void checkStringLong() {
     long seed = 123;
@@ -241,4 +347,22 @@ public class MurmurHash3v2Test {
     return hash1;
   }
 
+  /**
+   * Returns a random String of the given number of characters, mixing characters with 1, 2 and 3
+   * byte UTF-8 encodings, surrogate pairs and unpaired surrogates.
+   */
+  static String randomString(final Random rand, final int numChars) {
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < numChars) {
+      switch (rand.nextInt(6)) {
+        case 0: sb.append((char) (0x80 + rand.nextInt(0x780))); break;
+        case 1: sb.append((char) (0x800 + rand.nextInt(0xD000))); break;
+        case 2: sb.appendCodePoint(0x10000 + rand.nextInt(0x100000)); break;
+        case 3: sb.append((char) (0xD800 + rand.nextInt(0x800))); break; //may be unpaired
+        default: sb.append((char) rand.nextInt(0x80));
+      }
+    }
+    return sb.toString();
+  }
+
 }
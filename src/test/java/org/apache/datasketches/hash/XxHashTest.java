@@ -19,10 +19,14 @@
 
 package org.apache.datasketches.hash;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
 
+import java.util.Random;
+
 import org.testng.annotations.Test;
 
+import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.memory.Memory;
 
 /**
@@ -42,4 +46,78 @@ public class XxHashTest {
     assertEquals(hash2, hash1);
   }
 
+  @Test
+  public void checkByteArraysMatchMemory() {
+    final Random rand = new Random(1);
+    for (int len = 1; len <= 100; len++) {
+      final byte[] bytes = new byte[len];
+      rand.nextBytes(bytes);
+      final long seed = rand.nextLong();
+      assertEquals(XxHash.hash(bytes, seed), Memory.wrap(bytes).xxHash64(0, len, seed));
+    }
+  }
+
+  @Test
+  public void checkArraysMatchMemory() {
+    final Random rand = new Random(2);
+    for (int len = 1; len <= 40; len++) {
+      final long[] longs = new long[len];
+      final int[] ints = new int[len];
+      final char[] chars = new char[len];
+      for (int i = 0; i < len; i++) {
+        longs[i] = rand.nextLong();
+        ints[i] = rand.nextInt();
+        chars[i] = (char) rand.nextInt();
+      }
+      final long seed = rand.nextLong();
+      assertEquals(XxHash.hash(longs, seed), Memory.wrap(longs).xxHash64(0, len << 3, seed));
+      assertEquals(XxHash.hash(ints, seed), Memory.wrap(ints).xxHash64(0, len << 2, seed));
+      assertEquals(XxHash.hash(chars, seed), Memory.wrap(chars).xxHash64(0, len << 1, seed));
+    }
+  }
+
+  @Test
+  public void checkStringAndSingleLong() {
+    final String s = "abcdefghijklmnopqrstuvwxyz0123456789";
+    assertEquals(XxHash.hash(s, 7L), XxHash.hash(s.getBytes(UTF_8), 7L));
+    assertEquals(XxHash.hash(new long[] { 123L }, 9L), XxHash.hash(123L, 9L));
+  }
+
+  @Test
+  public void checkCharSequenceMatchesUtf8Bytes() {
+    final Random rand = new Random(3);
+    for (int len = 1; len <= 100; len++) {
+      for (int trial = 0; trial < 10; trial++) {
+        final String s = MurmurHash3v2Test.randomString(rand, len);
+        final long seed = rand.nextLong();
+        final long expected = XxHash.hash(s.getBytes(UTF_8), seed);
+        assertEquals(XxHash.hash(s, seed), expected);
+        assertEquals(XxHash.hash(new StringBuilder(s), seed), expected);
+      }
+    }
+  }
+
+  @Test
+  public void checkByteArraySlice() {
+    final Random rand = new Random(4);
+    final byte[] buf = new byte[100];
+    rand.nextBytes(buf);
+    for (int off = 0; off < 8; off++) {
+      for (int len = 0; len <= 70; len++) {
+        assertEquals(XxHash.hash(buf, off, len, 7L), Memory.wrap(buf).xxHash64(off, len, 7L));
+      }
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkByteArraySliceOutOfBounds() {
+    XxHash.hash(new byte[10], -1, 5, 0);
+  }
+
+  @Test
+  public void checkReferenceValue() {
+    //XXH64 of empty input with seed 0
+    assertEquals(XxHash.hash(new byte[0], 0L), 0xEF46DB3751D8E999L);
+  }
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.hll.TgtHllType.HLL_4;
+import static org.apache.datasketches.hll.TgtHllType.HLL_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.testng.annotations.Test;
+
+public class ConcurrentHllSketchTest {
+
+  @Test
+  public void checkConcurrentBuffersMatchSequentialSketch() throws Exception {
+    final int lgK = 12;
+    final int numThreads = 4;
+    final int perThread = 50_000;
+    final ExecutorService propagation = Executors.newFixedThreadPool(2);
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(lgK, propagation);
+    final Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int base = t * perThread;
+      final ConcurrentHllBuffer buffer = shared.newLocalBuffer(64);
+      writers[t] = new Thread(() -> {
+        for (int i = 0; i < perThread; i++) {
+          buffer.update(base + i);
+        }
+        buffer.flush();
+      });
+      writers[t].start();
+    }
+    for (final Thread writer : writers) { writer.join(); }
+    propagation.shutdown();
+    assertTrue(propagation.awaitTermination(10, TimeUnit.SECONDS));
+
+    final HllSketch sequential = new HllSketch(lgK, HLL_8);
+    for (int i = 0; i < (numThreads * perThread); i++) { sequential.update(i); }
+    assertRegistersEqual(shared, sequential);
+
+    //out of order, so the estimate is the composite estimate
+    assertEquals(shared.getEstimate(), sequential.getCompositeEstimate(), 0.0);
+    assertTrue(shared.getUpperBound(2) > shared.getEstimate());
+    assertTrue(shared.getLowerBound(2) < shared.getEstimate());
+    assertEquals(shared.getEstimate(), numThreads * perThread, numThreads * perThread * 0.05);
+  }
+
+  @Test
+  public void checkDirectUpdates() {
+    final int lgK = 10;
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(lgK);
+    final HllSketch sequential = new HllSketch(lgK, HLL_8);
+    assertTrue(shared.isEmpty());
+    for (int i = 0; i < 10_000; i++) {
+      shared.update(i);
+      sequential.update(i);
+    }
+    assertFalse(shared.isEmpty());
+    assertRegistersEqual(shared, sequential);
+    shared.update(new long[] { 1L, 2L });
+    shared.update("");
+    assertRegistersEqual(shared, sequential);
+  }
+
+  @Test
+  public void checkBufferQueriesAndFlush() {
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(10, Runnable::run);
+    final ConcurrentHllBuffer buffer = shared.newLocalBuffer(16);
+    assertTrue(buffer.getSharedSketch() == shared);
+    buffer.update(1);
+    assertTrue(buffer.isEmpty()); //still buffered
+    buffer.flush();
+    assertFalse(buffer.isEmpty());
+    assertEquals(buffer.getEstimate(), 1.0, 0.01);
+    for (int i = 0; i < 100; i++) { buffer.update(i); } //some propagate inline
+    buffer.flush();
+    assertEquals(buffer.getEstimate(), 100.0, 5.0);
+    assertEquals(buffer.getEstimate(), shared.getEstimate(), 0.0);
+    assertEquals(buffer.getLgConfigK(), 10);
+    assertEquals(buffer.getTgtHllType(), HLL_8);
+    assertEquals(buffer.getCurMode(), CurMode.HLL);
+    assertTrue(buffer.isOutOfOrder());
+    assertFalse(buffer.isCompact());
+    assertFalse(buffer.isMemory());
+    assertFalse(buffer.isOffHeap());
+    assertFalse(buffer.isSameResource(null));
+    assertEquals(buffer.toString(), shared.toString());
+  }
+
+  @Test
+  public void checkBufferReset() {
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(10, Runnable::run);
+    final ConcurrentHllBuffer buffer = shared.newLocalBuffer();
+    buffer.update(1);
+    buffer.reset();
+    buffer.flush();
+    assertTrue(shared.isEmpty());
+  }
+
+  @Test
+  public void checkGetResultAndSerialization() {
+    final int lgK = 11;
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(lgK);
+    for (int i = 0; i < 5_000; i++) { shared.update(i); }
+    final HllSketch hll4 = shared.getResult(HLL_4);
+    assertEquals(hll4.getTgtHllType(), HLL_4);
+    assertEquals(hll4.getEstimate(), shared.getEstimate(), 0.0);
+    final HllSketch hll8 = HllSketch.heapify(shared.toCompactByteArray());
+    assertRegistersEqual(shared, hll8);
+    assertEquals(shared.toUpdatableByteArray().length, shared.getUpdatableSerializationBytes());
+    assertEquals(shared.toCompactByteArray().length, shared.getCompactSerializationBytes());
+
+    //results are copies
+    final double est = hll4.getEstimate();
+    for (int i = 5_000; i < 10_000; i++) { shared.update(i); }
+    assertEquals(hll4.getEstimate(), est, 0.0);
+    assertTrue(shared.getEstimate() > est);
+  }
+
+  @Test
+  public void checkReset() {
+    final ConcurrentHllSketch shared = new ConcurrentHllSketch(8);
+    for (int i = 0; i < 1_000; i++) { shared.update(i); }
+    assertFalse(shared.isEmpty());
+    shared.reset();
+    assertTrue(shared.isEmpty());
+    assertEquals(shared.getEstimate(), 0.0, 0.0);
+    for (int slot = 0; slot < (1 << 8); slot++) {
+      assertEquals(shared.getRegister(slot), 0);
+    }
+  }
+
+  @Test
+  public void checkBufferNotSerializable() {
+    final ConcurrentHllBuffer buffer = new ConcurrentHllSketch().newLocalBuffer();
+    try {
+      buffer.toCompactByteArray();
+      fail();
+    } catch (final UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      buffer.toUpdatableByteArray();
+      fail();
+    } catch (final UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadBufferCapacity() {
+    new ConcurrentHllSketch().newLocalBuffer(0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullExecutor() {
+    new ConcurrentHllSketch(10, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadLgK() {
+    new ConcurrentHllSketch(3);
+  }
+
+  private static void assertRegistersEqual(final ConcurrentHllSketch shared,
+      final HllSketch sketch) {
+    final HllSketch hll8 = sketch.copyAs(HLL_8);
+    final int[] values = new int[1 << shared.getLgConfigK()];
+    final PairIterator itr = hll8.iterator();
+    while (itr.nextValid()) {
+      values[itr.getSlot()] = itr.getValue();
+    }
+    for (int slot = 0; slot < values.length; slot++) {
+      assertEquals(shared.getRegister(slot), values[slot], "slot " + slot);
+    }
+  }
+
+}
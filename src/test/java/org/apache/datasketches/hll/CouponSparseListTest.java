@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.apache.datasketches.hll.PreambleUtil.SPARSE_FLAG_MASK;
+import static org.apache.datasketches.hll.PreambleUtil.extractFlags;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.apache.datasketches.SketchesReadOnlyException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CouponSparseListTest {
+
+  @Test
+  public void checkEstimatesAndPromotions() {
+    for (final TgtHllType type : TgtHllType.values()) {
+      for (final int lgK : new int[] { 8, 10, 13 }) {
+        checkEstimatesAndPromotions(lgK, type);
+      }
+    }
+  }
+
+  private static void checkEstimatesAndPromotions(final int lgK, final TgtHllType type) {
+    final HllSketch std = new HllSketch(lgK, type);
+    final HllSketch heap = new HllSketch(lgK, type, Hasher.MURMUR3, true);
+    final HllSketch direct = newDirectSparse(lgK, type);
+    int setEnd = 0;
+    int sparseEnd = 0;
+    for (int i = 0; sparseEnd == 0; i++) {
+      std.update(i);
+      heap.update(i);
+      direct.update(i);
+      assertEquals(direct.getCurMode(), heap.getCurMode());
+      assertEquals(direct.getEstimate(), heap.getEstimate());
+      if (std.getCurMode() == CurMode.SET) {
+        assertEquals(heap.getCurMode(), CurMode.SPARSE);
+      }
+      if (std.getCurMode() != CurMode.HLL) {
+        assertEquals(heap.getEstimate(), std.getEstimate());
+        setEnd = i + 1;
+      }
+      if (heap.getCurMode() == CurMode.HLL) { sparseEnd = i; }
+    }
+    //the sparse mode holds at least 1.5 times the coupons of the set mode in the same memory
+    assertTrue(sparseEnd > (1.5 * setEnd), type + " lgK " + lgK + ": " + sparseEnd);
+
+    //the promotion leaves the same registers as the standard sketch
+    assertEquals(registers(heap), registers(std));
+    assertEquals(registers(direct), registers(std));
+    assertEquals(heap.getHipEstimate(), direct.getHipEstimate());
+    assertTrue(heap.isSparse() && direct.isSparse());
+  }
+
+  @Test
+  public void checkSerializationRoundTrips() {
+    for (final TgtHllType type : TgtHllType.values()) {
+      final HllSketch heap = new HllSketch(12, type, Hasher.XXHASH64, true);
+      final HllSketch direct = newDirectSparse(12, type, Hasher.XXHASH64);
+      for (int i = 0; i < 500; i++) {
+        heap.update(i);
+        direct.update(i);
+      }
+      assertEquals(heap.getCurMode(), CurMode.SPARSE);
+      final byte[] compact = heap.toCompactByteArray();
+      final byte[] updatable = heap.toUpdatableByteArray();
+      assertEquals(compact.length, heap.getCompactSerializationBytes());
+      assertEquals(updatable.length, heap.getUpdatableSerializationBytes());
+      assertTrue(compact.length < updatable.length);
+      assertTrue((extractFlags(Memory.wrap(compact)) & SPARSE_FLAG_MASK) != 0);
+      assertEquals(direct.toCompactByteArray(), compact);
+      assertEquals(direct.toUpdatableByteArray(), updatable);
+      assertEquals(direct.getCompactSerializationBytes(), compact.length);
+      assertEquals(direct.getUpdatableSerializationBytes(), updatable.length);
+
+      for (final byte[] bytes : new byte[][] { compact, updatable }) {
+        final HllSketch heapified = HllSketch.heapify(bytes);
+        final HllSketch wrapped = HllSketch.wrap(Memory.wrap(bytes));
+        for (final HllSketch sk : new HllSketch[] { heapified, wrapped }) {
+          assertEquals(sk.getCurMode(), CurMode.SPARSE);
+          assertTrue(sk.isSparse());
+          assertEquals(sk.getHasher(), Hasher.XXHASH64);
+          assertEquals(sk.getEstimate(), heap.getEstimate());
+          assertEquals(sk.toCompactByteArray(), compact);
+          assertEquals(sk.copy().toCompactByteArray(), compact);
+        }
+        try {
+          wrapped.update(-1);
+          fail();
+        } catch (final SketchesReadOnlyException e) {
+          //expected
+        }
+      }
+
+      //the updatable image continues as a direct sketch, and promotes like the heap sketch
+      final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(12, type);
+      final WritableMemory wmem = WritableMemory.allocate(maxBytes);
+      wmem.putByteArray(0, updatable, 0, updatable.length);
+      final HllSketch rewrapped = HllSketch.writableWrap(wmem);
+      final HllSketch heapified = HllSketch.heapify(updatable);
+      for (int i = 500; i < 5000; i++) {
+        heap.update(i);
+        rewrapped.update(i);
+        heapified.update(i);
+        assertEquals(rewrapped.getCurMode(), heap.getCurMode());
+      }
+      assertEquals(rewrapped.getCurMode(), CurMode.HLL);
+      assertEquals(heapified.getCurMode(), CurMode.HLL);
+      assertEquals(registers(rewrapped), registers(heap));
+      assertEquals(heapified.toCompactByteArray(), heap.toCompactByteArray());
+      assertTrue(HllSketch.heapify(heap.toCompactByteArray()).isSparse());
+      assertTrue(HllSketch.wrap(wmem).isSparse());
+    }
+  }
+
+  @Test
+  public void checkCopyAsAndReset() {
+    final HllSketch heap = new HllSketch(10, TgtHllType.HLL_4, Hasher.MURMUR3, true);
+    final HllSketch direct = newDirectSparse(10, TgtHllType.HLL_4);
+    for (int i = 0; i < 100; i++) {
+      heap.update(i);
+      direct.update(i);
+    }
+    for (final HllSketch sk : new HllSketch[] { heap, direct }) {
+      final HllSketch hll8 = sk.copyAs(TgtHllType.HLL_8);
+      assertEquals(hll8.getCurMode(), CurMode.SPARSE);
+      assertEquals(hll8.getTgtHllType(), TgtHllType.HLL_8);
+      assertEquals(hll8.getEstimate(), sk.getEstimate());
+      assertTrue(hll8.isSparse());
+    }
+
+    for (int i = 100; i < 2000; i++) {
+      heap.update(i);
+      direct.update(i);
+    }
+    for (final HllSketch sk : new HllSketch[] { heap, direct }) {
+      assertEquals(sk.getCurMode(), CurMode.HLL);
+      sk.reset();
+      assertTrue(sk.isEmpty());
+      assertTrue(sk.isSparse());
+      for (int i = 0; i < 100; i++) { sk.update(i); }
+      assertEquals(sk.getCurMode(), CurMode.SPARSE);
+    }
+  }
+
+  @Test
+  public void checkUnion() {
+    final int lgK = 11;
+    final HllSketch[] sparse = new HllSketch[3];
+    final HllSketch[] std = new HllSketch[3];
+    final int[] counts = { 300, 400, 50_000 };
+    for (int s = 0; s < 3; s++) {
+      sparse[s] = (s == 1) ? newDirectSparse(lgK, TgtHllType.HLL_6)
+          : new HllSketch(lgK, TgtHllType.HLL_6, Hasher.MURMUR3, true);
+      std[s] = new HllSketch(lgK, TgtHllType.HLL_6);
+      for (int i = 0; i < counts[s]; i++) {
+        sparse[s].update(i + (s * 500));
+        std[s].update(i + (s * 500));
+      }
+    }
+    assertEquals(sparse[0].getCurMode(), CurMode.SPARSE);
+    assertEquals(sparse[1].getCurMode(), CurMode.SPARSE);
+    final Union sparseUnion = new Union(lgK);
+    final Union stdUnion = new Union(lgK);
+    for (int s = 0; s < 3; s++) {
+      sparseUnion.update(sparse[s]);
+      stdUnion.update(std[s]);
+      //the estimators may differ while a source is sparse, but the registers are the same
+      assertEquals(registers(sparseUnion.getResult()), registers(stdUnion.getResult()));
+      final double est = stdUnion.getEstimate();
+      assertEquals(sparseUnion.getEstimate(), est, 0.02 * est);
+    }
+    assertFalse(sparseUnion.getResult().isSparse());
+
+    //a union heapified from a sparse image
+    final Union heapified = Union.heapify(sparse[1].toCompactByteArray());
+    final Union direct = new Union(lgK);
+    direct.update(sparse[1]);
+    assertEquals(heapified.getEstimate(), direct.getEstimate());
+  }
+
+  @Test
+  public void checkUnionWithSparseGadget() {
+    final int lgK = 10;
+    final WritableMemory wmem = WritableMemory.allocate(
+        HllSketch.getMaxUpdatableSerializationBytes(lgK, TgtHllType.HLL_8));
+    final HllSketch gadget = new HllSketch(lgK, TgtHllType.HLL_8, wmem, Hasher.MURMUR3, true);
+    final HllSketch expected = new HllSketch(lgK, TgtHllType.HLL_8);
+    for (int i = 0; i < 100; i++) {
+      gadget.update(i);
+      expected.update(i);
+    }
+    assertEquals(gadget.getCurMode(), CurMode.SPARSE);
+    final Union union = Union.writableWrap(wmem);
+    final HllSketch hll = new HllSketch(lgK, TgtHllType.HLL_8);
+    for (int i = 50; i < 5000; i++) {
+      hll.update(i);
+      expected.update(i);
+    }
+    union.update(hll);
+    assertEquals(union.getEstimate(), expected.getEstimate(), 0.02 * expected.getEstimate());
+  }
+
+  @Test
+  public void checkCodec() {
+    final int[] coupons = {
+        HllUtil.pair(0, 1),
+        HllUtil.pair(0, 2),
+        HllUtil.pair(0, 63),
+        HllUtil.pair(5, 3),
+        HllUtil.pair(5, 4),
+        HllUtil.pair(1 << 20, 1),
+        HllUtil.pair((1 << 26) - 1, 1),
+        HllUtil.pair((1 << 26) - 1, 63) };
+    final byte[] stream = CouponSparseList.encode(coupons);
+    assertEquals(stream.length, CouponSparseList.encodedBytes(coupons));
+    assertEquals(CouponSparseList.decode(Memory.wrap(stream), 0, coupons.length), coupons);
+
+    //the buffer merges in order and drops the duplicates
+    final int[] buffer = new int[16];
+    buffer[3] = coupons[7];
+    buffer[9] = coupons[1];
+    buffer[12] = HllUtil.pair(6, 1);
+    final int[] merged = CouponSparseList.merge(coupons, buffer, 3);
+    assertEquals(merged.length, coupons.length + 1);
+    assertEquals(merged[5], HllUtil.pair(6, 1));
+  }
+
+  @Test
+  public void checkSmallLgKIgnoresSparse() {
+    final HllSketch sk = new HllSketch(7, TgtHllType.HLL_8, Hasher.MURMUR3, true);
+    for (int i = 0; i < 8; i++) { sk.update(i); }
+    assertEquals(sk.getCurMode(), CurMode.HLL);
+    assertTrue(sk.isSparse());
+  }
+
+  @Test
+  public void checkToString() {
+    final HllSketch sk = new HllSketch(12, TgtHllType.HLL_4, Hasher.MURMUR3, true);
+    for (int i = 0; i < 100; i++) { sk.update(i); }
+    final String s = HllSketch.toString(sk.toUpdatableByteArray());
+    assertTrue(s.contains("SPARSE"));
+    println(s);
+    println(sk.toString(true, true, false, false));
+  }
+
+  private static HllSketch newDirectSparse(final int lgK, final TgtHllType type) {
+    return newDirectSparse(lgK, type, Hasher.MURMUR3);
+  }
+
+  private static HllSketch newDirectSparse(final int lgK, final TgtHllType type,
+      final Hasher hasher) {
+    final int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, type);
+    return new HllSketch(lgK, type, WritableMemory.allocate(bytes), hasher, true);
+  }
+
+  private static int[] registers(final HllSketch sk) {
+    final int[] regs = new int[1 << sk.getLgConfigK()];
+    final PairIterator itr = sk.iterator();
+    while (itr.nextAll()) { regs[itr.getSlot()] = itr.getValue(); }
+    return regs;
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -338,6 +338,22 @@ public class DirectAuxHashMapTest {
     }
   }
 
+  @Test
+  public void checkWrapAfterAuxMapIsEmptied() {
+    //a shift of curMin that leaves no exceptions must also clear the aux count in memory
+    int lgConfigK = 7;
+    int bytes = HllSketch.getMaxUpdatableSerializationBytes(lgConfigK, TgtHllType.HLL_4);
+    WritableMemory wmem = WritableMemory.allocate(bytes);
+    WritableMemory refMem = WritableMemory.allocate(bytes);
+    new HllSketch(lgConfigK, TgtHllType.HLL_4, wmem);
+    HllSketch ref = new HllSketch(lgConfigK, TgtHllType.HLL_4, refMem);
+    for (long i = 0; i < 100_000; i++) {
+      HllSketch.writableWrap(wmem).update((8L << 32) | i);
+      ref.update((8L << 32) | i);
+    }
+    assertEquals(HllSketch.wrap(wmem).toCompactByteArray(), ref.toCompactByteArray());
+  }
+
 
   /**
    * @param s value to print
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesStateException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class HllArenaTest {
+  private static final int[] COUNTS = { 0, 1, 7, 8, 30, 200, 1000, 5000, 100_000 };
+
+  @Test
+  public void checkMatchesStandaloneSketches() {
+    for (final TgtHllType type : TgtHllType.values()) {
+      for (final int lgK : new int[] { 4, 7, 8, 12 }) {
+        checkMatchesStandaloneSketches(lgK, type, Hasher.MURMUR3);
+      }
+      checkMatchesStandaloneSketches(11, type, Hasher.XXHASH64);
+    }
+  }
+
+  private static void checkMatchesStandaloneSketches(final int lgK, final TgtHllType type,
+      final Hasher hasher) {
+    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, type);
+    try (HllArena arena = new HllArena(lgK, type, hasher, 2 * maxBytes)) {
+      final int n = COUNTS.length;
+      final long[] handles = new long[n];
+      final HllSketch[] expected = new HllSketch[n]; //direct, with full size memory
+      final HllSketch[] heap = new HllSketch[n];
+      for (int i = 0; i < n; i++) {
+        handles[i] = arena.newSketch();
+        expected[i] = new HllSketch(lgK, type, WritableMemory.allocate(maxBytes), hasher);
+        heap[i] = new HllSketch(lgK, type, hasher);
+      }
+      //interleave the updates so that the blocks of the sketches move around each other
+      for (int v = 0; v < COUNTS[n - 1]; v++) {
+        for (int i = 0; i < n; i++) {
+          if (v < COUNTS[i]) {
+            final long datum = ((long) i << 32) | v;
+            arena.update(handles[i], datum);
+            expected[i].update(datum);
+            heap[i].update(datum);
+          }
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        final HllSketch sk = arena.wrap(handles[i]);
+        assertEquals(sk.getCurMode(), expected[i].getCurMode());
+        assertEquals(sk.getEstimate(), heap[i].getEstimate());
+        assertEquals(sk.getHasher(), hasher);
+        assertEquals(sk.toCompactByteArray(), expected[i].toCompactByteArray());
+        assertEquals(arena.getEstimate(handles[i]), expected[i].getEstimate());
+      }
+      assertEquals(arena.getNumSketches(), n);
+      assertTrue(arena.getUsedBytes() <= arena.getAllocatedBytes());
+    }
+  }
+
+  @Test
+  public void checkUpdateFlavorsAndBatch() {
+    try (HllArena arena = new HllArena(10, TgtHllType.HLL_4)) {
+      final long a = arena.newSketch();
+      final long b = arena.newSketch();
+      final HllSketch expected = new HllSketch(10, TgtHllType.HLL_4);
+      final long[] data = new long[3000];
+      for (int i = 0; i < data.length; i++) { data[i] = i; }
+      arena.batchUpdate(a, data, 0, data.length);
+      expected.batchUpdate(data, 0, data.length);
+      arena.update(a, 1.5);
+      expected.update(1.5);
+      arena.update(a, "abc");
+      expected.update("abc");
+      arena.update(a, new byte[] { 1, 2, 3 });
+      expected.update(new byte[] { 1, 2, 3 });
+      assertEquals(arena.wrap(a).toCompactByteArray(), expected.toCompactByteArray());
+      assertTrue(arena.wrap(b).isEmpty());
+
+      //a read-only wrap unions like any other sketch
+      final Union union = new Union(10);
+      union.update(arena.wrap(a));
+      assertEquals(union.getEstimate(), expected.getEstimate(), 0.0);
+
+      //a failed update leaves the arena usable
+      try {
+        arena.batchUpdate(b, data, 1, data.length);
+        fail();
+      } catch (final IllegalArgumentException e) {
+        //expected
+      }
+      arena.batchUpdate(b, data, 0, data.length);
+      expected.reset();
+      expected.batchUpdate(data, 0, data.length);
+      assertEquals(arena.wrap(b).toCompactByteArray(), expected.toCompactByteArray());
+    }
+  }
+
+  @Test
+  public void checkFreeAndReuse() {
+    try (HllArena arena = new HllArena(12, TgtHllType.HLL_8)) {
+      final long a = arena.newSketch();
+      final long b = arena.newSketch();
+      final long listBytes = arena.getUsedBytes() / 2;
+      assertEquals(listBytes, 40);
+      for (int i = 0; i < 10_000; i++) { arena.update(a, i); }
+      final long fullBytes = arena.getUsedBytes() - listBytes;
+      assertEquals(fullBytes, HllSketch.getMaxUpdatableSerializationBytes(12, TgtHllType.HLL_8));
+      final long allocated = arena.getAllocatedBytes();
+
+      arena.free(a);
+      assertEquals(arena.getNumSketches(), 1);
+      assertEquals(arena.getUsedBytes(), listBytes);
+      checkInvalidHandle(arena, a);
+      checkInvalidHandle(arena, 2);
+      checkInvalidHandle(arena, -1);
+
+      //the freed handle comes back as a new, empty sketch, and the blocks are reused
+      final long c = arena.newSketch();
+      assertEquals(c, a);
+      assertTrue(arena.wrap(c).isEmpty());
+      final HllSketch expected = new HllSketch(12, TgtHllType.HLL_8);
+      for (int i = 0; i < 10_000; i++) {
+        arena.update(c, i);
+        expected.update(i);
+      }
+      assertEquals(arena.getAllocatedBytes(), allocated);
+      assertEquals(arena.wrap(c).toCompactByteArray(), expected.toCompactByteArray());
+      assertTrue(arena.wrap(b).isEmpty());
+    }
+  }
+
+  @Test
+  public void checkCompact() {
+    final int lgK = 10;
+    final TgtHllType type = TgtHllType.HLL_4;
+    final int maxBytes = HllSketch.getMaxUpdatableSerializationBytes(lgK, type);
+    final int slabBytes = 4 * maxBytes;
+    try (HllArena arena = new HllArena(lgK, type, Hasher.MURMUR3, slabBytes)) {
+      final int n = 200;
+      final long[] handles = new long[n];
+      final HllSketch[] expected = new HllSketch[n];
+      for (int i = 0; i < n; i++) {
+        handles[i] = arena.newSketch();
+        expected[i] = new HllSketch(lgK, type, WritableMemory.allocate(maxBytes));
+        final int count = (i % 10) == 0 ? 2000 : i;
+        for (int v = 0; v < count; v++) {
+          arena.update(handles[i], v + (i * 1000L));
+          expected[i].update(v + (i * 1000L));
+        }
+      }
+      for (int i = 0; i < n; i += 2) { arena.free(handles[i]); }
+      final long allocated = arena.getAllocatedBytes();
+      final long used = arena.getUsedBytes();
+      arena.compact();
+      assertEquals(arena.getUsedBytes(), used);
+      assertTrue(arena.getAllocatedBytes() < allocated);
+      //each slab but the last one wastes less than a full size block at its end
+      final long maxWaste = (arena.getAllocatedBytes() / slabBytes) * maxBytes;
+      assertTrue(arena.getAllocatedBytes() < (used + maxWaste + slabBytes));
+      for (int i = 1; i < n; i += 2) {
+        assertEquals(arena.wrap(handles[i]).toCompactByteArray(), expected[i].toCompactByteArray());
+      }
+
+      //updates after compaction continue from the new locations
+      for (int i = 1; i < n; i += 2) {
+        for (int v = 0; v < 500; v++) {
+          arena.update(handles[i], -v);
+          expected[i].update(-v);
+        }
+        assertEquals(arena.wrap(handles[i]).toCompactByteArray(), expected[i].toCompactByteArray());
+      }
+
+      for (int i = 1; i < n; i += 2) { arena.free(handles[i]); }
+      arena.compact();
+      assertEquals(arena.getNumSketches(), 0);
+      assertEquals(arena.getUsedBytes(), 0);
+      assertEquals(arena.getAllocatedBytes(), 0);
+      final long h = arena.newSketch();
+      arena.update(h, 1L);
+      assertEquals(arena.getEstimate(h), 1.0, 0.0);
+    }
+  }
+
+  @Test
+  public void checkClose() {
+    final HllArena arena = new HllArena(8, TgtHllType.HLL_6);
+    final long h = arena.newSketch();
+    arena.update(h, 1L);
+    assertFalse(arena.isClosed());
+    arena.close();
+    assertTrue(arena.isClosed());
+    arena.close();
+    try {
+      arena.update(h, 2L);
+      fail();
+    } catch (final SketchesStateException e) {
+      //expected
+    }
+    try {
+      arena.newSketch();
+      fail();
+    } catch (final SketchesStateException e) {
+      //expected
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSlabTooSmall() {
+    new HllArena(12, TgtHllType.HLL_8, Hasher.MURMUR3, 1024);
+  }
+
+  @Test
+  public void checkToString() {
+    try (HllArena arena = new HllArena(8, TgtHllType.HLL_8)) {
+      arena.update(arena.newSketch(), 1L);
+      assertEquals(arena.getLgConfigK(), 8);
+      assertEquals(arena.getTgtHllType(), TgtHllType.HLL_8);
+      println(arena.toString());
+    }
+  }
+
+  @Test
+  public void checkGrowingWithoutRequestServer() {
+    final WritableMemory wmem = WritableMemory.wrap(new byte[40]);
+    DirectCouponList.newInstance(12, TgtHllType.HLL_8, wmem);
+    final HllSketch sk = HllSketch.writableWrapGrowable(wmem, false);
+    for (int i = 0; i < 7; i++) { sk.update(i); }
+    try {
+      sk.update(7); //promotes to SET
+      fail();
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  private static void checkInvalidHandle(final HllArena arena, final long handle) {
+    try {
+      arena.getEstimate(handle);
+      fail();
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
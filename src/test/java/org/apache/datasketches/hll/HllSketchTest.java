@@ -19,6 +19,8 @@
 
 package org.apache.datasketches.hll;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.datasketches.AllocationTestUtil.assertAllocationFree;
 import static org.apache.datasketches.hll.HllSketch.getMaxUpdatableSerializationBytes;
 import static org.apache.datasketches.hll.HllUtil.LG_AUX_ARR_INTS;
 import static org.apache.datasketches.hll.HllUtil.LG_INIT_LIST_SIZE;
@@ -36,6 +38,7 @@ import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
 import org.apache.datasketches.memory.Memory;
 import org.apache.datasketches.memory.WritableMemory;
 import org.testng.annotations.Test;
@@ -438,6 +441,200 @@ public class HllSketchTest {
     sk2 = HllSketch.heapify(Memory.wrap(arr));
   }
 
+  @Test
+  public void checkBatchUpdateMatchesSingleUpdates() {
+    final int n = 20000;
+    final long[] longs = new long[n];
+    final double[] doubles = new double[n];
+    final String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      longs[i] = i;
+      doubles[i] = i / 3.0;
+      strings[i] = (i % 100) == 0 ? null : Integer.toString(i);
+    }
+    doubles[0] = -0.0;
+    strings[1] = "";
+    final WritableMemory keysMem = WritableMemory.allocate(n << 3);
+    keysMem.putLongArray(0, longs, 0, n);
+
+    for (int lgK : new int[] {4, 12}) {
+      for (TgtHllType type : TgtHllType.values()) {
+        for (boolean direct : new boolean[] {false, true}) {
+          //small lengths exercise LIST and SET modes, the later ones cross into HLL mode
+          final HllSketch single = newSketch(lgK, type, direct);
+          final HllSketch batch = newSketch(lgK, type, direct);
+          for (int i = 0; i < 5; i++) { single.update(longs[i]); }
+          batch.batchUpdate(longs, 0, 5);
+          assertBatchEquals(batch, single);
+          for (int i = 5; i < 40; i++) { single.update(longs[i]); }
+          batch.batchUpdate(longs, 5, 35);
+          assertBatchEquals(batch, single);
+          for (int i = 40; i < n; i++) { single.update(longs[i]); }
+          batch.batchUpdate(longs, 40, n - 40);
+          assertBatchEquals(batch, single);
+
+          for (int i = 10; i < (n - 10); i++) { single.update(doubles[i]); }
+          batch.batchUpdate(doubles, 10, n - 20);
+          assertBatchEquals(batch, single);
+
+          for (int i = 0; i < n; i++) { single.update(strings[i]); }
+          batch.batchUpdate(strings, 0, n);
+          assertBatchEquals(batch, single);
+
+          final HllSketch single2 = newSketch(lgK, type, direct);
+          final HllSketch batch2 = newSketch(lgK, type, direct);
+          for (int i = 5; i < n; i++) { single2.update(longs[i]); }
+          batch2.batchUpdate(keysMem, 5 << 3, n - 5);
+          assertBatchEquals(batch2, single2);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checkUnionBatchUpdate() {
+    final int n = 10000;
+    final long[] longs = new long[n];
+    for (int i = 0; i < n; i++) { longs[i] = i; }
+    final Union single = new Union(10);
+    final Union batch = new Union(10);
+    for (int i = 0; i < n; i++) { single.update(longs[i]); }
+    batch.batchUpdate(longs, 0, n);
+    assertEquals(batch.getEstimate(), single.getEstimate());
+    assertEquals(batch.toUpdatableByteArray(), single.toUpdatableByteArray());
+  }
+
+  @Test
+  public void checkBatchUpdateEmptyRange() {
+    final HllSketch sk = new HllSketch(10);
+    sk.batchUpdate(new long[10], 3, 0);
+    sk.batchUpdate(new String[] {null, ""}, 0, 2);
+    assertTrue(sk.isEmpty());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void checkBatchUpdateBadRange() {
+    final HllSketch sk = new HllSketch(10);
+    sk.batchUpdate(new long[10], 5, 6);
+  }
+
+  private static HllSketch newSketch(final int lgK, final TgtHllType type, final boolean direct) {
+    if (direct) {
+      final int bytes = getMaxUpdatableSerializationBytes(lgK, type);
+      return new HllSketch(lgK, type, WritableMemory.allocate(bytes));
+    }
+    return new HllSketch(lgK, type);
+  }
+
+  @Test
+  public void checkUpdatesDoNotAllocate() {
+    checkUpdatesDoNotAllocate(new HllSketch(12, HLL_4));
+    checkUpdatesDoNotAllocate(new HllSketch(12, HLL_6));
+    checkUpdatesDoNotAllocate(new HllSketch(12, HLL_8));
+    checkUpdatesDoNotAllocate(new ConcurrentHllSketch(12));
+  }
+
+  @Test
+  public void checkXxHash64() {
+    final int n = 10_000;
+    final HllSketch heap = new HllSketch(12, HLL_4, Hasher.XXHASH64);
+    final int bytes = getMaxUpdatableSerializationBytes(12, HLL_6);
+    final WritableMemory wmem = WritableMemory.allocate(bytes);
+    final HllSketch direct = new HllSketch(12, HLL_6, wmem, Hasher.XXHASH64);
+    final HllSketch murmur = new HllSketch(12, HLL_4);
+    for (int i = 0; i < n; i++) {
+      heap.update(i);
+      direct.update(i);
+      murmur.update(i);
+    }
+    assertEquals(heap.getHasher(), Hasher.XXHASH64);
+    assertEquals(direct.getHasher(), Hasher.XXHASH64);
+    assertEquals(heap.getEstimate(), n, n * 0.05);
+    assertEquals(direct.getEstimate(), heap.getEstimate());
+    assertTrue(heap.getEstimate() != murmur.getEstimate());
+    assertEquals(murmur.toCompactByteArray()[PreambleUtil.MODE_BYTE] & 0XF0, 0);
+
+    //the hasher survives serialization and promotion, and is kept in memory by reset
+    assertEquals(HllSketch.heapify(heap.toCompactByteArray()).getHasher(), Hasher.XXHASH64);
+    assertEquals(HllSketch.heapify(heap.toUpdatableByteArray()).getHasher(), Hasher.XXHASH64);
+    assertEquals(HllSketch.wrap(Memory.wrap(heap.toCompactByteArray())).getHasher(),
+        Hasher.XXHASH64);
+    assertEquals(HllSketch.writableWrap(wmem).getHasher(), Hasher.XXHASH64);
+    assertEquals(heap.copyAs(HLL_8).getHasher(), Hasher.XXHASH64);
+    direct.reset();
+    assertEquals(HllSketch.writableWrap(wmem).getHasher(), Hasher.XXHASH64);
+
+    //unions accept only sketches with the same hasher
+    final Union xxUnion = new Union(12, Hasher.XXHASH64);
+    xxUnion.update(heap);
+    assertEquals(xxUnion.getEstimate(), heap.getEstimate(), n * 0.02);
+    assertEquals(xxUnion.getResult().getHasher(), Hasher.XXHASH64);
+    assertEquals(Union.heapify(xxUnion.toCompactByteArray()).getHasher(), Hasher.XXHASH64);
+    try {
+      xxUnion.update(murmur);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+    try {
+      new Union(12).update(heap);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+  }
+
+  static void checkUpdatesDoNotAllocate(final BaseHllSketch sk) {
+    final byte[] barr = { 1, 2, 3 };
+    final char[] carr = { 'a', 'b' };
+    final int[] iarr = { 4, 5 };
+    final long[] larr = { 6L, 7L };
+    final int n = 1000;
+    assertAllocationFree(6 * n, () -> { //the first run fills the sketch
+      for (int i = 0; i < n; i++) {
+        sk.update(i);
+        sk.update(i + 0.5);
+        sk.update(barr);
+        sk.update(carr);
+        sk.update(iarr);
+        sk.update(larr);
+      }
+    });
+    assertEquals(sk.getEstimate(), (2 * n) + 4, ((2 * n) + 4) * 0.05);
+  }
+
+  @Test
+  public void checkCharSequenceAndByteSliceUpdates() {
+    final int n = 1000;
+    final String[] keys = new String[n];
+    final StringBuilder[] builders = new StringBuilder[n];
+    final byte[] buf = new byte[n * 8];
+    for (int i = 0; i < n; i++) {
+      keys[i] = "k\u00e9y" + i;
+      builders[i] = new StringBuilder(keys[i]);
+      final byte[] bytes = keys[i].getBytes(UTF_8);
+      System.arraycopy(bytes, 0, buf, i * 8, bytes.length);
+    }
+    final HllSketch strings = new HllSketch(12);
+    final HllSketch seqs = new HllSketch(12);
+    final HllSketch slices = new HllSketch(12);
+    for (int i = 0; i < n; i++) {
+      strings.update(keys[i]);
+      seqs.update(builders[i]);
+      slices.update(buf, i * 8, keys[i].getBytes(UTF_8).length);
+    }
+    assertEquals(seqs.toUpdatableByteArray(), strings.toUpdatableByteArray());
+    assertEquals(slices.toUpdatableByteArray(), strings.toUpdatableByteArray());
+    assertAllocationFree(2 * n, () -> {
+      for (int i = 0; i < n; i++) {
+        strings.update(keys[i]);
+        seqs.update(builders[i]);
+      }
+    });
+  }
+
+  private static void assertBatchEquals(final HllSketch batch, final HllSketch single) {
+    assertEquals(batch.getCurMode(), single.getCurMode());
+    assertEquals(batch.getEstimate(), single.getEstimate());
+    assertEquals(batch.toUpdatableByteArray(), single.toUpdatableByteArray());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.hll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ParallelUnionTest {
+
+  @Test
+  public void checkSketchArraysMatchSequentialUnion() {
+    final HllSketch[] sketches = randomSketches(new Random(1), 300, 20_000, Hasher.MURMUR3);
+    for (final int lgMaxK : new int[] { 4, 9, 12 }) {
+      final HllSketch expected = sequentialResult(lgMaxK, Hasher.MURMUR3, sketches);
+      for (final int parallelism : new int[] { 1, 2, 3, 8 }) {
+        final ParallelUnion union = new ParallelUnion(lgMaxK, Hasher.MURMUR3, parallelism);
+        union.update(sketches);
+        checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+        assertEquals(union.getEstimate(), expected.getEstimate());
+        assertEquals(union.getParallelism(), parallelism);
+      }
+    }
+  }
+
+  @Test
+  public void checkMemoryArraysAndCollections() {
+    final HllSketch[] sketches = randomSketches(new Random(2), 200, 5000, Hasher.XXHASH64);
+    final Memory[] mems = new Memory[sketches.length];
+    for (int i = 0; i < sketches.length; i++) {
+      mems[i] = (sketches[i] == null) ? null
+          : Memory.wrap(((i % 2) == 0)
+              ? sketches[i].toCompactByteArray() : sketches[i].toUpdatableByteArray());
+    }
+    final HllSketch expected = sequentialResult(10, Hasher.XXHASH64, sketches);
+    final ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      final ParallelUnion union = new ParallelUnion(10, Hasher.XXHASH64, 5, pool);
+      union.update(mems);
+      checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+      assertEquals(union.getHasher(), Hasher.XXHASH64);
+
+      union.reset();
+      union.update(Arrays.asList(sketches));
+      checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+      assertEquals(union.getResult().getTgtHllType(), TgtHllType.HLL_4);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void checkStreams() {
+    final HllSketch[] sketches = randomSketches(new Random(3), 300, 5000, Hasher.MURMUR3);
+    final HllSketch expected = sequentialResult(11, Hasher.MURMUR3, sketches);
+    final ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      final ParallelUnion union = new ParallelUnion(11, Hasher.MURMUR3, 4, pool);
+      union.update(Arrays.stream(sketches));
+      checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+
+      //a parallel stream of unknown size, given in two parts
+      union.reset();
+      final int half = sketches.length / 2;
+      union.update(IntStream.range(0, half).filter(i -> true).mapToObj(i -> sketches[i])
+          .parallel());
+      union.update(Arrays.stream(sketches, half, sketches.length));
+      checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void checkCouponInputsOnly() {
+    //small sketches leave the union in a coupon mode, which has the same estimate in any order
+    final HllSketch[] sketches = new HllSketch[40];
+    for (int i = 0; i < sketches.length; i++) {
+      sketches[i] = new HllSketch(12, TgtHllType.values()[i % 3]);
+      for (int j = 0; j < 5; j++) { sketches[i].update((i * 3) + j); }
+    }
+    final HllSketch expected = sequentialResult(12, Hasher.MURMUR3, sketches);
+    final ParallelUnion union = new ParallelUnion(12, Hasher.MURMUR3, 4);
+    union.update(sketches);
+    final HllSketch result = union.getResult(TgtHllType.HLL_8);
+    assertEquals(result.getCurMode(), CurMode.SET);
+    checkSameResult(result, expected);
+    assertEquals(result.getEstimate(), expected.getEstimate());
+  }
+
+  @Test
+  public void checkConcurrentSingleUpdates() throws Exception {
+    final HllSketch[] sketches = randomSketches(new Random(4), 400, 5000, Hasher.MURMUR3);
+    final HllSketch expected = sequentialResult(11, Hasher.MURMUR3, sketches);
+    final ParallelUnion union = new ParallelUnion(11, Hasher.MURMUR3, 3);
+    final int numThreads = 4;
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int first = t;
+      threads[t] = new Thread(() -> {
+        for (int i = first; i < sketches.length; i += numThreads) {
+          if ((i % 2) == 0) {
+            union.update(sketches[i]);
+          } else {
+            union.update((sketches[i] == null) ? null
+                : Memory.wrap(sketches[i].toCompactByteArray()));
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (final Thread thread : threads) { thread.join(); }
+    checkSameResult(union.getResult(TgtHllType.HLL_8), expected);
+  }
+
+  @Test
+  public void checkEmptyAndReset() {
+    final ParallelUnion union = new ParallelUnion(12);
+    assertEquals(union.getResult().toCompactByteArray(),
+        new Union(12).getResult().toCompactByteArray());
+    union.update(new HllSketch[] { null, new HllSketch(10) });
+    union.update((HllSketch[]) null);
+    union.update((Memory[]) null);
+    union.update((List<HllSketch>) null);
+    union.update((Stream<HllSketch>) null);
+    union.update(Stream.<HllSketch>empty());
+    assertTrue(union.getResult().isEmpty());
+    final HllSketch sk = new HllSketch(10);
+    sk.update(1);
+    union.update(sk);
+    assertEquals(union.getEstimate(), 1.0, 0.0);
+    union.reset();
+    assertTrue(union.getResult().isEmpty());
+    assertEquals(union.getLgMaxK(), 12);
+    println(union.toString());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkHasherMismatch() {
+    final HllSketch sk = new HllSketch(10, TgtHllType.HLL_4, Hasher.XXHASH64);
+    sk.update(1);
+    new ParallelUnion(10, Hasher.MURMUR3, 2).update(new HllSketch[] { sk, sk, sk });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadParallelism() {
+    new ParallelUnion(10, Hasher.MURMUR3, 0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullPool() {
+    new ParallelUnion(10, Hasher.MURMUR3, 2, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadLgMaxK() {
+    new ParallelUnion(22);
+  }
+
+  private static void checkSameResult(final HllSketch result, final HllSketch expected) {
+    assertEquals(result.getLgConfigK(), expected.getLgConfigK());
+    assertEquals(result.getCurMode(), expected.getCurMode());
+    if (result.getCurMode() == CurMode.HLL) {
+      assertEquals(registers(result), registers(expected));
+    } else {
+      assertEquals(coupons(result), coupons(expected));
+    }
+    assertEquals(result.getEstimate(), expected.getEstimate(), 0.05 * expected.getEstimate());
+  }
+
+  private static HllSketch sequentialResult(final int lgMaxK, final Hasher hasher,
+      final HllSketch[] sketches) {
+    final Union union = new Union(lgMaxK, hasher);
+    for (final HllSketch sk : sketches) { union.update(sk); }
+    return union.getResult(TgtHllType.HLL_8);
+  }
+
+  private static int[] registers(final HllSketch sk) {
+    final int[] regs = new int[1 << sk.getLgConfigK()];
+    final PairIterator itr = sk.iterator();
+    while (itr.nextAll()) { regs[itr.getSlot()] = itr.getValue(); }
+    return regs;
+  }
+
+  private static int[] coupons(final HllSketch sk) {
+    final int[] pairs = new int[((AbstractCoupons) sk.hllSketchImpl).getCouponCount()];
+    final PairIterator itr = sk.iterator();
+    for (int i = 0; itr.nextValid(); i++) { pairs[i] = itr.getPair(); }
+    Arrays.sort(pairs);
+    return pairs;
+  }
+
+  /**
+   * Returns sketches of overlapping streams in all forms: all types, different lgK, all modes,
+   * on-heap and direct, single items, empty and null.
+   */
+  private static HllSketch[] randomSketches(final Random rand, final int num, final int maxN,
+      final Hasher hasher) {
+    final HllSketch[] sketches = new HllSketch[num];
+    for (int i = 0; i < num; i++) {
+      final int lgK = 6 + rand.nextInt(8);
+      final TgtHllType type = TgtHllType.values()[i % 3];
+      final HllSketch sk = ((i % 4) == 1)
+          ? new HllSketch(lgK, type, WritableMemory.allocate(
+              HllSketch.getMaxUpdatableSerializationBytes(lgK, type)), hasher)
+          : new HllSketch(lgK, type, hasher);
+      final int n = (i % 10) == 0 ? rand.nextInt(2) : rand.nextInt(maxN);
+      final long start = rand.nextInt(4 * maxN);
+      for (int j = 0; j < n; j++) { sk.update(start + j); }
+      sketches[i] = ((i % 13) == 0) ? null : sk;
+    }
+    return sketches;
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
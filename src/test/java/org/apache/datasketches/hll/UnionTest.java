@@ -460,6 +460,56 @@ public class UnionTest {
     assertFalse(rebuild);
   }
 
+  @Test
+  public void checkPackedMergeAllCombinations() {
+    final int[] lgKs = { 4, 5, 8, 11 };
+    boolean auxSeen = false;
+    for (final TgtHllType srcType : TgtHllType.values()) {
+      for (final int srcLgK : lgKs) {
+        final HllSketch srcHeap = new HllSketch(srcLgK, srcType);
+        for (int i = 0; i < (1 << (srcLgK + 9)); i++) { srcHeap.update(i); }
+        if (srcType == HLL_4) {
+          final AuxHashMap auxMap = ((AbstractHllArray) srcHeap.hllSketchImpl).getAuxHashMap();
+          auxSeen |= (auxMap != null) && (auxMap.getAuxCount() > 0);
+        }
+        final HllSketch srcMem =
+            HllSketch.writableWrap(WritableMemory.wrap(srcHeap.toUpdatableByteArray()));
+        for (final int tgtLgK : lgKs) {
+          final HllSketch base = new HllSketch(tgtLgK, HLL_8);
+          for (int i = 0; i < (tgtLgK << 8); i++) { base.update(-1 - i); }
+          final int[] expected = foldedMax(base, srcHeap, min(srcLgK, tgtLgK));
+          for (final HllSketch src : new HllSketch[] { srcHeap, srcMem }) {
+            final WritableMemory wmem =
+                WritableMemory.allocate(Union.getMaxSerializationBytes(tgtLgK));
+            for (final Union union : new Union[] { new Union(tgtLgK), new Union(tgtLgK, wmem) }) {
+              union.update(base);
+              union.update(src);
+              final HllSketch result = union.getResult(HLL_8);
+              final PairIterator itr = result.iterator();
+              while (itr.nextAll()) {
+                assertEquals(itr.getValue(), expected[itr.getSlot()]);
+              }
+            }
+          }
+        }
+      }
+    }
+    assertTrue(auxSeen);
+  }
+
+  //the registers of both sketches, folded to the given lgK, and the maximum of each register
+  private static int[] foldedMax(final HllSketch sk1, final HllSketch sk2, final int lgK) {
+    final int[] registers = new int[1 << lgK];
+    for (final HllSketch sk : new HllSketch[] { sk1, sk2 }) {
+      final PairIterator itr = sk.iterator();
+      while (itr.nextAll()) {
+        final int slot = itr.getSlot() & ((1 << lgK) - 1);
+        registers[slot] = Math.max(registers[slot], itr.getValue());
+      }
+    }
+    return registers;
+  }
+
   @SuppressWarnings("unused")
   @Test //similar to above except uses wrap instead of heapify
   public void druidUseCase() {
@@ -26,7 +26,10 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesReadOnlyException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
 
 @SuppressWarnings("javadoc")
 public class UniqueCountMapTest {
@@ -182,7 +185,125 @@ public class UniqueCountMapTest {
     //println(map.toString());
   }
 
+  @Test
+  public void serializeHeapifyAndWrap() {
+    UniqueCountMap map = buildAllLevels();
+    Assert.assertEquals(map.getActiveMaps(), 10);
+    byte[] bytes = map.toByteArray();
+    Assert.assertEquals(bytes.length, map.getSerializationBytes());
+    Memory mem = Memory.wrap(bytes);
+    println(PreambleUtil.preambleToString(mem));
+
+    UniqueCountMap heapMap = UniqueCountMap.heapify(mem);
+    UniqueCountMap wrapMap = UniqueCountMap.wrap(mem);
+    Assert.assertEquals(heapMap.getActiveMaps(), map.getActiveMaps());
+    Assert.assertEquals(wrapMap.getActiveMaps(), map.getActiveMaps());
+    Assert.assertEquals(heapMap.getActiveEntries(), map.getActiveEntries());
+    Assert.assertEquals(wrapMap.getActiveEntries(), map.getActiveEntries());
+    Assert.assertEquals(wrapMap.getKeyMemoryUsageBytes(), map.getKeyMemoryUsageBytes());
+    byte[] key = new byte[4];
+    for (int k = 1; k <= 400; k++) {
+      key = Util.intToBytes(k, key);
+      final double est = map.getEstimate(key);
+      Assert.assertEquals(heapMap.getEstimate(key), est);
+      Assert.assertEquals(wrapMap.getEstimate(key), est);
+      Assert.assertEquals(wrapMap.getUpperBound(key), map.getUpperBound(key));
+      Assert.assertEquals(wrapMap.getLowerBound(key), map.getLowerBound(key));
+    }
+    key = Util.intToBytes(1000, key); // not in the map
+    Assert.assertEquals(wrapMap.getEstimate(key), 0.0);
+    Assert.assertEquals(wrapMap.update(key, null), 0.0);
+    Assert.assertEquals(heapMap.toByteArray(), bytes);
+    Assert.assertEquals(wrapMap.toByteArray(), bytes);
+    println(wrapMap.toString());
+  }
+
+  @Test
+  public void putMemoryAndWrapWritableMemory() {
+    UniqueCountMap map = buildAllLevels();
+    WritableMemory wmem = WritableMemory.allocate((int) map.getSerializationBytes() + 8);
+    map.putMemory(wmem);
+    UniqueCountMap wrapMap = UniqueCountMap.wrap(wmem);
+    byte[] key = Util.intToBytes(300, new byte[4]);
+    Assert.assertEquals(wrapMap.getEstimate(key), map.getEstimate(key));
+    Assert.assertEquals(wrapMap.toByteArray(), map.toByteArray());
+  }
+
+  @Test
+  public void updateHeapifiedMap() {
+    UniqueCountMap map = buildAllLevels();
+    UniqueCountMap heapMap = UniqueCountMap.heapify(Memory.wrap(map.toByteArray()));
+    byte[] key = new byte[4];
+    byte[] id = new byte[8];
+    for (int v = 1; v <= 300; v++) {
+      id = Util.longToBytes(hash(new long[] {v}, 1L)[0], id);
+      for (int k = 1; k <= 500; k += 7) {
+        key = Util.intToBytes(k, key);
+        Assert.assertEquals(heapMap.update(key, id), map.update(key, id));
+      }
+    }
+    Assert.assertEquals(heapMap.getActiveEntries(), map.getActiveEntries());
+    Assert.assertEquals(heapMap.toByteArray(), map.toByteArray());
+  }
+
+  @Test
+  public void serializeBaseMapOnly() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    UniqueCountMap wrapMap = UniqueCountMap.wrap(Memory.wrap(map.toByteArray()));
+    Assert.assertEquals(wrapMap.getActiveMaps(), 1);
+    Assert.assertEquals(wrapMap.getActiveEntries(), 0);
+    Assert.assertEquals(wrapMap.getEstimate("1234".getBytes(UTF_8)), 0.0);
+  }
+
+  @Test(expectedExceptions = SketchesReadOnlyException.class)
+  public void updateWrappedMap() {
+    UniqueCountMap map = buildAllLevels();
+    UniqueCountMap wrapMap = UniqueCountMap.wrap(Memory.wrap(map.toByteArray()));
+    wrapMap.update(Util.intToBytes(1, new byte[4]), new byte[] {1});
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void putMemoryTooSmall() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    map.putMemory(WritableMemory.allocate((int) map.getSerializationBytes() - 8));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapTruncatedMemory() {
+    byte[] bytes = buildAllLevels().toByteArray();
+    UniqueCountMap.wrap(Memory.wrap(bytes).region(0, bytes.length - 8));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void heapifyWrongMapId() {
+    WritableMemory wmem = WritableMemory.wrap(buildAllLevels().toByteArray());
+    wmem.putByte(PreambleUtil.MAP_ID_BYTE, (byte) 3); //the Family ID of QuickSelect
+    UniqueCountMap.heapify(wmem);
+  }
 
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapCorruptMapType() {
+    WritableMemory wmem = WritableMemory.wrap(buildAllLevels().toByteArray());
+    wmem.putByte(PreambleUtil.MAPS_START + PreambleUtil.MAP_TYPE_BYTE,
+        (byte) PreambleUtil.HLL_MAP);
+    UniqueCountMap.wrap(wmem);
+  }
+
+  // keys 1 to 400 with up to 2000 identifiers each, so that all the levels exist
+  private static UniqueCountMap buildAllLevels() {
+    UniqueCountMap map = new UniqueCountMap(INIT_ENTRIES, 4);
+    byte[] key = new byte[4];
+    byte[] id = new byte[8];
+    for (int k = 1; k <= 400; k++) {
+      key = Util.intToBytes(k, key);
+      final int numIds = (k % 10 == 0) ? 5 * k : (k % 20) + 1;
+      for (int v = 1; v <= numIds; v++) {
+        id = Util.longToBytes(hash(new long[] {v}, k)[0], id);
+        map.update(key, id);
+      }
+    }
+    return map;
+  }
 
   @Test
   public void printlnTest() {
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.SketchesReadOnlyException;
+import org.apache.datasketches.memory.DefaultMemoryRequestServer;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class DirectKllFloatsSketchTest {
+
+  private static final double PMF_EPS_FOR_K_200 = 0.02;
+
+  @Test
+  public void empty() {
+    final KllFloatsSketch sketch = newDirect(200);
+    sketch.update(Float.NaN); // this must not change anything
+    assertTrue(sketch.isDirect());
+    assertTrue(sketch.isEmpty());
+    assertEquals(sketch.getN(), 0);
+    assertEquals(sketch.getNumRetained(), 0);
+    assertTrue(Double.isNaN(sketch.getRank(0)));
+    assertTrue(Float.isNaN(sketch.getMinValue()));
+    assertTrue(Float.isNaN(sketch.getMaxValue()));
+    assertTrue(Float.isNaN(sketch.getQuantile(0.5)));
+    assertNull(sketch.getQuantiles(new double[] {0}));
+    assertNull(sketch.getPMF(new float[] {0}));
+    assertNotNull(sketch.toString(true, true));
+    assertEquals(sketch.toByteArray(), new KllFloatsSketch(200).toByteArray());
+  }
+
+  @Test
+  public void updatesMatchHeapSketch() {
+    final int n = 100000;
+    final KllFloatsSketch heap = new KllFloatsSketch(200);
+    // start with the minimum memory so that it must grow
+    final KllFloatsSketch direct = newDirect(200);
+    for (int i = 0; i < n; i++) {
+      heap.update(i);
+      direct.update(i);
+    }
+    // compaction choices are random, but the shape of the sketch is not
+    assertSameShape(direct, heap);
+    assertRanksWithinError(direct, n);
+  }
+
+  @Test
+  public void writableWrapAndContinue() {
+    final KllFloatsSketch heap = new KllFloatsSketch(200);
+    for (int i = 0; i < 5000; i++) { heap.update(i); }
+    // sized so that it never needs to grow
+    final WritableMemory wmem =
+        WritableMemory.allocate(KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(200, 20001));
+    wmem.putByteArray(0, heap.toUpdatableByteArray(), 0, heap.getUpdatableSerializedSizeBytes());
+    final KllFloatsSketch direct = KllFloatsSketch.writableWrap(wmem, null);
+    assertSameShape(direct, heap);
+    assertEquals(direct.toByteArray(), heap.toByteArray());
+    for (int i = 5000; i < 20000; i++) {
+      heap.update(i);
+      direct.update(i);
+    }
+    assertSameShape(direct, heap);
+    assertRanksWithinError(direct, 20000);
+
+    // a second wrap of the same memory sees the same state
+    final KllFloatsSketch direct2 =
+        KllFloatsSketch.writableWrap(wmem, new DefaultMemoryRequestServer());
+    direct2.update(20000);
+    assertEquals(direct2.getN(), 20001);
+  }
+
+  @Test
+  public void readOnlyWrap() {
+    final KllFloatsSketch heap = new KllFloatsSketch(200);
+    for (int i = 1000; i > 0; i--) { heap.update(i); } // level zero is left unsorted
+    final byte[] bytes = heap.toUpdatableByteArray();
+    final byte[] copy = bytes.clone();
+    final KllFloatsSketch direct = KllFloatsSketch.wrap(Memory.wrap(bytes));
+    assertSameShape(direct, heap);
+    assertEquals(direct.getQuantile(0.5), heap.getQuantile(0.5));
+    assertEquals(direct.getPMF(new float[] {500}), heap.getPMF(new float[] {500}));
+    assertEquals(direct.getRank(250), heap.getRank(250));
+    // queries must not sort the read-only memory
+    assertEquals(bytes, copy);
+    try {
+      direct.update(1);
+      assertTrue(false);
+    } catch (final SketchesReadOnlyException e) { }
+    try {
+      direct.merge(heap);
+      assertTrue(false);
+    } catch (final SketchesReadOnlyException e) { }
+  }
+
+  @Test
+  public void queriesSortLevelZeroInPlace() {
+    final KllFloatsSketch direct = newDirect(200);
+    for (int i = 100; i > 0; i--) { direct.update(i); }
+    assertFalse(direct.isLevelZeroSorted());
+    assertEquals(direct.getQuantile(0.5), 51f);
+    assertTrue(direct.isLevelZeroSorted());
+    final KllFloatsSketchIterator it = direct.iterator();
+    float prev = 0;
+    int count = 0;
+    while (it.next()) {
+      assertTrue(it.getValue() > prev);
+      prev = it.getValue();
+      count++;
+    }
+    assertEquals(count, 100);
+  }
+
+  @Test
+  public void heapifyUpdatableForm() {
+    final KllFloatsSketch direct = newDirect(100);
+    for (int i = 0; i < 10000; i++) { direct.update(i); }
+    final byte[] bytes = direct.toUpdatableByteArray();
+    final KllFloatsSketch heap = KllFloatsSketch.heapify(Memory.wrap(bytes));
+    assertFalse(heap.isDirect());
+    assertSameShape(heap, direct);
+    assertEquals(heap.toByteArray(), direct.toByteArray());
+    assertEquals(heap.toUpdatableByteArray(), bytes);
+  }
+
+  @Test
+  public void merge() {
+    final int n = 10000;
+    final KllFloatsSketch direct1 = newDirect(200);
+    final KllFloatsSketch heap1 = new KllFloatsSketch(200);
+    final KllFloatsSketch direct2 = newDirect(200);
+    for (int i = 0; i < n; i++) {
+      direct1.update(i);
+      heap1.update(i);
+      direct2.update((2 * n) - i - 1);
+    }
+    direct1.merge(direct2);
+    heap1.merge(direct2);
+    assertSameShape(direct1, heap1);
+    assertEquals(direct1.getMinValue(), 0f);
+    assertEquals(direct1.getMaxValue(), (2f * n) - 1);
+    assertRanksWithinError(direct1, 2 * n);
+  }
+
+  @Test
+  public void mergeLowerK() {
+    final KllFloatsSketch direct1 = newDirect(256);
+    final KllFloatsSketch heap2 = new KllFloatsSketch(128);
+    for (int i = 0; i < 10000; i++) {
+      direct1.update(i);
+      heap2.update(i + 10000);
+    }
+    direct1.merge(heap2);
+    assertEquals(direct1.getNormalizedRankError(false), heap2.getNormalizedRankError(false));
+    assertEquals(direct1.getN(), 20000);
+  }
+
+  @Test
+  public void presizedMemoryDoesNotGrow() {
+    final int n = 1000000;
+    final int bytes = KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(200, n);
+    final WritableMemory wmem = WritableMemory.allocate(bytes);
+    final KllFloatsSketch direct = KllFloatsSketch.newDirectInstance(200, wmem, null);
+    for (int i = 0; i < n; i++) { direct.update(i); }
+    assertTrue(direct.getUpdatableSerializedSizeBytes() <= bytes);
+    // still wrapping the original memory
+    assertEquals(KllFloatsSketch.wrap(wmem).getN(), n);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapCompactForm() {
+    final KllFloatsSketch heap = new KllFloatsSketch();
+    heap.update(1);
+    heap.update(2);
+    KllFloatsSketch.wrap(Memory.wrap(heap.toByteArray()));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void newDirectInstanceMemoryTooSmall() {
+    final int bytes = KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(200, 0);
+    KllFloatsSketch.newDirectInstance(200, WritableMemory.allocate(bytes - 1), null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapTruncatedMemory() {
+    final KllFloatsSketch heap = new KllFloatsSketch();
+    for (int i = 0; i < 1000; i++) { heap.update(i); }
+    final byte[] bytes = heap.toUpdatableByteArray();
+    KllFloatsSketch.wrap(Memory.wrap(Arrays.copyOf(bytes, bytes.length - 4)));
+  }
+
+  private static KllFloatsSketch newDirect(final int k) {
+    final int bytes = KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(k, 0);
+    return KllFloatsSketch.newDirectInstance(k, WritableMemory.allocate(bytes), null);
+  }
+
+  private static void assertSameShape(final KllFloatsSketch sk1, final KllFloatsSketch sk2) {
+    assertEquals(sk1.getN(), sk2.getN());
+    assertEquals(sk1.getK(), sk2.getK());
+    assertEquals(sk1.getNumRetained(), sk2.getNumRetained());
+    assertEquals(sk1.getNumLevels(), sk2.getNumLevels());
+    final int numLevels = sk1.getNumLevels();
+    assertEquals(Arrays.copyOf(sk1.getLevels(), numLevels + 1),
+        Arrays.copyOf(sk2.getLevels(), numLevels + 1));
+    assertEquals(sk1.getMinValue(), sk2.getMinValue());
+    assertEquals(sk1.getMaxValue(), sk2.getMaxValue());
+    assertEquals(sk1.getNormalizedRankError(false), sk2.getNormalizedRankError(false));
+    assertEquals(sk1.getUpdatableSerializedSizeBytes(), sk2.getUpdatableSerializedSizeBytes());
+    assertEquals(sk1.getSerializedSizeBytes(), sk2.getSerializedSizeBytes());
+  }
+
+  // the sketch was given the values 0 through n - 1
+  private static void assertRanksWithinError(final KllFloatsSketch sketch, final int n) {
+    for (int i = 0; i < n; i += n / 100) {
+      assertEquals(sketch.getRank(i), (double) i / n, PMF_EPS_FOR_K_200);
+    }
+    assertEquals(sketch.getQuantile(0.5), n / 2f, n * PMF_EPS_FOR_K_200);
+  }
+
+}
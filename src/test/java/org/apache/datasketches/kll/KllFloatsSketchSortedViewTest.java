@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class KllFloatsSketchSortedViewTest {
+
+  @Test
+  public void emptySketch() {
+    final KllFloatsSketchSortedView view = new KllFloatsSketch().getSortedView();
+    assertTrue(view.isEmpty());
+    assertTrue(Float.isNaN(view.getQuantile(0.5)));
+    assertTrue(Double.isNaN(view.getRank(1)));
+    assertNull(view.getPMF(new float[] {1}));
+    assertNull(view.getCDF(new float[] {1}));
+  }
+
+  @Test
+  public void matchesSketchQueries() {
+    final KllFloatsSketch sketch = new KllFloatsSketch(50);
+    for (int i = 0; i < 10000; i++) { sketch.update((i * 7919) % 10007); }
+    checkViewMatchesSketch(sketch);
+  }
+
+  @Test
+  public void matchesDirectSketchQueries() {
+    final KllFloatsSketch sketch = KllFloatsSketch.newDirectInstance(50,
+        WritableMemory.allocate(KllFloatsSketch.getMaxUpdatableSerializedSizeBytes(50, 10000)),
+        null);
+    for (int i = 0; i < 10000; i++) { sketch.update((i * 7919) % 10007); }
+    checkViewMatchesSketch(sketch);
+  }
+
+  @Test
+  public void matchesReadOnlySketchQueries() {
+    final KllFloatsSketch heap = new KllFloatsSketch(50);
+    for (int i = 0; i < 10000; i++) { heap.update((i * 7919) % 10007); }
+    checkViewMatchesSketch(KllFloatsSketch.wrap(Memory.wrap(heap.toUpdatableByteArray())));
+  }
+
+  @Test
+  public void cachedUntilUpdated() {
+    final KllFloatsSketch sketch = new KllFloatsSketch();
+    for (int i = 1; i <= 1000; i++) { sketch.update(i); }
+    final KllFloatsSketchSortedView view = sketch.getSortedView();
+    sketch.getQuantile(0.5);
+    assertSame(sketch.getSortedView(), view);
+    sketch.update(1001);
+    final KllFloatsSketchSortedView view2 = sketch.getSortedView();
+    assertNotSame(view2, view);
+    assertEquals(view.getN(), 1000);
+    assertEquals(view2.getN(), 1001);
+    assertEquals(view2.getQuantile(1.0), 1001f);
+  }
+
+  @Test
+  public void rebuiltAfterMerge() {
+    final KllFloatsSketch sketch1 = new KllFloatsSketch();
+    final KllFloatsSketch sketch2 = new KllFloatsSketch();
+    for (int i = 0; i < 100; i++) {
+      sketch1.update(i);
+      sketch2.update(i + 100);
+    }
+    assertEquals(sketch1.getQuantile(1.0), 99f);
+    sketch1.merge(sketch2);
+    assertEquals(sketch1.getQuantile(1.0), 199f);
+    assertEquals(sketch1.getRank(100), 0.5);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void fractionOutOfRange() {
+    final KllFloatsSketch sketch = new KllFloatsSketch();
+    sketch.update(1);
+    sketch.getSortedView().getQuantile(-0.5);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void splitPointsOutOfOrder() {
+    final KllFloatsSketch sketch = new KllFloatsSketch();
+    sketch.update(1);
+    sketch.getSortedView().getPMF(new float[] {2, 1});
+  }
+
+  // the rank, PMF and CDF queries of the sketch must be answered before its view is cached
+  private static void checkViewMatchesSketch(final KllFloatsSketch sketch) {
+    final float[] splitPoints = {-1, 0, 500, 1000, 5000.5f, 9999, 10006, 20000};
+    final double[] ranks = new double[splitPoints.length];
+    for (int i = 0; i < splitPoints.length; i++) {
+      ranks[i] = sketch.getRank(splitPoints[i]);
+    }
+    final double[] pmf = sketch.getPMF(splitPoints);
+    final double[] cdf = sketch.getCDF(splitPoints);
+
+    final KllFloatsSketchSortedView view = sketch.getSortedView();
+    assertEquals(view.getN(), sketch.getN());
+    for (int i = 0; i < splitPoints.length; i++) {
+      assertEquals(view.getRank(splitPoints[i]), ranks[i]);
+      assertEquals(sketch.getRank(splitPoints[i]), ranks[i]);
+    }
+    assertEquals(view.getPMF(splitPoints), pmf);
+    assertEquals(view.getCDF(splitPoints), cdf);
+    assertEquals(sketch.getPMF(splitPoints), pmf);
+    assertEquals(sketch.getCDF(splitPoints), cdf);
+    assertEquals(view.getQuantile(0), sketch.getMinValue());
+    assertEquals(view.getQuantile(1), sketch.getMaxValue());
+    final float[] quantiles = sketch.getQuantiles(100);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(view.getQuantile(i / 99.0), quantiles[i]);
+    }
+  }
+
+}
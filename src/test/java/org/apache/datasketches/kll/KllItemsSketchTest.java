@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.kll;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Comparator;
+
+import org.apache.datasketches.ArrayOfDoublesSerDe;
+import org.apache.datasketches.ArrayOfLongsSerDe;
+import org.apache.datasketches.ArrayOfStringsSerDe;
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class KllItemsSketchTest {
+
+  private static final double PMF_EPS_FOR_K_256 = 0.013; // PMF rank error (epsilon) for k=256
+  private static final double PMF_EPS_FOR_K_128 = 0.025; // PMF rank error (epsilon) for k=128
+  private static final double NUMERIC_NOISE_TOLERANCE = 1E-6;
+
+  @Test
+  public void empty() {
+    final KllItemsSketch<String> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch.update(null); // this must not change anything
+    assertTrue(sketch.isEmpty());
+    assertEquals(sketch.getN(), 0);
+    assertEquals(sketch.getNumRetained(), 0);
+    assertTrue(Double.isNaN(sketch.getRank("a")));
+    assertNull(sketch.getMinValue());
+    assertNull(sketch.getMaxValue());
+    assertNull(sketch.getQuantile(0.5));
+    assertNull(sketch.getQuantiles(new double[] {0}));
+    assertNull(sketch.getPMF(new String[] {"a"}));
+    assertNotNull(sketch.toString(true, true));
+    assertEquals(sketch.toByteArray(new ArrayOfStringsSerDe()).length, 8);
+  }
+
+  @Test
+  public void oneItem() {
+    final KllItemsSketch<String> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch.update("b");
+    assertFalse(sketch.isEmpty());
+    assertEquals(sketch.getN(), 1);
+    assertEquals(sketch.getNumRetained(), 1);
+    assertEquals(sketch.getRank("b"), 0.0);
+    assertEquals(sketch.getRank("c"), 1.0);
+    assertEquals(sketch.getMinValue(), "b");
+    assertEquals(sketch.getMaxValue(), "b");
+    assertEquals(sketch.getQuantile(0.5), "b");
+  }
+
+  @Test
+  public void manyItemsEstimationMode() {
+    final KllItemsSketch<Long> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    final int n = 1000000;
+    for (long i = 0; i < n; i++) {
+      sketch.update(i);
+    }
+    assertEquals(sketch.getN(), n);
+    assertTrue(sketch.isEstimationMode());
+    for (long i = 0; i < n; i += 1000) {
+      assertEquals(sketch.getRank(i), (double) i / n, PMF_EPS_FOR_K_256, "for value " + i);
+    }
+    final double[] pmf = sketch.getPMF(new Long[] {(long) n / 2}); // split at median
+    assertEquals(pmf.length, 2);
+    assertEquals(pmf[0], 0.5, PMF_EPS_FOR_K_256);
+    assertEquals(pmf[1], 0.5, PMF_EPS_FOR_K_256);
+    assertEquals(sketch.getMinValue(), Long.valueOf(0));
+    assertEquals(sketch.getMaxValue(), Long.valueOf(n - 1));
+
+    final Long[] quantiles = sketch.getQuantiles(1001);
+    long previous = 0;
+    for (int i = 0; i <= 1000; i++) {
+      assertEquals(sketch.getQuantile(i / 1000.0), quantiles[i]);
+      assertTrue(previous <= quantiles[i]);
+      previous = quantiles[i];
+    }
+    long totalWeight = 0;
+    final KllItemsSketchIterator<Long> it = sketch.iterator();
+    while (it.next()) {
+      assertNotNull(it.getValue());
+      totalWeight += it.getWeight();
+    }
+    assertEquals(totalWeight, n);
+  }
+
+  @Test
+  public void getRankGetCdfGetPmfConsistency() {
+    final KllItemsSketch<Long> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    final int n = 1000;
+    final Long[] values = new Long[n];
+    for (int i = 0; i < n; i++) {
+      sketch.update((long) i);
+      values[i] = (long) i;
+    }
+    final double[] ranks = sketch.getCDF(values);
+    final double[] pmf = sketch.getPMF(values);
+    double sumPmf = 0;
+    for (int i = 0; i < n; i++) {
+      assertEquals(ranks[i], sketch.getRank(values[i]), NUMERIC_NOISE_TOLERANCE,
+          "rank vs CDF for value " + i);
+      sumPmf += pmf[i];
+      assertEquals(ranks[i], sumPmf, NUMERIC_NOISE_TOLERANCE, "CDF vs PMF for value " + i);
+    }
+    sumPmf += pmf[n];
+    assertEquals(sumPmf, 1.0, NUMERIC_NOISE_TOLERANCE);
+    assertEquals(ranks[n], 1.0, NUMERIC_NOISE_TOLERANCE);
+  }
+
+  @Test
+  public void customComparator() {
+    final KllItemsSketch<String> sketch =
+        new KllItemsSketch<>(200, Comparator.comparing(String::length));
+    for (int i = 1; i <= 150; i++) {
+      sketch.update(Integer.toString(i)); // lengths 1 to 3
+    }
+    assertFalse(sketch.isEstimationMode());
+    assertEquals(sketch.getMinValue(), "1"); // the first of the shortest
+    assertEquals(sketch.getMaxValue(), "100"); // the first of the longest
+    assertEquals(sketch.getRank("00"), 9 / 150.0);
+    assertEquals(sketch.getCDF(new String[] {"0", "00"}), new double[] {0, 9 / 150.0, 1});
+  }
+
+  @Test
+  public void merge() {
+    final KllItemsSketch<Long> sketch1 = new KllItemsSketch<>(Comparator.naturalOrder());
+    final KllItemsSketch<Long> sketch2 = new KllItemsSketch<>(Comparator.naturalOrder());
+    final int n = 10000;
+    for (long i = 0; i < n; i++) {
+      sketch1.update(i);
+      sketch2.update((2L * n) - i - 1);
+    }
+    sketch1.merge(sketch2);
+    assertFalse(sketch1.isEmpty());
+    assertEquals(sketch1.getN(), 2L * n);
+    assertEquals(sketch1.getMinValue(), Long.valueOf(0));
+    assertEquals(sketch1.getMaxValue(), Long.valueOf((2L * n) - 1));
+    assertEquals(sketch1.getQuantile(0.5), n, n * PMF_EPS_FOR_K_256);
+  }
+
+  @Test
+  public void mergeLowerK() {
+    final KllItemsSketch<Long> sketch1 = new KllItemsSketch<>(256, Comparator.naturalOrder());
+    final KllItemsSketch<Long> sketch2 = new KllItemsSketch<>(128, Comparator.naturalOrder());
+    final int n = 10000;
+    for (long i = 0; i < n; i++) {
+      sketch1.update(i);
+      sketch2.update((2L * n) - i - 1);
+    }
+    sketch1.merge(sketch2);
+    assertEquals(sketch1.getNormalizedRankError(false), sketch2.getNormalizedRankError(false));
+    assertEquals(sketch1.getN(), 2L * n);
+    assertEquals(sketch1.getQuantile(0.5), n, n * PMF_EPS_FOR_K_128);
+  }
+
+  @Test
+  public void mergeMinAndMaxFromOther() {
+    final KllItemsSketch<Long> sketch1 = new KllItemsSketch<>(Comparator.naturalOrder());
+    final KllItemsSketch<Long> sketch2 = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch1.update(5L);
+    for (long i = 1; i <= 1000000; i++) {
+      sketch2.update(i);
+    }
+    sketch1.merge(sketch2);
+    assertEquals(sketch1.getMinValue(), Long.valueOf(1));
+    assertEquals(sketch1.getMaxValue(), Long.valueOf(1000000));
+  }
+
+  @Test
+  public void serializeDeserializeEmpty() {
+    final KllItemsSketch<String> sketch1 = new KllItemsSketch<>(Comparator.naturalOrder());
+    final byte[] bytes = sketch1.toByteArray(new ArrayOfStringsSerDe());
+    final KllItemsSketch<String> sketch2 = KllItemsSketch.heapify(Memory.wrap(bytes),
+        Comparator.naturalOrder(), new ArrayOfStringsSerDe());
+    assertTrue(sketch2.isEmpty());
+    assertEquals(sketch2.getK(), sketch1.getK());
+    assertNull(sketch2.getMinValue());
+  }
+
+  @Test
+  public void serializeDeserializeOneItem() {
+    final KllItemsSketch<String> sketch1 = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch1.update("abc");
+    final byte[] bytes = sketch1.toByteArray(new ArrayOfStringsSerDe());
+    assertEquals(bytes.length, 8 + Integer.BYTES + 3);
+    final KllItemsSketch<String> sketch2 = KllItemsSketch.heapify(Memory.wrap(bytes),
+        Comparator.naturalOrder(), new ArrayOfStringsSerDe());
+    assertEquals(sketch2.getN(), 1);
+    assertEquals(sketch2.getNumRetained(), 1);
+    assertEquals(sketch2.getMinValue(), "abc");
+    assertEquals(sketch2.getMaxValue(), "abc");
+    assertEquals(sketch2.getQuantile(0.5), "abc");
+  }
+
+  @Test
+  public void serializeDeserialize() {
+    final KllItemsSketch<Long> sketch1 = new KllItemsSketch<>(Comparator.naturalOrder());
+    for (long i = 0; i < 10000; i++) {
+      sketch1.update(i);
+    }
+    final byte[] bytes = sketch1.toByteArray(new ArrayOfLongsSerDe());
+    final KllItemsSketch<Long> sketch2 = KllItemsSketch.heapify(Memory.wrap(bytes),
+        Comparator.naturalOrder(), new ArrayOfLongsSerDe());
+    assertEquals(sketch2.getN(), sketch1.getN());
+    assertEquals(sketch2.getNumRetained(), sketch1.getNumRetained());
+    assertEquals(sketch2.getNormalizedRankError(false), sketch1.getNormalizedRankError(false));
+    assertEquals(sketch2.getMinValue(), sketch1.getMinValue());
+    assertEquals(sketch2.getMaxValue(), sketch1.getMaxValue());
+    assertEquals(sketch2.getQuantiles(11), sketch1.getQuantiles(11));
+    assertEquals(sketch2.toByteArray(new ArrayOfLongsSerDe()),
+        sketch1.toByteArray(new ArrayOfLongsSerDe()));
+    // the heapified sketch keeps working
+    for (long i = 10000; i < 20000; i++) {
+      sketch2.update(i);
+    }
+    assertEquals(sketch2.getRank(10000L), 0.5, PMF_EPS_FOR_K_256);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void heapifyDoublesSketch() {
+    final KllDoublesSketch sketch = new KllDoublesSketch();
+    sketch.update(1);
+    sketch.update(2);
+    KllItemsSketch.heapify(Memory.wrap(sketch.toByteArray()), Comparator.<Double>naturalOrder(),
+        new ArrayOfDoublesSerDe());
+  }
+
+  @Test
+  public void sortedViewMatchesSketch() {
+    final KllItemsSketch<Long> sketch = new KllItemsSketch<>(50, Comparator.naturalOrder());
+    for (long i = 0; i < 10000; i++) { sketch.update((i * 7919) % 10007); }
+    final Long[] splitPoints = {-1L, 0L, 500L, 5000L, 10006L, 20000L};
+    // answered before the view is cached
+    final double rank = sketch.getRank(5000L);
+    final double[] pmf = sketch.getPMF(splitPoints);
+    final double[] cdf = sketch.getCDF(splitPoints);
+    final KllItemsSketchSortedView<Long> view = sketch.getSortedView();
+    assertSame(sketch.getSortedView(), view);
+    assertEquals(view.getRank(5000L), rank);
+    assertEquals(view.getPMF(splitPoints), pmf);
+    assertEquals(view.getCDF(splitPoints), cdf);
+    assertEquals(view.getQuantile(0.5), sketch.getQuantile(0.5));
+    assertEquals(view.getQuantile(1.0), sketch.getMaxValue());
+    sketch.update(20000L);
+    assertEquals(sketch.getSortedView().getN(), 10001);
+    assertEquals(sketch.getQuantile(1.0), Long.valueOf(20000));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void outOfOrderSplitPoints() {
+    final KllItemsSketch<String> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch.update("a");
+    sketch.getCDF(new String[] {"b", "a"});
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void nullSplitPoint() {
+    final KllItemsSketch<String> sketch = new KllItemsSketch<>(Comparator.naturalOrder());
+    sketch.update("a");
+    sketch.getCDF(new String[] {"a", null});
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void nullComparator() {
+    new KllItemsSketch<String>(null);
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.quantiles;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class DoublesSketchSortedViewTest {
+
+  @Test
+  public void emptySketch() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    final DoublesSketchSortedView view = sketch.getSortedView();
+    assertTrue(view.isEmpty());
+    assertTrue(Double.isNaN(view.getQuantile(0.5)));
+    assertTrue(Double.isNaN(view.getRank(1)));
+    assertNull(view.getPMF(new double[] {1}));
+    assertNull(view.getCDF(new double[] {1}));
+  }
+
+  @Test
+  public void matchesSketchQueries() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().setK(32).build();
+    for (int i = 0; i < 10000; i++) { sketch.update((i * 7919) % 10007); }
+    checkViewMatchesSketch(sketch);
+  }
+
+  @Test
+  public void matchesDirectSketchQueries() {
+    final int k = 32;
+    final WritableMemory wmem =
+        WritableMemory.allocate(DoublesSketch.getUpdatableStorageBytes(k, 10000));
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().setK(k).build(wmem);
+    for (int i = 0; i < 10000; i++) { sketch.update((i * 7919) % 10007); }
+    checkViewMatchesSketch(sketch);
+    checkViewMatchesSketch(sketch.compact());
+  }
+
+  @Test
+  public void cachedUntilUpdated() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    for (int i = 1; i <= 1000; i++) { sketch.update(i); }
+    final DoublesSketchSortedView view = sketch.getSortedView();
+    sketch.getQuantile(0.5);
+    assertSame(sketch.getSortedView(), view);
+    sketch.update(1001);
+    final DoublesSketchSortedView view2 = sketch.getSortedView();
+    assertNotSame(view2, view);
+    assertEquals(view.getN(), 1000);
+    assertEquals(view2.getN(), 1001);
+    assertEquals(sketch.getMaxValue(), 1001.0);
+    assertEquals(view2.getQuantile(1.0), 1001.0);
+  }
+
+  @Test
+  public void resetDiscardsView() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    sketch.update(1);
+    assertEquals(sketch.getQuantile(0.5), 1.0);
+    sketch.reset();
+    sketch.update(2); // same N as before the reset
+    assertEquals(sketch.getQuantile(0.5), 2.0);
+    assertEquals(sketch.getRank(2), 0.0);
+  }
+
+  @Test
+  public void unionUpdatesGadget() {
+    final DoublesUnion union = DoublesUnion.builder().build();
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    for (int i = 0; i < 100; i++) { sketch.update(i); }
+    union.update(sketch);
+    final DoublesSketch result = union.getResult();
+    assertEquals(result.getSortedView().getN(), 100);
+    union.update(sketch);
+    assertEquals(union.getResult().getSortedView().getN(), 200);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void fractionOutOfRange() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    sketch.update(1);
+    sketch.getSortedView().getQuantile(1.5);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void splitPointsOutOfOrder() {
+    final UpdateDoublesSketch sketch = DoublesSketch.builder().build();
+    sketch.update(1);
+    sketch.getSortedView().getCDF(new double[] {2, 1});
+  }
+
+  // the queries of the sketch must be answered before its view is cached
+  private static void checkViewMatchesSketch(final DoublesSketch sketch) {
+    final double[] splitPoints = {-1, 0, 500, 1000, 5000.5, 9999, 10006, 20000};
+    final double[] ranks = new double[splitPoints.length];
+    for (int i = 0; i < splitPoints.length; i++) {
+      ranks[i] = sketch.getRank(splitPoints[i]);
+    }
+    final double[] pmf = sketch.getPMF(splitPoints);
+    final double[] cdf = sketch.getCDF(splitPoints);
+    final double[] fractions = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+    final double[] quantiles = new double[fractions.length];
+    for (int i = 0; i < fractions.length; i++) {
+      quantiles[i] = new DoublesAuxiliary(sketch).getQuantile(fractions[i]);
+    }
+
+    final DoublesSketchSortedView view = sketch.getSortedView();
+    assertEquals(view.getN(), sketch.getN());
+    for (int i = 0; i < splitPoints.length; i++) {
+      assertEquals(view.getRank(splitPoints[i]), ranks[i]);
+      assertEquals(sketch.getRank(splitPoints[i]), ranks[i]);
+    }
+    assertEquals(view.getPMF(splitPoints), pmf);
+    assertEquals(view.getCDF(splitPoints), cdf);
+    assertEquals(sketch.getPMF(splitPoints), pmf);
+    assertEquals(sketch.getCDF(splitPoints), cdf);
+    assertEquals(view.getQuantile(0), sketch.getMinValue());
+    assertEquals(view.getQuantile(1), sketch.getMaxValue());
+    for (int i = 1; i < (fractions.length - 1); i++) {
+      assertEquals(view.getQuantile(fractions[i]), quantiles[i]);
+      assertEquals(sketch.getQuantile(fractions[i]), quantiles[i]);
+    }
+  }
+
+}
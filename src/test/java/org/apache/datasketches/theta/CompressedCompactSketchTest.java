@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
+import static org.apache.datasketches.Util.computeSeedHash;
+import static org.apache.datasketches.theta.PreambleUtil.ENTRY_BITS_BYTE_V4;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_BYTE;
+import static org.apache.datasketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class CompressedCompactSketchTest {
+
+  @Test
+  public void checkRoundTrips() {
+    for (final int n : new int[] { 2, 3, 7, 100, 4096, 5000, 100_000 }) {
+      final UpdateSketch usk = UpdateSketch.builder().setNominalEntries(4096).build();
+      for (int i = 0; i < n; i++) { usk.update(i); }
+      final CompactSketch ordered = usk.compact();
+      for (final CompactSketch csk : new CompactSketch[] { ordered, usk.compact(false, null),
+          (CompactSketch) Sketch.wrap(Memory.wrap(ordered.toByteArray())) }) {
+        final byte[] bytes = csk.toByteArrayCompressed();
+        assertEquals(bytes[SER_VER_BYTE], SER_VER_COMPRESSED);
+        assertTrue(bytes.length < ordered.toByteArray().length);
+        final Memory mem = Memory.wrap(bytes);
+
+        final Sketch wrapped = Sketch.wrap(mem);
+        assertTrue(wrapped instanceof DirectCompactCompressedSketch);
+        assertTrue(wrapped.isCompact() && wrapped.isOrdered() && wrapped.hasMemory());
+        assertFalse(wrapped.isEmpty());
+        assertEquals(wrapped.getRetainedEntries(), ordered.getRetainedEntries());
+        assertEquals(wrapped.getThetaLong(), ordered.getThetaLong());
+        assertEquals(wrapped.getEstimate(), ordered.getEstimate());
+        assertEquals(wrapped.getCurrentBytes(true), bytes.length);
+        assertEquals(wrapped.getCache(), ordered.getCache());
+        assertEquals(wrapped.toByteArray(), bytes);
+        assertEquals(((CompactSketch) wrapped).toByteArrayCompressed(), bytes);
+
+        final HashIterator it = wrapped.iterator();
+        final long[] cache = ordered.getCache();
+        for (int i = 0; i < cache.length; i++) {
+          assertTrue(it.next());
+          assertEquals(it.get(), cache[i]);
+        }
+        assertFalse(it.next());
+
+        assertEquals(Sketch.heapify(mem).toByteArray(), ordered.toByteArray());
+        assertEquals(Sketches.getEstimate(mem), ordered.getEstimate());
+        assertEquals(Sketches.getUpperBound(2, mem), ordered.getUpperBound(2));
+      }
+    }
+  }
+
+  @Test
+  public void checkExtremeEntryWidths() {
+    final short seedHash = computeSeedHash(DEFAULT_UPDATE_SEED);
+    final long[][] caches = {
+        { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, //1 bit each
+        { 1, Long.MAX_VALUE - 1 }, //63 bits each
+        { 3, 1L << 40, (1L << 40) + 5, Long.MAX_VALUE - 2, Long.MAX_VALUE - 1 } };
+    for (final long[] cache : caches) {
+      final CompactSketch csk =
+          HeapCompactOrderedSketch.compact(cache, false, seedHash, cache.length, Long.MAX_VALUE);
+      final byte[] bytes = csk.toByteArrayCompressed();
+      final Sketch wrapped = Sketch.wrap(Memory.wrap(bytes));
+      assertEquals(wrapped.getCache(), cache);
+    }
+    final CompactSketch ones =
+        HeapCompactOrderedSketch.compact(caches[0], false, seedHash, 9, Long.MAX_VALUE);
+    assertEquals(ones.toByteArrayCompressed()[ENTRY_BITS_BYTE_V4], 1);
+    assertEquals(ones.toByteArrayCompressed().length, 8 + 1 + 2);
+  }
+
+  @Test
+  public void checkFormsWithoutCompression() {
+    final UpdateSketch usk = UpdateSketch.builder().build();
+    assertEquals(usk.compact().toByteArrayCompressed(), usk.compact().toByteArray());
+    usk.update(1);
+    assertEquals(usk.compact().toByteArrayCompressed(), usk.compact().toByteArray());
+
+    //a single item in estimation mode is compressed
+    final CompactSketch single = HeapCompactOrderedSketch.compact(new long[] { 1000L }, false,
+        computeSeedHash(DEFAULT_UPDATE_SEED), 1, 1L << 40);
+    final Sketch wrapped = Sketch.wrap(Memory.wrap(single.toByteArrayCompressed()));
+    assertEquals(wrapped.getCache(), new long[] { 1000L });
+    assertEquals(wrapped.getThetaLong(), 1L << 40);
+  }
+
+  @Test
+  public void checkUnionStreamsCompressedImages() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    for (int i = 0; i < 50_000; i++) { a.update(i); }
+    for (int i = 25_000; i < 30_000; i++) { b.update(i); }
+    final Union expected = SetOperation.builder().buildUnion();
+    expected.update(a);
+    expected.update(b);
+
+    final Union fromMemory = SetOperation.builder().buildUnion();
+    fromMemory.update(Memory.wrap(a.compact().toByteArrayCompressed()));
+    fromMemory.update(Memory.wrap(b.compact().toByteArrayCompressed()));
+    assertEquals(fromMemory.getResult().toByteArray(), expected.getResult().toByteArray());
+
+    final Union fromSketch = SetOperation.builder().buildUnion();
+    fromSketch.update(Sketch.wrap(Memory.wrap(a.compact().toByteArrayCompressed())));
+    fromSketch.update(Sketch.wrap(Memory.wrap(b.compact().toByteArrayCompressed())));
+    assertEquals(fromSketch.getResult().toByteArray(), expected.getResult().toByteArray());
+  }
+
+  @Test
+  public void checkIntersectionStreamsCompressedSketches() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    final UpdateSketch c = UpdateSketch.builder().build();
+    for (int i = 0; i < 50_000; i++) { a.update(i); }
+    for (int i = 0; i < 5_000; i++) { b.update(i * 3); }
+    for (int i = 0; i < 20_000; i++) { c.update(i * 2); }
+    final Sketch[] plain = { a.compact(), b.compact(), c.compact() };
+    final Sketch[] compressed = new Sketch[plain.length];
+    for (int i = 0; i < plain.length; i++) {
+      compressed[i] = Sketch.wrap(Memory.wrap(((CompactSketch) plain[i]).toByteArrayCompressed()));
+    }
+    final Intersection expected = SetOperation.builder().buildIntersection();
+    for (final Sketch sk : plain) { expected.update(sk); }
+    final byte[] expectedBytes = expected.getResult().toByteArray();
+
+    //ordered inputs: the running result is kept in order
+    final Intersection heap = SetOperation.builder().buildIntersection();
+    for (final Sketch sk : compressed) { heap.update(sk); }
+    assertEquals(heap.getResult().toByteArray(), expectedBytes);
+
+    //an unordered first input: the hash table is probed
+    final Intersection probed = SetOperation.builder().buildIntersection();
+    probed.update(a);
+    probed.update(compressed[1]);
+    probed.update(compressed[2]);
+    assertEquals(probed.getResult().toByteArray(), expectedBytes);
+
+    final WritableMemory iMem =
+        WritableMemory.wrap(new byte[SetOperation.getMaxIntersectionBytes(4096)]);
+    final Intersection direct = SetOperation.builder().buildIntersection(iMem);
+    for (final Sketch sk : compressed) { direct.update(sk); }
+    assertEquals(direct.getResult().toByteArray(), expectedBytes);
+
+    final AnotB aNotB = SetOperation.builder().buildANotB();
+    assertEquals(aNotB.aNotB(compressed[0], compressed[1]).getCache(),
+        aNotB.aNotB(plain[0], plain[1]).getCache());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedHashConflict() {
+    final UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    Sketch.wrap(Memory.wrap(usk.compact().toByteArrayCompressed()), 123L);
+  }
+
+  @Test
+  public void checkCorruptImages() {
+    final UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    final byte[] bytes = usk.compact().toByteArrayCompressed();
+    final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+    checkCorrupt(truncated);
+    final byte[] badBits = bytes.clone();
+    badBits[ENTRY_BITS_BYTE_V4] = 64;
+    checkCorrupt(badBits);
+    final byte[] badFlags = bytes.clone();
+    badFlags[PreambleUtil.FLAGS_BYTE] = 0;
+    checkCorrupt(badFlags);
+  }
+
+  private static void checkCorrupt(final byte[] bytes) {
+    try {
+      Sketch.wrap(Memory.wrap(bytes));
+      throw new AssertionError("expected SketchesArgumentException");
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printCompressionRatios() {
+    for (final int lgK : new int[] { 9, 12, 16 }) {
+      final UpdateSketch usk = UpdateSketch.builder().setNominalEntries(1 << lgK).build();
+      for (int i = 0; i < (1 << (lgK + 4)); i++) { usk.update(i); }
+      final CompactSketch csk = usk.compact();
+      println("lgK " + lgK + ": " + csk.toByteArray().length + " -> "
+          + csk.toByteArrayCompressed().length + " bytes");
+    }
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -820,7 +820,6 @@ public class ConcurrentDirectQuickSelectSketchTest {
       e.printStackTrace();
     }
     ((ConcurrentSharedThetaSketch)shared).awaitBgPropagationTermination();
-    ConcurrentPropagationService.resetExecutorService(Thread.currentThread().getId());
     ((ConcurrentSharedThetaSketch)shared).initBgPropagationService();
   }
 
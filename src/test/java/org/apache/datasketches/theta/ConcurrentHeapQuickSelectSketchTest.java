@@ -778,7 +778,6 @@ public class ConcurrentHeapQuickSelectSketchTest {
       e.printStackTrace();
     }
     ((ConcurrentHeapQuickSelectSketch)shared).awaitBgPropagationTermination();
-    ConcurrentPropagationService.resetExecutorService(Thread.currentThread().getId());
     ((ConcurrentHeapQuickSelectSketch)shared).initBgPropagationService();
   }
 
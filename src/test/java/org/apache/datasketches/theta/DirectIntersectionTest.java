@@ -789,6 +789,27 @@ public class DirectIntersectionTest {
     } catch (SketchesReadOnlyException e) { }
   }
 
+  @Test
+  public void checkOrderedCompactIntersectionsInMemory() {
+    final int k = 1 << 12;
+    final UpdateSketch small = UpdateSketch.builder().setNominalEntries(k).build();
+    final UpdateSketch large = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = 0; i < 100; i++) { small.update(i * 37); }
+    for (int i = 0; i < 100_000; i++) { large.update(i); }
+    final Sketch[] sketches = {
+        Sketch.wrap(Memory.wrap(large.compact().toByteArray())),
+        small.compact(),
+        Sketch.wrap(Memory.wrap(large.compact().toByteArray())) };
+    final WritableMemory iMem = WritableMemory.wrap(new byte[getMaxIntersectionBytes(k)]);
+    final Intersection inter = SetOperation.builder().buildIntersection(iMem);
+    for (final Sketch sk : sketches) { inter.update(sk); }
+    final CompactSketch result = inter.getResult();
+    assertEquals(result.getThetaLong(), large.getThetaLong());
+    assertEquals(result.getCache(), HeapIntersectionTest.bruteForceIntersection(sketches));
+    final Intersection wrapped = Sketches.wrapIntersection(iMem);
+    assertEquals(wrapped.getResult().getCache(), result.getCache());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -864,6 +864,42 @@ public class DirectQuickSelectSketchTest {
   }
 
 
+  @Test
+  public void checkBucketizedMatchesDoubleHashing() {
+    for (final int lgK : new int[] { 6, 9, 12 }) {
+      final int k = 1 << lgK;
+      final UpdateSketch doubleHashing = UpdateSketch.builder().setNominalEntries(k).build();
+      //starts small, so it is resized in place and then moved to a larger Memory
+      final WritableMemory mem = WritableMemory.allocate(getMaxBytes(k) / 2);
+      final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(k)
+          .setResizeFactor(ResizeFactor.X2).setHashTableLayout(HashTableLayout.BUCKETIZED)
+          .build(mem);
+      assertTrue(sk.hasMemory());
+      for (int i = 0; i < (20 * k); i++) {
+        doubleHashing.update(i);
+        sk.update(i);
+        assertEquals(sk.update(i / 2), doubleHashing.update(i / 2));
+      }
+      assertEquals(sk.getThetaLong(), doubleHashing.getThetaLong());
+      assertEquals(sk.compact().toByteArray(), doubleHashing.compact().toByteArray());
+
+      final byte[] bytes = sk.toByteArray();
+      assertTrue((bytes[FLAGS_BYTE] & PreambleUtil.BUCKETIZED_FLAG_MASK) != 0);
+      final UpdateSketch heapified = UpdateSketch.heapify(Memory.wrap(bytes));
+      assertEquals(heapified.update(1), UpdateReturnState.RejectedDuplicate);
+
+      final long[] batch = new long[4 * k];
+      for (int i = 0; i < batch.length; i++) { batch[i] = (20L * k) + i; }
+      sk.batchUpdate(batch, 0, batch.length);
+      doubleHashing.batchUpdate(batch, 0, batch.length);
+      assertEquals(sk.compact().toByteArray(), doubleHashing.compact().toByteArray());
+
+      sk.reset();
+      assertTrue((sk.toByteArray()[FLAGS_BYTE] & PreambleUtil.BUCKETIZED_FLAG_MASK) != 0);
+      assertTrue(sk.isEmpty());
+    }
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
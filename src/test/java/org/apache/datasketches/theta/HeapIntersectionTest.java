@@ -27,6 +27,11 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import org.testng.annotations.Test;
 
 import org.apache.datasketches.memory.Memory;
@@ -579,6 +584,73 @@ public class HeapIntersectionTest {
     assertEquals(csk.getCurrentBytes(true), 8);
   }
 
+  @Test
+  public void checkMultiWayIntersectionsOfAllForms() {
+    final Random rand = new Random(1);
+    for (int trial = 0; trial < 200; trial++) {
+      final int numSketches = 2 + rand.nextInt(4);
+      final Sketch[] sketches = new Sketch[numSketches];
+      for (int i = 0; i < numSketches; i++) {
+        //sizes differ by orders of magnitude, so every path is taken in both directions
+        final int n = 1 << rand.nextInt(15);
+        final UpdateSketch usk = UpdateSketch.builder().setNominalEntries(1 << 12).build();
+        final int start = rand.nextInt(1 << 14);
+        for (int j = 0; j < n; j++) { usk.update(start + j); }
+        switch (rand.nextInt(4)) {
+          case 0: sketches[i] = usk; break;
+          case 1: sketches[i] = usk.compact(false, null); break;
+          case 2: sketches[i] = Sketch.wrap(Memory.wrap(usk.compact().toByteArray())); break;
+          default: sketches[i] = usk.compact();
+        }
+      }
+      final Intersection inter = SetOperation.builder().buildIntersection();
+      for (final Sketch sk : sketches) { inter.update(sk); }
+      final CompactSketch result = inter.getResult();
+      final long[] expected = bruteForceIntersection(sketches);
+      assertEquals(result.getCache(), expected);
+      if (expected.length > 0) { //an empty result is corrected to theta = 1.0
+        assertEquals(result.getThetaLong(), minThetaLong(sketches));
+      }
+    }
+  }
+
+  @Test
+  public void checkGallopIntersect() {
+    final long[] small = { 5, 9, 20, 21, 40, 100 };
+    final long[] large = { 1, 2, 3, 5, 6, 7, 8, 10, 20, 22, 23, 24, 25, 26, 27, 30, 40, 41, 99 };
+    final long[] matchSet = new long[small.length];
+    final int count = IntersectionImpl.gallopIntersect(Memory.wrap(small), 0, small.length,
+        Memory.wrap(large), 0, large.length, Long.MAX_VALUE, matchSet);
+    assertEquals(Arrays.copyOf(matchSet, count), new long[] { 5, 20, 40 });
+    final int countBelowTheta = IntersectionImpl.gallopIntersect(Memory.wrap(small), 0,
+        small.length, Memory.wrap(large), 0, large.length, 40, matchSet);
+    assertEquals(countBelowTheta, 2);
+  }
+
+  static long minThetaLong(final Sketch[] sketches) {
+    long thetaLong = Long.MAX_VALUE;
+    for (final Sketch sk : sketches) { thetaLong = Math.min(thetaLong, sk.getThetaLong()); }
+    return thetaLong;
+  }
+
+  static long[] bruteForceIntersection(final Sketch[] sketches) {
+    final long thetaLong = minThetaLong(sketches);
+    Set<Long> result = null;
+    for (final Sketch sk : sketches) {
+      final Set<Long> set = new HashSet<>();
+      final HashIterator it = sk.iterator();
+      while (it.next()) {
+        if (it.get() < thetaLong) { set.add(it.get()); }
+      }
+      if (result == null) { result = set; } else { result.retainAll(set); }
+    }
+    final long[] arr = new long[result.size()];
+    int i = 0;
+    for (final long hash : result) { arr[i++] = hash; }
+    Arrays.sort(arr);
+    return arr;
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -630,6 +630,192 @@ public class HeapQuickSelectSketchTest {
     }
   }
 
+  @Test
+  public void checkIncrementalRebuildMatchesEager() {
+    for (final int lgK : new int[] { 4, 5, 9, 12 }) {
+      for (final ResizeFactor rf : new ResizeFactor[] { X1, X8 }) {
+        for (final float p : new float[] { 1.0F, 0.5F }) {
+          final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(1 << lgK)
+              .setResizeFactor(rf).setP(p);
+          final UpdateSketch eager = bldr.build();
+          final UpdateSketch incremental = bldr.setIncrementalRebuild(true).build();
+          final int n = 40 << lgK;
+          for (int i = 0; i < n; i++) {
+            eager.update(i);
+            incremental.update(i);
+            incremental.update(i / 2); //duplicates, some of them while rebuilding
+            eager.update(i / 2);
+            if ((i % 997) == 0) { assertSameState(incremental, eager); }
+          }
+          assertSameState(incremental, eager);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checkIncrementalRebuildSpansUpdates() {
+    final int k = 1 << 12;
+    final HeapQuickSelectSketch sk = (HeapQuickSelectSketch) UpdateSketch.builder()
+        .setNominalEntries(k).setIncrementalRebuild(true).build();
+    final UpdateSketch eager = UpdateSketch.builder().setNominalEntries(k).build();
+    int i = 0;
+    while (!sk.isRebuilding()) {
+      sk.update(i);
+      eager.update(i++);
+    }
+    int updatesWhileRebuilding = 0;
+    while (sk.isRebuilding()) {
+      sk.update(i);
+      eager.update(i++);
+      updatesWhileRebuilding++;
+    }
+    //each update does a bounded share of the rebuild, which visits 3 full tables and more
+    final int slots = 3 * (2 * k);
+    assertTrue(updatesWhileRebuilding >= (slots / HeapQuickSelectSketch.REBUILD_SLOTS_PER_UPDATE));
+    assertTrue(sk.getRetainedEntries(true) < sk.getHashTableThreshold());
+    assertSameState(sk, eager);
+
+    //a later rebuild, only finished by the batch update and the reads
+    final long[] keys = new long[20 * k];
+    for (int j = 0; j < keys.length; j++) { keys[j] = i + j; }
+    sk.batchUpdate(keys, 0, keys.length);
+    eager.batchUpdate(keys, 0, keys.length);
+    assertSameState(sk, eager);
+  }
+
+  @Test
+  public void checkIncrementalRebuildReads() {
+    final int k = 1 << 9;
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k);
+    final UpdateSketch eager = bldr.build();
+    final HeapQuickSelectSketch sk =
+        (HeapQuickSelectSketch) bldr.setIncrementalRebuild(true).build();
+    int i = 0;
+    while (!sk.isRebuilding()) {
+      sk.update(i);
+      eager.update(i++);
+    }
+    for (int j = 0; j < 10; j++) {
+      sk.update(i);
+      eager.update(i++);
+    }
+    assertTrue(sk.isRebuilding());
+    final byte[] bytes = sk.toByteArray(); //the slots may differ, as the insertion order does
+    assertFalse(sk.isRebuilding());
+    assertSameState(UpdateSketch.heapify(Memory.wrap(bytes)), eager);
+
+    while (!sk.isRebuilding()) {
+      sk.update(i);
+      eager.update(i++);
+    }
+    final Union union = SetOperation.builder().setNominalEntries(k).buildUnion();
+    union.update(sk);
+    assertEquals(union.getResult().getEstimate(), eager.compact().getEstimate());
+
+    while (!sk.isRebuilding()) { sk.update(i++); }
+    sk.reset();
+    eager.reset();
+    assertFalse(sk.isRebuilding());
+    for (int j = 0; j < (10 * k); j++) {
+      sk.update(j);
+      eager.update(j);
+    }
+    assertSameState(sk, eager);
+  }
+
+  @Test
+  public void checkIncrementalRebuildReturnStates() {
+    final int k = 1 << 12;
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k);
+    final UpdateSketch eager = bldr.build();
+    final HeapQuickSelectSketch sk =
+        (HeapQuickSelectSketch) bldr.setIncrementalRebuild(true).build();
+    int provisional = 0;
+    for (int i = 0; i < 200_000; i++) {
+      final long v = ((i % 3) == 0) ? i / 3 : i; //some values are repeated
+      final boolean rebuilding = sk.isRebuilding();
+      final UpdateReturnState eagerState = eager.update(v);
+      final UpdateReturnState state = sk.update(v);
+      if (state == eagerState) { continue; }
+      //only provisional states while rebuilding, for hashes the new theta rejects
+      assertTrue(rebuilding);
+      assertEquals(eagerState, UpdateReturnState.RejectedOverTheta);
+      assertTrue((state == UpdateReturnState.InsertedCountIncremented)
+          || (state == UpdateReturnState.RejectedDuplicate));
+      provisional++;
+    }
+    assertTrue(provisional > 0);
+    assertSameState(sk, eager);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkIncrementalRebuildNotDirect() {
+    final WritableMemory mem = WritableMemory.allocate(1 << 16);
+    UpdateSketch.builder().setNominalEntries(1 << 10).setIncrementalRebuild(true).build(mem);
+  }
+
+  @Test
+  public void checkBucketizedMatchesDoubleHashing() {
+    for (final int lgK : new int[] { 4, 9, 12 }) {
+      for (final ResizeFactor rf : new ResizeFactor[] { X1, X8 }) {
+        for (final boolean incremental : new boolean[] { false, true }) {
+          final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(1 << lgK)
+              .setResizeFactor(rf).setIncrementalRebuild(incremental);
+          final UpdateSketch doubleHashing = bldr.build();
+          final UpdateSketch bucketized =
+              bldr.setHashTableLayout(HashTableLayout.BUCKETIZED).build();
+          final int n = 20 << lgK;
+          for (int i = 0; i < n; i++) {
+            doubleHashing.update(i);
+            bucketized.update(i);
+            assertEquals(bucketized.update(i / 2), doubleHashing.update(i / 2));
+          }
+          assertSameState(bucketized, doubleHashing);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void checkBucketizedSerDe() {
+    final int k = 1 << 10;
+    final UpdateSketch doubleHashing = UpdateSketch.builder().setNominalEntries(k).build();
+    final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(k)
+        .setHashTableLayout(HashTableLayout.BUCKETIZED).build();
+    for (int i = 0; i < (4 * k); i++) {
+      sk.update(i);
+      doubleHashing.update(i);
+    }
+    final byte[] bytes = sk.toByteArray();
+    assertTrue((bytes[FLAGS_BYTE] & PreambleUtil.BUCKETIZED_FLAG_MASK) != 0);
+    assertEquals(doubleHashing.toByteArray()[FLAGS_BYTE] & PreambleUtil.BUCKETIZED_FLAG_MASK, 0);
+
+    //the layout is kept, so the hashes already in the table are found as duplicates
+    final UpdateSketch heapified = UpdateSketch.heapify(Memory.wrap(bytes));
+    final UpdateSketch wrapped = Sketches.wrapUpdateSketch(WritableMemory.wrap(bytes.clone()));
+    for (final UpdateSketch other : new UpdateSketch[] { heapified, wrapped }) {
+      assertSameState(other, sk);
+      for (int i = 0; i < (4 * k); i++) { other.update(i); }
+      assertSameState(other, doubleHashing);
+      for (int i = 4 * k; i < (8 * k); i++) { other.update(i); }
+    }
+    for (int i = 4 * k; i < (8 * k); i++) { doubleHashing.update(i); }
+    assertSameState(heapified, doubleHashing);
+    assertSameState(wrapped, doubleHashing);
+
+    sk.reset();
+    assertTrue((sk.toByteArray()[FLAGS_BYTE] & PreambleUtil.BUCKETIZED_FLAG_MASK) != 0);
+    assertTrue(Sketch.toString(sk.toByteArray()).contains("BUCKETIZED                  : true"));
+  }
+
+  private static void assertSameState(final UpdateSketch sk, final UpdateSketch eager) {
+    assertEquals(sk.getRetainedEntries(true), eager.getRetainedEntries(true));
+    assertEquals(sk.getThetaLong(), eager.getThetaLong());
+    assertEquals(sk.getEstimate(), eager.getEstimate());
+    assertEquals(sk.compact().toByteArray(), eager.compact().toByteArray());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
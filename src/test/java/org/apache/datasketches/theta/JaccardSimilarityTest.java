@@ -21,9 +21,19 @@ package org.apache.datasketches.theta;
 
 import static org.apache.datasketches.theta.JaccardSimilarity.exactlyEqual;
 import static org.apache.datasketches.theta.JaccardSimilarity.jaccard;
+import static org.apache.datasketches.theta.JaccardSimilarity.jaccardAll;
+import static org.apache.datasketches.theta.JaccardSimilarity.jaccardMatrix;
+import static org.apache.datasketches.theta.JaccardSimilarity.topK;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
 import org.testng.annotations.Test;
 
 /**
@@ -234,6 +244,129 @@ public class JaccardSimilarityTest {
     println(result[0] + ", " + result[1] + ", " + result[2]);
   }
 
+  @Test
+  public void checkBatchMatchesPairs() {
+    final Sketch[] sketches = batchSketches();
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (final Sketch query : sketches) {
+        final double[][] seq = jaccardAll(query, sketches);
+        final double[][] par = jaccardAll(query, sketches, pool);
+        for (int i = 0; i < sketches.length; i++) {
+          final double[] expected = jaccard(query, sketches[i]);
+          assertEquals(seq[i], expected);
+          assertEquals(par[i], expected);
+        }
+      }
+      final double[][] matrix = jaccardMatrix(sketches, pool);
+      final double[][] seqMatrix = jaccardMatrix(sketches, null);
+      for (int i = 0; i < sketches.length; i++) {
+        assertEquals(seqMatrix[i], matrix[i]);
+        for (int j = 0; j < sketches.length; j++) {
+          assertEquals(matrix[i][j], jaccard(sketches[i], sketches[j])[1]);
+        }
+      }
+      final Sketch[] odd = Arrays.copyOf(sketches, sketches.length - 1); //rows are interleaved
+      final double[][] oddMatrix = jaccardMatrix(odd, pool);
+      for (int i = 0; i < odd.length; i++) {
+        for (int j = 0; j < odd.length; j++) {
+          assertEquals(oddMatrix[i][j], jaccard(odd[i], odd[j])[1]);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(jaccardAll(sketches[3], new Sketch[0]).length, 0);
+    assertEquals(jaccardMatrix(new Sketch[0], null).length, 0);
+  }
+
+  @Test
+  public void checkTopK() {
+    final Sketch[] sketches = batchSketches();
+    final ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      for (final Sketch query : new Sketch[] { sketches[3], sketches[9], sketches[1] }) {
+        final Integer[] order = new Integer[sketches.length];
+        final double[] est = new double[sketches.length];
+        for (int i = 0; i < order.length; i++) {
+          order[i] = i;
+          est[i] = jaccard(query, sketches[i])[1];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+          @Override
+          public int compare(final Integer a, final Integer b) {
+            final int c = Double.compare(est[b], est[a]);
+            return (c != 0) ? c : Integer.compare(a, b);
+          }
+        });
+        for (final int k : new int[] { 1, 3, 7, sketches.length, sketches.length + 5 }) {
+          final int[] expected = new int[Math.min(k, sketches.length)];
+          for (int i = 0; i < expected.length; i++) { expected[i] = order[i]; }
+          assertEquals(topK(query, sketches, k, null), expected);
+          assertEquals(topK(query, sketches, k, pool), expected);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkTopKBadK() {
+    topK(null, new Sketch[0], 0, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchSeedConflict() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().setSeed(123).build();
+    a.update(1);
+    b.update(1);
+    jaccardAll(a, new Sketch[] { b });
+  }
+
+  //sketches of every form, in exact and estimation mode, with nulls, empties and copies
+  private static Sketch[] batchSketches() {
+    final UpdateSketch big = UpdateSketch.builder().setNominalEntries(1 << 10).build();
+    final UpdateSketch shifted = UpdateSketch.builder().setNominalEntries(1 << 9).build();
+    final UpdateSketch twin = UpdateSketch.builder().setNominalEntries(1 << 10).build();
+    final UpdateSketch small = UpdateSketch.builder().setNominalEntries(1 << 12).build();
+    final UpdateSketch sub = UpdateSketch.builder().setNominalEntries(1 << 12).build();
+    final UpdateSketch sampled = UpdateSketch.builder().setP(0.5F).build();
+    for (int i = 0; i < 20_000; i++) {
+      big.update(i);
+      twin.update(i);
+      shifted.update(i + 5_000);
+    }
+    for (int i = 0; i < 1_000; i++) {
+      small.update(i);
+      sampled.update(i * 2);
+    }
+    for (int i = 0; i < 600; i++) { sub.update(i); }
+    final UpdateSketch one = UpdateSketch.builder().build();
+    one.update(7);
+    final CompactSketch bigCompact = big.compact();
+    return new Sketch[] {
+        null,
+        UpdateSketch.builder().build(),
+        UpdateSketch.builder().setP(0.5F).build().compact(),
+        big,
+        bigCompact,
+        big.compact(false, null),
+        Sketch.wrap(Memory.wrap(bigCompact.toByteArray())),
+        Sketch.wrap(Memory.wrap(bigCompact.toByteArrayCompressed())),
+        twin,
+        shifted,
+        shifted.compact(),
+        small,
+        Sketch.wrap(Memory.wrap(small.compact().toByteArrayCompressed())),
+        sub.compact(false, null),
+        sampled,
+        one,
+        one.compact(),
+        null };
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.hash.Hasher;
+import org.apache.datasketches.memory.Memory;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class ParallelUnionTest {
+
+  @Test
+  public void checkSketchArraysMatchSequentialUnion() {
+    final Sketch[] sketches = randomSketches(new Random(1), 300, 4096);
+    for (final int lgK : new int[] { 5, 9, 12 }) {
+      final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(1 << lgK);
+      final byte[] expected = sequentialResult(bldr, sketches);
+      for (final int parallelism : new int[] { 1, 2, 3, 8 }) {
+        final ParallelUnion union = bldr.buildParallelUnion(parallelism);
+        union.update(sketches);
+        assertEquals(union.getResult().toByteArray(), expected);
+        assertEquals(union.getParallelism(), parallelism);
+      }
+    }
+  }
+
+  @Test
+  public void checkMemoryArraysMatchSequentialUnion() {
+    final Sketch[] sketches = randomSketches(new Random(2), 200, 2048);
+    final Memory[] mems = new Memory[sketches.length];
+    for (int i = 0; i < sketches.length; i++) {
+      mems[i] = (sketches[i] == null) ? null : Memory.wrap(sketches[i].toByteArray());
+    }
+    final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(256);
+    final byte[] expected = sequentialResult(bldr, sketches);
+    final ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      final ParallelUnion union = bldr.buildParallelUnion(5, pool);
+      union.update(mems);
+      assertEquals(union.getResult().toByteArray(), expected);
+      final int bytes = Sketch.getMaxCompactSketchBytes(256);
+      final CompactSketch direct = union.getResult(true, WritableMemory.allocate(bytes));
+      assertEquals(direct.toByteArray(), expected);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void checkUnorderedResultHasSameHashes() {
+    final Sketch[] sketches = randomSketches(new Random(3), 100, 4096);
+    final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(512);
+    final Union seq = bldr.buildUnion();
+    for (final Sketch sk : sketches) { seq.update(sk); }
+    final ParallelUnion union = bldr.buildParallelUnion(4);
+    union.update(sketches);
+    final CompactSketch unordered = union.getResult(false, null);
+    final CompactSketch expected = seq.getResult(false, null);
+    assertEquals(unordered.getThetaLong(), expected.getThetaLong());
+    final long[] cache = unordered.getCache().clone();
+    final long[] expectedCache = expected.getCache().clone();
+    Arrays.sort(cache);
+    Arrays.sort(expectedCache);
+    assertEquals(cache, expectedCache);
+  }
+
+  @Test
+  public void checkConcurrentSingleUpdates() throws Exception {
+    final Sketch[] sketches = randomSketches(new Random(4), 400, 1024);
+    final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(128);
+    final byte[] expected = sequentialResult(bldr, sketches);
+    final ParallelUnion union = bldr.buildParallelUnion(3);
+    final int numThreads = 4;
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int first = t;
+      threads[t] = new Thread(() -> {
+        for (int i = first; i < sketches.length; i += numThreads) {
+          if ((i % 2) == 0) {
+            union.update(sketches[i]);
+          } else {
+            union.update((sketches[i] == null) ? null : Memory.wrap(sketches[i].toByteArray()));
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (final Thread thread : threads) { thread.join(); }
+    assertEquals(union.getResult().toByteArray(), expected);
+  }
+
+  @Test
+  public void checkSamplingAndHasher() {
+    final UpdateSketchBuilder skBldr = UpdateSketch.builder().setHasher(Hasher.XXHASH64);
+    final Sketch[] sketches = new Sketch[50];
+    for (int i = 0; i < sketches.length; i++) {
+      final UpdateSketch sk = skBldr.build();
+      for (int j = 0; j < 1000; j++) { sk.update((i * 100) + j); }
+      sketches[i] = sk.compact();
+    }
+    final SetOperationBuilder bldr = SetOperation.builder().setHasher(Hasher.XXHASH64).setP(0.5f);
+    final ParallelUnion union = bldr.buildParallelUnion(4);
+    union.update(sketches);
+    assertEquals(union.getResult().toByteArray(), sequentialResult(bldr, sketches));
+  }
+
+  @Test
+  public void checkEmptyAndReset() {
+    final SetOperationBuilder bldr = SetOperation.builder();
+    final ParallelUnion union = bldr.buildParallelUnion(4);
+    assertEquals(union.getResult().toByteArray(), bldr.buildUnion().getResult().toByteArray());
+    union.update(new Sketch[] { null, UpdateSketch.builder().build() });
+    union.update((Sketch[]) null);
+    union.update((Memory[]) null);
+    assertTrue(union.getResult().isEmpty());
+    final UpdateSketch sk = UpdateSketch.builder().build();
+    sk.update(1);
+    union.update(sk);
+    assertEquals(union.getResult().getRetainedEntries(), 1);
+    union.reset();
+    assertTrue(union.getResult().isEmpty());
+    println(union.toString());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedMismatch() {
+    final UpdateSketch sk = UpdateSketch.builder().setSeed(123).build();
+    sk.update(1);
+    SetOperation.builder().buildParallelUnion(2).update(new Sketch[] { sk, sk, sk });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadParallelism() {
+    SetOperation.builder().buildParallelUnion(0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullPool() {
+    SetOperation.builder().buildParallelUnion(2, null);
+  }
+
+  private static byte[] sequentialResult(final SetOperationBuilder bldr, final Sketch[] sketches) {
+    final Union union = bldr.buildUnion();
+    for (final Sketch sk : sketches) { union.update(sk); }
+    return union.getResult().toByteArray();
+  }
+
+  /**
+   * Returns sketches of overlapping streams in all forms: exact and estimating, with different
+   * nominal entries, ordered and unordered compact, update sketches, single items, empty and null.
+   */
+  private static Sketch[] randomSketches(final Random rand, final int num, final int maxN) {
+    final Sketch[] sketches = new Sketch[num];
+    for (int i = 0; i < num; i++) {
+      final int lgK = 4 + rand.nextInt(8);
+      final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(1 << lgK).build();
+      final int n = (i % 10) == 0 ? rand.nextInt(2) : rand.nextInt(maxN);
+      final long start = rand.nextInt(4 * maxN);
+      for (int j = 0; j < n; j++) { sk.update(start + j); }
+      switch (i % 5) {
+        case 0: sketches[i] = sk; break;
+        case 1: sketches[i] = sk.compact(false, null); break;
+        case 2: sketches[i] = (i % 7) == 0 ? null : sk.compact(); break;
+        default: sketches[i] = sk.compact();
+      }
+    }
+    return sketches;
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.WritableMemory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class PropagationSchedulerTest {
+  private static final int LG_K = 12;
+
+  @Test
+  public void checkSharedSchedulerServesManySketches() throws Exception {
+    final ForkJoinPropagationScheduler scheduler = new ForkJoinPropagationScheduler(2);
+    final UpdateSketchBuilder bldr = configureBuilder(scheduler);
+    final UpdateSketch heapShared = bldr.buildShared();
+    final int bytes = Sketch.getMaxUpdateSketchBytes(1 << LG_K);
+    final UpdateSketch directShared = bldr.buildShared(WritableMemory.allocate(bytes));
+    final int numThreads = 4;
+    final int perThread = 20_000;
+    final Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final UpdateSketch shared = ((t % 2) == 0) ? heapShared : directShared;
+      final UpdateSketch local = bldr.buildLocal(shared);
+      final int base = (t / 2) * perThread;
+      writers[t] = new Thread(() -> {
+        for (int i = 0; i < perThread; i++) { local.update(base + i); }
+      });
+      writers[t].start();
+    }
+    for (final Thread writer : writers) { writer.join(); }
+    ((ConcurrentSharedThetaSketch) heapShared).awaitBgPropagationTermination();
+    ((ConcurrentSharedThetaSketch) directShared).awaitBgPropagationTermination();
+
+    final int n = 2 * perThread; //per shared sketch
+    assertEquals(heapShared.getEstimate(), n, n * 0.1);
+    assertEquals(directShared.getEstimate(), n, n * 0.1);
+
+    final PropagationStats stats = scheduler.getStats();
+    assertTrue(stats.getSubmittedCount() > 0);
+    assertEquals(stats.getCompletedCount(), stats.getSubmittedCount());
+    assertEquals(stats.getQueueDepth(), 0);
+    assertTrue(stats.getMeanLatencyNanos() > 0);
+    assertTrue(stats.getMaxLatencyNanos() >= stats.getMeanLatencyNanos());
+    println(stats.toString());
+    stats.reset();
+    assertEquals(stats.getSubmittedCount(), 0);
+    assertEquals(stats.getMeanLatencyNanos(), 0.0);
+
+    scheduler.shutdown();
+    assertTrue(scheduler.isShutdown());
+    assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void checkPropagationAfterShutdownRunsInline() {
+    final ExecutorPropagationScheduler scheduler =
+        new ExecutorPropagationScheduler(Executors.newSingleThreadExecutor());
+    scheduler.shutdown();
+    final UpdateSketchBuilder bldr = configureBuilder(scheduler);
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    final int n = 50_000;
+    for (int i = 0; i < n; i++) { local.update(i); }
+    ((ConcurrentSharedThetaSketch) shared).awaitBgPropagationTermination();
+    assertEquals(shared.getEstimate(), n, n * 0.1);
+    assertEquals(scheduler.getStats().getQueueDepth(), 0);
+    assertTrue(scheduler.getStats().getCompletedCount() > 0);
+  }
+
+  @Test
+  public void checkResetWithScheduler() {
+    final PropagationScheduler scheduler = new ForkJoinPropagationScheduler();
+    final UpdateSketchBuilder bldr = configureBuilder(scheduler);
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    for (int i = 0; i < 50_000; i++) { local.update(i); }
+    shared.reset();
+    assertTrue(shared.isEmpty());
+    local.reset();
+    for (int i = 0; i < 10_000; i++) { local.update(i); }
+    ((ConcurrentSharedThetaSketch) shared).awaitBgPropagationTermination();
+    assertEquals(shared.getEstimate(), 10_000, 10_000 * 0.1);
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void checkDefaultScheduler() {
+    final UpdateSketchBuilder bldr = new UpdateSketchBuilder();
+    assertNull(bldr.getPropagationScheduler());
+    assertTrue(bldr.toString().contains("default"));
+    final PropagationScheduler scheduler = ConcurrentPropagationService.getDefaultScheduler();
+    assertTrue(scheduler instanceof ForkJoinPropagationScheduler);
+    assertTrue(scheduler == ConcurrentPropagationService.getDefaultScheduler());
+    assertFalse(scheduler.isShutdown());
+    bldr.setPropagationScheduler(scheduler);
+    assertTrue(bldr.getPropagationScheduler() == scheduler);
+    assertTrue(bldr.toString().contains("ForkJoinPropagationScheduler"));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullExecutorService() {
+    new ExecutorPropagationScheduler(null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadParallelism() {
+    new ForkJoinPropagationScheduler(0);
+  }
+
+  private static UpdateSketchBuilder configureBuilder(final PropagationScheduler scheduler) {
+    final UpdateSketchBuilder bldr = new UpdateSketchBuilder();
+    bldr.setLogNominalEntries(LG_K);
+    bldr.setLocalLogNominalEntries(4);
+    bldr.setPropagationScheduler(scheduler);
+    return bldr;
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(final String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
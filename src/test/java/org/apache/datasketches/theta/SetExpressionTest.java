@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.datasketches.theta;
+
+import static org.apache.datasketches.theta.SetExpression.aNotB;
+import static org.apache.datasketches.theta.SetExpression.intersection;
+import static org.apache.datasketches.theta.SetExpression.of;
+import static org.apache.datasketches.theta.SetExpression.union;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.datasketches.SketchesArgumentException;
+import org.apache.datasketches.memory.Memory;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+public class SetExpressionTest {
+
+  @Test
+  public void checkMatchesChainedSetOperations() {
+    final Random rand = new Random(1);
+    final SetOperationBuilder bldr = SetOperation.builder().setNominalEntries(1 << 10);
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for (int trial = 0; trial < 50; trial++) {
+        final Sketch[] sk = new Sketch[5];
+        for (int i = 0; i < sk.length; i++) { sk[i] = randomSketch(rand); }
+
+        //((A u B) n C n D) \ E, chained by hand
+        final Union u = bldr.buildUnion();
+        u.update(sk[0]);
+        u.update(sk[1]);
+        final Intersection inter = bldr.buildIntersection();
+        inter.update(u.getResult());
+        inter.update(sk[2]);
+        inter.update(sk[3]);
+        final CompactSketch expected = bldr.buildANotB().aNotB(inter.getResult(), sk[4]);
+
+        final SetExpression[] ops = new SetExpression[sk.length];
+        for (int i = 0; i < sk.length; i++) { ops[i] = operand(sk[i], trial + i); }
+        final SetExpression expr = aNotB(intersection(union(ops[0], ops[1]), ops[2], ops[3]),
+            ops[4]);
+        final CompactSketch result = expr.evaluate(bldr);
+        final CompactSketch parallelResult = expr.evaluate(bldr, pool);
+        assertEquals(result.getCache(), expected.getCache());
+        assertEquals(parallelResult.getCache(), expected.getCache());
+        if (expected.getRetainedEntries() > 0) { //else the theta may differ, see SetExpression
+          assertEquals(result.getThetaLong(), expected.getThetaLong());
+          assertEquals(parallelResult.getThetaLong(), expected.getThetaLong());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void checkIntersectionOrderDoesNotMatter() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    final UpdateSketch c = UpdateSketch.builder().build();
+    for (int i = 0; i < 100_000; i++) { a.update(i); }
+    for (int i = 0; i < 1_000; i++) { b.update(i * 3); }
+    for (int i = 0; i < 20_000; i++) { c.update(i * 2); }
+    final byte[] expected = intersection(of(a), of(b), of(c)).evaluate().toByteArray();
+    assertEquals(intersection(of(c), of(a), of(b)).evaluate().toByteArray(), expected);
+    assertEquals(intersection(of(b), union(of(c)), of(a)).evaluate().toByteArray(), expected);
+    assertTrue(intersection(of(b), of(c), of(a)).evaluate().getRetainedEntries() > 0);
+  }
+
+  @Test
+  public void checkMemoryOperandsAreWrapped() {
+    final long seed = 4321L;
+    final UpdateSketch a = UpdateSketch.builder().setSeed(seed).build();
+    final UpdateSketch b = UpdateSketch.builder().setSeed(seed).build();
+    for (int i = 0; i < 10_000; i++) { a.update(i); }
+    for (int i = 5_000; i < 15_000; i++) { b.update(i); }
+    final SetOperationBuilder bldr = SetOperation.builder().setSeed(seed);
+    final byte[] expected = intersection(of(a), of(b)).evaluate(bldr).toByteArray();
+    final SetExpression expr = intersection(
+        of(Memory.wrap(a.compact().toByteArray()), seed),
+        of(Memory.wrap(b.toByteArray()), seed));
+    assertEquals(expr.evaluate(bldr).toByteArray(), expected);
+
+    final CompactSketch single = of(Memory.wrap(a.compact().toByteArray()), seed).evaluate(bldr);
+    assertTrue(!single.hasMemory());
+    assertEquals(single.toByteArray(), a.compact().toByteArray());
+    final CompactSketch unordered = of(Memory.wrap(a.compact(false, null).toByteArray()), seed)
+        .evaluate(bldr);
+    assertTrue(unordered.isOrdered() && !unordered.hasMemory());
+    assertEquals(unordered.toByteArray(), a.compact().toByteArray());
+  }
+
+  @Test
+  public void checkNoHashesSkipsRemainingSubexpressions() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    final UpdateSketch c = UpdateSketch.builder().build();
+    for (int i = 0; i < 1_000; i++) { a.update(i); }
+    for (int i = 1_000; i < 2_000; i++) { b.update(i); }
+    for (int i = 0; i < 2_000; i++) { c.update(i); }
+    final Counting counting = new Counting(union(of(c)));
+
+    final CompactSketch result = intersection(of(a), counting, of(b)).evaluate();
+    assertEquals(result.getRetainedEntries(), 0);
+    assertEquals(result.getEstimate(), 0.0);
+    assertTrue(result.isEmpty());
+    assertEquals(counting.evals.get(), 0);
+    assertEquals(aNotB(intersection(of(a), of(b)), counting).evaluate().getRetainedEntries(), 0);
+    assertEquals(counting.evals.get(), 0);
+    assertEquals(intersection(of(a), counting).evaluate().getRetainedEntries(), 1_000);
+    assertEquals(counting.evals.get(), 1);
+  }
+
+  @Test
+  public void checkNoHashesSkipsRemainingPlainOperands() {
+    //in estimation mode, so that the intersection of a and b retains no hashes but is not empty
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    for (int i = 0; i < 100_000; i++) { a.update(i); }
+    for (int i = 100_000; i < 200_000; i++) { b.update(i); }
+    //c has the most retained entries, so it is intersected last, and the smallest theta, so
+    //intersecting it would lower the theta of the result
+    final UpdateSketch c = UpdateSketch.builder().setNominalEntries(1 << 14).build();
+    for (int i = 0; i < 1_000_000; i++) { c.update(i); }
+    final long thetaAB = Math.min(a.getThetaLong(), b.getThetaLong());
+    assertTrue(c.getThetaLong() < thetaAB);
+
+    final SetExpression expr = intersection(of(c), of(a), of(b));
+    final CompactSketch result = expr.evaluate();
+    assertEquals(result.getRetainedEntries(), 0);
+    assertTrue(!result.isEmpty());
+    assertEquals(result.getThetaLong(), thetaAB);
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final CompactSketch parallel = expr.evaluate(SetOperation.builder(), pool);
+      assertEquals(parallel.getRetainedEntries(), 0);
+      assertEquals(parallel.getThetaLong(), thetaAB);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void checkSeedHashesCheckedBeforeEvaluation() {
+    final UpdateSketch a = UpdateSketch.builder().build();
+    final UpdateSketch b = UpdateSketch.builder().build();
+    for (int i = 0; i < 1_000; i++) { a.update(i); }
+    for (int i = 1_000; i < 2_000; i++) { b.update(i); }
+    final UpdateSketch other = UpdateSketch.builder().setSeed(1234L).build();
+    other.update(1);
+
+    //wherever it is, even where the evaluation would skip it
+    final SetExpression[] exprs = {
+        intersection(of(a), of(b), of(other)),
+        intersection(of(other), of(a), of(b)),
+        intersection(of(a), of(b), union(of(other))),
+        aNotB(intersection(of(a), of(b)), of(other)),
+        union(of(a), aNotB(of(other), of(b)))
+    };
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      for (final SetExpression expr : exprs) {
+        checkRejected(expr, null);
+        checkRejected(expr, pool);
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    //an empty operand is ignored by the set operations, whatever its seed
+    final UpdateSketch empty = UpdateSketch.builder().setSeed(1234L).build();
+    assertEquals(union(of(a), of(empty)).evaluate().getRetainedEntries(), 1_000);
+  }
+
+  private static void checkRejected(final SetExpression expr, final ForkJoinPool pool) {
+    try {
+      expr.evaluate(SetOperation.builder(), pool);
+      throw new AssertionError("expected SketchesArgumentException");
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullSketch() {
+    of((Sketch) null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullMemory() {
+    of((Memory) null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNoOperands() {
+    intersection();
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullOperand() {
+    union(of(UpdateSketch.builder().build()), null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullBuilder() {
+    of(UpdateSketch.builder().build()).evaluate(null);
+  }
+
+  private static Sketch randomSketch(final Random rand) {
+    final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(1 << 10).build();
+    final int start = rand.nextInt(20_000);
+    final int n = rand.nextInt(20_000);
+    for (int i = 0; i < n; i++) { sk.update(start + i); }
+    return sk;
+  }
+
+  //an operand of the given sketch in one of three forms
+  private static SetExpression operand(final Sketch sk, final int form) {
+    switch (form % 3) {
+      case 0: return of(sk);
+      case 1: return of(sk.compact());
+      default: return of(Memory.wrap(sk.compact().toByteArray()));
+    }
+  }
+
+  //counts the evaluations of the given expression
+  private static final class Counting extends SetExpression {
+    final AtomicInteger evals = new AtomicInteger();
+    private final SetExpression expr;
+
+    Counting(final SetExpression expr) {
+      this.expr = expr;
+    }
+
+    @Override
+    Sketch eval(final Evaluator ev) {
+      evals.incrementAndGet();
+      return expr.eval(ev);
+    }
+
+    @Override
+    void checkSeedHashes(final short seedHash) {
+      expr.checkSeedHashes(seedHash);
+    }
+  }
+
+}
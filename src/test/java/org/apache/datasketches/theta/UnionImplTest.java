@@ -259,6 +259,15 @@ public class UnionImplTest {
     //println(csk.toString(true, true, 1, true));
   }
 
+  @Test
+  public void checkTinyMemoryIgnored() {
+    final Union union = SetOperation.builder().buildUnion();
+    for (final int bytes : new int[] { 0, 1, 2, 7, 8, 15 }) {
+      union.update(Memory.wrap(new byte[bytes]));
+    }
+    assertTrue(union.getResult().isEmpty());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
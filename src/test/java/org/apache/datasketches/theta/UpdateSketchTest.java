@@ -19,11 +19,13 @@
 
 package org.apache.datasketches.theta;
 
+import static org.apache.datasketches.AllocationTestUtil.assertAllocationFree;
 import static org.apache.datasketches.Util.DEFAULT_UPDATE_SEED;
 import static org.apache.datasketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static org.apache.datasketches.theta.PreambleUtil.SER_VER_BYTE;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.fail;
 
 import org.testng.annotations.Test;
@@ -35,6 +37,7 @@ import org.apache.datasketches.Family;
 import org.apache.datasketches.ResizeFactor;
 import org.apache.datasketches.SketchesArgumentException;
 import org.apache.datasketches.Util;
+import org.apache.datasketches.hash.Hasher;
 
 /**
  * @author Lee Rhodes
@@ -176,6 +179,191 @@ public class UpdateSketchTest {
     } catch (SketchesArgumentException e) { }
   }
 
+  @Test
+  public void checkBatchUpdateMatchesSingleUpdates() {
+    final int k = 512;
+    final int n = 20000;
+    final long[] longs = new long[n];
+    final double[] doubles = new double[n];
+    final String[] strings = new String[n];
+    for (int i = 0; i < n; i++) {
+      longs[i] = i;
+      doubles[i] = i / 3.0;
+      strings[i] = (i % 100) == 0 ? null : Integer.toString(i);
+    }
+    doubles[0] = -0.0;
+    strings[1] = "";
+    final WritableMemory keysMem = WritableMemory.allocate(n << 3);
+    keysMem.putLongArray(0, longs, 0, n);
+
+    for (Family family : new Family[] {Family.QUICKSELECT, Family.ALPHA}) {
+      for (boolean direct : new boolean[] {false, true}) {
+        if (direct && (family == Family.ALPHA)) { continue; }
+        final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k)
+            .setFamily(family).setP((float) 0.9);
+
+        final UpdateSketch single = bldr.build();
+        final UpdateSketch batch = direct ? bldr.build(WritableMemory.allocate(512)) : bldr.build();
+        for (int i = 0; i < n; i++) { single.update(longs[i]); }
+        batch.batchUpdate(longs, 0, 1000);
+        batch.batchUpdate(longs, 1000, n - 1000);
+        assertBatchEquals(batch, single);
+
+        for (int i = 10; i < (n - 10); i++) { single.update(doubles[i]); }
+        batch.batchUpdate(doubles, 10, n - 20);
+        assertBatchEquals(batch, single);
+
+        for (int i = 0; i < n; i++) { single.update(strings[i]); }
+        batch.batchUpdate(strings, 0, n);
+        assertBatchEquals(batch, single);
+
+        final UpdateSketch single2 = bldr.build();
+        final UpdateSketch batch2 = direct ? bldr.build(WritableMemory.allocate(512)) : bldr.build();
+        for (int i = 5; i < n; i++) { single2.update(longs[i]); }
+        batch2.batchUpdate(keysMem, 5 << 3, n - 5);
+        assertBatchEquals(batch2, single2);
+      }
+    }
+  }
+
+  @Test
+  public void checkBatchUpdateEmptyRange() {
+    final UpdateSketch sk = UpdateSketch.builder().build();
+    sk.batchUpdate(new long[10], 3, 0);
+    sk.batchUpdate(new String[] {null, ""}, 0, 2);
+    assertEquals(sk.isEmpty(), true);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void checkBatchUpdateBadRange() {
+    final UpdateSketch sk = UpdateSketch.builder().build();
+    sk.batchUpdate(new long[10], 5, 6);
+  }
+
+  @Test
+  public void checkUpdatesDoNotAllocate() {
+    final UpdateSketch sk = UpdateSketch.builder().setNominalEntries(1 << 12).build();
+    final byte[] barr = { 1, 2, 3 };
+    final char[] carr = { 'a', 'b' };
+    final int[] iarr = { 4, 5 };
+    final long[] larr = { 6L, 7L };
+    final int n = 1000;
+    assertAllocationFree(6 * n, () -> { //the first run inserts, the measured run finds duplicates
+      for (int i = 0; i < n; i++) {
+        sk.update(i);
+        sk.update(i + 0.5);
+        sk.update(barr);
+        sk.update(carr);
+        sk.update(iarr);
+        sk.update(larr);
+      }
+    });
+    assertEquals(sk.getRetainedEntries(true), (2 * n) + 4);
+  }
+
+  @Test
+  public void checkCharSequenceAndByteSliceUpdates() {
+    final int n = 1000;
+    final String[] keys = new String[n];
+    final StringBuilder[] builders = new StringBuilder[n];
+    final byte[] buf = new byte[n * 8];
+    for (int i = 0; i < n; i++) {
+      keys[i] = "k\u00e9y" + i;
+      builders[i] = new StringBuilder(keys[i]);
+      final byte[] bytes = keys[i].getBytes(UTF_8);
+      System.arraycopy(bytes, 0, buf, i * 8, bytes.length);
+    }
+    final UpdateSketch strings = UpdateSketch.builder().build();
+    final UpdateSketch seqs = UpdateSketch.builder().build();
+    final UpdateSketch slices = UpdateSketch.builder().build();
+    for (int i = 0; i < n; i++) {
+      strings.update(keys[i]);
+      seqs.update(builders[i]);
+      slices.update(buf, i * 8, keys[i].getBytes(UTF_8).length);
+    }
+    assertEquals(seqs.getRetainedEntries(true), n);
+    assertEquals(seqs.toByteArray(), strings.toByteArray());
+    assertEquals(slices.toByteArray(), strings.toByteArray());
+    assertEquals(seqs.update(new StringBuilder()), UpdateReturnState.RejectedNullOrEmpty);
+    assertEquals(slices.update(buf, 5, 0), UpdateReturnState.RejectedNullOrEmpty);
+    assertAllocationFree(2 * n, () -> { //all duplicates
+      for (int i = 0; i < n; i++) {
+        strings.update(keys[i]);
+        seqs.update(builders[i]);
+      }
+    });
+  }
+
+  private static void assertBatchEquals(final UpdateSketch batch, final UpdateSketch single) {
+    assertEquals(batch.isEmpty(), single.isEmpty());
+    assertEquals(batch.getThetaLong(), single.getThetaLong());
+    assertEquals(batch.getRetainedEntries(true), single.getRetainedEntries(true));
+    assertEquals(batch.compact(true, null).toByteArray(), single.compact(true, null).toByteArray());
+  }
+
+  @Test
+  public void checkXxHash64Sketches() {
+    final int k = 1024;
+    final int n = 10_000;
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k)
+        .setHasher(Hasher.XXHASH64);
+    assertEquals(bldr.getHasher(), Hasher.XXHASH64);
+    final UpdateSketch heap = bldr.build();
+    final int bytes = Sketch.getMaxUpdateSketchBytes(k);
+    final UpdateSketch direct = bldr.build(WritableMemory.allocate(bytes));
+    final UpdateSketch murmur = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = 0; i < n; i++) {
+      heap.update(i);
+      direct.update(i);
+      murmur.update(i);
+    }
+    assertEquals(heap.getHasher(), Hasher.XXHASH64);
+    assertEquals(direct.getHasher(), Hasher.XXHASH64);
+    assertEquals(heap.getEstimate(), n, n * 0.1);
+    assertEquals(direct.getEstimate(), heap.getEstimate());
+    assertNotEquals(heap.getThetaLong(), murmur.getThetaLong());
+
+    //the hasher survives serialization
+    final UpdateSketch heapified = UpdateSketch.heapify(WritableMemory.wrap(heap.toByteArray()));
+    assertEquals(heapified.getHasher(), Hasher.XXHASH64);
+    final UpdateSketch wrapped = UpdateSketch.wrap(WritableMemory.wrap(direct.toByteArray()));
+    assertEquals(wrapped.getHasher(), Hasher.XXHASH64);
+    heapified.update(n); //new items are hashed with the same hasher
+    wrapped.update(n);
+    assertEquals(wrapped.getEstimate(), heapified.getEstimate());
+    final Sketch compact = Sketch.heapify(WritableMemory.wrap(heap.compact().toByteArray()));
+    assertEquals(compact.getEstimate(), heap.getEstimate());
+
+    //unions accept only sketches with the same hasher
+    final Union xxUnion = SetOperation.builder().setHasher(Hasher.XXHASH64).buildUnion();
+    xxUnion.update(heap);
+    xxUnion.update(compact);
+    assertEquals(xxUnion.getResult().getEstimate(), heap.getEstimate());
+    try {
+      xxUnion.update(murmur);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+    try {
+      SetOperation.builder().buildUnion().update(heap);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+    try {
+      final Intersection inter = SetOperation.builder().buildIntersection();
+      inter.update(heap);
+      fail();
+    } catch (final SketchesArgumentException e) { }
+  }
+
+  @Test
+  public void checkXxHash64SingleItem() {
+    final UpdateSketch sk = UpdateSketch.builder().setHasher(Hasher.XXHASH64).build();
+    sk.update(1L);
+    final CompactSketch csk = sk.compact();
+    final Sketch heapified = Sketch.heapify(WritableMemory.wrap(csk.toByteArray()));
+    assertEquals(heapified.getEstimate(), 1.0);
+    assertEquals(heapified.getSeedHash(), csk.getSeedHash());
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
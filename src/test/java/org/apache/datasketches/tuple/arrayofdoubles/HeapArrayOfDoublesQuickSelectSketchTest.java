@@ -166,6 +166,12 @@ public class HeapArrayOfDoublesQuickSelectSketchTest {
     sketch.update(new long[] {5L}, new double[] {1.0});
     sketch.update("a", new double[] {1.0});
     Assert.assertEquals(sketch.getEstimate(), 6.0);
+    sketch.update(new StringBuilder("a"), new double[] {1.0}); // same key as "a"
+    sketch.update(new byte[] {9, 3, 9}, 1, 1, new double[] {1.0}); // same key as {3}
+    Assert.assertEquals(sketch.getEstimate(), 6.0);
+    sketch.update(new StringBuilder("b"), new double[] {1.0});
+    sketch.update(new byte[] {9, 3, 9}, 0, 2, new double[] {1.0});
+    Assert.assertEquals(sketch.getEstimate(), 8.0);
   }
 
   @Test